@@ -0,0 +1,54 @@
+package com.github.fppt.jedismock;
+
+import com.github.fppt.jedismock.storage.LockManager;
+import com.github.fppt.jedismock.storage.LockPlan;
+import com.github.fppt.jedismock.storage.RedisBase;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Active expiry cycle: periodically removes the keys which time to live has expired, so that the keys
+ * which are never accessed again do not stay in memory.
+ *
+ * Like in Redis, a cycle takes at most a quarter of the time between the cycles. Keys are removed in small batches,
+ * releasing the lock between them, so that the commands of the clients are not delayed.
+ */
+final class ActiveExpiry implements Runnable {
+    private static final Logger LOG = LoggerFactory.getLogger(ActiveExpiry.class);
+    private static final int BATCH_SIZE = 256;
+
+    private final Map<Integer, RedisBase> redisBases;
+    private final LockManager locks;
+    private final long budgetNanos;
+
+    /**
+     * @param hz how many times per second the cycle is run.
+     */
+    ActiveExpiry(Map<Integer, RedisBase> redisBases, LockManager locks, int hz) {
+        this.redisBases = redisBases;
+        this.locks = locks;
+        this.budgetNanos = TimeUnit.SECONDS.toNanos(1) / hz / 4;
+    }
+
+    @Override
+    public void run() {
+        try {
+            long end = System.nanoTime() + budgetNanos;
+            for (Map.Entry<Integer, RedisBase> database : redisBases.entrySet()) {
+                LockPlan plan = locks.isFineGrained() ? LockPlan.database(database.getKey()) : LockPlan.server();
+                int checked;
+                do {
+                    try (LockManager.Held ignored = locks.acquire(plan)) {
+                        checked = database.getValue().expireKeys(BATCH_SIZE);
+                    }
+                } while (checked == BATCH_SIZE && System.nanoTime() < end);
+            }
+        } catch (RuntimeException e) {
+            //Scheduled task is cancelled if it throws an exception
+            LOG.error("Active expiry cycle failed", e);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.github.fppt.jedismock;
+
+import com.github.fppt.jedismock.commands.RedisCommand;
+import com.github.fppt.jedismock.datastructures.Slice;
+import com.github.fppt.jedismock.operations.CommandFactory;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Recognizes commands which may block the connection waiting for data.
+ */
+final class BlockingCommands {
+    private static final Set<String> BLOCKING_COMMANDS = new HashSet<>(Arrays.asList(
+            "blpop", "brpop", "brpoplpush", "blmove", "blmpop",
+            "bzpopmin", "bzpopmax", "bzmpop",
+            "xread", "xreadgroup", "wait"));
+
+    private BlockingCommands() {
+    }
+
+    static boolean isBlocking(RedisCommand command) {
+        Slice name = command.parameters().get(0);
+        if (name.length() < 4 || name.length() > 10) {
+            return false;
+        }
+        //Cheap check before the name is decoded: all the blocking commands start with 'b', 'x' or 'w'
+        switch (name.byteAt(0) | 0x20) {
+            case 'b':
+            case 'x':
+            case 'w':
+                return BLOCKING_COMMANDS.contains(CommandFactory.commandName(name));
+            default:
+                return false;
+        }
+    }
+}
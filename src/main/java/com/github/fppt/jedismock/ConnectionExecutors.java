@@ -0,0 +1,48 @@
+package com.github.fppt.jedismock;
+
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Creates executors for the tasks which serve client connections.
+ *
+ * When running on Java 21+, each task gets its own virtual thread, which makes thousands of
+ * (mostly idle) connections cheap. Otherwise, a cached pool of platform threads is used.
+ * The method is looked up at runtime, so that the library can still be compiled for and run on Java 8.
+ *
+ * Blocking operations (BLPOP, XREAD BLOCK etc.) release the server lock and park the thread with
+ * {@link java.util.concurrent.locks.LockSupport} until a key they wait for is written, see
+ * {@link com.github.fppt.jedismock.storage.LockManager#await}. No monitor is held meanwhile, so a parked virtual
+ * thread is unmounted and does not pin its carrier thread.
+ */
+final class ConnectionExecutors {
+    private static final org.slf4j.Logger LOG = LoggerFactory.getLogger(ConnectionExecutors.class);
+    private static final Method NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = findVirtualThreadExecutorFactory();
+
+    private ConnectionExecutors() {
+    }
+
+    static ExecutorService newConnectionExecutor(boolean virtualThreads) {
+        if (virtualThreads && NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null) {
+            try {
+                return (ExecutorService) NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.invoke(null);
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                //E.g. Java 19/20 with preview features disabled
+                LOG.debug("Virtual threads are not available", e);
+            }
+        }
+        return Executors.newCachedThreadPool();
+    }
+
+    private static Method findVirtualThreadExecutorFactory() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
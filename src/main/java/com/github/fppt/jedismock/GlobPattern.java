@@ -0,0 +1,166 @@
+package com.github.fppt.jedismock;
+
+import com.github.fppt.jedismock.datastructures.Slice;
+
+/**
+ * Glob-style pattern used by KEYS, SCAN, PSUBSCRIBE and the like.
+ *
+ * Matching is performed on bytes and follows {@code stringmatchlen} of Redis: {@code *} matches any sequence,
+ * {@code ?} matches any byte, {@code [abc]}, {@code [a-z]} and {@code [^a]} match a byte from (or not from) a set,
+ * {@code \} escapes the next character.
+ */
+public final class GlobPattern {
+    /**
+     * Protection against abusive patterns, as in Redis.
+     */
+    private static final int MAX_NESTING = 1000;
+
+    private final byte[] pattern;
+    private final boolean matchesAll;
+
+    private GlobPattern(byte[] pattern) {
+        this.pattern = pattern;
+        boolean onlyStars = pattern.length > 0;
+        for (byte b : pattern) {
+            onlyStars &= b == '*';
+        }
+        this.matchesAll = onlyStars;
+    }
+
+    public static GlobPattern compile(Slice pattern) {
+        return new GlobPattern(pattern.data());
+    }
+
+    public static GlobPattern compile(String pattern) {
+        return compile(Slice.create(pattern));
+    }
+
+    public boolean matches(Slice string) {
+        if (matchesAll) {
+            return true;
+        }
+        return new Matcher(string.data()).match(0, 0, 0);
+    }
+
+    /**
+     * State of a single match.
+     */
+    private final class Matcher {
+        private final byte[] string;
+        /**
+         * Set when the rest of the pattern after a {@code *} does not match anywhere in the rest of the string:
+         * then longer matches of the preceding {@code *} cannot help either.
+         */
+        private boolean skipLongerMatches;
+
+        private Matcher(byte[] string) {
+            this.string = string;
+        }
+
+        /**
+         * @return the byte of the pattern at the position, 0 beyond its end (like the terminator of a C string).
+         */
+        private byte patternAt(int p) {
+            return p < pattern.length ? pattern[p] : 0;
+        }
+
+        private boolean match(int p, int s, int nesting) {
+            if (nesting > MAX_NESTING) {
+                return false;
+            }
+            while (p < pattern.length && s < string.length) {
+                switch (pattern[p]) {
+                    case '*':
+                        while (p + 1 < pattern.length && pattern[p + 1] == '*') {
+                            p++;
+                        }
+                        if (p + 1 == pattern.length) {
+                            return true;
+                        }
+                        while (s < string.length) {
+                            if (match(p + 1, s, nesting + 1)) {
+                                return true;
+                            }
+                            if (skipLongerMatches) {
+                                return false;
+                            }
+                            s++;
+                        }
+                        skipLongerMatches = true;
+                        return false;
+                    case '?':
+                        s++;
+                        break;
+                    case '[':
+                        p = matchSet(p + 1, string[s]);
+                        if (p < 0) {
+                            return false;
+                        }
+                        s++;
+                        break;
+                    case '\\':
+                        if (p + 2 <= pattern.length) {
+                            p++;
+                        }
+                        //fall through
+                    default:
+                        if (pattern[p] != string[s]) {
+                            return false;
+                        }
+                        s++;
+                        break;
+                }
+                p++;
+                if (s == string.length) {
+                    while (p < pattern.length && pattern[p] == '*') {
+                        p++;
+                    }
+                    break;
+                }
+            }
+            return p == pattern.length && s == string.length;
+        }
+
+        /**
+         * @param p position after the opening bracket.
+         * @return position of the closing bracket if the byte belongs to the set, -1 otherwise.
+         */
+        private int matchSet(int p, byte c) {
+            boolean not = patternAt(p) == '^';
+            if (not) {
+                p++;
+            }
+            boolean match = false;
+            while (true) {
+                if (patternAt(p) == '\\' && pattern.length - p >= 2) {
+                    p++;
+                    if (pattern[p] == c) {
+                        match = true;
+                    }
+                } else if (patternAt(p) == ']') {
+                    break;
+                } else if (p >= pattern.length) {
+                    //Unterminated set: the last byte of the pattern is consumed by the caller
+                    p--;
+                    break;
+                } else if (pattern.length - p >= 3 && pattern[p + 1] == '-') {
+                    int start = pattern[p];
+                    int end = pattern[p + 2];
+                    if (start > end) {
+                        int t = start;
+                        start = end;
+                        end = t;
+                    }
+                    p += 2;
+                    if (c >= start && c <= end) {
+                        match = true;
+                    }
+                } else if (pattern[p] == c) {
+                    match = true;
+                }
+                p++;
+            }
+            return match != not ? p : -1;
+        }
+    }
+}
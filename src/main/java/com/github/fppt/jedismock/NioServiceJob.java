@@ -0,0 +1,438 @@
+package com.github.fppt.jedismock;
+
+import com.github.fppt.jedismock.commands.RedisCommand;
+import com.github.fppt.jedismock.commands.RedisCommandParser;
+import com.github.fppt.jedismock.exception.ParseErrorException;
+import com.github.fppt.jedismock.server.SliceParser;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Non-blocking transport: connections are multiplexed over a fixed number of I/O threads,
+ * each of them running its own {@link Selector}.
+ *
+ * Commands are executed right on the I/O thread. Commands that may block waiting for data
+ * (BLPOP, XREAD etc.) are handed over to a worker thread, and reading from their connection
+ * is suspended until they complete.
+ */
+final class NioServiceJob implements RedisServer.ServiceJob {
+    private static final org.slf4j.Logger LOG = LoggerFactory.getLogger(NioServiceJob.class);
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final int INPUT_CHUNK_SIZE = 4 * 1024;
+    private static final int OUTPUT_CHUNK_SIZE = 8 * 1024;
+    /**
+     * When this amount of replies is not yet consumed by the client, we stop reading its commands.
+     */
+    private static final int MAX_PENDING_OUTPUT = 4 * 1024 * 1024;
+    private static final int CLOSE_FLUSH_ATTEMPTS = 100;
+    private static final InputStream NO_INPUT = new ByteArrayInputStream(new byte[0]);
+
+    private final RedisServer redisServer;
+    private final ServerSocketChannel server;
+    private final IoLoop[] loops;
+    private final ExecutorService ioThreads;
+    private final ExecutorService workers;
+    private final List<RedisClient> clients = new CopyOnWriteArrayList<>();
+    private int nextLoop;
+
+    NioServiceJob(RedisServer redisServer, int bindPort, InetAddress bindAddress, int threads) throws IOException {
+        this.redisServer = redisServer;
+        this.server = ServerSocketChannel.open();
+        try {
+            server.bind(new InetSocketAddress(bindAddress, bindPort));
+            loops = new IoLoop[threads];
+            for (int i = 0; i < threads; i++) {
+                loops[i] = new IoLoop();
+            }
+        } catch (IOException | RuntimeException e) {
+            Utils.closeQuietly(server);
+            throw e;
+        }
+        workers = ConnectionExecutors.newConnectionExecutor(redisServer.options().isVirtualThreadsEnabled());
+        ioThreads = Executors.newFixedThreadPool(threads);
+        for (IoLoop loop : loops) {
+            ioThreads.submit(loop);
+        }
+    }
+
+    @Override
+    public Void call() throws IOException {
+        while (server.isOpen()) {
+            SocketChannel channel = server.accept();
+            try {
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+                IoLoop loop = loops[nextLoop];
+                nextLoop = (nextLoop + 1) % loops.length;
+                Connection connection = new Connection(loop, channel);
+                clients.add(connection.client);
+                loop.execute(connection::register);
+            } catch (IOException e) {
+                LOG.error("Unable to accept connection", e);
+                Utils.closeQuietly(channel);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public ServerSocket getServer() {
+        return server.socket();
+    }
+
+    @Override
+    public void stop() throws IOException {
+        clients.forEach(RedisClient::close);
+        server.close();
+        for (IoLoop loop : loops) {
+            loop.stop();
+        }
+        ioThreads.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    private static final class Chunk {
+        private final byte[] data;
+        private int start;
+        private int end;
+
+        Chunk(int capacity) {
+            this.data = new byte[capacity];
+        }
+
+        int room() {
+            return data.length - end;
+        }
+    }
+
+    private final class IoLoop implements Runnable {
+        private final Selector selector;
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        private volatile Thread thread;
+        private volatile boolean stopped;
+
+        IoLoop() throws IOException {
+            this.selector = Selector.open();
+        }
+
+        @Override
+        public void run() {
+            thread = Thread.currentThread();
+            try {
+                while (!stopped && !Thread.currentThread().isInterrupted()) {
+                    selector.select();
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        ((Connection) key.attachment()).onReady(key);
+                    }
+                    Runnable task;
+                    while ((task = tasks.poll()) != null) {
+                        try {
+                            task.run();
+                        } catch (RuntimeException e) {
+                            LOG.error("I/O loop task failed", e);
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                LOG.error("I/O loop failed", e);
+            } finally {
+                Utils.closeQuietly(selector);
+            }
+            LOG.debug("Mock redis I/O loop shut down.");
+        }
+
+        boolean inLoop() {
+            return Thread.currentThread() == thread;
+        }
+
+        void execute(Runnable task) {
+            tasks.add(task);
+            selector.wakeup();
+        }
+
+        void stop() {
+            stopped = true;
+            selector.wakeup();
+        }
+    }
+
+    private final class Connection {
+        private final IoLoop loop;
+        private final SocketChannel channel;
+        private final RedisClient client;
+        /**
+         * Replies waiting to be written to the channel, guarded by itself.
+         */
+        private final ArrayDeque<Chunk> output = new ArrayDeque<>();
+        private volatile int pendingOutput;
+        private SelectionKey key;
+        /**
+         * Received bytes which do not form a complete command yet, null when there are none.
+         */
+        private byte[] input;
+        private int inputLength;
+        /**
+         * Set while a blocking command of this connection is being executed by a worker.
+         */
+        private boolean busy;
+        /**
+         * Set while the I/O thread executes commands of this connection: their replies are
+         * accumulated and written at once when the batch is processed.
+         */
+        private boolean handling;
+
+        Connection(IoLoop loop, SocketChannel channel) {
+            this.loop = loop;
+            this.channel = channel;
+            this.client = new RedisClient(redisServer, channel.socket(), NO_INPUT, new ChannelOutput(),
+                    clients::remove);
+        }
+
+        void register() {
+            try {
+                key = channel.register(loop.selector, SelectionKey.OP_READ, this);
+            } catch (ClosedChannelException e) {
+                client.close();
+            }
+        }
+
+        void onReady(SelectionKey selectionKey) {
+            handling = true;
+            try {
+                if (selectionKey.isValid() && selectionKey.isWritable()) {
+                    writeOutput();
+                }
+                if (selectionKey.isValid() && selectionKey.isReadable()) {
+                    read();
+                }
+                proceed();
+            } catch (IOException | CancelledKeyException e) {
+                LOG.debug("Connection failed", e);
+                client.close();
+            } catch (RuntimeException e) {
+                LOG.error("Unexpected error, closing connection", e);
+                client.close();
+            } finally {
+                handling = false;
+            }
+        }
+
+        private void read() throws IOException {
+            ByteBuffer buffer = loop.readBuffer;
+            buffer.clear();
+            int n = channel.read(buffer);
+            if (n < 0) {
+                client.close();
+                return;
+            }
+            if (input == null) {
+                int consumed = process(buffer.array(), 0, n);
+                if (consumed < n) {
+                    inputLength = n - consumed;
+                    input = new byte[Math.max(inputLength, INPUT_CHUNK_SIZE)];
+                    System.arraycopy(buffer.array(), consumed, input, 0, inputLength);
+                }
+            } else {
+                if (inputLength + n > input.length) {
+                    input = Arrays.copyOf(input, Math.max(inputLength + n, input.length * 2));
+                }
+                System.arraycopy(buffer.array(), 0, input, inputLength, n);
+                inputLength += n;
+            }
+        }
+
+        /**
+         * Executes buffered commands if possible, flushes the replies and updates the selection interest.
+         */
+        private void proceed() throws IOException {
+            if (!channel.isOpen()) {
+                return;
+            }
+            if (input != null) {
+                int consumed = process(input, 0, inputLength);
+                inputLength -= consumed;
+                if (inputLength == 0) {
+                    input = null;
+                } else if (consumed > 0) {
+                    System.arraycopy(input, consumed, input, 0, inputLength);
+                }
+            }
+            writeOutput();
+            updateInterest();
+        }
+
+        private boolean canProcess() {
+            return !busy && pendingOutput <= MAX_PENDING_OUTPUT && client.isRunning();
+        }
+
+        private int process(byte[] data, int from, int to) {
+            int pos = from;
+            while (pos < to && canProcess()) {
+                int end;
+                try {
+                    end = SliceParser.commandEnd(data, pos, to);
+                } catch (ParseErrorException e) {
+                    LOG.error("Protocol error, closing connection");
+                    client.close();
+                    return to;
+                }
+                if (end < 0) {
+                    break;
+                }
+                RedisCommand command;
+                try {
+                    command = RedisCommandParser.parse(new ByteArrayInputStream(data, pos, end - pos));
+                } catch (ParseErrorException e) {
+                    //Empty command, ignored in the same way as by blocking transport
+                    pos = end;
+                    continue;
+                }
+                pos = end;
+                if (BlockingCommands.isBlocking(command)) {
+                    busy = true;
+                    workers.submit(() -> {
+                        try {
+                            client.execute(command);
+                        } finally {
+                            loop.execute(() -> {
+                                busy = false;
+                                proceedQuietly();
+                            });
+                        }
+                    });
+                } else {
+                    client.execute(command);
+                }
+            }
+            return pos;
+        }
+
+        private void proceedQuietly() {
+            handling = true;
+            try {
+                proceed();
+            } catch (IOException | CancelledKeyException e) {
+                LOG.debug("Connection failed", e);
+                client.close();
+            } finally {
+                handling = false;
+            }
+        }
+
+        private void updateInterest() {
+            if (key == null || !key.isValid()) {
+                return;
+            }
+            int ops = canProcess() ? SelectionKey.OP_READ : 0;
+            if (pendingOutput > 0) {
+                ops |= SelectionKey.OP_WRITE;
+            }
+            key.interestOps(ops);
+        }
+
+        private void enqueue(byte[] b, int off, int len) {
+            synchronized (output) {
+                int remaining = len;
+                int offset = off;
+                while (remaining > 0) {
+                    Chunk last = output.peekLast();
+                    if (last == null || last.room() == 0) {
+                        last = new Chunk(Math.max(remaining, OUTPUT_CHUNK_SIZE));
+                        output.add(last);
+                    }
+                    int n = Math.min(remaining, last.room());
+                    System.arraycopy(b, offset, last.data, last.end, n);
+                    last.end += n;
+                    offset += n;
+                    remaining -= n;
+                }
+                pendingOutput += len;
+            }
+            if (loop.inLoop() && handling) {
+                return;
+            }
+            //Replies to blocking commands and published messages are written through immediately,
+            //the I/O thread only takes care of what the channel could not accept
+            try {
+                if (writeOutput()) {
+                    return;
+                }
+            } catch (IOException e) {
+                LOG.debug("Unable to write to connection", e);
+            }
+            loop.execute(this::proceedQuietly);
+        }
+
+        /**
+         * Writes as much of the pending output as the channel accepts without blocking.
+         *
+         * @return true if all the pending output is written
+         */
+        private boolean writeOutput() throws IOException {
+            synchronized (output) {
+                Chunk chunk;
+                while ((chunk = output.peek()) != null) {
+                    int n = channel.write(ByteBuffer.wrap(chunk.data, chunk.start, chunk.end - chunk.start));
+                    chunk.start += n;
+                    pendingOutput -= n;
+                    if (chunk.start < chunk.end) {
+                        return false;
+                    }
+                    output.poll();
+                }
+                return true;
+            }
+        }
+
+        private final class ChannelOutput extends OutputStream {
+            @Override
+            public void write(int b) {
+                enqueue(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                enqueue(b, off, len);
+            }
+
+            @Override
+            public void close() {
+                //Best effort to deliver the last replies (e.g. to QUIT) before the channel is closed
+                try {
+                    for (int i = 0; i < CLOSE_FLUSH_ATTEMPTS && !writeOutput(); i++) {
+                        Thread.yield();
+                    }
+                } catch (IOException e) {
+                    LOG.debug("Unable to flush output of closed connection", e);
+                }
+            }
+        }
+    }
+}
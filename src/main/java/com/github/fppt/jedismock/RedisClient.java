@@ -3,6 +3,8 @@ package com.github.fppt.jedismock;
 import com.github.fppt.jedismock.datastructures.Slice;
 import com.github.fppt.jedismock.exception.EOFException;
 import com.github.fppt.jedismock.server.RedisOperationExecutor;
+import com.github.fppt.jedismock.server.RespInputStream;
+import com.github.fppt.jedismock.server.RespWriter;
 import com.github.fppt.jedismock.server.Response;
 import com.github.fppt.jedismock.server.ServiceOptions;
 import com.github.fppt.jedismock.storage.OperationExecutorState;
@@ -26,27 +28,49 @@ import java.util.function.Consumer;
  */
 public final class RedisClient implements Runnable {
     private static final org.slf4j.Logger LOG = LoggerFactory.getLogger(RedisClient.class);
+    /**
+     * Replies to pipelined commands are accumulated up to this size before being sent.
+     */
+    private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
     private final RedisServer server;
     private final Socket socket;
     private final AtomicBoolean running;
     private final RedisOperationExecutor executor;
-    private final InputStream in;
+    private final RespInputStream in;
     private final OutputStream out;
+    /**
+     * Replies which are not yet written to the output. Guarded by itself, since published messages
+     * are sent from the threads of other clients.
+     */
+    private final RespWriter output = new RespWriter();
     private final Consumer<RedisClient> onClose;
 
     RedisClient(RedisServer server,
                 Socket socket,
                 Consumer<RedisClient> onClose) throws IOException {
+        this(server, socket, socket.getInputStream(), socket.getOutputStream(), onClose);
+    }
+
+    /**
+     * Creates a client which exchanges data via the given streams instead of the socket's own ones
+     * (used by non-blocking transport, where the socket is only a view of a channel).
+     */
+    RedisClient(RedisServer server,
+                Socket socket,
+                InputStream in,
+                OutputStream out,
+                Consumer<RedisClient> onClose) {
         Objects.requireNonNull(server);
         Objects.requireNonNull(socket);
         Objects.requireNonNull(onClose);
         this.server = server;
         OperationExecutorState state = new OperationExecutorState(this,
-                server.getRedisBases());
+                server.getRedisBases(), server.getLockManager(), server.getMemoryLimit(), server.getDumpFile(),
+                server.getAppendOnlyFile());
         this.executor = new RedisOperationExecutor(state);
         this.socket = socket;
-        this.in = socket.getInputStream();
-        this.out = socket.getOutputStream();
+        this.in = new RespInputStream(in);
+        this.out = out;
         this.running = new AtomicBoolean(true);
         this.onClose = onClose;
     }
@@ -55,13 +79,32 @@ public final class RedisClient implements Runnable {
         while (running.get() && !socket.isClosed() && !Thread.interrupted()) {
             Optional<RedisCommand> command = nextCommand();
             if (command.isPresent()) {
+                if (BlockingCommands.isBlocking(command.get())) {
+                    //Replies to the preceding commands must not wait until the blocking command completes
+                    flushResponses();
+                }
                 Slice response = executor.execCommand(command.get());
-                sendResponse(response, command.toString());
+                //While the next pipelined command is already received, replies are only buffered
+                sendResponse(response, command.toString(), !in.hasCompleteCommand());
+            } else if (running.get()) {
+                flushResponses();
             }
         }
         LOG.debug("Mock redis connection shut down.");
     }
 
+    /**
+     * Executes a command which was parsed outside of this client and sends the response.
+     */
+    void execute(RedisCommand command) {
+        Slice response = executor.execCommand(command);
+        sendResponse(response, command.toString());
+    }
+
+    boolean isRunning() {
+        return running.get() && !socket.isClosed();
+    }
+
     /**
      * Gets the next command on the stream if one has been issued
      *
@@ -85,24 +128,60 @@ public final class RedisClient implements Runnable {
      * @param respondingTo The reason for sending this response
      */
     public void sendResponse(Slice response, String respondingTo) {
+        sendResponse(response, respondingTo, true);
+    }
+
+    private void sendResponse(Slice response, String respondingTo, boolean flush) {
         try {
-            if (!response.equals(Response.SKIP)) {
-                out.write(response.data());
+            synchronized (output) {
+                if (!response.equals(Response.SKIP)) {
+                    if (output.size() > 0 && output.size() + response.length() > OUTPUT_BUFFER_SIZE) {
+                        writeOutput();
+                    }
+                    if (response.length() >= OUTPUT_BUFFER_SIZE) {
+                        response.writeTo(out);
+                    } else {
+                        output.raw(response);
+                    }
+                }
+                if (flush) {
+                    writeOutput();
+                    out.flush();
+                }
             }
         } catch (IOException e) {
             LOG.error("unable to send [" + response + "] as response to [" + respondingTo + "]", e);
         }
     }
 
+    private void flushResponses() {
+        try {
+            synchronized (output) {
+                writeOutput();
+                out.flush();
+            }
+        } catch (IOException e) {
+            LOG.error("unable to send buffered responses", e);
+        }
+    }
+
+    private void writeOutput() throws IOException {
+        if (output.size() > 0) {
+            output.writeTo(out);
+            output.reset();
+        }
+    }
+
     /**
      * Close all the streams used by this client effectively closing the client.
      * Also signals the client to stop working.
      */
     public void close() {
         running.set(false);
-        Utils.closeQuietly(socket);
-        Utils.closeQuietly(in);
+        //Output is closed first, so that it has a chance to deliver pending data
         Utils.closeQuietly(out);
+        Utils.closeQuietly(in);
+        Utils.closeQuietly(socket);
         onClose.accept(this);
     }
 
@@ -1,24 +1,34 @@
 package com.github.fppt.jedismock;
 
 import com.github.fppt.jedismock.operations.CommandFactory;
+import com.github.fppt.jedismock.operations.server.MockExecutor;
 import com.github.fppt.jedismock.server.ServiceOptions;
+import com.github.fppt.jedismock.storage.AppendOnlyFile;
+import com.github.fppt.jedismock.storage.DumpFile;
+import com.github.fppt.jedismock.storage.LockManager;
+import com.github.fppt.jedismock.storage.LockPlan;
+import com.github.fppt.jedismock.storage.MemoryLimit;
+import com.github.fppt.jedismock.storage.OperationExecutorState;
 import com.github.fppt.jedismock.storage.RedisBase;
+import com.github.fppt.jedismock.storage.Snapshot;
 
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.time.Clock;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Created by Xiaolu on 2015/4/18.
@@ -31,7 +41,12 @@ public class RedisServer {
     private final InetAddress bindAddress;
     private final Map<Integer, RedisBase> redisBases;
     private volatile ExecutorService singleThreadPool;
-    private volatile RedisServiceJob service;
+    private volatile ScheduledExecutorService expiryTimer;
+    private volatile ServiceJob service;
+    private volatile LockManager locks;
+    private volatile MemoryLimit memoryLimit;
+    private volatile DumpFile dumpFile;
+    private volatile AppendOnlyFile appendOnlyFile;
     private volatile Clock clock = Clock.systemDefaultZone();
     private volatile ServiceOptions options = ServiceOptions.defaultOptions();
     private volatile Future<Void> serviceFinalization;
@@ -48,7 +63,11 @@ public class RedisServer {
     public RedisServer(int port, InetAddress address) {
         this.bindPort = port;
         this.bindAddress = address;
-        this.redisBases = new HashMap<>();
+        this.redisBases = new ConcurrentHashMap<>();
+        this.locks = new LockManager(false);
+        this.memoryLimit = MemoryLimit.unlimited();
+        this.dumpFile = DumpFile.none();
+        this.appendOnlyFile = AppendOnlyFile.none();
         CommandFactory.initialize();
     }
 
@@ -78,9 +97,46 @@ public class RedisServer {
         if (!(service == null)) {
             throw new IllegalStateException();
         }
-        this.service = new RedisServiceJob();
+        this.locks = new LockManager(options.isFineGrainedLockingEnabled());
+        this.memoryLimit = new MemoryLimit(options.getMaxMemory(), options.getMaxMemoryPolicy(), redisBases);
+        this.dumpFile = new DumpFile(options.getDumpFile(), redisBases, this::getClock);
+        this.appendOnlyFile = new AppendOnlyFile(options.getAppendOnlyFile(), options.getAppendFsync(),
+                redisBases, this::getClock);
+        //Like in Redis, the append only file is more complete than the dump file, so it is preferred
+        if (appendOnlyFile.exists()) {
+            redisBases.values().forEach(RedisBase::clear);
+            appendOnlyFile.load(new OperationExecutorState(redisBases, locks, this::getClock), MockExecutor::proceed);
+        } else {
+            dumpFile.load();
+        }
+        ServiceJob job = options.isNioTransportEnabled()
+                ? new NioServiceJob(this, bindPort, bindAddress, options.getNioThreads())
+                : new RedisServiceJob();
+        //The file is opened once the port is bound, so that it is not left open if the port is busy
+        try {
+            appendOnlyFile.open();
+        } catch (IOException | RuntimeException e) {
+            try {
+                job.stop();
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+        this.service = job;
         singleThreadPool = Executors.newSingleThreadExecutor();
         serviceFinalization = singleThreadPool.submit(service);
+        int hz = options.getActiveExpiryHz();
+        if (hz > 0) {
+            expiryTimer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "jedis-mock-active-expiry");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long period = TimeUnit.SECONDS.toNanos(1) / hz;
+            expiryTimer.scheduleWithFixedDelay(new ActiveExpiry(redisBases, locks, hz),
+                    period, period, TimeUnit.NANOSECONDS);
+        }
         return this;
     }
 
@@ -97,6 +153,32 @@ public class RedisServer {
             Thread.currentThread().interrupt();
         } finally {
             singleThreadPool.shutdownNow();
+            dumpFile.awaitBackgroundSave();
+            if (expiryTimer != null) {
+                expiryTimer.shutdownNow();
+                expiryTimer = null;
+            }
+            appendOnlyFile.close();
+        }
+    }
+
+    /**
+     * Takes a snapshot of all the databases, for example to restore a baseline dataset before each test.
+     * The snapshot is taken in constant time regardless of the size of the databases, see {@link Snapshot}.
+     */
+    public Snapshot snapshot() {
+        try (LockManager.Held ignored = locks.acquire(LockPlan.server())) {
+            return Snapshot.take(redisBases, clock);
+        }
+    }
+
+    /**
+     * Replaces the contents of all the databases with a snapshot taken by {@link #snapshot()}. The snapshot
+     * stays open, so that it can be restored again.
+     */
+    public void restore(Snapshot snapshot) {
+        try (LockManager.Held ignored = locks.acquire(LockPlan.server())) {
+            snapshot.restore(redisBases);
         }
     }
 
@@ -118,6 +200,22 @@ public class RedisServer {
         return redisBases;
     }
 
+    LockManager getLockManager() {
+        return locks;
+    }
+
+    MemoryLimit getMemoryLimit() {
+        return memoryLimit;
+    }
+
+    DumpFile getDumpFile() {
+        return dumpFile;
+    }
+
+    AppendOnlyFile getAppendOnlyFile() {
+        return appendOnlyFile;
+    }
+
     public ServiceOptions options() {
         return options;
     }
@@ -126,10 +224,20 @@ public class RedisServer {
         return clock;
     }
 
-    private final class RedisServiceJob implements Callable<Void> {
+    /**
+     * Accepts connections and serves the clients until stopped.
+     */
+    interface ServiceJob extends Callable<Void> {
+        ServerSocket getServer();
+
+        void stop() throws IOException;
+    }
+
+    private final class RedisServiceJob implements ServiceJob {
 
         private final ServerSocket server;
-        private final ExecutorService threadPool = Executors.newCachedThreadPool();
+        private final ExecutorService threadPool = ConnectionExecutors.newConnectionExecutor(
+                options.isVirtualThreadsEnabled());
         private final List<RedisClient> clients = new CopyOnWriteArrayList<>();
 
         public RedisServiceJob() throws IOException {
@@ -138,6 +246,7 @@ public class RedisServer {
             this.server = new ServerSocket(bindPort, 0, bindAddress);
         }
 
+        @Override
         public Void call() throws IOException {
             while (!server.isClosed()) {
                 Socket socket = server.accept();
@@ -148,10 +257,12 @@ public class RedisServer {
             return null;
         }
 
+        @Override
         public ServerSocket getServer() {
             return server;
         }
 
+        @Override
         public void stop() throws IOException {
             clients.forEach(RedisClient::close);
             server.close();
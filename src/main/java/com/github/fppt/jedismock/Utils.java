@@ -8,6 +8,7 @@ import java.io.Closeable;
  * Created by Xiaolu on 2015/4/21.
  */
 public class Utils {
+    private static final long MAX_BIT_OFFSET = 512L * 1024 * 1024 * 8;
 
     public static void closeQuietly(Closeable closeable) {
         try {
@@ -37,16 +38,24 @@ public class Utils {
         }
     }
 
-    public static int convertToNonNegativeInteger(String value) {
+    /**
+     * @return the offset of a bit of a string, which can be up to 512 MB long like in Redis.
+     */
+    public static long convertToBitOffset(String value) {
         try {
-            int pos = Integer.parseInt(value);
-            if (pos < 0) throw new NumberFormatException("Int less than 0");
-            return pos;
+            return convertToBitOffset(Long.parseLong(value));
         } catch (NumberFormatException e) {
             throw new WrongValueTypeException("ERR bit offset is not an integer or out of range");
         }
     }
 
+    public static long convertToBitOffset(long value) {
+        if (value < 0 || value >= MAX_BIT_OFFSET) {
+            throw new WrongValueTypeException("ERR bit offset is not an integer or out of range");
+        }
+        return value;
+    }
+
     public static int convertToInteger(String value) {
         try {
             return Integer.parseInt(value);
@@ -63,34 +72,6 @@ public class Utils {
         }
     }
 
-    public static String createRegexFromGlob(String glob) {
-        StringBuilder out = new StringBuilder("^");
-        for (int i = 0; i < glob.length(); ++i) {
-            final char c = glob.charAt(i);
-            switch (c) {
-                case '*':
-                    out.append(".*");
-                    break;
-                case '?':
-                    out.append('.');
-                    break;
-                case '.':
-                    out.append("\\.");
-                    break;
-                case '\\':
-                    out.append("\\\\");
-                    break;
-                case '{':
-                    out.append("\\{");
-                    break;
-                default:
-                    out.append(c);
-            }
-        }
-        out.append('$');
-        return out.toString();
-    }
-
     public static long toNanoTimeout(String value) {
         return (long) (convertToDouble(value) * 1_000_000_000L);
     }
@@ -0,0 +1,483 @@
+package com.github.fppt.jedismock.datastructures;
+
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+
+/**
+ * List of elements stored in a doubly linked list of fixed-size chunks, like the quicklist of Redis.
+ *
+ * Each chunk is a ring buffer, so elements are added and removed at both ends of the list in constant time.
+ * Accessing an element by its index takes O(N / CHUNK_SIZE) to find its chunk, starting from the closest end
+ * of the list, and inserting or removing an element in the middle takes O(CHUNK_SIZE) more to shift
+ * the elements of the chunk. Whole chunks are dropped when elements are removed from the ends in bulk,
+ * and neighbouring chunks are merged when both become less than half full, so that removing elements
+ * in the middle does not leave the list made of sparse chunks.
+ */
+public final class QuickList extends AbstractList<Slice> {
+    /**
+     * Maximum number of the elements of a chunk, a power of two.
+     */
+    static final int CHUNK_SIZE = 128;
+    private static final int MASK = CHUNK_SIZE - 1;
+
+    private Chunk head;
+    private Chunk tail;
+    private int size;
+
+    public QuickList() {
+    }
+
+    public QuickList(Collection<Slice> elements) {
+        elements.forEach(this::addLast);
+    }
+
+    private static final class Chunk {
+        private final Slice[] elements = new Slice[CHUNK_SIZE];
+        private int first;
+        private int count;
+        private Chunk previous;
+        private Chunk next;
+
+        private int slot(int index) {
+            return (first + index) & MASK;
+        }
+
+        Slice get(int index) {
+            return elements[slot(index)];
+        }
+
+        Slice set(int index, Slice element) {
+            int slot = slot(index);
+            Slice previousElement = elements[slot];
+            elements[slot] = element;
+            return previousElement;
+        }
+
+        boolean isFull() {
+            return count == CHUNK_SIZE;
+        }
+
+        void addFirst(Slice element) {
+            first = (first - 1) & MASK;
+            elements[first] = element;
+            count++;
+        }
+
+        void addLast(Slice element) {
+            elements[slot(count)] = element;
+            count++;
+        }
+
+        void add(int index, Slice element) {
+            for (int i = count; i > index; i--) {
+                elements[slot(i)] = get(i - 1);
+            }
+            elements[slot(index)] = element;
+            count++;
+        }
+
+        Slice remove(int index) {
+            Slice result = get(index);
+            if (index == 0) {
+                elements[first] = null;
+                first = (first + 1) & MASK;
+            } else {
+                for (int i = index; i < count - 1; i++) {
+                    elements[slot(i)] = get(i + 1);
+                }
+                elements[slot(count - 1)] = null;
+            }
+            count--;
+            return result;
+        }
+
+        /**
+         * Moves the second half of the elements to a new chunk following this one.
+         */
+        void split() {
+            Chunk chunk = new Chunk();
+            int kept = count / 2;
+            for (int i = kept; i < count; i++) {
+                chunk.addLast(get(i));
+                elements[slot(i)] = null;
+            }
+            count = kept;
+            chunk.previous = this;
+            chunk.next = next;
+            next = chunk;
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    public void addFirst(Slice element) {
+        if (head == null || head.isFull()) {
+            Chunk chunk = new Chunk();
+            chunk.next = head;
+            link(chunk);
+        }
+        head.addFirst(element);
+        size++;
+        modCount++;
+    }
+
+    public void addLast(Slice element) {
+        if (tail == null || tail.isFull()) {
+            Chunk chunk = new Chunk();
+            chunk.previous = tail;
+            link(chunk);
+        }
+        tail.addLast(element);
+        size++;
+        modCount++;
+    }
+
+    public Slice removeFirst() {
+        if (head == null) {
+            throw new NoSuchElementException();
+        }
+        return remove(head, 0);
+    }
+
+    public Slice removeLast() {
+        if (tail == null) {
+            throw new NoSuchElementException();
+        }
+        return remove(tail, tail.count - 1);
+    }
+
+    /**
+     * Removes the first elements of the list, dropping the whole chunks.
+     */
+    public void removeFirst(int count) {
+        int removed = Math.min(count, size);
+        while (removed > 0 && head.count <= removed) {
+            removed -= head.count;
+            size -= head.count;
+            unlink(head);
+        }
+        for (; removed > 0; removed--) {
+            remove(head, 0);
+        }
+        modCount++;
+    }
+
+    /**
+     * Removes the last elements of the list, dropping the whole chunks.
+     */
+    public void removeLast(int count) {
+        int removed = Math.min(count, size);
+        while (removed > 0 && tail.count <= removed) {
+            removed -= tail.count;
+            size -= tail.count;
+            unlink(tail);
+        }
+        for (; removed > 0; removed--) {
+            remove(tail, tail.count - 1);
+        }
+        modCount++;
+    }
+
+    @Override
+    public Slice get(int index) {
+        checkIndex(index, size);
+        Cursor cursor = new Cursor(index);
+        return cursor.chunk.get(cursor.offset);
+    }
+
+    @Override
+    public Slice set(int index, Slice element) {
+        ListIterator<Slice> iterator = listIterator(index);
+        Slice result = iterator.next();
+        iterator.set(element);
+        return result;
+    }
+
+    @Override
+    public void add(int index, Slice element) {
+        checkIndex(index, size + 1);
+        if (index == size) {
+            addLast(element);
+        } else if (index == 0) {
+            addFirst(element);
+        } else {
+            Cursor cursor = new Cursor(index);
+            Chunk chunk = cursor.chunk;
+            int offset = cursor.offset;
+            if (chunk.isFull()) {
+                chunk.split();
+                link(chunk.next);
+                if (offset > chunk.count) {
+                    offset -= chunk.count;
+                    chunk = chunk.next;
+                }
+            }
+            chunk.add(offset, element);
+            size++;
+            modCount++;
+        }
+    }
+
+    @Override
+    public Slice remove(int index) {
+        checkIndex(index, size);
+        Cursor cursor = new Cursor(index);
+        return remove(cursor.chunk, cursor.offset);
+    }
+
+    @Override
+    public void clear() {
+        head = null;
+        tail = null;
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    protected void removeRange(int fromIndex, int toIndex) {
+        if (toIndex == size) {
+            removeLast(toIndex - fromIndex);
+        } else if (fromIndex == 0) {
+            removeFirst(toIndex);
+        } else {
+            super.removeRange(fromIndex, toIndex);
+        }
+    }
+
+    @Override
+    public ListIterator<Slice> listIterator(int index) {
+        checkIndex(index, size + 1);
+        return new Cursor(index);
+    }
+
+    private Slice remove(Chunk chunk, int offset) {
+        Slice result = chunk.get(offset);
+        delete(chunk, offset);
+        return result;
+    }
+
+    /**
+     * Removes an element of a chunk. An empty chunk is dropped, and a chunk less than half full is merged
+     * with a neighbour which is less than half full too, like in the quicklist of Redis.
+     *
+     * @return the chunk whose elements have been appended to the previous one, null if no chunks were merged.
+     */
+    private Chunk delete(Chunk chunk, int offset) {
+        chunk.remove(offset);
+        size--;
+        modCount++;
+        if (chunk.count == 0) {
+            unlink(chunk);
+            return null;
+        }
+        Chunk merged;
+        if (isSparse(chunk) && isSparse(chunk.next)) {
+            merged = chunk.next;
+        } else if (isSparse(chunk) && isSparse(chunk.previous)) {
+            merged = chunk;
+        } else {
+            return null;
+        }
+        for (int i = 0; i < merged.count; i++) {
+            merged.previous.addLast(merged.get(i));
+        }
+        unlink(merged);
+        return merged;
+    }
+
+    private static boolean isSparse(Chunk chunk) {
+        return chunk != null && chunk.count < CHUNK_SIZE / 2;
+    }
+
+    /**
+     * @return the number of the chunks, for testing.
+     */
+    int chunks() {
+        int result = 0;
+        for (Chunk chunk = head; chunk != null; chunk = chunk.next) {
+            result++;
+        }
+        return result;
+    }
+
+    /**
+     * Links a chunk to its neighbours, which are set already.
+     */
+    private void link(Chunk chunk) {
+        if (chunk.previous == null) {
+            head = chunk;
+        } else {
+            chunk.previous.next = chunk;
+        }
+        if (chunk.next == null) {
+            tail = chunk;
+        } else {
+            chunk.next.previous = chunk;
+        }
+    }
+
+    private void unlink(Chunk chunk) {
+        if (chunk.previous == null) {
+            head = chunk.next;
+        } else {
+            chunk.previous.next = chunk.next;
+        }
+        if (chunk.next == null) {
+            tail = chunk.previous;
+        } else {
+            chunk.next.previous = chunk.previous;
+        }
+    }
+
+    private static void checkIndex(int index, int bound) {
+        if (index < 0 || index >= bound) {
+            throw new IndexOutOfBoundsException("Index: " + index);
+        }
+    }
+
+    /**
+     * Iterator pointing at the chunk of the next element, null at the end of the list.
+     */
+    private final class Cursor implements ListIterator<Slice> {
+        private Chunk chunk;
+        private int offset;
+        private int index;
+        private Chunk lastChunk;
+        private int lastOffset;
+        private boolean lastForward;
+        private int expectedModCount = modCount;
+
+        Cursor(int index) {
+            this.index = index;
+            if (index < size / 2) {
+                chunk = head;
+                offset = index;
+                while (offset >= chunk.count) {
+                    offset -= chunk.count;
+                    chunk = chunk.next;
+                }
+            } else if (index < size) {
+                chunk = tail;
+                offset = index - size + tail.count;
+                while (offset < 0) {
+                    chunk = chunk.previous;
+                    offset += chunk.count;
+                }
+            }
+        }
+
+        private void checkModification() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return chunk != null;
+        }
+
+        @Override
+        public Slice next() {
+            checkModification();
+            if (chunk == null) {
+                throw new NoSuchElementException();
+            }
+            lastChunk = chunk;
+            lastOffset = offset;
+            lastForward = true;
+            index++;
+            if (++offset == chunk.count) {
+                chunk = chunk.next;
+                offset = 0;
+            }
+            return lastChunk.get(lastOffset);
+        }
+
+        @Override
+        public boolean hasPrevious() {
+            return index > 0;
+        }
+
+        @Override
+        public Slice previous() {
+            checkModification();
+            if (index == 0) {
+                throw new NoSuchElementException();
+            }
+            if (chunk == null) {
+                chunk = tail;
+                offset = tail.count;
+            }
+            if (offset == 0) {
+                chunk = chunk.previous;
+                offset = chunk.count;
+            }
+            offset--;
+            index--;
+            lastChunk = chunk;
+            lastOffset = offset;
+            lastForward = false;
+            return chunk.get(offset);
+        }
+
+        @Override
+        public int nextIndex() {
+            return index;
+        }
+
+        @Override
+        public int previousIndex() {
+            return index - 1;
+        }
+
+        @Override
+        public void remove() {
+            checkModification();
+            if (lastChunk == null) {
+                throw new IllegalStateException();
+            }
+            //The next element takes the place of the removed one
+            Chunk following = lastChunk.next;
+            boolean lastOfChunk = lastOffset == lastChunk.count - 1;
+            Chunk merged = delete(lastChunk, lastOffset);
+            if (lastOfChunk) {
+                chunk = following;
+                offset = 0;
+            } else {
+                chunk = lastChunk;
+                offset = lastOffset;
+            }
+            //The chunk of the next element may have been appended to the previous one
+            if (merged != null && merged == chunk) {
+                chunk = merged.previous;
+                offset += chunk.count - merged.count;
+            }
+            if (lastForward) {
+                index--;
+            }
+            lastChunk = null;
+            expectedModCount = modCount;
+        }
+
+        @Override
+        public void set(Slice element) {
+            checkModification();
+            if (lastChunk == null) {
+                throw new IllegalStateException();
+            }
+            lastChunk.set(lastOffset, element);
+        }
+
+        @Override
+        public void add(Slice element) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -4,6 +4,11 @@ public interface RMDataStructure {
     void raiseTypeCastException();
     String getTypeName();
 
+    /**
+     * @return a copy which can be modified independently of this value.
+     */
+    RMDataStructure copy();
+
     default Slice getAsSlice() {
         raiseTypeCastException();
         return null;
@@ -5,16 +5,30 @@ import java.util.LinkedHashMap;
 import java.util.Map;
 
 public class RMHash implements RMDataStructure {
-    private final LinkedHashMap<Slice, Slice> storedData = new LinkedHashMap<>();
+    private final ScanIndexedMap storedData = new ScanIndexedMap(new LinkedHashMap<>());
 
     public Map<Slice, Slice> getStoredData() {
         return storedData;
     }
 
+    /**
+     * @return the index of the fields for HSCAN, built by the first call and maintained afterwards.
+     */
+    public ScanIndex scanIndex() {
+        return storedData.scanIndex();
+    }
+
     public void put(Slice key, Slice data) {
         storedData.put(key, data);
     }
 
+    @Override
+    public RMHash copy() {
+        RMHash copy = new RMHash();
+        copy.storedData.putAll(storedData);
+        return copy;
+    }
+
     @Override
     public void raiseTypeCastException() {
         throw new WrongValueTypeException("WRONGTYPE RMSortedSet value is used in the wrong place");
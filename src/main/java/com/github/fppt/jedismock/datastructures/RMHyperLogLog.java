@@ -2,62 +2,450 @@ package com.github.fppt.jedismock.datastructures;
 
 import com.github.fppt.jedismock.exception.WrongValueTypeException;
 
+import java.io.ByteArrayOutputStream;
 import java.util.Collection;
-import java.util.HashSet;
-import java.util.Set;
 
+/**
+ * HyperLogLog with 2<sup>14</sup> registers of 6 bits, kept in the string representation of Redis, so that
+ * GET returns it as is and a string set with the same bytes is a HyperLogLog again.
+ *
+ * The string is a 16 bytes header ("HYLL", the encoding, 3 unused bytes and the cached cardinality in little
+ * endian, which most significant bit is set when the cache is invalid), followed by either the dense encoding,
+ * where the registers are packed in 12288 bytes starting from the least significant bits, or the sparse encoding,
+ * which is made of runs of registers:
+ * <ul>
+ *     <li>ZERO {@code 00xxxxxx}: xxxxxx + 1 registers set to 0;</li>
+ *     <li>XZERO {@code 01xxxxxx yyyyyyyy}: xxxxxxyyyyyyyy + 1 registers set to 0;</li>
+ *     <li>VAL {@code 1vvvvvxx}: xx + 1 registers set to vvvvv + 1.</li>
+ * </ul>
+ * A HyperLogLog is sparse when it is created, and converted to the dense encoding once a register exceeds 32
+ * or the string exceeds 3000 bytes. Thus the memory is bounded regardless of the cardinality, and counting
+ * takes time proportional to the number of the registers. Elements are hashed with MurmurHash64A and
+ * the cardinality is estimated as in Redis, so the counts are the same as the counts of Redis.
+ */
 public class RMHyperLogLog extends StringCompatible {
-    private static final long serialVersionUID = 1L;
-    private transient HashSet<Slice> storedData;
+    private static final long serialVersionUID = 2L;
+
+    private static final int P = 14;
+    private static final int REGISTERS = 1 << P;
+    private static final int Q = 64 - P;
+    private static final int BITS = 6;
+    private static final int REGISTER_MAX = (1 << BITS) - 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int DENSE_SIZE = HEADER_SIZE + (REGISTERS * BITS + 7) / 8;
+    private static final int ENCODING = 4;
+    private static final int CARDINALITY = 8;
+    private static final byte DENSE = 0;
+    private static final byte SPARSE = 1;
+    private static final int SPARSE_MAX_BYTES = 3000;
+    private static final int SPARSE_VAL_MAX_VALUE = 32;
+    private static final int SPARSE_VAL_MAX_LENGTH = 4;
+    private static final int SPARSE_ZERO_MAX_LENGTH = 64;
+    private static final int SPARSE_XZERO_MAX_LENGTH = 16384;
+    private static final byte[] MAGIC = {'H', 'Y', 'L', 'L'};
+    private static final double ALPHA_INF = 0.721347520444481703680;
+    private static final long SEED = 0xadc83b19L;
+
+    private byte[] data;
 
     public RMHyperLogLog() {
-        storedData = new HashSet<>();
+        SparseEncoder encoder = new SparseEncoder();
+        encoder.append(0, REGISTERS);
+        data = encoder.finish();
     }
 
-    public Set<Slice> getStoredData() {
-        return storedData;
+    private RMHyperLogLog(byte[] data) {
+        this.data = data;
     }
 
-    public int size() {
-        return storedData.size();
+    /**
+     * @return the HyperLogLog stored in the string, null if the string does not have the header
+     * of a HyperLogLog. The sparse encoding is validated when the registers are read.
+     */
+    public static RMHyperLogLog fromString(Slice value) {
+        int length = value.length();
+        if (length < HEADER_SIZE) {
+            return null;
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (value.byteAt(i) != MAGIC[i]) {
+                return null;
+            }
+        }
+        byte encoding = value.byteAt(ENCODING);
+        if (encoding != DENSE && encoding != SPARSE || encoding == DENSE && length != DENSE_SIZE) {
+            return null;
+        }
+        return new RMHyperLogLog(value.copyData());
     }
 
-    public void addAll(Collection<Slice> data) {
-        storedData.addAll(data);
+    /**
+     * @return number of the bytes of the string representation.
+     */
+    public int getSize() {
+        return data.length;
     }
 
-    @Override
-    public void raiseTypeCastException() {
-        throw new WrongValueTypeException("WRONGTYPE HyperLogLog is used in the wrong place");
+    /**
+     * @return true if a register has been updated.
+     */
+    public boolean addAll(Collection<Slice> elements) {
+        boolean updated = false;
+        for (Slice element : elements) {
+            updated |= add(element);
+        }
+        return updated;
+    }
+
+    /**
+     * @return true if a register has been updated.
+     */
+    public boolean add(Slice element) {
+        long hash = murmurHash64A(element.data());
+        int index = (int) (hash & (REGISTERS - 1));
+        //The sentinel bit bounds the count to Q + 1
+        int count = Long.numberOfTrailingZeros(hash >>> P | 1L << Q) + 1;
+        return set(index, count);
+    }
+
+    /**
+     * Sets the registers to the maximum of the registers of this HyperLogLog and of another one.
+     */
+    public void merge(RMHyperLogLog other) {
+        byte[] registers = new byte[REGISTERS];
+        maxInto(registers);
+        other.maxInto(registers);
+        data = fromRegisters(registers, data[ENCODING] == DENSE || other.data[ENCODING] == DENSE);
+        data[CARDINALITY + 7] |= (byte) 0x80;
+    }
+
+    /**
+     * @return the estimated cardinality, which is cached in the header until the registers are updated.
+     */
+    public long count() {
+        if ((data[CARDINALITY + 7] & 0x80) == 0) {
+            long result = 0;
+            for (int i = 7; i >= 0; i--) {
+                result = result << 8 | data[CARDINALITY + i] & 0xff;
+            }
+            return result;
+        }
+        int[] histogram = new int[64];
+        if (data[ENCODING] == DENSE) {
+            for (int i = 0; i < REGISTERS; i++) {
+                histogram[denseGet(i)]++;
+            }
+        } else {
+            forEachRun((first, value, length) -> histogram[value] += length);
+        }
+        long result = estimate(histogram);
+        for (int i = 0; i < 8; i++) {
+            data[CARDINALITY + i] = (byte) (result >>> 8 * i);
+        }
+        return result;
+    }
+
+    /**
+     * @return the estimated cardinality of the union of the HyperLogLogs.
+     */
+    public static long count(Collection<RMHyperLogLog> hyperLogLogs) {
+        byte[] registers = new byte[REGISTERS];
+        for (RMHyperLogLog hyperLogLog : hyperLogLogs) {
+            hyperLogLog.maxInto(registers);
+        }
+        int[] histogram = new int[64];
+        for (byte register : registers) {
+            histogram[register]++;
+        }
+        return estimate(histogram);
+    }
+
+    /**
+     * The cardinality estimator of Otmar Ertl, used by Redis.
+     */
+    private static long estimate(int[] histogram) {
+        double m = REGISTERS;
+        double z = m * tau((m - histogram[Q + 1]) / m);
+        for (int j = Q; j >= 1; j--) {
+            z += histogram[j];
+            z *= 0.5;
+        }
+        z += m * sigma(histogram[0] / m);
+        return Math.round(ALPHA_INF * m * m / z);
+    }
+
+    private static double sigma(double x) {
+        if (x == 1.) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double zPrime;
+        double y = 1;
+        double z = x;
+        do {
+            x *= x;
+            zPrime = z;
+            z += x * y;
+            y += y;
+        } while (zPrime != z);
+        return z;
+    }
+
+    private static double tau(double x) {
+        if (x == 0. || x == 1.) {
+            return 0.;
+        }
+        double zPrime;
+        double y = 1.0;
+        double z = 1 - x;
+        do {
+            x = Math.sqrt(x);
+            zPrime = z;
+            y *= 0.5;
+            z -= Math.pow(1 - x, 2) * y;
+        } while (zPrime != z);
+        return z / 3;
+    }
+
+    private static long murmurHash64A(byte[] key) {
+        return murmurHash64A(key, key.length, SEED);
+    }
+
+    static long murmurHash64A(byte[] key, int length, long seed) {
+        final long m = 0xc6a4a7935bd1e995L;
+        final int r = 47;
+        long h = seed ^ length * m;
+        int blocks = length / 8;
+        for (int i = 0; i < blocks; i++) {
+            long k = 0;
+            for (int j = 7; j >= 0; j--) {
+                k = k << 8 | key[i * 8 + j] & 0xff;
+            }
+            k *= m;
+            k ^= k >>> r;
+            k *= m;
+            h ^= k;
+            h *= m;
+        }
+        int tail = length & 7;
+        if (tail != 0) {
+            for (int j = tail - 1; j >= 0; j--) {
+                h ^= (long) (key[blocks * 8 + j] & 0xff) << 8 * j;
+            }
+            h *= m;
+        }
+        h ^= h >>> r;
+        h *= m;
+        h ^= h >>> r;
+        return h;
     }
 
-    /* NB: we use custom serialization in order to always provide
-    the same byte-wise result for the same stored data.
+    private boolean set(int index, int count) {
+        if (data[ENCODING] == DENSE) {
+            if (denseGet(index) >= count) {
+                return false;
+            }
+            denseSet(index, count);
+        } else {
+            int[] current = new int[1];
+            forEachRun((first, value, length) -> {
+                if (index >= first && index < first + length) {
+                    current[0] = value;
+                }
+            });
+            if (current[0] >= count) {
+                return false;
+            }
+            if (count > SPARSE_VAL_MAX_VALUE) {
+                toDense();
+                denseSet(index, count);
+            } else {
+                SparseEncoder encoder = new SparseEncoder();
+                forEachRun((first, value, length) -> {
+                    if (index >= first && index < first + length) {
+                        encoder.append(value, index - first);
+                        encoder.append(count, 1);
+                        encoder.append(value, first + length - index - 1);
+                    } else {
+                        encoder.append(value, length);
+                    }
+                });
+                data = encoder.finish();
+                if (data.length > SPARSE_MAX_BYTES) {
+                    toDense();
+                }
+            }
+        }
+        data[CARDINALITY + 7] |= (byte) 0x80;
+        return true;
+    }
+
+    private int denseGet(int index) {
+        int bit = index * BITS;
+        int position = HEADER_SIZE + bit / 8;
+        int shift = bit & 7;
+        int low = data[position] & 0xff;
+        int high = position + 1 < data.length ? data[position + 1] & 0xff : 0;
+        return (low >>> shift | high << 8 - shift) & REGISTER_MAX;
+    }
+
+    private void denseSet(int index, int value) {
+        int bit = index * BITS;
+        int position = HEADER_SIZE + bit / 8;
+        int shift = bit & 7;
+        data[position] = (byte) (data[position] & ~(REGISTER_MAX << shift) | value << shift);
+        if (position + 1 < data.length) {
+            data[position + 1] = (byte) (data[position + 1] & ~(REGISTER_MAX >>> 8 - shift) | value >>> 8 - shift);
+        }
+    }
+
+    private void toDense() {
+        byte[] registers = new byte[REGISTERS];
+        maxInto(registers);
+        data = fromRegisters(registers, true);
+    }
+
+    /**
+     * Sets the registers to the maximum of their values and of the registers of this HyperLogLog.
+     */
+    private void maxInto(byte[] registers) {
+        if (data[ENCODING] == DENSE) {
+            for (int i = 0; i < REGISTERS; i++) {
+                registers[i] = (byte) Math.max(registers[i], denseGet(i));
+            }
+        } else {
+            forEachRun((first, value, length) -> {
+                for (int i = first; i < first + length; i++) {
+                    registers[i] = (byte) Math.max(registers[i], value);
+                }
+            });
+        }
+    }
+
+    /**
+     * @return string representation of the registers, sparse unless dense is requested or needed.
+     */
+    private static byte[] fromRegisters(byte[] registers, boolean dense) {
+        if (!dense) {
+            SparseEncoder encoder = new SparseEncoder();
+            for (byte register : registers) {
+                if (register > SPARSE_VAL_MAX_VALUE) {
+                    return fromRegisters(registers, true);
+                }
+                encoder.append(register, 1);
+            }
+            byte[] result = encoder.finish();
+            if (result.length <= SPARSE_MAX_BYTES) {
+                return result;
+            }
+        }
+        RMHyperLogLog result = new RMHyperLogLog(new byte[DENSE_SIZE]);
+        System.arraycopy(MAGIC, 0, result.data, 0, MAGIC.length);
+        result.data[ENCODING] = DENSE;
+        result.data[CARDINALITY + 7] = (byte) 0x80;
+        for (int i = 0; i < REGISTERS; i++) {
+            result.denseSet(i, registers[i]);
+        }
+        return result.data;
+    }
+
+    private interface RunConsumer {
+        void accept(int first, int value, int length);
+    }
+
+    /**
+     * Visits the runs of the sparse encoding.
      */
-    private void writeObject(java.io.ObjectOutputStream s)
-            throws java.io.IOException {
-        s.defaultWriteObject();
-        s.writeInt(storedData.size());
-        for (Slice storedDatum : storedData) {
-            s.writeInt(storedDatum.data().length);
-            for (byte datum : storedDatum.data()) {
-                s.writeByte(datum);
+    private void forEachRun(RunConsumer consumer) {
+        int first = 0;
+        int position = HEADER_SIZE;
+        while (position < data.length) {
+            int opcode = data[position++] & 0xff;
+            int value = 0;
+            int length;
+            if ((opcode & 0xc0) == 0) {
+                length = (opcode & 0x3f) + 1;
+            } else if ((opcode & 0xc0) == 0x40) {
+                if (position == data.length) {
+                    break;
+                }
+                length = ((opcode & 0x3f) << 8 | data[position++] & 0xff) + 1;
+            } else {
+                value = (opcode >>> 2 & 0x1f) + 1;
+                length = (opcode & 0x3) + 1;
             }
+            if (first + length > REGISTERS) {
+                break;
+            }
+            consumer.accept(first, value, length);
+            first += length;
+        }
+        if (first != REGISTERS || position != data.length) {
+            throw new WrongValueTypeException("INVALIDOBJ Corrupted HLL object detected");
         }
     }
 
-    private void readObject(java.io.ObjectInputStream s)
-            throws java.io.IOException, ClassNotFoundException {
-        storedData = new HashSet<>();
-        s.defaultReadObject();
-        int count = s.readInt();
-        for (int i = 0; i < count; i++) {
-            int len = s.readInt();
-            byte[] buf = new byte[len];
-            for (int j = 0; j < len; j++) {
-                buf[j] = s.readByte();
+    /**
+     * Writes runs of registers in the sparse encoding, the consecutive runs of the same value being merged.
+     */
+    private static final class SparseEncoder {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        private int value;
+        private int length;
+
+        SparseEncoder() {
+            out.write(MAGIC, 0, MAGIC.length);
+            out.write(SPARSE);
+            out.write(new byte[CARDINALITY - ENCODING - 1], 0, CARDINALITY - ENCODING - 1);
+            out.write(new byte[8], 0, 8);
+        }
+
+        void append(int runValue, int runLength) {
+            if (runLength == 0) {
+                return;
+            }
+            if (runValue != value) {
+                flush();
+                value = runValue;
             }
-            storedData.add(Slice.create(buf));
+            length += runLength;
+        }
+
+        byte[] finish() {
+            flush();
+            return out.toByteArray();
         }
+
+        private void flush() {
+            while (length > 0) {
+                if (value != 0) {
+                    int run = Math.min(length, SPARSE_VAL_MAX_LENGTH);
+                    out.write(0x80 | value - 1 << 2 | run - 1);
+                    length -= run;
+                } else if (length > SPARSE_ZERO_MAX_LENGTH) {
+                    int run = Math.min(length, SPARSE_XZERO_MAX_LENGTH);
+                    out.write(0x40 | run - 1 >>> 8);
+                    out.write(run - 1 & 0xff);
+                    length -= run;
+                } else {
+                    out.write(length - 1);
+                    length = 0;
+                }
+            }
+        }
+    }
+
+    @Override
+    public Slice getAsSlice() {
+        return Slice.create(data.clone());
+    }
+
+    @Override
+    public RMHyperLogLog copy() {
+        return new RMHyperLogLog(data.clone());
+    }
+
+    @Override
+    public void raiseTypeCastException() {
+        throw new WrongValueTypeException("WRONGTYPE HyperLogLog is used in the wrong place");
     }
 }
@@ -3,21 +3,164 @@ package com.github.fppt.jedismock.datastructures;
 import com.github.fppt.jedismock.exception.WrongValueTypeException;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.ListIterator;
 
+/**
+ * List of elements, stored in a {@link QuickList}.
+ *
+ * Indices are zero-based, negative ones count from the tail of the list as in the commands.
+ */
 public class RMList implements RMDataStructure {
-    private final List<Slice> storedData;
+    private final QuickList storedData;
 
     public RMList() {
-        this.storedData = new ArrayList<>();
+        this.storedData = new QuickList();
     }
 
     public RMList(List<Slice> storedData) {
-        this.storedData = storedData;
+        this.storedData = new QuickList(storedData);
     }
 
+    /**
+     * @return read-only view of the elements, the list is modified with the methods of this class.
+     */
     public List<Slice> getStoredData() {
-        return storedData;
+        return Collections.unmodifiableList(storedData);
+    }
+
+    public int size() {
+        return storedData.size();
+    }
+
+    public boolean isEmpty() {
+        return storedData.isEmpty();
+    }
+
+    public void addFirst(Slice element) {
+        storedData.addFirst(element);
+    }
+
+    public void addLast(Slice element) {
+        storedData.addLast(element);
+    }
+
+    public Slice removeFirst() {
+        return storedData.removeFirst();
+    }
+
+    public Slice removeLast() {
+        return storedData.removeLast();
+    }
+
+    /**
+     * @return the index counted from the head of the list, -1 if the index is out of range.
+     */
+    private int normalize(int index) {
+        int result = index < 0 ? storedData.size() + index : index;
+        return result < 0 || result >= storedData.size() ? -1 : result;
+    }
+
+    /**
+     * @return the element, null if the index is out of range.
+     */
+    public Slice get(int index) {
+        int position = normalize(index);
+        return position < 0 ? null : storedData.get(position);
+    }
+
+    /**
+     * @return false if the index is out of range.
+     */
+    public boolean set(int index, Slice element) {
+        int position = normalize(index);
+        if (position < 0) {
+            return false;
+        }
+        storedData.set(position, element);
+        return true;
+    }
+
+    /**
+     * Inserts an element next to the first occurrence of the pivot.
+     *
+     * @return the size of the list, -1 if the pivot is not found.
+     */
+    public int insert(Slice pivot, Slice element, boolean before) {
+        int position = storedData.indexOf(pivot);
+        if (position < 0) {
+            return -1;
+        }
+        storedData.add(before ? position : position + 1, element);
+        return storedData.size();
+    }
+
+    /**
+     * Removes the occurrences of an element, as LREM does.
+     *
+     * @param count the number of the occurrences to remove from the head of the list, from the tail if negative,
+     *              all of them if zero.
+     * @return the number of the removed elements.
+     */
+    public int remove(Slice element, int count) {
+        boolean reversed = count < 0;
+        long limit = count == 0 ? Long.MAX_VALUE : Math.abs((long) count);
+        ListIterator<Slice> iterator = storedData.listIterator(reversed ? storedData.size() : 0);
+        int removed = 0;
+        while (removed < limit && (reversed ? iterator.hasPrevious() : iterator.hasNext())) {
+            if ((reversed ? iterator.previous() : iterator.next()).equals(element)) {
+                iterator.remove();
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * @return the elements between the indices, inclusive, as LRANGE returns them.
+     */
+    public List<Slice> range(int start, int end) {
+        int size = storedData.size();
+        int from = Math.max(start < 0 ? size + start : start, 0);
+        int to = Math.min(end < 0 ? size + end : end, size - 1);
+        List<Slice> result = new ArrayList<>();
+        if (from <= to) {
+            Iterator<Slice> iterator = storedData.listIterator(from);
+            for (int i = from; i <= to; i++) {
+                result.add(iterator.next());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Keeps only the elements between the indices, inclusive, as LTRIM does.
+     */
+    public void trim(int start, int end) {
+        int size = storedData.size();
+        int from = Math.max(start < 0 ? size + start : start, 0);
+        int to = Math.min(end < 0 ? size + end : end, size - 1);
+        if (from > to) {
+            storedData.clear();
+        } else {
+            storedData.removeLast(size - 1 - to);
+            storedData.removeFirst(from);
+        }
+    }
+
+    /**
+     * @param index the index of the first element to return, counted from the head of the list.
+     * @return iterator over the elements, which does not modify the list.
+     */
+    public ListIterator<Slice> listIterator(int index) {
+        return getStoredData().listIterator(index);
+    }
+
+    @Override
+    public RMList copy() {
+        return new RMList(storedData);
     }
 
     @Override
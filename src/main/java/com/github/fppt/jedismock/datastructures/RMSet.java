@@ -7,21 +7,36 @@ import java.util.Objects;
 import java.util.Set;
 
 public class RMSet implements RMDataStructure {
-    private final Set<Slice> storedData;
+    private final ScanIndexedSet storedData;
 
     public RMSet() {
-        storedData = new HashSet<>();
+        storedData = new ScanIndexedSet(new HashSet<>());
     }
 
+    /**
+     * The set is not copied, it must not be modified afterwards but through {@link #getStoredData()}.
+     */
     public RMSet(Set<Slice> data) {
         Objects.requireNonNull(data);
-        storedData = data;
+        storedData = new ScanIndexedSet(data);
     }
 
     public Set<Slice> getStoredData() {
         return storedData;
     }
 
+    /**
+     * @return the index of the members for SSCAN, built by the first call and maintained afterwards.
+     */
+    public ScanIndex scanIndex() {
+        return storedData.scanIndex();
+    }
+
+    @Override
+    public RMSet copy() {
+        return new RMSet(new HashSet<>(storedData));
+    }
+
     @Override
     public void raiseTypeCastException() {
         throw new WrongValueTypeException("WRONGTYPE RMSet value is used in the wrong place");
@@ -3,27 +3,67 @@ package com.github.fppt.jedismock.datastructures;
 import com.github.fppt.jedismock.exception.WrongValueTypeException;
 
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
+import java.util.List;
 
+/**
+ * String value, which is also the bitmap of the bit commands.
+ *
+ * The bits are numbered from the most significant bit of the first byte, like in Redis. The bit commands work
+ * on the stored bytes in place, a 64-bit word at a time where possible, so a string read by GET is the same
+ * bitmap SETBIT and BITOP write. The stored bytes may be shared with a slice or a copy of the string,
+ * in which case they are copied before being modified. They grow geometrically, so that APPEND takes
+ * amortized O(1) per byte.
+ *
+ * A string changed by INCR or DECR is kept as a number, like the int encoding of Redis, and is only turned
+ * into bytes when it is modified or read as bytes.
+ */
 public class RMString implements RMDataStructure, Serializable {
-    private static final long serialVersionUID = 1L;
+    private static final long serialVersionUID = 2L;
+    //Redis grows a string twice as large as needed up to 1 MB, and by 1 MB above that
+    private static final int MAX_PREALLOCATION = 1024 * 1024;
+    //The bytes beyond the size are zeros, the array may be larger than the string to grow in place.
+    //The bytes are null while the string is int-encoded.
     private byte[] storedData;
+    private int size;
+    private long integer;
+    //Whether the array may be referenced elsewhere, so that it must be copied before being modified
+    private boolean shared;
+
+    /**
+     * Operators of BITOP.
+     */
+    public enum BitOperation {
+        AND, OR, XOR, NOT
+    }
 
     public RMString() {
         storedData = new byte[0];
     }
 
+    /**
+     * The array is not copied, it is copied before the first modification of the string instead.
+     */
     public RMString(byte[] data) {
         storedData = data;
+        size = data.length;
+        shared = true;
     }
 
+    /**
+     * @return a modifiable copy of the bytes of the string. {@link #getAsSlice()} reads them without copying.
+     */
     public byte[] getStoredData() {
-        return Arrays.copyOf(storedData, storedData.length);
+        return Arrays.copyOf(bytes(), size);
     }
 
     public String getStoredDataAsString() {
-        return new String(storedData, StandardCharsets.UTF_8);
+        if (storedData == null) {
+            return Long.toString(integer);
+        }
+        return new String(storedData, 0, size, StandardCharsets.UTF_8);
     }
 
     public static RMString create(byte[] str) {
@@ -34,14 +74,305 @@ public class RMString implements RMDataStructure, Serializable {
         return new RMString(str.getBytes(StandardCharsets.UTF_8));
     }
 
-    public void add(byte[] str) {
-        int oldLength = storedData.length;
-        storedData = Arrays.copyOf(storedData, oldLength + str.length);
-        System.arraycopy(str, 0, storedData, oldLength, str.length);
+    /**
+     * @return int-encoded string.
+     */
+    public static RMString create(long value) {
+        RMString result = new RMString();
+        result.storedData = null;
+        result.integer = value;
+        return result;
+    }
+
+    /**
+     * Appends the bytes to the string.
+     */
+    public void add(Slice value) {
+        setRange(size(), value);
     }
 
     public int size() {
-        return storedData.length;
+        return storedData == null ? digits(integer) : size;
+    }
+
+    private static int digits(long value) {
+        int result = value < 0 ? 2 : 1;
+        for (long rest = value / 10; rest != 0; rest /= 10) {
+            result++;
+        }
+        return result;
+    }
+
+    /**
+     * Adds the increment to the integer value of the string, which is int-encoded afterwards.
+     *
+     * @return the new value.
+     */
+    public long incrementBy(long increment) {
+        long value = storedData == null ? integer : parseLong();
+        try {
+            integer = Math.addExact(value, increment);
+        } catch (ArithmeticException e) {
+            throw new WrongValueTypeException("ERR increment or decrement would overflow");
+        }
+        storedData = null;
+        size = 0;
+        shared = false;
+        return integer;
+    }
+
+    /**
+     * Parses the bytes the same way as Redis, which accepts neither a plus sign nor leading zeros.
+     */
+    private long parseLong() {
+        boolean negative = size > 1 && storedData[0] == '-';
+        int start = negative ? 1 : 0;
+        if (size == 0 || size > 20 || storedData[start] == '0' && size > 1) {
+            throw new WrongValueTypeException("ERR value is not an integer or out of range");
+        }
+        long result = 0;
+        for (int i = start; i < size; i++) {
+            int digit = storedData[i] - '0';
+            //The result is accumulated as a negative number, which has a larger range
+            if (digit < 0 || digit > 9 || result < (Long.MIN_VALUE + digit) / 10) {
+                throw new WrongValueTypeException("ERR value is not an integer or out of range");
+            }
+            result = result * 10 - digit;
+        }
+        if (!negative && result == Long.MIN_VALUE) {
+            throw new WrongValueTypeException("ERR value is not an integer or out of range");
+        }
+        return negative ? result : -result;
+    }
+
+    /**
+     * @return the stored bytes, into which an int-encoded string is turned.
+     */
+    private byte[] bytes() {
+        if (storedData == null) {
+            storedData = Long.toString(integer).getBytes(StandardCharsets.US_ASCII);
+            size = storedData.length;
+        }
+        return storedData;
+    }
+
+    /**
+     * Makes the stored bytes modifiable and at least of the given size, the added bytes being zeros.
+     */
+    private void prepareForUpdate(int minSize) {
+        int capacity = bytes().length;
+        if (minSize > capacity) {
+            capacity = (int) Math.min(Integer.MAX_VALUE - 8,
+                    minSize < MAX_PREALLOCATION ? minSize * 2L : (long) minSize + MAX_PREALLOCATION);
+        }
+        if (shared || capacity != storedData.length) {
+            storedData = Arrays.copyOf(storedData, capacity);
+            shared = false;
+        }
+        size = Math.max(size, minSize);
+    }
+
+    /**
+     * Pads the string with zeros up to the size, if it is shorter.
+     */
+    public void padTo(int minSize) {
+        prepareForUpdate(minSize);
+    }
+
+    /**
+     * Overwrites the bytes starting from the offset, padding the string with zeros if it is shorter.
+     *
+     * @return the new size of the string.
+     */
+    public int setRange(int offset, Slice value) {
+        if (value.length() > 0) {
+            prepareForUpdate(offset + value.length());
+            value.copyTo(storedData, offset);
+        }
+        return size();
+    }
+
+    public boolean getBit(long offset) {
+        int index = (int) (offset >>> 3);
+        return index < size() && (bytes()[index] & 0x80 >>> (offset & 7)) != 0;
+    }
+
+    /**
+     * Sets a bit, growing the string if the bit is beyond its end.
+     *
+     * @return the previous value of the bit.
+     */
+    public boolean setBit(long offset, boolean value) {
+        int index = (int) (offset >>> 3);
+        prepareForUpdate(index + 1);
+        int mask = 0x80 >>> (offset & 7);
+        boolean previous = (storedData[index] & mask) != 0;
+        storedData[index] = (byte) (value ? storedData[index] | mask : storedData[index] & ~mask);
+        return previous;
+    }
+
+    /**
+     * @return the number of the set bits between the offsets, inclusive. The offsets must be within the string.
+     */
+    public long bitCount(long from, long to) {
+        int first = (int) (from >>> 3);
+        int last = (int) (to >>> 3);
+        ByteBuffer words = ByteBuffer.wrap(bytes());
+        long result = 0;
+        int index = first;
+        for (; index + 8 <= last + 1; index += 8) {
+            result += Long.bitCount(words.getLong(index));
+        }
+        for (; index <= last; index++) {
+            result += Integer.bitCount(storedData[index] & 0xff);
+        }
+        //The bits of the first and the last byte out of the range
+        result -= Integer.bitCount(storedData[first] & 0xff00 >>> (from & 7) & 0xff);
+        result -= Integer.bitCount(storedData[last] & 0xff >>> (to & 7) + 1);
+        return result;
+    }
+
+    /**
+     * @return the offset of the first bit of the value between the offsets, inclusive, -1 if there is none.
+     */
+    public long bitPosition(boolean bit, long from, long to) {
+        long offset = from;
+        for (; offset <= to && (offset & 7) != 0; offset++) {
+            if (getBit(offset) == bit) {
+                return offset;
+            }
+        }
+        if (offset > to) {
+            return -1;
+        }
+        //The words and the bytes in the range which do not contain the bit are skipped
+        int index = (int) (offset >>> 3);
+        int end = (int) Math.min(size(), to + 1 >>> 3);
+        long skipped = bit ? 0 : -1;
+        ByteBuffer words = ByteBuffer.wrap(bytes());
+        while (index + 8 <= end && words.getLong(index) == skipped) {
+            index += 8;
+        }
+        while (index < end && storedData[index] == (byte) skipped) {
+            index++;
+        }
+        for (offset = (long) index << 3; offset <= to; offset++) {
+            if (getBit(offset) == bit) {
+                return offset;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param bits number of the bits, from 1 to 64.
+     * @return the bits starting from the offset as an unsigned number, the bits beyond the string being zeros.
+     */
+    public long getBits(long offset, int bits) {
+        byte[] data = bytes();
+        int first = (int) (offset >>> 3);
+        int last = (int) (offset + bits - 1 >>> 3);
+        //The bits before the offset are cleared in the first byte, those after the range dropped from the last one
+        long result = 0;
+        int remaining = bits + (int) (offset & 7);
+        for (int index = first; index <= last && index < size(); index++, remaining -= 8) {
+            int taken = Math.min(8, remaining);
+            int current = data[index] & (index == first ? 0xff >>> (offset & 7) : 0xff);
+            result = result << taken | current >>> 8 - taken;
+        }
+        //The bytes beyond the string are zeros
+        return remaining > 0 ? result << remaining : result;
+    }
+
+    /**
+     * Sets the lowest bits of the value to the bits starting from the offset, growing the string if needed.
+     */
+    public void setBits(long offset, int bits, long value) {
+        int first = (int) (offset >>> 3);
+        int last = (int) (offset + bits - 1 >>> 3);
+        prepareForUpdate(last + 1);
+        //The bytes are written from the last one, which takes the lowest bits of the value
+        int trailing = (int) (7 - (offset + bits - 1 & 7));
+        int remaining = bits;
+        long rest = value;
+        for (int index = last; index >= first; index--) {
+            int taken = Math.min(8 - trailing, remaining);
+            int mask = (1 << taken) - 1 << trailing;
+            storedData[index] = (byte) (storedData[index] & ~mask | (int) rest << trailing & mask);
+            rest >>>= taken;
+            remaining -= taken;
+            trailing = 0;
+        }
+    }
+
+    /**
+     * Performs BITOP, a missing key being a null operand. The operands shorter than the result are padded
+     * with zeros.
+     */
+    public static RMString bitOperation(BitOperation operation, List<RMString> operands) {
+        int size = 0;
+        for (RMString operand : operands) {
+            if (operand != null) {
+                size = Math.max(size, operand.size());
+            }
+        }
+        byte[] result = new byte[size];
+        RMString first = operands.get(0);
+        if (first != null) {
+            System.arraycopy(first.bytes(), 0, result, 0, first.size);
+        }
+        ByteBuffer target = ByteBuffer.wrap(result);
+        int index = 0;
+        if (operation == BitOperation.NOT) {
+            for (; index + 8 <= size; index += 8) {
+                target.putLong(index, ~target.getLong(index));
+            }
+            for (; index < size; index++) {
+                result[index] = (byte) ~result[index];
+            }
+        }
+        for (RMString operand : operands.subList(1, operands.size())) {
+            int length = operand == null ? 0 : operand.size();
+            if (operation == BitOperation.AND) {
+                Arrays.fill(result, length, size, (byte) 0);
+            }
+            if (length == 0) {
+                continue;
+            }
+            ByteBuffer source = ByteBuffer.wrap(operand.bytes());
+            for (index = 0; index + 8 <= length; index += 8) {
+                target.putLong(index, apply(operation, target.getLong(index), source.getLong(index)));
+            }
+            for (; index < length; index++) {
+                result[index] = (byte) apply(operation, result[index], operand.storedData[index]);
+            }
+        }
+        return new RMString(result);
+    }
+
+    private static long apply(BitOperation operation, long a, long b) {
+        switch (operation) {
+            case AND:
+                return a & b;
+            case OR:
+                return a | b;
+            case XOR:
+                return a ^ b;
+            default:
+                throw new IllegalArgumentException(operation.toString());
+        }
+    }
+
+    @Override
+    public RMString copy() {
+        if (storedData == null) {
+            return create(integer);
+        }
+        //The stored bytes are copied on the first modification of either string
+        shared = true;
+        RMString result = new RMString(storedData);
+        result.size = size;
+        return result;
     }
 
     @Override
@@ -56,6 +387,11 @@ public class RMString implements RMDataStructure, Serializable {
 
     @Override
     public Slice getAsSlice() {
-        return Slice.create(storedData);
+        if (storedData == null) {
+            return Slice.create(Long.toString(integer).getBytes(StandardCharsets.US_ASCII));
+        }
+        //The slice must not change, so the stored bytes are copied if the string is modified afterwards
+        shared = true;
+        return Slice.create(storedData, 0, size);
     }
 }
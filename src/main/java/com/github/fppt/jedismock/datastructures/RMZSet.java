@@ -2,25 +2,31 @@ package com.github.fppt.jedismock.datastructures;
 
 import com.github.fppt.jedismock.exception.WrongValueTypeException;
 
+import java.util.AbstractCollection;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
-import java.util.NavigableSet;
-import java.util.TreeSet;
-
-import static java.util.Collections.emptyNavigableSet;
-import static java.util.Collections.unmodifiableNavigableSet;
-
 
+/**
+ * Sorted set, made of the scores of the members and of the entries ordered in a {@link ZSkipList}
+ * by their scores, then by their members.
+ */
 public class RMZSet implements RMDataStructure {
     private final Map<Slice, Double> scores = new HashMap<>();
-    private final NavigableSet<ZSetEntry> entries = new TreeSet<>();
+    private final ZSkipList entries = new ZSkipList();
+    //Index of the members for ZSCAN, null until the first scan
+    private ScanIndex scanIndex;
 
     public Double put(Slice value, double score) {
         Double previous = scores.put(value, score);
         if (previous != null) {
-            entries.remove(new ZSetEntry(previous, value));
+            entries.delete(new ZSetEntry(previous, value));
+        } else if (scanIndex != null) {
+            scanIndex.add(value);
         }
-        entries.add(new ZSetEntry(score, value));
+        entries.insert(new ZSetEntry(score, value));
         return previous;
     }
 
@@ -37,7 +43,10 @@ public class RMZSet implements RMDataStructure {
         if (previous == null) {
             return false;
         } else {
-            entries.remove(new ZSetEntry(previous, value));
+            entries.delete(new ZSetEntry(previous, value));
+            if (scanIndex != null) {
+                scanIndex.remove(value);
+            }
             return true;
         }
     }
@@ -50,18 +59,90 @@ public class RMZSet implements RMDataStructure {
         return size() == 0;
     }
 
-    public NavigableSet<ZSetEntry> subset(ZSetEntryBound start,
-                                          ZSetEntryBound end) {
-        if (start.getBound().compareTo(end.getBound()) > 0) {
-            return emptyNavigableSet();
-        } else {
-            return unmodifiableNavigableSet(entries.subSet(start.getBound(), start.isInclusive(),
-                    end.getBound(), end.isInclusive()));
+    @Override
+    public RMZSet copy() {
+        RMZSet copy = new RMZSet();
+        copy.scores.putAll(scores);
+        entries(false).forEach(copy.entries::insert);
+        return copy;
+    }
+
+    public ZSetRange subset(ZSetEntryBound start,
+                            ZSetEntryBound end) {
+        return new ZSetRange(entries, start.getBound(), start.isInclusive(), end.getBound(), end.isInclusive(), false);
+    }
+
+    public ZSetRange entries(boolean reversed) {
+        return new ZSetRange(entries, null, false, null, false, reversed);
+    }
+
+    /**
+     * Removes the entries of a view of this sorted set.
+     *
+     * @return the number of the removed entries.
+     */
+    public int remove(ZSetRange range) {
+        if (range.list() != entries) {
+            throw new IllegalArgumentException("The range belongs to another sorted set");
+        }
+        List<ZSetEntry> removed = entries.deleteRange(range.from(), range.to());
+        for (ZSetEntry entry : removed) {
+            scores.remove(entry.getValue());
+            if (scanIndex != null) {
+                scanIndex.remove(entry.getValue());
+            }
+        }
+        return removed.size();
+    }
+
+    /**
+     * @return the zero-based rank of the member, -1 if the member is absent.
+     */
+    public int rank(Slice member, boolean reversed) {
+        Double score = scores.get(member);
+        if (score == null) {
+            return -1;
+        }
+        int rank = indexOf(score, member);
+        return reversed ? scores.size() - 1 - rank : rank;
+    }
+
+    /**
+     * @return the index of the members for ZSCAN, built by the first call and maintained afterwards.
+     */
+    public ScanIndex scanIndex() {
+        if (scanIndex == null) {
+            scanIndex = ScanIndex.of(scores.keySet());
         }
+        return scanIndex;
     }
 
-    public NavigableSet<ZSetEntry> entries(boolean reversed) {
-        return unmodifiableNavigableSet(reversed ? entries.descendingSet() : entries);
+    /**
+     * @return the members ordered by their scores.
+     */
+    public Collection<Slice> members() {
+        return new AbstractCollection<Slice>() {
+            @Override
+            public Iterator<Slice> iterator() {
+                Iterator<ZSetEntry> iterator = entries(false).iterator();
+                return new Iterator<Slice>() {
+                    @Override
+                    public boolean hasNext() {
+                        return iterator.hasNext();
+                    }
+
+                    @Override
+                    public Slice next() {
+                        return iterator.next().getValue();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return scores.size();
+            }
+        };
     }
 
     @Override
@@ -75,6 +156,6 @@ public class RMZSet implements RMDataStructure {
     }
 
     public int indexOf(Double score, Slice member) {
-        return entries.headSet(new ZSetEntry(score, member)).size();
+        return entries.rank(new ZSetEntry(score, member), false);
     }
 }
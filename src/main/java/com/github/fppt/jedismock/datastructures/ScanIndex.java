@@ -0,0 +1,152 @@
+package com.github.fppt.jedismock.datastructures;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Elements of a collection ordered for the SCAN family of commands.
+ *
+ * Like in Redis, elements are visited in the order of the reversed bits of their hash codes, and the cursor
+ * is the hash code of the next element to visit. This is the order of the buckets of a Redis hash table with
+ * 2<sup>32</sup> buckets, so the position of an element never changes: an element which is present during the whole
+ * iteration is returned regardless of the elements added and removed meanwhile, and each call costs
+ * O(log(N) + COUNT).
+ */
+public final class ScanIndex {
+    private final NavigableMap<Long, List<Slice>> buckets;
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * Creates an empty index which can be modified concurrently.
+     */
+    public ScanIndex() {
+        this.buckets = new ConcurrentSkipListMap<>();
+    }
+
+    private ScanIndex(NavigableMap<Long, List<Slice>> buckets) {
+        this.buckets = buckets;
+    }
+
+    /**
+     * Creates an index of the current elements of a collection, which the collection maintains afterwards.
+     * The index cannot be modified concurrently.
+     */
+    public static ScanIndex of(Collection<Slice> elements) {
+        ScanIndex result = new ScanIndex(new TreeMap<>());
+        elements.forEach(result::add);
+        return result;
+    }
+
+    private static long position(Slice element) {
+        return Integer.toUnsignedLong(Integer.reverse(element.hashCode()));
+    }
+
+    /**
+     * Converts a position to the cursor and vice versa.
+     */
+    private static long reverse(long value) {
+        return Integer.toUnsignedLong(Integer.reverse((int) value));
+    }
+
+    public void add(Slice element) {
+        //The function may be applied again if the bucket is modified concurrently, the last result is kept
+        boolean[] added = new boolean[1];
+        buckets.compute(position(element), (position, bucket) -> {
+            added[0] = bucket == null || !bucket.contains(element);
+            if (bucket == null) {
+                return Collections.singletonList(element);
+            }
+            if (!added[0]) {
+                return bucket;
+            }
+            List<Slice> result = new ArrayList<>(bucket);
+            result.add(element);
+            return Collections.unmodifiableList(result);
+        });
+        if (added[0]) {
+            size.incrementAndGet();
+        }
+    }
+
+    public void remove(Slice element) {
+        boolean[] removed = new boolean[1];
+        buckets.computeIfPresent(position(element), (position, bucket) -> {
+            removed[0] = bucket.contains(element);
+            if (!removed[0]) {
+                return bucket;
+            }
+            List<Slice> result = new ArrayList<>(bucket);
+            result.remove(element);
+            return result.isEmpty() ? null : Collections.unmodifiableList(result);
+        });
+        if (removed[0]) {
+            size.decrementAndGet();
+        }
+    }
+
+    /**
+     * @return number of the elements.
+     */
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * Visits distinct elements following a random position, wrapping around at the end, like dictGetSomeKeys
+     * of Redis. Elements with the same hash code are always visited together, so more elements than requested
+     * may be visited.
+     *
+     * @param count number of elements to visit.
+     */
+    public void randomElements(long count, Consumer<Slice> action) {
+        long start = ThreadLocalRandom.current().nextLong(1L << 32);
+        Map.Entry<Long, List<Slice>> bucket = buckets.ceilingEntry(start);
+        boolean wrapped = false;
+        long visited = 0;
+        while (visited < count) {
+            if (bucket == null && !wrapped) {
+                bucket = buckets.firstEntry();
+                wrapped = true;
+            }
+            if (bucket == null || wrapped && bucket.getKey() >= start) {
+                return;
+            }
+            bucket.getValue().forEach(action);
+            visited += bucket.getValue().size();
+            bucket = buckets.higherEntry(bucket.getKey());
+        }
+    }
+
+    public void clear() {
+        buckets.clear();
+        size.set(0);
+    }
+
+    /**
+     * Visits the elements starting from the cursor. Elements with the same hash code are always visited together,
+     * so more elements than requested may be visited.
+     *
+     * @param cursor cursor returned by the previous call, 0 to start the iteration.
+     * @param count number of elements to visit.
+     * @return cursor to continue the iteration from, 0 if all the elements have been visited.
+     */
+    public long scan(long cursor, long count, Consumer<Slice> action) {
+        Map.Entry<Long, List<Slice>> bucket = buckets.ceilingEntry(reverse(cursor));
+        long visited = 0;
+        while (bucket != null && visited < count) {
+            bucket.getValue().forEach(action);
+            visited += bucket.getValue().size();
+            bucket = buckets.higherEntry(bucket.getKey());
+        }
+        return bucket == null ? 0 : reverse(bucket.getKey());
+    }
+}
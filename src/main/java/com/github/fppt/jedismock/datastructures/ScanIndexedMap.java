@@ -0,0 +1,154 @@
+package com.github.fppt.jedismock.datastructures;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Map of the fields of a hash to their values, which keeps a {@link ScanIndex} of the fields up to date once
+ * the index has been requested by a scan. Until then, the fields are not indexed.
+ */
+final class ScanIndexedMap extends AbstractMap<Slice, Slice> {
+    private final Map<Slice, Slice> fields;
+    //Null until the first scan
+    private ScanIndex index;
+
+    ScanIndexedMap(Map<Slice, Slice> fields) {
+        this.fields = fields;
+    }
+
+    /**
+     * @return the index of the fields, built by the first call and maintained afterwards.
+     */
+    ScanIndex scanIndex() {
+        if (index == null) {
+            index = ScanIndex.of(fields.keySet());
+        }
+        return index;
+    }
+
+    @Override
+    public int size() {
+        return fields.size();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return fields.containsKey(key);
+    }
+
+    @Override
+    public Slice get(Object key) {
+        return fields.get(key);
+    }
+
+    @Override
+    public Slice put(Slice key, Slice value) {
+        Slice previous = fields.put(key, value);
+        if (previous == null && index != null) {
+            index.add(key);
+        }
+        return previous;
+    }
+
+    @Override
+    public Slice remove(Object key) {
+        Slice previous = fields.remove(key);
+        if (previous != null && index != null) {
+            index.remove((Slice) key);
+        }
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+        fields.clear();
+        index = null;
+    }
+
+    @Override
+    public Set<Slice> keySet() {
+        return new AbstractSet<Slice>() {
+            @Override
+            public int size() {
+                return fields.size();
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return fields.containsKey(o);
+            }
+
+            @Override
+            public boolean remove(Object o) {
+                return ScanIndexedMap.this.remove(o) != null;
+            }
+
+            @Override
+            public Iterator<Slice> iterator() {
+                Iterator<Entry<Slice, Slice>> entries = entrySet().iterator();
+                return new Iterator<Slice>() {
+                    @Override
+                    public boolean hasNext() {
+                        return entries.hasNext();
+                    }
+
+                    @Override
+                    public Slice next() {
+                        return entries.next().getKey();
+                    }
+
+                    @Override
+                    public void remove() {
+                        entries.remove();
+                    }
+                };
+            }
+        };
+    }
+
+    @Override
+    public Set<Entry<Slice, Slice>> entrySet() {
+        return new AbstractSet<Entry<Slice, Slice>>() {
+            @Override
+            public int size() {
+                return fields.size();
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return fields.entrySet().contains(o);
+            }
+
+            @Override
+            public Iterator<Entry<Slice, Slice>> iterator() {
+                Iterator<Entry<Slice, Slice>> iterator = fields.entrySet().iterator();
+                return new Iterator<Entry<Slice, Slice>>() {
+                    private Slice last;
+
+                    @Override
+                    public boolean hasNext() {
+                        return iterator.hasNext();
+                    }
+
+                    @Override
+                    public Entry<Slice, Slice> next() {
+                        Entry<Slice, Slice> entry = iterator.next();
+                        last = entry.getKey();
+                        return entry;
+                    }
+
+                    @Override
+                    public void remove() {
+                        iterator.remove();
+                        if (index != null) {
+                            index.remove(last);
+                        }
+                    }
+                };
+            }
+        };
+    }
+}
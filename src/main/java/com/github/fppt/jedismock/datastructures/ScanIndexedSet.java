@@ -0,0 +1,94 @@
+package com.github.fppt.jedismock.datastructures;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Set;
+
+/**
+ * Set of the elements of a collection, which keeps a {@link ScanIndex} of them up to date once the index
+ * has been requested by a scan. Until then, the elements are not indexed.
+ */
+final class ScanIndexedSet extends AbstractSet<Slice> {
+    private final Set<Slice> elements;
+    //Null until the first scan
+    private ScanIndex index;
+
+    ScanIndexedSet(Set<Slice> elements) {
+        this.elements = elements;
+    }
+
+    /**
+     * @return the index of the elements, built by the first call and maintained afterwards.
+     */
+    ScanIndex scanIndex() {
+        if (index == null) {
+            index = ScanIndex.of(elements);
+        }
+        return index;
+    }
+
+    @Override
+    public int size() {
+        return elements.size();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return elements.contains(o);
+    }
+
+    @Override
+    public boolean add(Slice element) {
+        if (!elements.add(element)) {
+            return false;
+        }
+        if (index != null) {
+            index.add(element);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (!elements.remove(o)) {
+            return false;
+        }
+        if (index != null) {
+            index.remove((Slice) o);
+        }
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        elements.clear();
+        index = null;
+    }
+
+    @Override
+    public Iterator<Slice> iterator() {
+        Iterator<Slice> iterator = elements.iterator();
+        return new Iterator<Slice>() {
+            private Slice last;
+
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public Slice next() {
+                last = iterator.next();
+                return last;
+            }
+
+            @Override
+            public void remove() {
+                iterator.remove();
+                if (index != null) {
+                    index.remove(last);
+                }
+            }
+        };
+    }
+}
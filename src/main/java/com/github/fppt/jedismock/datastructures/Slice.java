@@ -1,93 +1,179 @@
 package com.github.fppt.jedismock.datastructures;
 
-import com.github.fppt.jedismock.exception.DeserializationException;
-
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
 import java.util.Arrays;
 
+/**
+ * Immutable sequence of bytes used for keys, values and replies.
+ *
+ * A slice may be a view over a part of a larger array: {@link #slice(int, int)} and
+ * {@link #create(byte[], int, int)} do not copy any data. Comparisons and hash code
+ * calculations are performed in place, and the hash code is cached.
+ */
 public final class Slice implements Comparable<Slice>, Serializable {
     private static final long serialVersionUID = 1L;
-    private static final Slice emptySlice = new Slice(new byte[0]);
+    private static final Slice emptySlice = new Slice(new byte[0], 0, 0);
     private final byte[] storedData;
+    private final int offset;
+    private final int length;
+    private transient int hash;
 
-
-    private Slice(byte[] storedData) {
+    private Slice(byte[] storedData, int offset, int length) {
         if (storedData == null) {
             throw new NullPointerException("Null data");
         }
+        if (offset < 0 || length < 0 || length > storedData.length - offset) {
+            throw new IndexOutOfBoundsException(
+                    String.format("offset %d, length %d, array length %d", offset, length, storedData.length));
+        }
         this.storedData = storedData;
+        this.offset = offset;
+        this.length = length;
     }
 
+    /**
+     * Creates a slice backed by the given array. The array is not copied
+     * and must not be modified afterwards.
+     */
     public static Slice create(byte[] data) {
-        return new Slice(data);
+        return new Slice(data, 0, data == null ? 0 : data.length);
+    }
+
+    /**
+     * Creates a slice that is a view over a range of the given array. The array is not copied
+     * and must not be modified afterwards.
+     */
+    public static Slice create(byte[] data, int offset, int length) {
+        return new Slice(data, offset, length);
     }
 
     public static Slice create(String data) {
-        return create(data.getBytes().clone());
+        return create(data.getBytes());
     }
 
     public static Slice empty() {
         return emptySlice;
     }
 
+    /**
+     * Returns the contents of this slice without a defensive copy whenever possible
+     * (i.e. when the slice spans the whole backing array).
+     *
+     * The returned array must be treated as read-only. Use {@link #copyData()} when
+     * a modifiable array is needed.
+     */
     public byte[] data() {
-        return Arrays.copyOf(storedData, storedData.length);
+        if (offset == 0 && length == storedData.length) {
+            return storedData;
+        }
+        return copyData();
+    }
+
+    /**
+     * @return a fresh copy of the contents of this slice, which can be freely modified.
+     */
+    public byte[] copyData() {
+        return Arrays.copyOfRange(storedData, offset, offset + length);
+    }
+
+    /**
+     * Copies the contents of this slice into the given array.
+     */
+    public void copyTo(byte[] dest, int destOffset) {
+        System.arraycopy(storedData, offset, dest, destOffset, length);
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(storedData, offset, length);
     }
 
     public int length() {
-        return data().length;
+        return length;
+    }
+
+    public byte byteAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException(String.format("index %d, length %d", index, length));
+        }
+        return storedData[offset + index];
+    }
+
+    /**
+     * Returns a view over the range {@code [from, to)} of this slice. No data is copied.
+     */
+    public Slice slice(int from, int to) {
+        if (from < 0 || to > length || from > to) {
+            throw new IndexOutOfBoundsException(String.format("from %d, to %d, length %d", from, to, length));
+        }
+        if (from == 0 && to == length) {
+            return this;
+        }
+        return new Slice(storedData, offset + from, to - from);
     }
 
     @Override
     public String toString() {
-        return new String(data());
+        return new String(storedData, offset, length);
     }
 
     @Override
-    public boolean equals(Object b) {
-        return b instanceof Slice && Arrays.equals(data(), ((Slice) b).data());
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Slice)) {
+            return false;
+        }
+        Slice b = (Slice) o;
+        if (length != b.length) {
+            return false;
+        }
+        if (hash != 0 && b.hash != 0 && hash != b.hash) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (storedData[offset + i] != b.storedData[b.offset + i]) {
+                return false;
+            }
+        }
+        return true;
     }
 
+    /**
+     * Same value as {@link Arrays#hashCode(byte[])} of the contents, calculated once.
+     */
     @Override
     public int hashCode() {
-        return Arrays.hashCode(data());
+        int h = hash;
+        if (h == 0) {
+            h = 1;
+            for (int i = offset; i < offset + length; i++) {
+                h = 31 * h + storedData[i];
+            }
+            hash = h;
+        }
+        return h;
     }
 
     public int compareTo(Slice b) {
-        int len1 = data().length;
-        int len2 = b.data().length;
-        int lim = Math.min(len1, len2);
-
-        int k = 0;
-        while (k < lim) {
-            byte b1 = data()[k];
-            byte b2 = b.data()[k];
+        int lim = Math.min(length, b.length);
+        for (int k = 0; k < lim; k++) {
+            byte b1 = storedData[offset + k];
+            byte b2 = b.storedData[b.offset + k];
             if (b1 != b2) {
                 return b1 - b2;
             }
-            k++;
         }
-        return len1 - len2;
+        return length - b.length;
     }
 
     public RMDataStructure extract() {
-        if (storedData.length > 2 && storedData[0] == (byte) 0xac && storedData[1] == (byte) 0xed) {
-            try {
-                ObjectInputStream objectInputStream = new ObjectInputStream(new ByteArrayInputStream(storedData));
-                Object value = objectInputStream.readObject();
-
-                if (value instanceof RMDataStructure) {
-                    return (RMDataStructure) value;
-                }
-
-            } catch (IOException | ClassNotFoundException ex) {
-                throw new DeserializationException("problems with deserialization");
-            }
+        RMHyperLogLog hyperLogLog = RMHyperLogLog.fromString(this);
+        if (hyperLogLog != null) {
+            return hyperLogLog;
         }
-
-        return RMString.create(this.data());
+        return RMString.create(copyData());
     }
 }
@@ -0,0 +1,261 @@
+package com.github.fppt.jedismock.datastructures;
+
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+
+/**
+ * Read-only view of the entries of a sorted set between two bounds, in ascending or descending order.
+ *
+ * The view reflects the modifications of the sorted set. The bounds are translated to ranks on each call,
+ * so the size of the view, its entry of an index and the first entry of a subset all take O(log(N)),
+ * and iterating over M entries takes O(log(N) + M).
+ */
+public final class ZSetRange extends AbstractSet<ZSetEntry> implements NavigableSet<ZSetEntry> {
+    private final ZSkipList list;
+    //The bounds are in ascending order regardless of the order of the view, null if there is no bound
+    private final ZSetEntry low;
+    private final boolean lowInclusive;
+    private final ZSetEntry high;
+    private final boolean highInclusive;
+    private final boolean descending;
+
+    ZSetRange(ZSkipList list, ZSetEntry low, boolean lowInclusive,
+              ZSetEntry high, boolean highInclusive, boolean descending) {
+        this.list = list;
+        this.low = low;
+        this.lowInclusive = lowInclusive;
+        this.high = high;
+        this.highInclusive = highInclusive;
+        this.descending = descending;
+    }
+
+    ZSkipList list() {
+        return list;
+    }
+
+    /**
+     * @return the rank of the first entry of the view, in ascending order.
+     */
+    int from() {
+        return low == null ? 0 : list.rank(low, !lowInclusive);
+    }
+
+    /**
+     * @return the rank following the last entry of the view, in ascending order.
+     */
+    int to() {
+        return high == null ? list.size() : list.rank(high, highInclusive);
+    }
+
+    @Override
+    public int size() {
+        return Math.max(0, to() - from());
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * @param index zero-based index of the entry in the order of the view.
+     */
+    public ZSetEntry get(int index) {
+        int from = from();
+        int to = to();
+        if (index < 0 || index >= to - from) {
+            throw new NoSuchElementException();
+        }
+        return list.node(descending ? to - 1 - index : from + index).entry();
+    }
+
+    /**
+     * @return the view without its first entries, as with the offset of LIMIT.
+     */
+    public ZSetRange skip(long offset) {
+        int size = size();
+        if (offset <= 0 || size == 0) {
+            return this;
+        }
+        if (offset >= size) {
+            return headSet(first(), false);
+        }
+        return tailSet(get((int) offset), true);
+    }
+
+    @Override
+    public Iterator<ZSetEntry> iterator() {
+        int from = from();
+        int to = to();
+        ZSkipList.Node start = from < to ? list.node(descending ? to - 1 : from) : null;
+        return new Iterator<ZSetEntry>() {
+            private ZSkipList.Node node = start;
+            private int remaining = to - from;
+
+            @Override
+            public boolean hasNext() {
+                return remaining > 0;
+            }
+
+            @Override
+            public ZSetEntry next() {
+                if (remaining <= 0) {
+                    throw new NoSuchElementException();
+                }
+                ZSetEntry result = node.entry();
+                node = descending ? node.previous() : node.next();
+                remaining--;
+                return result;
+            }
+        };
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (!(o instanceof ZSetEntry)) {
+            return false;
+        }
+        ZSetEntry entry = (ZSetEntry) o;
+        int rank = list.rank(entry, false);
+        return rank >= from() && rank < to() && list.rank(entry, true) > rank;
+    }
+
+    @Override
+    public Comparator<? super ZSetEntry> comparator() {
+        return descending ? Collections.reverseOrder() : null;
+    }
+
+    @Override
+    public ZSetEntry first() {
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        return get(0);
+    }
+
+    @Override
+    public ZSetEntry last() {
+        int size = size();
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        return get(size - 1);
+    }
+
+    /**
+     * @return the least entry of the view greater than the bound, or equal to the bound if inclusive.
+     */
+    private ZSetEntry ceilingEntry(ZSetEntry bound, boolean inclusive) {
+        int rank = Math.max(from(), list.rank(bound, !inclusive));
+        return rank < to() ? list.node(rank).entry() : null;
+    }
+
+    /**
+     * @return the greatest entry of the view less than the bound, or equal to the bound if inclusive.
+     */
+    private ZSetEntry floorEntry(ZSetEntry bound, boolean inclusive) {
+        int rank = Math.min(to(), list.rank(bound, inclusive)) - 1;
+        return rank >= from() ? list.node(rank).entry() : null;
+    }
+
+    @Override
+    public ZSetEntry lower(ZSetEntry e) {
+        return descending ? ceilingEntry(e, false) : floorEntry(e, false);
+    }
+
+    @Override
+    public ZSetEntry floor(ZSetEntry e) {
+        return descending ? ceilingEntry(e, true) : floorEntry(e, true);
+    }
+
+    @Override
+    public ZSetEntry ceiling(ZSetEntry e) {
+        return descending ? floorEntry(e, true) : ceilingEntry(e, true);
+    }
+
+    @Override
+    public ZSetEntry higher(ZSetEntry e) {
+        return descending ? floorEntry(e, false) : ceilingEntry(e, false);
+    }
+
+    @Override
+    public ZSetEntry pollFirst() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ZSetEntry pollLast() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ZSetRange descendingSet() {
+        return new ZSetRange(list, low, lowInclusive, high, highInclusive, !descending);
+    }
+
+    @Override
+    public Iterator<ZSetEntry> descendingIterator() {
+        return descendingSet().iterator();
+    }
+
+    /**
+     * @return the intersection of the view with the bounds, given in ascending order, null if there is no bound.
+     */
+    private ZSetRange restrict(ZSetEntry from, boolean fromInclusive, ZSetEntry to, boolean toInclusive) {
+        ZSetEntry newLow = low;
+        boolean newLowInclusive = lowInclusive;
+        if (from != null && (newLow == null || from.compareTo(newLow) > 0
+                || from.compareTo(newLow) == 0 && !fromInclusive)) {
+            newLow = from;
+            newLowInclusive = fromInclusive;
+        }
+        ZSetEntry newHigh = high;
+        boolean newHighInclusive = highInclusive;
+        if (to != null && (newHigh == null || to.compareTo(newHigh) < 0
+                || to.compareTo(newHigh) == 0 && !toInclusive)) {
+            newHigh = to;
+            newHighInclusive = toInclusive;
+        }
+        return new ZSetRange(list, newLow, newLowInclusive, newHigh, newHighInclusive, descending);
+    }
+
+    @Override
+    public ZSetRange subSet(ZSetEntry fromElement, boolean fromInclusive, ZSetEntry toElement, boolean toInclusive) {
+        return descending
+                ? restrict(toElement, toInclusive, fromElement, fromInclusive)
+                : restrict(fromElement, fromInclusive, toElement, toInclusive);
+    }
+
+    @Override
+    public ZSetRange headSet(ZSetEntry toElement, boolean inclusive) {
+        return descending
+                ? restrict(toElement, inclusive, null, false)
+                : restrict(null, false, toElement, inclusive);
+    }
+
+    @Override
+    public ZSetRange tailSet(ZSetEntry fromElement, boolean inclusive) {
+        return descending
+                ? restrict(null, false, fromElement, inclusive)
+                : restrict(fromElement, inclusive, null, false);
+    }
+
+    @Override
+    public ZSetRange subSet(ZSetEntry fromElement, ZSetEntry toElement) {
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public ZSetRange headSet(ZSetEntry toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public ZSetRange tailSet(ZSetEntry fromElement) {
+        return tailSet(fromElement, true);
+    }
+}
@@ -0,0 +1,203 @@
+package com.github.fppt.jedismock.datastructures;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Entries of a sorted set in a skiplist, which links are annotated with their spans like in Redis.
+ *
+ * The span of a link is the number of the entries it skips, so the rank of an entry is the sum of the spans
+ * of the links followed to reach it. Inserting and removing an entry, computing the rank of an entry and finding
+ * the entry of a rank all take O(log(N)); removing a range of ranks takes O(log(N) + M).
+ */
+final class ZSkipList {
+    private static final int MAX_LEVEL = 32;
+    private static final double PROBABILITY = 0.25;
+
+    static final class Node {
+        private final ZSetEntry entry;
+        private final Node[] forward;
+        private final int[] span;
+        private Node backward;
+
+        private Node(ZSetEntry entry, int level) {
+            this.entry = entry;
+            this.forward = new Node[level];
+            this.span = new int[level];
+        }
+
+        ZSetEntry entry() {
+            return entry;
+        }
+
+        Node next() {
+            return forward[0];
+        }
+
+        Node previous() {
+            return backward;
+        }
+    }
+
+    private final Node header = new Node(null, MAX_LEVEL);
+    private int level = 1;
+    private int size;
+
+    int size() {
+        return size;
+    }
+
+    private static int randomLevel() {
+        int result = 1;
+        while (result < MAX_LEVEL && ThreadLocalRandom.current().nextDouble() < PROBABILITY) {
+            result++;
+        }
+        return result;
+    }
+
+    /**
+     * Inserts an entry, which must not be present.
+     */
+    void insert(ZSetEntry entry) {
+        Node[] update = new Node[MAX_LEVEL];
+        int[] rank = new int[MAX_LEVEL];
+        Node x = header;
+        for (int i = level - 1; i >= 0; i--) {
+            rank[i] = i == level - 1 ? 0 : rank[i + 1];
+            while (x.forward[i] != null && x.forward[i].entry.compareTo(entry) < 0) {
+                rank[i] += x.span[i];
+                x = x.forward[i];
+            }
+            update[i] = x;
+        }
+        int nodeLevel = randomLevel();
+        if (nodeLevel > level) {
+            for (int i = level; i < nodeLevel; i++) {
+                rank[i] = 0;
+                update[i] = header;
+                header.span[i] = size;
+            }
+            level = nodeLevel;
+        }
+        x = new Node(entry, nodeLevel);
+        for (int i = 0; i < nodeLevel; i++) {
+            x.forward[i] = update[i].forward[i];
+            update[i].forward[i] = x;
+            x.span[i] = update[i].span[i] - (rank[0] - rank[i]);
+            update[i].span[i] = rank[0] - rank[i] + 1;
+        }
+        for (int i = nodeLevel; i < level; i++) {
+            update[i].span[i]++;
+        }
+        x.backward = update[0] == header ? null : update[0];
+        if (x.forward[0] != null) {
+            x.forward[0].backward = x;
+        }
+        size++;
+    }
+
+    /**
+     * @return false if the entry is not present.
+     */
+    boolean delete(ZSetEntry entry) {
+        Node[] update = new Node[MAX_LEVEL];
+        Node x = header;
+        for (int i = level - 1; i >= 0; i--) {
+            while (x.forward[i] != null && x.forward[i].entry.compareTo(entry) < 0) {
+                x = x.forward[i];
+            }
+            update[i] = x;
+        }
+        x = x.forward[0];
+        if (x == null || !x.entry.equals(entry)) {
+            return false;
+        }
+        unlink(x, update);
+        return true;
+    }
+
+    /**
+     * Removes the entries of the ranks in [from, to).
+     *
+     * @return the removed entries, in ascending order.
+     */
+    List<ZSetEntry> deleteRange(int from, int to) {
+        Node[] update = new Node[MAX_LEVEL];
+        int traversed = 0;
+        Node x = header;
+        for (int i = level - 1; i >= 0; i--) {
+            while (x.forward[i] != null && traversed + x.span[i] <= from) {
+                traversed += x.span[i];
+                x = x.forward[i];
+            }
+            update[i] = x;
+        }
+        List<ZSetEntry> result = new ArrayList<>();
+        x = x.forward[0];
+        for (int rank = from; x != null && rank < to; rank++) {
+            Node next = x.forward[0];
+            unlink(x, update);
+            result.add(x.entry);
+            x = next;
+        }
+        return result;
+    }
+
+    private void unlink(Node x, Node[] update) {
+        for (int i = 0; i < level; i++) {
+            if (update[i].forward[i] == x) {
+                update[i].span[i] += x.span[i] - 1;
+                update[i].forward[i] = x.forward[i];
+            } else {
+                update[i].span[i]--;
+            }
+        }
+        if (x.forward[0] != null) {
+            x.forward[0].backward = x.backward;
+        }
+        while (level > 1 && header.forward[level - 1] == null) {
+            level--;
+        }
+        size--;
+    }
+
+    /**
+     * @return the number of the entries less than the bound, or not greater than the bound if inclusive.
+     */
+    int rank(ZSetEntry bound, boolean inclusive) {
+        int result = 0;
+        Node x = header;
+        for (int i = level - 1; i >= 0; i--) {
+            while (x.forward[i] != null && precedes(x.forward[i].entry, bound, inclusive)) {
+                result += x.span[i];
+                x = x.forward[i];
+            }
+        }
+        return result;
+    }
+
+    private static boolean precedes(ZSetEntry entry, ZSetEntry bound, boolean inclusive) {
+        int comparison = entry.compareTo(bound);
+        return comparison < 0 || inclusive && comparison == 0;
+    }
+
+    /**
+     * @param rank zero-based rank of the entry, in ascending order.
+     * @return the node of the rank, null if the rank is out of range.
+     */
+    Node node(int rank) {
+        int traversed = 0;
+        Node x = header;
+        for (int i = level - 1; i >= 0; i--) {
+            while (x.forward[i] != null && traversed + x.span[i] <= rank + 1) {
+                traversed += x.span[i];
+                x = x.forward[i];
+            }
+            if (traversed == rank + 1) {
+                return x;
+            }
+        }
+        return null;
+    }
+}
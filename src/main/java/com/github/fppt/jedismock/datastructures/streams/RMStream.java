@@ -34,6 +34,15 @@ public class RMStream implements RMDataStructure {
         lastId = id;
     }
 
+    @Override
+    public RMStream copy() {
+        RMStream copy = new RMStream();
+        //The fields of an entry are never modified once it is added, so they are shared
+        storedData.forEach(copy.storedData::append);
+        copy.lastId = lastId;
+        return copy;
+    }
+
     public Slice replaceAsterisk(Slice key) throws WrongStreamKeyException {
         if (key.toString().equals("*")) {
             /* 0xFFFFFFFFFFFFFFFF-0xFFFFFFFFFFFFFFFF is already in use - overflow */
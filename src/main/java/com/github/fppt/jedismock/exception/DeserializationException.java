@@ -1,9 +0,0 @@
-package com.github.fppt.jedismock.exception;
-
-
-public class DeserializationException extends RuntimeException {
-
-    public DeserializationException(String message) {
-        super(message);
-    }
-}
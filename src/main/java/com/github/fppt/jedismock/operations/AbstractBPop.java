@@ -4,6 +4,8 @@ import com.github.fppt.jedismock.datastructures.Slice;
 import com.github.fppt.jedismock.exception.WrongValueTypeException;
 import com.github.fppt.jedismock.server.Response;
 import com.github.fppt.jedismock.server.SliceParser;
+import com.github.fppt.jedismock.storage.BlockedClients;
+import com.github.fppt.jedismock.storage.LockManager;
 import com.github.fppt.jedismock.storage.OperationExecutorState;
 import com.github.fppt.jedismock.storage.RedisBase;
 
@@ -15,12 +17,12 @@ import static com.github.fppt.jedismock.Utils.toNanoTimeout;
 public abstract class AbstractBPop extends AbstractRedisOperation {
     protected long timeoutNanos;
     protected List<Slice> keys;
-    private final Object lock;
+    private final LockManager locks;
     private final boolean isInTransaction;
 
     protected AbstractBPop(OperationExecutorState state, List<Slice> params) {
         super(state.base(), params);
-        this.lock = state.lock();
+        this.locks = state.locks();
         this.isInTransaction = state.isTransactionModeOn();
     }
 
@@ -45,28 +47,46 @@ public abstract class AbstractBPop extends AbstractRedisOperation {
         }
 
         Slice source = getKey(keys, true);
+        if (source == null && !isInTransaction) {
+            source = await();
+        }
+        if (source == null) {
+            return Response.NULL_ARRAY;
+        }
+        Slice result = popper(Collections.singletonList(source));
+        if (base().exists(source)) {
+            //The remaining values are served to the next blocked client
+            base().blockedClients().signal(source);
+        }
+        return result;
+    }
 
+    /**
+     * Waits until one of the keys is written.
+     *
+     * @return the key to pop from, or null on timeout.
+     */
+    private Slice await() {
+        Slice source = null;
         long waitEnd = System.nanoTime() + timeoutNanos;
-        long waitTimeNanos;
-        try {
-            while (source == null &&
-                    !isInTransaction &&
-                    (waitTimeNanos = timeoutNanos == 0 ? 0 : waitEnd - System.nanoTime()) >= 0) {
-                long waitMillis = waitTimeNanos / 1_000_000 > 1000 ? 1000 : waitTimeNanos / 1_000_000;
-                int waitNano = (int) (waitTimeNanos % 1_000_000);
-                lock.wait(waitMillis, waitNano);
+        try (BlockedClients.Waiter waiter = base().blockedClients().block(keys, true)) {
+            while (source == null) {
+                long waitTimeNanos = 0;
+                if (timeoutNanos != 0) {
+                    waitTimeNanos = waitEnd - System.nanoTime();
+                    if (waitTimeNanos <= 0) {
+                        break;
+                    }
+                }
+                locks.await(waiter, waitTimeNanos);
                 source = getKey(keys, false);
             }
+            waiter.consume(source);
         } catch (InterruptedException e) {
             //wait interrupted prematurely
             Thread.currentThread().interrupt();
-            return Response.NULL;
-        }
-        if (source == null) {
-            return Response.NULL_ARRAY;
-        } else {
-            return popper(Collections.singletonList(source));
         }
+        return source;
     }
 
     private Slice getKey(List<Slice> list, boolean checkForType) {
@@ -43,6 +43,14 @@ public abstract class AbstractRedisOperation implements RedisOperation {
         return data;
     }
 
+    /**
+     * Same as {@link #getListFromBaseOrCreateEmpty(Slice)}, for modifying the list in place.
+     */
+    public RMList getModifiableListFromBaseOrCreateEmpty(Slice key) {
+        RMList data = base().getModifiableList(key);
+        return data == null ? new RMList() : data;
+    }
+
     public RMSet getSetFromBaseOrCreateEmpty(Slice key) {
         RMSet data = base().getSet(key);
         if (data == null) {
@@ -52,11 +60,27 @@ public abstract class AbstractRedisOperation implements RedisOperation {
         return data;
     }
 
+    /**
+     * Same as {@link #getSetFromBaseOrCreateEmpty(Slice)}, for modifying the set in place.
+     */
+    public RMSet getModifiableSetFromBaseOrCreateEmpty(Slice key) {
+        RMSet data = base().getModifiableSet(key);
+        return data == null ? new RMSet() : data;
+    }
+
     public RMStream getStreamFromBaseOrCreateEmpty(Slice key) {
         RMStream data = base().getStream(key);
         return data == null ? new RMStream() : data;
     }
 
+    /**
+     * Same as {@link #getStreamFromBaseOrCreateEmpty(Slice)}, for modifying the stream in place.
+     */
+    public RMStream getModifiableStreamFromBaseOrCreateEmpty(Slice key) {
+        RMStream data = base().getModifiableStream(key);
+        return data == null ? new RMStream() : data;
+    }
+
     public RMZSet getZSetFromBaseOrCreateEmpty(Slice key) {
         RMZSet data = base().getZSet(key);
         if (data == null) {
@@ -65,6 +89,14 @@ public abstract class AbstractRedisOperation implements RedisOperation {
         return data;
     }
 
+    /**
+     * Same as {@link #getZSetFromBaseOrCreateEmpty(Slice)}, for modifying the sorted set in place.
+     */
+    public RMZSet getModifiableZSetFromBaseOrCreateEmpty(Slice key) {
+        RMZSet data = base().getModifiableZSet(key);
+        return data == null ? new RMZSet() : data;
+    }
+
     /***
      * Minimum number of arguments (inclusive)
      */
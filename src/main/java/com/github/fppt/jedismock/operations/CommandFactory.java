@@ -3,61 +3,146 @@ package com.github.fppt.jedismock.operations;
 import com.github.fppt.jedismock.datastructures.Slice;
 import com.github.fppt.jedismock.storage.OperationExecutorState;
 import com.github.fppt.jedismock.storage.RedisBase;
-import org.reflections.Reflections;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Constructor;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 
-import static java.util.function.Function.identity;
 import static java.util.stream.Collectors.groupingBy;
 import static java.util.stream.Collectors.toMap;
-import static org.reflections.ReflectionUtils.withAnnotation;
+import static java.util.stream.Collectors.toSet;
 
 public class CommandFactory {
-    private static final Map<Boolean, Map<String, Class<? extends RedisOperation>>> commands;
+    private static final MethodType FACTORY_TYPE =
+            MethodType.methodType(RedisOperation.class, OperationExecutorState.class, List.class);
+    private static final MethodHandle BASE;
+    private static final Map<Boolean, Map<String, OperationFactory>> commands;
+    /**
+     * Command names, keyed by their lower case and upper case binary representation.
+     */
+    private static final Map<Slice, String> names;
+    /**
+     * Names of the commands which need the executor state rather than just the database.
+     */
+    private static final Set<String> stateful;
 
     static {
-        Reflections scanner = new Reflections(CommandFactory.class.getPackage().getName());
-        Set<Class<? extends RedisOperation>> redisOperations = scanner.getSubTypesOf(RedisOperation.class);
+        try {
+            BASE = MethodHandles.publicLookup().findVirtual(OperationExecutorState.class, "base",
+                    MethodType.methodType(RedisBase.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+        List<Class<? extends RedisOperation>> operations = CommandIndex.load(CommandFactory.class.getClassLoader());
         commands =
-                redisOperations.stream()
-                        .filter(withAnnotation(RedisCommand.class))
+                operations.stream()
                         .collect(groupingBy(c -> c.getAnnotation(RedisCommand.class).transactional(),
-                                toMap(c -> c.getAnnotation(RedisCommand.class).value(), identity())));
+                                toMap(c -> c.getAnnotation(RedisCommand.class).value(),
+                                        CommandFactory::createFactory)));
+        Map<Slice, String> nameMap = new HashMap<>();
+        commands.values().forEach(m -> m.keySet().forEach(name -> {
+            nameMap.put(Slice.create(name.toLowerCase(Locale.ROOT)), name);
+            nameMap.put(Slice.create(name.toUpperCase(Locale.ROOT)), name);
+        }));
+        names = Collections.unmodifiableMap(nameMap);
+        stateful = operations.stream()
+                .filter(c -> Arrays.asList(c.getDeclaredConstructors()[0].getParameterTypes())
+                        .contains(OperationExecutorState.class))
+                .map(c -> c.getAnnotation(RedisCommand.class).value())
+                .collect(toSet());
     }
 
-    public static RedisOperation buildOperation(String name, boolean transactional,
-                                                          OperationExecutorState state, List<Slice> params) {
-        Class<? extends RedisOperation> commandClass = commands.get(transactional).get(name);
-        if (commandClass != null) {
+    /**
+     * Creates operation instances of a specific class.
+     */
+    @FunctionalInterface
+    private interface OperationFactory {
+        RedisOperation create(OperationExecutorState state, List<Slice> params);
+    }
+
+    /**
+     * Resolves the constructor of the operation class once, adapting it to
+     * {@code (OperationExecutorState, List<Slice>)} arguments.
+     */
+    private static OperationFactory createFactory(Class<? extends RedisOperation> commandClass) {
+        String name = commandClass.getAnnotation(RedisCommand.class).value();
+        Constructor<?> constructor = commandClass.getDeclaredConstructors()[0];
+        constructor.setAccessible(true);
+        Class<?>[] parameterTypes = constructor.getParameterTypes();
+        MethodHandle handle;
+        try {
+            handle = MethodHandles.lookup().unreflectConstructor(constructor);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+        //Indices of factory arguments: 0 - executor state, 1 - parameters
+        int[] reorder = new int[parameterTypes.length];
+        for (int i = 0; i < parameterTypes.length; i++) {
+            if (parameterTypes[i].isAssignableFrom(List.class)) {
+                reorder[i] = 1;
+            } else if (parameterTypes[i].isAssignableFrom(OperationExecutorState.class)) {
+                reorder[i] = 0;
+            } else if (parameterTypes[i].isAssignableFrom(RedisBase.class)) {
+                handle = MethodHandles.filterArguments(handle, i, BASE.asType(
+                        MethodType.methodType(parameterTypes[i], OperationExecutorState.class)));
+                reorder[i] = 0;
+            } else {
+                throw new IllegalArgumentException(String.format(
+                        "Cannot resolve parameter of type %s for command %s",
+                        parameterTypes[i].getSimpleName(), name));
+            }
+        }
+        MethodHandle factory = MethodHandles.permuteArguments(
+                handle.asType(handle.type().changeReturnType(RedisOperation.class)), FACTORY_TYPE, reorder);
+        return (state, params) -> {
             try {
-                Constructor<?> declaredConstructor = commandClass.getDeclaredConstructors()[0];
-                Class<?>[] parameterTypes = declaredConstructor.getParameterTypes();
-                Constructor<? extends RedisOperation> constructor = commandClass.getDeclaredConstructor(parameterTypes);
-                constructor.setAccessible(true);
-                Object[] parameters = new Object[parameterTypes.length];
-                for (int i = 0; i < parameterTypes.length; i++) {
-                    if (parameterTypes[i].isAssignableFrom(List.class)) {
-                        parameters[i] = params;
-                    } else if (parameterTypes[i].isAssignableFrom(OperationExecutorState.class)) {
-                        parameters[i] = state;
-                    } else if (parameterTypes[i].isAssignableFrom(RedisBase.class)) {
-                        parameters[i] = state.base();
-                    } else {
-                        throw new IllegalArgumentException(String.format(
-                                "Cannot resolve parameter of type %s for command %s",
-                                parameterTypes[i].getSimpleName(), name));
-                    }
-                }
-                return constructor.newInstance(parameters);
-            } catch (ReflectiveOperationException e) {
+                return (RedisOperation) factory.invokeExact(state, params);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
                 throw new IllegalStateException(e);
             }
-        } else {
-            return null;
-        }
+        };
+    }
+
+    public static RedisOperation buildOperation(String name, boolean transactional,
+                                                          OperationExecutorState state, List<Slice> params) {
+        OperationFactory factory = commands.getOrDefault(transactional, Collections.emptyMap()).get(name);
+        return factory == null ? null : factory.create(state, params);
+    }
+
+    /**
+     * Returns the lower case name of a command, without allocating a new string for the known commands
+     * which are written either in lower case or in upper case.
+     *
+     * @param name Command name as it was received from the client.
+     */
+    public static String commandName(Slice name) {
+        String result = names.get(name);
+        return result == null ? name.toString().toLowerCase(Locale.ROOT) : result;
+    }
+
+    /**
+     * @return true if the command is known.
+     */
+    public static boolean exists(String name) {
+        return commands.values().stream().anyMatch(m -> m.containsKey(name));
+    }
+
+    /**
+     * @return true if the command works with the executor state (e.g. the connection, several databases
+     * or blocking), and not just with the current database.
+     */
+    public static boolean usesExecutorState(String name) {
+        return stateful.contains(name);
     }
 
     public static void initialize() {
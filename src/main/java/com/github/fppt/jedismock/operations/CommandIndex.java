@@ -0,0 +1,43 @@
+package com.github.fppt.jedismock.operations;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Loads the list of operations from the index generated by {@code CommandIndexProcessor} at build time.
+ * The processor is not a part of the jar, so the resource name is repeated here.
+ */
+final class CommandIndex {
+    private static final String INDEX_RESOURCE = "META-INF/jedis-mock/commands.index";
+
+    private CommandIndex() {
+    }
+
+    static List<Class<? extends RedisOperation>> load(ClassLoader classLoader) {
+        InputStream index = classLoader.getResourceAsStream(INDEX_RESOURCE);
+        if (index == null) {
+            throw new IllegalStateException(String.format(
+                    "Command index %s is not found, was the project built with annotation processing enabled?",
+                    INDEX_RESOURCE));
+        }
+        List<Class<? extends RedisOperation>> result = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(index, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                String className = line.substring(line.lastIndexOf(' ') + 1);
+                result.add(Class.forName(className, false, classLoader).asSubclass(RedisOperation.class));
+            }
+        } catch (IOException | ClassNotFoundException e) {
+            throw new IllegalStateException("Unable to load command index", e);
+        }
+        return result;
+    }
+}
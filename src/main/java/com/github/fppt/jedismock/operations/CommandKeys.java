@@ -0,0 +1,110 @@
+package com.github.fppt.jedismock.operations;
+
+import com.github.fppt.jedismock.datastructures.Slice;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Extracts the keys a command works with from its parameters.
+ *
+ * Used in fine-grained locking mode: commands with known keys lock only these keys,
+ * the other commands lock the whole database or server.
+ */
+public final class CommandKeys {
+    private static final Map<String, Function<List<Slice>, List<Slice>>> SPECS = new HashMap<>();
+
+    static {
+        for (String name : Arrays.asList("append", "decr", "decrby", "dump", "expire", "expireat", "expiretime",
+                "get", "getbit", "getdel", "getset",
+                "hdel", "hexists", "hget", "hgetall", "hincrby", "hincrbyfloat", "hkeys", "hlen", "hmget", "hmset",
+                "hscan", "hset", "hsetnx", "hstrlen", "hvals", "incr", "incrby", "incrbyfloat", "lindex", "linsert",
+                "llen", "lpop", "lpos", "lpush", "lpushx", "lrange", "lrem", "lset", "ltrim", "persist", "pexpire",
+                "pexpireat", "pexpiretime", "pfadd", "psetex", "pttl", "restore", "rpop", "rpush", "rpushx", "sadd",
+                "scard",
+                "set", "setbit", "setex", "setnx", "setrange", "sismember", "smembers", "smismember", "spop",
+                "srandmember", "srem", "sscan", "strlen", "ttl", "type", "xadd", "xdel", "xlen", "xrange",
+                "xrevrange", "xtrim", "zadd", "zcard", "zcount", "zincrby", "zlexcount", "zmscore", "zpopmax",
+                "zpopmin", "zrange", "zrangebylex", "zrangebyscore", "zrank", "zrem", "zremrangebylex",
+                "zremrangebyrank", "zremrangebyscore", "zrevrange", "zrevrangebylex", "zrevrangebyscore",
+                "zrevrank", "zscan", "zscore")) {
+            SPECS.put(name, params -> range(params, 0, 1, 1));
+        }
+        for (String name : Arrays.asList("del", "unlink", "exists", "mget", "sdiff", "sinter", "sunion",
+                "sdiffstore", "sinterstore", "sunionstore", "pfcount", "pfmerge")) {
+            SPECS.put(name, params -> range(params, 0, params.size(), 1));
+        }
+        for (String name : Arrays.asList("mset", "msetnx")) {
+            SPECS.put(name, params -> range(params, 0, params.size(), 2));
+        }
+        for (String name : Arrays.asList("smove", "rename", "rpoplpush")) {
+            SPECS.put(name, params -> range(params, 0, 2, 1));
+        }
+        for (String name : Arrays.asList("ping", "echo", "time")) {
+            SPECS.put(name, params -> Collections.emptyList());
+        }
+        for (String name : Arrays.asList("eval", "evalsha")) {
+            SPECS.put(name, CommandKeys::scriptKeys);
+        }
+        SPECS.put("migrate", CommandKeys::migrateKeys);
+    }
+
+    private CommandKeys() {
+    }
+
+    private static List<Slice> range(List<Slice> params, int from, int to, int step) {
+        List<Slice> keys = new ArrayList<>();
+        for (int i = from; i < Math.min(to, params.size()); i += step) {
+            keys.add(params.get(i));
+        }
+        return keys;
+    }
+
+    /**
+     * Scripts declare the keys they access in KEYS, right after the number of keys.
+     */
+    private static List<Slice> scriptKeys(List<Slice> params) {
+        if (params.size() < 2) {
+            return Collections.emptyList();
+        }
+        int numKeys;
+        try {
+            numKeys = Integer.parseInt(params.get(1).toString());
+        } catch (NumberFormatException e) {
+            return Collections.emptyList();
+        }
+        return range(params, 2, 2 + Math.max(numKeys, 0), 1);
+    }
+
+    /**
+     * MIGRATE moves either a single key, or the keys following KEYS if the key is empty.
+     */
+    private static List<Slice> migrateKeys(List<Slice> params) {
+        if (params.size() < 3) {
+            return Collections.emptyList();
+        }
+        if (params.get(2).length() == 0) {
+            for (int i = 5; i < params.size(); i++) {
+                if ("keys".equalsIgnoreCase(params.get(i).toString())) {
+                    return range(params, i + 1, params.size(), 1);
+                }
+            }
+        }
+        return range(params, 2, 3, 1);
+    }
+
+    /**
+     * @param name   lower case command name.
+     * @param params command parameters, not including the command name.
+     * @return the keys of the command, or null if the command keys are unknown.
+     */
+    public static List<Slice> keys(String name, List<Slice> params) {
+        Function<List<Slice>, List<Slice>> spec = SPECS.get(name);
+        return spec == null ? null : spec.apply(params);
+    }
+}
@@ -0,0 +1,55 @@
+package com.github.fppt.jedismock.operations.bitmaps;
+
+import com.github.fppt.jedismock.datastructures.Slice;
+import com.github.fppt.jedismock.exception.ArgumentException;
+import com.github.fppt.jedismock.operations.AbstractRedisOperation;
+import com.github.fppt.jedismock.storage.RedisBase;
+
+import java.util.List;
+
+/**
+ * Base of the commands taking a range of a string, given in bytes or in bits.
+ */
+abstract class AbstractBitRange extends AbstractRedisOperation {
+    AbstractBitRange(RedisBase base, List<Slice> params) {
+        super(base, params);
+    }
+
+    /**
+     * @return whether the range is given in bits, false if it is given in bytes or the unit is omitted.
+     */
+    boolean isBitUnit(int index) {
+        if (params().size() <= index) {
+            return false;
+        }
+        String unit = params().get(index).toString();
+        if ("bit".equalsIgnoreCase(unit)) {
+            return true;
+        }
+        if ("byte".equalsIgnoreCase(unit)) {
+            return false;
+        }
+        throw new ArgumentException("ERR syntax error");
+    }
+
+    /**
+     * Translates a range to the offsets of its bits. Negative indices count from the end of the string.
+     *
+     * @param size size of the string, in bytes.
+     * @return the offsets of the first and the last bit of the range, null if the range is empty.
+     */
+    static long[] bitRange(long start, long end, int size, boolean bitUnit) {
+        long length = bitUnit ? size * 8L : size;
+        if (start < 0) {
+            start = Math.max(0, length + start);
+        }
+        if (end < 0) {
+            end = Math.max(0, length + end);
+        }
+        end = Math.min(end, length - 1);
+        if (start > end) {
+            return null;
+        }
+        return bitUnit ? new long[]{start, end} : new long[]{start * 8, end * 8 + 7};
+    }
+}
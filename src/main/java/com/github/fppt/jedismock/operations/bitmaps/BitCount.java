@@ -0,0 +1,45 @@
+package com.github.fppt.jedismock.operations.bitmaps;
+
+import com.github.fppt.jedismock.datastructures.RMString;
+import com.github.fppt.jedismock.datastructures.Slice;
+import com.github.fppt.jedismock.exception.ArgumentException;
+import com.github.fppt.jedismock.operations.RedisCommand;
+import com.github.fppt.jedismock.server.Response;
+import com.github.fppt.jedismock.storage.RedisBase;
+
+import java.util.List;
+
+import static com.github.fppt.jedismock.Utils.convertToLong;
+
+@RedisCommand("bitcount")
+class BitCount extends AbstractBitRange {
+    BitCount(RedisBase base, List<Slice> params) {
+        super(base, params);
+    }
+
+    @Override
+    protected int minArgs() {
+        return 1;
+    }
+
+    @Override
+    protected Slice response() {
+        if (params().size() == 2 || params().size() > 4) {
+            throw new ArgumentException("ERR syntax error");
+        }
+        long start = 0;
+        long end = -1;
+        boolean bitUnit = false;
+        if (params().size() > 1) {
+            start = convertToLong(params().get(1).toString());
+            end = convertToLong(params().get(2).toString());
+            bitUnit = isBitUnit(3);
+        }
+        RMString value = base().getRMString(params().get(0));
+        if (value == null) {
+            return Response.integer(0);
+        }
+        long[] range = bitRange(start, end, value.size(), bitUnit);
+        return Response.integer(range == null ? 0 : value.bitCount(range[0], range[1]));
+    }
+}
@@ -0,0 +1,207 @@
+package com.github.fppt.jedismock.operations.bitmaps;
+
+import com.github.fppt.jedismock.datastructures.RMString;
+import com.github.fppt.jedismock.datastructures.Slice;
+import com.github.fppt.jedismock.exception.ArgumentException;
+import com.github.fppt.jedismock.operations.AbstractRedisOperation;
+import com.github.fppt.jedismock.operations.RedisCommand;
+import com.github.fppt.jedismock.server.Response;
+import com.github.fppt.jedismock.storage.RedisBase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.github.fppt.jedismock.Utils.convertToBitOffset;
+import static com.github.fppt.jedismock.Utils.convertToLong;
+
+@RedisCommand("bitfield")
+class BitField extends AbstractRedisOperation {
+    private static final String TYPE_ERROR =
+            "ERR Invalid bitfield type. Use something like i16 u8. Note that u64 is not supported but i64 is.";
+
+    private enum Overflow {
+        WRAP, SAT, FAIL
+    }
+
+    private static final class Field {
+        private final String subcommand;
+        private final boolean signed;
+        private final int bits;
+        private final long offset;
+        private final long argument;
+        private final Overflow overflow;
+
+        private Field(String subcommand, boolean signed, int bits, long offset, long argument, Overflow overflow) {
+            this.subcommand = subcommand;
+            this.signed = signed;
+            this.bits = bits;
+            this.offset = offset;
+            this.argument = argument;
+            this.overflow = overflow;
+        }
+    }
+
+    BitField(RedisBase base, List<Slice> params) {
+        super(base, params);
+    }
+
+    @Override
+    protected int minArgs() {
+        return 1;
+    }
+
+    boolean readOnly() {
+        return false;
+    }
+
+    @Override
+    protected Slice response() {
+        List<Field> fields = new ArrayList<>();
+        Overflow overflow = Overflow.WRAP;
+        //The end of the last field written, the string is grown to it before any field is written, like in Redis
+        long end = -1;
+        for (int i = 1; i < params().size(); ) {
+            String subcommand = params().get(i).toString().toLowerCase();
+            int remaining = params().size() - i - 1;
+            if ("overflow".equals(subcommand) && remaining >= 1) {
+                try {
+                    overflow = Overflow.valueOf(params().get(i + 1).toString().toUpperCase());
+                } catch (IllegalArgumentException e) {
+                    throw new ArgumentException("ERR Invalid OVERFLOW type specified");
+                }
+                i += 2;
+                continue;
+            }
+            boolean get = "get".equals(subcommand);
+            boolean write = "set".equals(subcommand) || "incrby".equals(subcommand);
+            if (!(get && remaining >= 2 || write && remaining >= 3)) {
+                throw new ArgumentException("ERR syntax error");
+            }
+            String type = params().get(i + 1).toString();
+            boolean signed = type.startsWith("i") || type.startsWith("I");
+            int bits = bits(type, signed);
+            long offset = offset(params().get(i + 2).toString(), bits);
+            long argument = 0;
+            if (!get) {
+                if (readOnly()) {
+                    throw new ArgumentException("ERR BITFIELD_RO only supports the GET subcommand");
+                }
+                argument = convertToLong(params().get(i + 3).toString());
+                end = Math.max(end, offset + bits);
+            }
+            fields.add(new Field(subcommand, signed, bits, offset, argument, overflow));
+            i += get ? 3 : 4;
+        }
+
+        Slice key = params().get(0);
+        RMString value = readOnly() ? base().getRMString(key) : base().getModifiableRMString(key);
+        boolean created = false;
+        if (end >= 0) {
+            created = value == null;
+            if (created) {
+                value = new RMString();
+            }
+            value.padTo((int) (end + 7 >>> 3));
+        }
+        List<Slice> results = new ArrayList<>(fields.size());
+        for (Field field : fields) {
+            long previous = value == null ? 0 : get(value, field);
+            if ("get".equals(field.subcommand)) {
+                results.add(Response.integer(previous));
+                continue;
+            }
+            boolean set = "set".equals(field.subcommand);
+            Long result = set
+                    ? fit(field.argument, 0, field)
+                    : fit(previous, field.argument, field);
+            if (result == null) {
+                results.add(Response.NULL);
+                continue;
+            }
+            value.setBits(field.offset, field.bits, result);
+            results.add(Response.integer(set ? previous : result));
+        }
+        if (created) {
+            base().putValue(key, value);
+        } else if (end >= 0) {
+            base().putValueWithoutClearingTtl(key, value);
+        }
+        return Response.array(results);
+    }
+
+    private static int bits(String type, boolean signed) {
+        int bits;
+        try {
+            bits = Integer.parseInt(type.substring(1));
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            throw new ArgumentException(TYPE_ERROR);
+        }
+        if (!signed && !type.startsWith("u") && !type.startsWith("U")
+                || bits < 1 || bits > (signed ? 64 : 63)) {
+            throw new ArgumentException(TYPE_ERROR);
+        }
+        return bits;
+    }
+
+    /**
+     * @param offset offset of the field in bits, or in the size of the field if prefixed with '#'.
+     */
+    private static long offset(String offset, int bits) {
+        if (offset.startsWith("#")) {
+            return convertToBitOffset(convertToBitOffset(offset.substring(1)) * bits);
+        }
+        return convertToBitOffset(offset);
+    }
+
+    private static long get(RMString value, Field field) {
+        long result = value.getBits(field.offset, field.bits);
+        if (field.signed && field.bits < 64 && (result >>> field.bits - 1 & 1) != 0) {
+            result |= -1L << field.bits;
+        }
+        return result;
+    }
+
+    /**
+     * Adds the increment to the value, handling an overflow of the field the same way as Redis.
+     *
+     * @return the sum, null if it overflows and the overflow is set to fail.
+     */
+    private static Long fit(long value, long increment, Field field) {
+        int bits = field.bits;
+        boolean overflow;
+        boolean underflow;
+        long max;
+        long min;
+        if (field.signed) {
+            max = bits == 64 ? Long.MAX_VALUE : (1L << bits - 1) - 1;
+            min = -max - 1;
+            long maxIncrement = max - value;
+            long minIncrement = min - value;
+            overflow = value > max || bits != 64 && increment > maxIncrement
+                    || value >= 0 && increment > 0 && increment > maxIncrement;
+            underflow = value < min || bits != 64 && increment < minIncrement
+                    || value < 0 && increment < 0 && increment < minIncrement;
+        } else {
+            max = (1L << bits) - 1;
+            min = 0;
+            overflow = Long.compareUnsigned(value, max) > 0 || increment > 0 && increment > max - value;
+            underflow = increment < 0 && increment < -value;
+        }
+        if (!overflow && !underflow) {
+            return value + increment;
+        }
+        switch (field.overflow) {
+            case SAT:
+                return overflow ? max : min;
+            case FAIL:
+                return null;
+            default:
+                long result = value + increment;
+                if (bits < 64) {
+                    long mask = -1L << bits;
+                    result = field.signed && (result & 1L << bits - 1) != 0 ? result | mask : result & ~mask;
+                }
+                return result;
+        }
+    }
+}
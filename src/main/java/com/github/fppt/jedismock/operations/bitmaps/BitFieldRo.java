@@ -0,0 +1,19 @@
+package com.github.fppt.jedismock.operations.bitmaps;
+
+import com.github.fppt.jedismock.datastructures.Slice;
+import com.github.fppt.jedismock.operations.RedisCommand;
+import com.github.fppt.jedismock.storage.RedisBase;
+
+import java.util.List;
+
+@RedisCommand("bitfield_ro")
+class BitFieldRo extends BitField {
+    BitFieldRo(RedisBase base, List<Slice> params) {
+        super(base, params);
+    }
+
+    @Override
+    boolean readOnly() {
+        return true;
+    }
+}
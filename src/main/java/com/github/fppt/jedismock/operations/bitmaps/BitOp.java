@@ -0,0 +1,50 @@
+package com.github.fppt.jedismock.operations.bitmaps;
+
+import com.github.fppt.jedismock.datastructures.RMString;
+import com.github.fppt.jedismock.datastructures.Slice;
+import com.github.fppt.jedismock.exception.ArgumentException;
+import com.github.fppt.jedismock.operations.AbstractRedisOperation;
+import com.github.fppt.jedismock.operations.RedisCommand;
+import com.github.fppt.jedismock.server.Response;
+import com.github.fppt.jedismock.storage.RedisBase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RedisCommand("bitop")
+class BitOp extends AbstractRedisOperation {
+    BitOp(RedisBase base, List<Slice> params) {
+        super(base, params);
+    }
+
+    @Override
+    protected int minArgs() {
+        return 3;
+    }
+
+    @Override
+    protected Slice response() {
+        RMString.BitOperation operation;
+        try {
+            operation = RMString.BitOperation.valueOf(params().get(0).toString().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new ArgumentException("ERR syntax error");
+        }
+        Slice destination = params().get(1);
+        List<Slice> keys = params().subList(2, params().size());
+        if (operation == RMString.BitOperation.NOT && keys.size() != 1) {
+            throw new ArgumentException("ERR BITOP NOT must be called with a single source key.");
+        }
+        List<RMString> operands = new ArrayList<>(keys.size());
+        for (Slice key : keys) {
+            operands.add(base().getRMString(key));
+        }
+        RMString result = RMString.bitOperation(operation, operands);
+        if (result.size() == 0) {
+            base().deleteValue(destination);
+        } else {
+            base().putValue(destination, result);
+        }
+        return Response.integer(result.size());
+    }
+}
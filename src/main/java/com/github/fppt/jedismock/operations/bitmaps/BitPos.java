@@ -0,0 +1,53 @@
+package com.github.fppt.jedismock.operations.bitmaps;
+
+import com.github.fppt.jedismock.datastructures.RMString;
+import com.github.fppt.jedismock.datastructures.Slice;
+import com.github.fppt.jedismock.exception.ArgumentException;
+import com.github.fppt.jedismock.operations.RedisCommand;
+import com.github.fppt.jedismock.server.Response;
+import com.github.fppt.jedismock.storage.RedisBase;
+
+import java.util.List;
+
+import static com.github.fppt.jedismock.Utils.convertToLong;
+
+@RedisCommand("bitpos")
+class BitPos extends AbstractBitRange {
+    BitPos(RedisBase base, List<Slice> params) {
+        super(base, params);
+    }
+
+    @Override
+    protected int minArgs() {
+        return 2;
+    }
+
+    @Override
+    protected Slice response() {
+        if (params().size() > 5) {
+            throw new ArgumentException("ERR syntax error");
+        }
+        long bit = convertToLong(params().get(1).toString());
+        if (bit != 0 && bit != 1) {
+            throw new ArgumentException("ERR The bit argument must be 1 or 0.");
+        }
+        long start = params().size() > 2 ? convertToLong(params().get(2).toString()) : 0;
+        boolean endGiven = params().size() > 3;
+        long end = endGiven ? convertToLong(params().get(3).toString()) : -1;
+        boolean bitUnit = isBitUnit(4);
+        RMString value = base().getRMString(params().get(0));
+        if (value == null) {
+            return Response.integer(bit == 1 ? -1 : 0);
+        }
+        long[] range = bitRange(start, end, value.size(), bitUnit);
+        if (range == null) {
+            return Response.integer(-1);
+        }
+        long position = value.bitPosition(bit == 1, range[0], range[1]);
+        if (position == -1 && bit == 0 && !endGiven) {
+            //Without an end, the string is considered padded with zeros
+            return Response.integer(value.size() * 8L);
+        }
+        return Response.integer(position);
+    }
+}
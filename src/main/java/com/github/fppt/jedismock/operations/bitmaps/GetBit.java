@@ -1,6 +1,6 @@
 package com.github.fppt.jedismock.operations.bitmaps;
 
-import com.github.fppt.jedismock.datastructures.RMBitMap;
+import com.github.fppt.jedismock.datastructures.RMString;
 import com.github.fppt.jedismock.operations.AbstractRedisOperation;
 import com.github.fppt.jedismock.operations.RedisCommand;
 import com.github.fppt.jedismock.server.Response;
@@ -9,7 +9,7 @@ import com.github.fppt.jedismock.storage.RedisBase;
 
 import java.util.List;
 
-import static com.github.fppt.jedismock.Utils.convertToNonNegativeInteger;
+import static com.github.fppt.jedismock.Utils.convertToBitOffset;
 
 @RedisCommand("getbit")
 class GetBit extends AbstractRedisOperation {
@@ -18,8 +18,8 @@ class GetBit extends AbstractRedisOperation {
     }
 
     protected Slice response() {
-        RMBitMap value = base().getBitMap(params().get(0));
-        int pos = convertToNonNegativeInteger(params().get(1).toString());
+        RMString value = base().getRMString(params().get(0));
+        long pos = convertToBitOffset(params().get(1).toString());
 
         if (value == null) {
             return Response.integer(0L);
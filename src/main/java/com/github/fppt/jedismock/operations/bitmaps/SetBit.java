@@ -1,6 +1,6 @@
 package com.github.fppt.jedismock.operations.bitmaps;
 
-import com.github.fppt.jedismock.datastructures.RMBitMap;
+import com.github.fppt.jedismock.datastructures.RMString;
 import com.github.fppt.jedismock.operations.AbstractRedisOperation;
 import com.github.fppt.jedismock.operations.RedisCommand;
 import com.github.fppt.jedismock.server.Response;
@@ -9,8 +9,8 @@ import com.github.fppt.jedismock.storage.RedisBase;
 
 import java.util.List;
 
+import static com.github.fppt.jedismock.Utils.convertToBitOffset;
 import static com.github.fppt.jedismock.Utils.convertToByte;
-import static com.github.fppt.jedismock.Utils.convertToNonNegativeInteger;
 
 @RedisCommand("setbit")
 class SetBit extends AbstractRedisOperation {
@@ -20,21 +20,20 @@ class SetBit extends AbstractRedisOperation {
 
     protected Slice response() {
         Slice key = params().get(0);
-        RMBitMap value = base().getBitMap(key);
+        RMString value = base().getModifiableRMString(key);
         byte bit = convertToByte(params().get(2).toString());
-        int pos = convertToNonNegativeInteger(params().get(1).toString());
+        long pos = convertToBitOffset(params().get(1).toString());
 
         if (value == null) {
-            RMBitMap bitMap = new RMBitMap();
-            bitMap.setBit(bit, pos);
+            RMString bitMap = new RMString();
+            bitMap.setBit(pos, bit == 1);
             base().putValue(key, bitMap);
 
             return Response.integer(0);
         }
 
-        boolean res = value.getBit(pos);
-        value.setBit(bit, pos);
-        base().putValue(key, value);
+        boolean res = value.setBit(pos, bit == 1);
+        base().putValueWithoutClearingTtl(key, value);
         return Response.integer(res ? 1 : 0);
     }
 }
@@ -1,5 +1,7 @@
 package com.github.fppt.jedismock.operations.hashes;
 
+import com.github.fppt.jedismock.GlobPattern;
+import com.github.fppt.jedismock.datastructures.RMHash;
 import com.github.fppt.jedismock.operations.RedisCommand;
 import com.github.fppt.jedismock.server.Response;
 import com.github.fppt.jedismock.datastructures.Slice;
@@ -7,8 +9,6 @@ import com.github.fppt.jedismock.storage.RedisBase;
 
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 @RedisCommand("hscan")
 public class HScan extends com.github.fppt.jedismock.operations.keys.Scan {
@@ -25,15 +25,18 @@ public class HScan extends com.github.fppt.jedismock.operations.keys.Scan {
     }
 
     @Override
-    protected List<Slice> getMatchingValues(String regex, long cursor, long count) {
-        Map<Slice, Slice> fieldAndValueMap = base().getFieldsAndValues(keySlice);
-        this.size = fieldAndValueMap.size();
-        return fieldAndValueMap.entrySet().stream().skip(cursor)
-                .limit(count)
-                .filter(e -> e.getKey().toString().matches(regex))
-                .flatMap(e-> Stream.of(e.getKey(), e.getValue()))
-                .map(Response::bulkString)
-                .collect(Collectors.toList());
+    protected long scan(GlobPattern match, long cursor, long count, List<Slice> result) {
+        RMHash hash = base().getHash(keySlice);
+        if (hash == null) {
+            return 0;
+        }
+        Map<Slice, Slice> fieldAndValueMap = hash.getStoredData();
+        return scan(fieldAndValueMap.keySet(), hash::scanIndex, cursor, count, field -> {
+            if (match.matches(field)) {
+                result.add(Response.bulkString(field));
+                result.add(Response.bulkString(fieldAndValueMap.get(field)));
+            }
+        });
     }
 
 }
@@ -17,25 +17,20 @@ class PFAdd extends AbstractRedisOperation {
 
     protected Slice response(){
         Slice key = params().get(0);
-        RMHyperLogLog dataSet = base().getHLL(key);
-        boolean first = true;
-
-        int prev = 0;
-        if (dataSet == null) {
-            dataSet = new RMHyperLogLog();
-        } else {
-            first = false;
-            prev = dataSet.size();
+        RMHyperLogLog hyperLogLog = base().getModifiableHLL(key);
+        boolean created = hyperLogLog == null;
+        if (created) {
+            hyperLogLog = new RMHyperLogLog();
         }
 
-        dataSet.addAll(params().subList(1, params().size()));
+        boolean updated = hyperLogLog.addAll(params().subList(1, params().size()));
 
-        if (first) {
-            base().putValue(key, dataSet);
-        } else {
-            base().putValue(key, dataSet, null);
+        if (created) {
+            base().putValue(key, hyperLogLog);
+        } else if (updated) {
+            base().putValue(key, hyperLogLog, null);
         }
 
-        return Response.integer((prev != dataSet.size()) ? 1 : 0);
+        return Response.integer(created || updated ? 1 : 0);
     }
 }
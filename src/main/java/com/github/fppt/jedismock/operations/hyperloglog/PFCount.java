@@ -7,9 +7,8 @@ import com.github.fppt.jedismock.server.Response;
 import com.github.fppt.jedismock.datastructures.Slice;
 import com.github.fppt.jedismock.storage.RedisBase;
 
-import java.util.HashSet;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Set;
 
 @RedisCommand("pfcount")
 class PFCount extends AbstractRedisOperation {
@@ -18,16 +17,17 @@ class PFCount extends AbstractRedisOperation {
     }
 
     protected Slice response() {
-        Set<Slice> set = new HashSet<>();
+        List<RMHyperLogLog> hyperLogLogs = new ArrayList<>();
         for (Slice key : params()) {
             RMHyperLogLog data = base().getHLL(key);
-            if (data == null) {
-                continue;
+            if (data != null) {
+                hyperLogLogs.add(data);
             }
-
-            Set<Slice> s = data.getStoredData();
-            set.addAll(s);
         }
-        return Response.integer(set.size());
+        if (params().size() == 1) {
+            //The cardinality of a single key is cached until the key is modified
+            return Response.integer(hyperLogLogs.isEmpty() ? 0 : hyperLogLogs.get(0).count());
+        }
+        return Response.integer(RMHyperLogLog.count(hyperLogLogs));
     }
 }
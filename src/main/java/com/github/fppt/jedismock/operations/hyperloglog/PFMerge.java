@@ -17,18 +17,18 @@ class PFMerge extends AbstractRedisOperation {
 
     protected Slice response() {
         Slice key = params().get(0);
-        RMHyperLogLog rmData = base().getHLL(key);
-        RMHyperLogLog set = rmData == null ? new RMHyperLogLog() : rmData;
+        RMHyperLogLog rmData = base().getModifiableHLL(key);
+        RMHyperLogLog hyperLogLog = rmData == null ? new RMHyperLogLog() : rmData;
 
         for (Slice v : params().subList(1, params().size())) {
             RMHyperLogLog valueToMerge = base().getHLL(v);
 
             if (valueToMerge != null) {
-                set.addAll(valueToMerge.getStoredData());
+                hyperLogLog.merge(valueToMerge);
             }
         }
 
-        base().putValue(key, set);
+        base().putValue(key, hyperLogLog);
         return Response.OK;
     }
 }
@@ -0,0 +1,46 @@
+package com.github.fppt.jedismock.operations.keys;
+
+import com.github.fppt.jedismock.datastructures.RMDataStructure;
+import com.github.fppt.jedismock.datastructures.Slice;
+import com.github.fppt.jedismock.operations.AbstractRedisOperation;
+import com.github.fppt.jedismock.operations.RedisCommand;
+import com.github.fppt.jedismock.persistence.RdbWriter;
+import com.github.fppt.jedismock.server.Response;
+import com.github.fppt.jedismock.storage.RedisBase;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Serializes the value of a key in the format of Redis, so that it can be restored by RESTORE
+ * both in Jedis Mock and in Redis.
+ */
+@RedisCommand("dump")
+class Dump extends AbstractRedisOperation {
+    Dump(RedisBase base, List<Slice> params) {
+        super(base, params);
+    }
+
+    @Override
+    protected int minArgs() {
+        return 1;
+    }
+
+    @Override
+    protected int maxArgs() {
+        return 1;
+    }
+
+    @Override
+    protected Slice response() {
+        RMDataStructure value = base().getValue(params().get(0));
+        if (value == null) {
+            return Response.NULL;
+        }
+        try {
+            return Response.bulkString(Slice.create(RdbWriter.dump(value)));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -1,6 +1,6 @@
 package com.github.fppt.jedismock.operations.keys;
 
-import com.github.fppt.jedismock.Utils;
+import com.github.fppt.jedismock.GlobPattern;
 import com.github.fppt.jedismock.datastructures.Slice;
 import com.github.fppt.jedismock.operations.AbstractRedisOperation;
 import com.github.fppt.jedismock.operations.RedisCommand;
@@ -18,11 +18,10 @@ class Keys extends AbstractRedisOperation {
 
     protected Slice response() {
         List<Slice> matchingKeys = new ArrayList<>();
-        String regex = Utils.createRegexFromGlob(new String(params().get(0).data()));
+        GlobPattern pattern = GlobPattern.compile(params().get(0));
 
         base().keys().forEach(keyData -> {
-            String key = new String(keyData.data());
-            if (key.matches(regex)) {
+            if (pattern.matches(keyData)) {
                 matchingKeys.add(Response.bulkString(keyData));
             }
         });
@@ -0,0 +1,190 @@
+package com.github.fppt.jedismock.operations.keys;
+
+import com.github.fppt.jedismock.datastructures.RMDataStructure;
+import com.github.fppt.jedismock.datastructures.Slice;
+import com.github.fppt.jedismock.exception.ArgumentException;
+import com.github.fppt.jedismock.operations.AbstractRedisOperation;
+import com.github.fppt.jedismock.operations.RedisCommand;
+import com.github.fppt.jedismock.persistence.RdbWriter;
+import com.github.fppt.jedismock.server.RespWriter;
+import com.github.fppt.jedismock.server.Response;
+import com.github.fppt.jedismock.storage.RedisBase;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.github.fppt.jedismock.Utils.convertToInteger;
+
+/**
+ * Moves keys to another instance, either of Jedis Mock or of Redis, by DUMP and RESTORE.
+ *
+ * A new connection is opened for each call. The keys restored by the target instance are deleted,
+ * unless COPY is specified.
+ */
+@RedisCommand("migrate")
+class Migrate extends AbstractRedisOperation {
+    private static final Slice NOKEY = new RespWriter().simpleString("NOKEY").toSlice();
+    private static final int DEFAULT_TIMEOUT = 1000;
+
+    private boolean copy;
+    private boolean replace;
+    private List<Slice> auth;
+    private List<Slice> keys;
+
+    Migrate(RedisBase base, List<Slice> params) {
+        super(base, params);
+    }
+
+    @Override
+    protected int minArgs() {
+        return 5;
+    }
+
+    private void parseOptions() {
+        keys = params().subList(2, 3);
+        for (int i = 5; i < params().size(); i++) {
+            String option = params().get(i).toString();
+            if ("copy".equalsIgnoreCase(option)) {
+                copy = true;
+            } else if ("replace".equalsIgnoreCase(option)) {
+                replace = true;
+            } else if ("auth".equalsIgnoreCase(option) && i + 1 < params().size()) {
+                auth = params().subList(i + 1, i + 2);
+                i++;
+            } else if ("auth2".equalsIgnoreCase(option) && i + 2 < params().size()) {
+                auth = params().subList(i + 1, i + 3);
+                i += 2;
+            } else if ("keys".equalsIgnoreCase(option)) {
+                if (params().get(2).length() != 0) {
+                    throw new ArgumentException("ERR When using MIGRATE KEYS option, the key argument"
+                            + " must be set to the empty string");
+                }
+                keys = params().subList(i + 1, params().size());
+                break;
+            } else {
+                throw new ArgumentException("ERR syntax error");
+            }
+        }
+    }
+
+    @Override
+    protected Slice response() {
+        parseOptions();
+        String host = params().get(0).toString();
+        int port = convertToInteger(params().get(1).toString());
+        int database = convertToInteger(params().get(3).toString());
+        int timeout = convertToInteger(params().get(4).toString());
+        if (timeout <= 0) {
+            timeout = DEFAULT_TIMEOUT;
+        }
+
+        List<Slice> migrated = new ArrayList<>();
+        RespWriter commands = new RespWriter();
+        if (auth != null) {
+            command(commands, Slice.create("AUTH"), auth);
+        }
+        command(commands, Slice.create("SELECT"), Slice.create(Integer.toString(database)));
+        for (Slice key : keys) {
+            RMDataStructure value = base().getValue(key);
+            if (value == null) {
+                continue;
+            }
+            Long ttl = base().getTTL(key);
+            byte[] payload;
+            try {
+                payload = RdbWriter.dump(value);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            List<Slice> arguments = new ArrayList<>();
+            arguments.add(key);
+            arguments.add(Slice.create(Long.toString(ttl == null || ttl < 0 ? 0 : ttl)));
+            arguments.add(Slice.create(payload));
+            if (replace) {
+                arguments.add(Slice.create("REPLACE"));
+            }
+            command(commands, Slice.create("RESTORE"), arguments);
+            migrated.add(key);
+        }
+        if (migrated.isEmpty()) {
+            return NOKEY;
+        }
+
+        try (Socket socket = new Socket()) {
+            try {
+                socket.connect(new InetSocketAddress(host, port), timeout);
+                socket.setSoTimeout(timeout);
+            } catch (IOException e) {
+                return Response.error("IOERR error or timeout connecting to the client");
+            }
+            try {
+                commands.writeTo(socket.getOutputStream());
+            } catch (IOException e) {
+                return Response.error("IOERR error or timeout writing to target instance");
+            }
+            return readReplies(new BufferedInputStream(socket.getInputStream()), migrated);
+        } catch (IOException e) {
+            return Response.error("IOERR error or timeout reading to target instance");
+        }
+    }
+
+    /**
+     * Reads the replies to AUTH, SELECT and RESTORE of each key, removing the restored keys.
+     */
+    private Slice readReplies(InputStream in, List<Slice> migrated) throws IOException {
+        String error = null;
+        //Whether AUTH or SELECT has failed, so that no key is restored
+        boolean rejected = false;
+        int replies = migrated.size() + (auth == null ? 1 : 2);
+        int firstKey = replies - migrated.size();
+        for (int i = 0; i < replies; i++) {
+            String reply = readLine(in);
+            boolean failed = reply.startsWith("-");
+            if (failed && error == null) {
+                error = reply.substring(1);
+            }
+            if (i < firstKey) {
+                rejected |= failed;
+            } else if (!failed && !rejected && !copy) {
+                base().deleteValue(migrated.get(i - firstKey));
+            }
+        }
+        return error == null ? Response.OK : Response.error("ERR Target instance replied with error: " + error);
+    }
+
+    private static void command(RespWriter writer, Slice name, Slice argument) {
+        writer.arrayHeader(2).bulkString(name).bulkString(argument);
+    }
+
+    private static void command(RespWriter writer, Slice name, List<Slice> arguments) {
+        writer.arrayHeader(arguments.size() + 1).bulkString(name);
+        arguments.forEach(writer::bulkString);
+    }
+
+    /**
+     * @return a line of a simple reply, without the line separator.
+     */
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int previous = -1;
+        while (true) {
+            int current = in.read();
+            if (current == -1) {
+                throw new IOException("Unexpected end of stream");
+            }
+            if (previous == '\r' && current == '\n') {
+                byte[] bytes = line.toByteArray();
+                return new String(bytes, 0, bytes.length - 1, StandardCharsets.UTF_8);
+            }
+            line.write(current);
+            previous = current;
+        }
+    }
+}
@@ -32,7 +32,7 @@ public class Move implements RedisOperation {
         }
         Slice key = params.get(0);
         int destinationIdx = Utils.convertToInteger(params.get(1).toString());
-        RMDataStructure value = state.base().getValue(key);
+        RMDataStructure value = state.base().getModifiableValue(key);
         if (value == null) {
             // Source doesn't exist
             return Response.integer(0);
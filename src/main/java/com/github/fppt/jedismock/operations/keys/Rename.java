@@ -5,22 +5,19 @@ import com.github.fppt.jedismock.datastructures.Slice;
 import com.github.fppt.jedismock.operations.AbstractRedisOperation;
 import com.github.fppt.jedismock.operations.RedisCommand;
 import com.github.fppt.jedismock.server.Response;
-import com.github.fppt.jedismock.storage.OperationExecutorState;
+import com.github.fppt.jedismock.storage.RedisBase;
 
 import java.util.List;
 
 @RedisCommand("rename")
 class Rename extends AbstractRedisOperation {
 
-    private final Object lock;
-
-    Rename(OperationExecutorState state, List<Slice> params) {
-        super(state.base(), params);
-        this.lock = state.lock();
+    Rename(RedisBase base, List<Slice> params) {
+        super(base, params);
     }
 
     private boolean rename(Slice key, Slice newKey) {
-        RMDataStructure value = base().getValue(key);
+        RMDataStructure value = base().getModifiableValue(key);
         final Long ttl = base().getTTL(key);
         if (ttl == null || value == null) {
             return false;
@@ -28,7 +25,6 @@ class Rename extends AbstractRedisOperation {
         base().deleteValue(newKey);
         base().putValue(newKey, value, ttl);
         base().deleteValue(key);
-        lock.notifyAll();
 
         return true;
     }
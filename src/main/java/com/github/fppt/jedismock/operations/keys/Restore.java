@@ -0,0 +1,93 @@
+package com.github.fppt.jedismock.operations.keys;
+
+import com.github.fppt.jedismock.datastructures.RMDataStructure;
+import com.github.fppt.jedismock.datastructures.Slice;
+import com.github.fppt.jedismock.exception.ArgumentException;
+import com.github.fppt.jedismock.operations.AbstractRedisOperation;
+import com.github.fppt.jedismock.operations.RedisCommand;
+import com.github.fppt.jedismock.persistence.RdbReader;
+import com.github.fppt.jedismock.server.Response;
+import com.github.fppt.jedismock.storage.RedisBase;
+
+import java.io.IOException;
+import java.util.List;
+
+import static com.github.fppt.jedismock.Utils.convertToLong;
+
+/**
+ * Creates a key from a value serialized by DUMP, either of Jedis Mock or of Redis.
+ */
+@RedisCommand("restore")
+class Restore extends AbstractRedisOperation {
+    private static final int MAX_FREQ = 255;
+
+    private boolean replace;
+    private boolean absoluteTtl;
+    private Long idleSeconds;
+    private Integer frequency;
+
+    Restore(RedisBase base, List<Slice> params) {
+        super(base, params);
+    }
+
+    @Override
+    protected int minArgs() {
+        return 3;
+    }
+
+    private void parseOptions() {
+        for (int i = 3; i < params().size(); i++) {
+            String option = params().get(i).toString();
+            if ("replace".equalsIgnoreCase(option)) {
+                replace = true;
+            } else if ("absttl".equalsIgnoreCase(option)) {
+                absoluteTtl = true;
+            } else if ("idletime".equalsIgnoreCase(option) && i + 1 < params().size() && frequency == null) {
+                idleSeconds = convertToLong(params().get(++i).toString());
+                if (idleSeconds < 0) {
+                    throw new ArgumentException("ERR Invalid IDLETIME value, must be >= 0");
+                }
+            } else if ("freq".equalsIgnoreCase(option) && i + 1 < params().size() && idleSeconds == null) {
+                long value = convertToLong(params().get(++i).toString());
+                if (value < 0 || value > MAX_FREQ) {
+                    throw new ArgumentException("ERR Invalid FREQ value, must be >= 0 and <= 255");
+                }
+                frequency = (int) value;
+            } else {
+                throw new ArgumentException("ERR syntax error");
+            }
+        }
+    }
+
+    @Override
+    protected Slice response() {
+        parseOptions();
+        Slice key = params().get(0);
+        long ttl = convertToLong(params().get(1).toString());
+        if (ttl < 0) {
+            throw new ArgumentException("ERR Invalid TTL value, must be >= 0");
+        }
+        if (!replace && base().exists(key)) {
+            return Response.error("BUSYKEY Target key name already exists.");
+        }
+        RMDataStructure value;
+        try {
+            value = RdbReader.readDump(params().get(2).data());
+        } catch (IOException e) {
+            return Response.error("ERR " + e.getMessage());
+        }
+        long now = base().getClock().millis();
+        if (ttl > 0 && absoluteTtl && ttl <= now) {
+            //Already expired, so the key is only removed
+            if (replace) {
+                base().deleteValue(key);
+            }
+            return Response.OK;
+        }
+        base().putValue(key, value, ttl == 0 ? -1L : absoluteTtl ? ttl - now : ttl);
+        if (idleSeconds != null || frequency != null) {
+            base().setAccess(key, idleSeconds == null ? null : Math.multiplyExact(idleSeconds, 1000L), frequency);
+        }
+        return Response.OK;
+    }
+}
@@ -1,15 +1,20 @@
 package com.github.fppt.jedismock.operations.keys;
 
-import com.github.fppt.jedismock.Utils;
+import com.github.fppt.jedismock.GlobPattern;
+import com.github.fppt.jedismock.datastructures.ScanIndex;
 import com.github.fppt.jedismock.datastructures.Slice;
+import com.github.fppt.jedismock.exception.ArgumentException;
 import com.github.fppt.jedismock.operations.AbstractRedisOperation;
 import com.github.fppt.jedismock.operations.RedisCommand;
 import com.github.fppt.jedismock.server.Response;
 import com.github.fppt.jedismock.storage.RedisBase;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 import static com.github.fppt.jedismock.Utils.convertToLong;
 
@@ -24,7 +29,6 @@ public class Scan extends AbstractRedisOperation {
     private static final String COUNT = "count";
 
     protected Slice cursorSlice;
-    protected int size;
 
     public Scan(RedisBase base, List<Slice> params) {
         super(base, params);
@@ -33,23 +37,22 @@ public class Scan extends AbstractRedisOperation {
     @Override
     protected void doOptionalWork() {
         this.cursorSlice = params().get(0);
-        this.size = base().keys().size();
     }
 
     protected Slice response() {
         long cursor = cursorSlice != null ? convertToLong(cursorSlice.toString()) : CURSOR_START;
 
-        String match = extractParameter(params(), MATCH).map(Slice::toString).orElse("*");
+        GlobPattern match = extractParameter(params(), MATCH).map(GlobPattern::compile)
+                .orElseGet(() -> GlobPattern.compile("*"));
         long count = extractParameter(params(), COUNT).map(s -> convertToLong(s.toString())).orElse(DEFAULT_COUNT);
 
-        String regex = Utils.createRegexFromGlob(match);
-        List<Slice> matchingValues = getMatchingValues(regex, cursor, count);
-
-        cursor = cursor + count;
-        if (cursor >= size) {
-            cursor = CURSOR_START;
+        if (count < 1) {
+            throw new ArgumentException("ERR syntax error");
         }
 
+        List<Slice> matchingValues = new ArrayList<>();
+        cursor = scan(match, cursor, count, matchingValues);
+
         return Response.array(
                 Response.bulkString(Slice.create(String.valueOf(cursor))),
                 Response.array(matchingValues)
@@ -66,12 +69,33 @@ public class Scan extends AbstractRedisOperation {
         return Optional.empty();
     }
 
-    protected List<Slice> getMatchingValues(String regex, long cursor, long count) {
-        return base().keys().stream()
-                .skip(cursor)
-                .limit(count)
-                .filter(x -> x.toString().matches(regex))
-                .map(Response::bulkString)
-                .collect(Collectors.toList());
+    /**
+     * Adds the matching elements visited from the cursor to the result.
+     *
+     * @return cursor to continue the iteration from, 0 if all the elements have been visited.
+     */
+    protected long scan(GlobPattern match, long cursor, long count, List<Slice> result) {
+        return base().scan(cursor, count, key -> {
+            if (match.matches(key)) {
+                result.add(Response.bulkString(key));
+            }
+        });
+    }
+
+    /**
+     * Visits the elements of a collection starting from the cursor.
+     *
+     * @param index the index the collection maintains, only requested if the collection has more than COUNT elements,
+     *              since smaller collections are returned in one go, like in Redis.
+     * @return cursor to continue the iteration from, 0 if all the elements have been visited.
+     * @see ScanIndex#scan(long, long, Consumer)
+     */
+    protected static long scan(Collection<Slice> elements, Supplier<ScanIndex> index,
+                               long cursor, long count, Consumer<Slice> action) {
+        if (cursor == 0 && elements.size() <= count) {
+            elements.forEach(action);
+            return 0;
+        }
+        return index.get().scan(cursor, count, action);
     }
 }
@@ -6,10 +6,12 @@ import com.github.fppt.jedismock.storage.RedisBase;
 
 import java.util.List;
 
+/**
+ * The same as DEL: a removed value is left to the garbage collector, since it may be shared with a snapshot.
+ */
 @RedisCommand("unlink")
 public class Unlink extends Del {
     Unlink(RedisBase base, List<Slice> params) {
         super(base, params);
     }
-    /*Note: this command behaves exactly like 'DEL'*/
 }
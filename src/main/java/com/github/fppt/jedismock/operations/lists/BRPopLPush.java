@@ -4,9 +4,12 @@ import com.github.fppt.jedismock.datastructures.Slice;
 import com.github.fppt.jedismock.operations.RedisCommand;
 import com.github.fppt.jedismock.server.Response;
 import com.github.fppt.jedismock.server.SliceParser;
+import com.github.fppt.jedismock.storage.BlockedClients;
+import com.github.fppt.jedismock.storage.LockManager;
 import com.github.fppt.jedismock.storage.OperationExecutorState;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import static com.github.fppt.jedismock.Utils.toNanoTimeout;
@@ -14,12 +17,12 @@ import static com.github.fppt.jedismock.Utils.toNanoTimeout;
 @RedisCommand("brpoplpush")
 class BRPopLPush extends RPopLPush {
     private long count = 0L;
-    private final Object lock;
+    private final LockManager locks;
     private final boolean isInTransaction;
 
     BRPopLPush(OperationExecutorState state, List<Slice> params) {
-        super(state, params);
-        this.lock = state.lock();
+        super(state.base(), params);
+        this.locks = state.locks();
         this.isInTransaction = state.isTransactionModeOn();
     }
 
@@ -31,16 +34,25 @@ class BRPopLPush extends RPopLPush {
             throw new IllegalArgumentException("ERR timeout is negative");
         }
 
-        long waitEnd = System.nanoTime() + timeoutNanos;
-        long waitTimeNanos;
         count = getCount(source);
-        try {
-            while (count == 0L &&
-                    !isInTransaction &&
-                    (waitTimeNanos = timeoutNanos == 0 ? 0 : waitEnd - System.nanoTime()) >= 0) {
-                lock.wait(waitTimeNanos / 1_000_000, (int) waitTimeNanos % 1_000_000);
+        if (count != 0L || isInTransaction) {
+            return;
+        }
+        long waitEnd = System.nanoTime() + timeoutNanos;
+        try (BlockedClients.Waiter waiter =
+                     base().blockedClients().block(Collections.singletonList(source), true)) {
+            while (count == 0L) {
+                long waitTimeNanos = 0;
+                if (timeoutNanos != 0) {
+                    waitTimeNanos = waitEnd - System.nanoTime();
+                    if (waitTimeNanos <= 0) {
+                        break;
+                    }
+                }
+                locks.await(waiter, waitTimeNanos);
                 count = getCount(source);
             }
+            waiter.consume(count == 0L ? null : source);
         } catch (InterruptedException e) {
             //wait interrupted prematurely
             Thread.currentThread().interrupt();
@@ -49,7 +61,13 @@ class BRPopLPush extends RPopLPush {
 
     protected Slice response() {
         if (count != 0) {
-            return super.response();
+            Slice result = super.response();
+            Slice source = params().get(0);
+            if (base().exists(source)) {
+                //The remaining values are served to the next blocked client
+                base().blockedClients().signal(source);
+            }
+            return result;
         } else {
             return Response.NULL;
         }
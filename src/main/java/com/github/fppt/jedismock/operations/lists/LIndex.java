@@ -20,19 +20,7 @@ class LIndex extends AbstractRedisOperation {
     protected Slice response() {
         Slice key = params().get(0);
         RMList listDBObj = getListFromBaseOrCreateEmpty(key);
-        List<Slice> list = listDBObj.getStoredData();
-        if(list.isEmpty()) return Response.NULL;
-
-        int index = convertToInteger(params().get(1).toString());
-        if (index < 0) {
-            index = list.size() + index;
-            if (index < 0) {
-                return Response.NULL;
-            }
-        }
-        if (index >= list.size()) {
-            return Response.NULL;
-        }
-        return Response.bulkString(list.get(index));
+        Slice element = listDBObj.get(convertToInteger(params().get(1).toString()));
+        return element == null ? Response.NULL : Response.bulkString(element);
     }
 }
@@ -1,5 +1,6 @@
 package com.github.fppt.jedismock.operations.lists;
 
+import com.github.fppt.jedismock.datastructures.RMList;
 import com.github.fppt.jedismock.datastructures.Slice;
 import com.github.fppt.jedismock.operations.AbstractRedisOperation;
 import com.github.fppt.jedismock.operations.RedisCommand;
@@ -34,15 +35,7 @@ public class LInsert extends AbstractRedisOperation {
             return Response.integer(0);
         }
 
-        List<Slice> storedElements = base().getList(key).getStoredData();
-        int i = storedElements.indexOf(pivot);
-
-        if (i == -1) {
-            return Response.integer(-1);
-        }
-
-        int index = direction.equalsIgnoreCase(BEFORE) ? i : i + 1;
-        storedElements.add(index, element);
-        return Response.integer(storedElements.size());
+        RMList list = base().getModifiableList(key);
+        return Response.integer(list.insert(pivot, element, direction.equalsIgnoreCase(BEFORE)));
     }
 }
@@ -18,7 +18,6 @@ class LLen extends AbstractRedisOperation {
     protected Slice response() {
         Slice key = params().get(0);
         RMList listDBObj = getListFromBaseOrCreateEmpty(key);
-        List<Slice> list = listDBObj.getStoredData();
-        return Response.integer(list.size());
+        return Response.integer(listDBObj.size());
     }
 }
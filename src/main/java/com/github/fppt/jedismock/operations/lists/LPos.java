@@ -5,6 +5,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.ListIterator;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
@@ -42,25 +43,24 @@ public class LPos extends AbstractRedisOperation {
 
         RMList list = getListFromBaseOrCreateEmpty(key);
 
-        List<Slice> storedData = list.getStoredData();
-
-        parseArgs(storedData.size());
+        parseArgs(list.size());
         List<Slice> result = new LinkedList<>();
         int matches = 0;
 
-        int start = rank > 0 ? 0 : storedData.size() - 1;
-        int add = rank > 0 ? 1 : -1;
+        boolean forward = rank > 0;
+        ListIterator<Slice> iterator = list.listIterator(forward ? 0 : list.size());
 
         int checkedValues = 0;
 
-        for (int i = start; i < storedData.size() && i >= 0; i += add) {
+        while (forward ? iterator.hasNext() : iterator.hasPrevious()) {
 
             if (maxLen <= checkedValues) {
                 break;
             }
             ++checkedValues;
 
-            if (!storedData.get(i).equals(element)) {
+            int i = forward ? iterator.nextIndex() : iterator.previousIndex();
+            if (!(forward ? iterator.next() : iterator.previous()).equals(element)) {
                 continue;
             }
             matches++;
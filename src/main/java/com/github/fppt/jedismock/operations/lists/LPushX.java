@@ -1,7 +1,7 @@
 package com.github.fppt.jedismock.operations.lists;
 
 import com.github.fppt.jedismock.operations.RedisCommand;
-import com.github.fppt.jedismock.storage.OperationExecutorState;
+import com.github.fppt.jedismock.storage.RedisBase;
 import com.github.fppt.jedismock.server.Response;
 import com.github.fppt.jedismock.datastructures.Slice;
 
@@ -9,8 +9,8 @@ import java.util.List;
 
 @RedisCommand("lpushx")
 class LPushX extends LPush {
-    LPushX(OperationExecutorState state, List<Slice> params) {
-        super(state, params);
+    LPushX(RedisBase base, List<Slice> params) {
+        super(base, params);
     }
 
     @Override
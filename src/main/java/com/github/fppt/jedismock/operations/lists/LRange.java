@@ -21,23 +21,13 @@ class LRange extends AbstractRedisOperation {
     protected Slice response() {
         Slice key = params().get(0);
         RMList listDBObj = getListFromBaseOrCreateEmpty(key);
-        List<Slice> list = listDBObj.getStoredData();
 
         int start = convertToInteger(params().get(1).toString());
         int end = convertToInteger(params().get(2).toString());
 
-        if (start < 0) {
-            start = list.size() + start;
-            if (start < 0) {
-                start = 0;
-            }
-        }
-        if (end < 0) {
-            end = list.size() + end;
-        }
         List<Slice> result = new ArrayList<>();
-        for (int i = start; i <= end && i < list.size(); i++) {
-            result.add(Response.bulkString(list.get(i)));
+        for (Slice element : listDBObj.range(start, end)) {
+            result.add(Response.bulkString(element));
         }
         return Response.array(result);
     }
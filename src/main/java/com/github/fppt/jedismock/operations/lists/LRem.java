@@ -8,7 +8,6 @@ import com.github.fppt.jedismock.datastructures.Slice;
 import com.github.fppt.jedismock.storage.RedisBase;
 
 import java.util.List;
-import java.util.ListIterator;
 
 import static com.github.fppt.jedismock.Utils.convertToInteger;
 
@@ -23,34 +22,12 @@ class LRem extends AbstractRedisOperation {
         target = params().get(2);
     }
 
-    private boolean isDeletingElement(Slice element, int numRemoved) {
-        return element.equals(target) && (directedNumRemove == 0 || numRemoved < Math.abs(directedNumRemove));
-    }
     protected Slice response(){
         Slice key = params().get(0);
-        RMList listObj = base().getList(key);
+        RMList listObj = base().getModifiableList(key);
         if(listObj == null){
             return Response.integer(0);
         }
-
-        List<Slice> list = listObj.getStoredData();
-
-        //Determine the directionality of the deletions
-        int numRemoved = 0;
-        ListIterator<Slice> iterator;
-        if (directedNumRemove < 0) {
-            iterator = list.listIterator(list.size());
-        } else {
-            iterator = list.listIterator();
-        }
-
-        while (directedNumRemove < 0 ? iterator.hasPrevious() : iterator.hasNext()) {
-            Slice element = directedNumRemove < 0 ? iterator.previous() : iterator.next();
-            if (isDeletingElement(element, numRemoved)) {
-                iterator.remove();
-                numRemoved++;
-            }
-        }
-        return Response.integer(numRemoved);
+        return Response.integer(listObj.remove(target, directedNumRemove));
     }
 }
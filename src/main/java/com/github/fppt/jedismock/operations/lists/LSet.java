@@ -25,17 +25,9 @@ public class LSet extends AbstractRedisOperation {
             throw new IllegalArgumentException("ERR no such key");
         }
 
-        List<Slice> storedData = base().getList(key).getStoredData();
-
-        if (index < 0) {
-            index = storedData.size() + index;
-        }
-
-        if (index < 0 || index >= storedData.size()) {
+        if (!base().getModifiableList(key).set(index, element)) {
             throw new IllegalArgumentException("ERR index out of range");
         }
-
-        storedData.set(index, element);
         return Response.OK;
     }
 }
@@ -16,9 +16,9 @@ abstract class ListPopper extends AbstractRedisOperation {
         super(base, params);
     }
 
-    abstract Slice popper(List<Slice> list);
+    abstract Slice popper(RMList list);
 
-    private Slice pop(Slice key, List<Slice> list) {
+    private Slice pop(Slice key, RMList list) {
         Slice result = popper(list);
         base().markKeyModified(key);
         if (list.isEmpty()) {
@@ -29,8 +29,7 @@ abstract class ListPopper extends AbstractRedisOperation {
 
     protected final Slice response() {
         Slice key = params().get(0);
-        RMList listDBObj = getListFromBaseOrCreateEmpty(key);
-        List<Slice> list = listDBObj.getStoredData();
+        RMList list = getModifiableListFromBaseOrCreateEmpty(key);
 
         if (list.isEmpty()) return Response.NULL;
         if (params().size() > 1) {
@@ -41,7 +40,7 @@ abstract class ListPopper extends AbstractRedisOperation {
                 throw new WrongValueTypeException("value is out of range, must be positive");
             }
             List<Slice> responseList = new ArrayList<>();
-            while (count > 0 && list.size() > 0) {
+            while (count > 0 && !list.isEmpty()) {
                 responseList.add(Response.bulkString(pop(key, list)));
                 count--;
             }
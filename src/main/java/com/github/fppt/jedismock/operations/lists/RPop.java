@@ -1,5 +1,6 @@
 package com.github.fppt.jedismock.operations.lists;
 
+import com.github.fppt.jedismock.datastructures.RMList;
 import com.github.fppt.jedismock.datastructures.Slice;
 import com.github.fppt.jedismock.operations.RedisCommand;
 import com.github.fppt.jedismock.storage.RedisBase;
@@ -12,7 +13,7 @@ class RPop extends ListPopper {
         super(base, params);
     }
 
-    Slice popper(List<Slice> list) {
-        return list.remove(list.size() - 1);
+    Slice popper(RMList list) {
+        return list.removeLast();
     }
 }
@@ -5,7 +5,7 @@ import com.github.fppt.jedismock.datastructures.Slice;
 import com.github.fppt.jedismock.operations.AbstractRedisOperation;
 import com.github.fppt.jedismock.operations.RedisCommand;
 import com.github.fppt.jedismock.server.SliceParser;
-import com.github.fppt.jedismock.storage.OperationExecutorState;
+import com.github.fppt.jedismock.storage.RedisBase;
 
 import java.util.Arrays;
 import java.util.Collections;
@@ -15,10 +15,8 @@ import static com.github.fppt.jedismock.server.Response.NULL;
 
 @RedisCommand("rpoplpush")
 class RPopLPush extends AbstractRedisOperation {
-    private final OperationExecutorState state;
-    RPopLPush(OperationExecutorState state, List<Slice> params) {
-        super(state.base(), params);
-        this.state = state;
+    RPopLPush(RedisBase base, List<Slice> params) {
+        super(base, params);
     }
 
     protected Slice response() {
@@ -37,7 +35,7 @@ class RPopLPush extends AbstractRedisOperation {
         Slice valueToPush = SliceParser.consumeParameter(result.data());
 
         //Push it into the other list
-        new LPush(state, Arrays.asList(target, valueToPush)).execute();
+        new LPush(base(), Arrays.asList(target, valueToPush)).execute();
 
         return result;
     }
@@ -3,14 +3,14 @@ package com.github.fppt.jedismock.operations.lists;
 import com.github.fppt.jedismock.datastructures.Slice;
 import com.github.fppt.jedismock.operations.RedisCommand;
 import com.github.fppt.jedismock.server.Response;
-import com.github.fppt.jedismock.storage.OperationExecutorState;
+import com.github.fppt.jedismock.storage.RedisBase;
 
 import java.util.List;
 
 @RedisCommand("rpushx")
 public class RPushX extends RPush {
-    RPushX(OperationExecutorState state, List<Slice> params) {
-        super(state, params);
+    RPushX(RedisBase base, List<Slice> params) {
+        super(base, params);
     }
 
     @Override
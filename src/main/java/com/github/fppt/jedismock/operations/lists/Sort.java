@@ -11,7 +11,7 @@ import com.github.fppt.jedismock.exception.WrongValueTypeException;
 import com.github.fppt.jedismock.operations.AbstractRedisOperation;
 import com.github.fppt.jedismock.operations.RedisCommand;
 import com.github.fppt.jedismock.server.Response;
-import com.github.fppt.jedismock.storage.OperationExecutorState;
+import com.github.fppt.jedismock.storage.RedisBase;
 
 import java.util.Arrays;
 import java.util.List;
@@ -28,17 +28,14 @@ public class Sort extends AbstractRedisOperation {
     private static final String STORE_PARAM = "STORE";
     private static final String DESC_PARAM = "DESC";
 
-    private final Object lock;
-
     private boolean sortNumerically = true;
     private Slice storeTo = null;
     private int offset = 0;
     private int count = Integer.MAX_VALUE;
     private int compareMultiplier = 1;
 
-    public Sort(OperationExecutorState state, List<Slice> params) {
-        super(state.base(), params);
-        this.lock = state.lock();
+    public Sort(RedisBase base, List<Slice> params) {
+        super(base, params);
     }
 
     @Override
@@ -61,7 +58,6 @@ public class Sort extends AbstractRedisOperation {
 
         if (storeTo != null) {
             base().putValue(storeTo, new RMList(sorted));
-            lock.notifyAll();
             return Response.integer(sorted.size());
         }
 
@@ -1,6 +1,6 @@
 package com.github.fppt.jedismock.operations.pubsub;
 
-import com.github.fppt.jedismock.Utils;
+import com.github.fppt.jedismock.GlobPattern;
 import com.github.fppt.jedismock.datastructures.Slice;
 import com.github.fppt.jedismock.operations.AbstractRedisOperation;
 import com.github.fppt.jedismock.operations.RedisCommand;
@@ -20,12 +20,10 @@ public class PubSub extends AbstractRedisOperation {
     protected Slice response() {
         Slice subcommand = params().get(0);
         if ("channels".equalsIgnoreCase(subcommand.toString())) {
-            String pattern =
-                    Utils.createRegexFromGlob(
-                            params().size() > 1 ? params().get(1).toString() : "*");
-            return Response.array(base().getChannels().stream().filter(
-                    s -> s.toString().matches(pattern)
-            ).map(Response::bulkString).collect(Collectors.toList()));
+            GlobPattern pattern =
+                    params().size() > 1 ? GlobPattern.compile(params().get(1)) : GlobPattern.compile("*");
+            return Response.array(base().getChannels().stream().filter(pattern::matches)
+                    .map(Response::bulkString).collect(Collectors.toList()));
         } else if ("numpat".equalsIgnoreCase(subcommand.toString())) {
             return Response.integer(base().getNumpat());
         } else {
@@ -0,0 +1,36 @@
+package com.github.fppt.jedismock.operations.server;
+
+import com.github.fppt.jedismock.datastructures.Slice;
+import com.github.fppt.jedismock.operations.RedisCommand;
+import com.github.fppt.jedismock.operations.RedisOperation;
+import com.github.fppt.jedismock.server.Response;
+import com.github.fppt.jedismock.storage.AppendOnlyFile;
+import com.github.fppt.jedismock.storage.OperationExecutorState;
+
+/**
+ * The command holds the server lock only while a snapshot of the databases is taken, which is then
+ * encoded and written to the new file in background.
+ */
+@RedisCommand("bgrewriteaof")
+class BGRewriteAof implements RedisOperation {
+    private static final Slice STARTED = Slice.create("+Background append only file rewriting started"
+            + Response.LINE_SEPARATOR);
+
+    private final OperationExecutorState state;
+
+    BGRewriteAof(OperationExecutorState state) {
+        this.state = state;
+    }
+
+    @Override
+    public Slice execute() {
+        AppendOnlyFile appendOnlyFile = state.appendOnlyFile();
+        if (!appendOnlyFile.isEnabled()) {
+            return Response.error("ERR append only file is not configured, see ServiceOptions.withAppendOnlyFile");
+        }
+        if (!appendOnlyFile.backgroundRewrite()) {
+            return Response.error("ERR Background append only file rewriting already in progress");
+        }
+        return STARTED;
+    }
+}
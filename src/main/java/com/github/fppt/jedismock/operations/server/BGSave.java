@@ -0,0 +1,35 @@
+package com.github.fppt.jedismock.operations.server;
+
+import com.github.fppt.jedismock.datastructures.Slice;
+import com.github.fppt.jedismock.operations.RedisCommand;
+import com.github.fppt.jedismock.operations.RedisOperation;
+import com.github.fppt.jedismock.server.Response;
+import com.github.fppt.jedismock.storage.DumpFile;
+import com.github.fppt.jedismock.storage.OperationExecutorState;
+
+/**
+ * The command holds the server lock only while a snapshot of the databases is taken, which is then
+ * encoded and written to the file in background.
+ */
+@RedisCommand("bgsave")
+class BGSave implements RedisOperation {
+    private static final Slice STARTED = Slice.create("+Background saving started" + Response.LINE_SEPARATOR);
+
+    private final OperationExecutorState state;
+
+    BGSave(OperationExecutorState state) {
+        this.state = state;
+    }
+
+    @Override
+    public Slice execute() {
+        DumpFile dumpFile = state.dumpFile();
+        if (dumpFile.getPath() == null) {
+            return Response.error(Save.NOT_CONFIGURED_ERROR);
+        }
+        if (!dumpFile.backgroundSave()) {
+            return Response.error(Save.IN_PROGRESS_ERROR);
+        }
+        return STARTED;
+    }
+}
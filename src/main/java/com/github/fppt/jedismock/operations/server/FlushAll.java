@@ -1,22 +1,41 @@
 package com.github.fppt.jedismock.operations.server;
 
+import com.github.fppt.jedismock.exception.ArgumentException;
 import com.github.fppt.jedismock.operations.RedisCommand;
 import com.github.fppt.jedismock.operations.RedisOperation;
 import com.github.fppt.jedismock.server.Response;
 import com.github.fppt.jedismock.datastructures.Slice;
 import com.github.fppt.jedismock.storage.OperationExecutorState;
 
+import java.util.List;
+
 @RedisCommand(value = "flushall")
 class FlushAll implements RedisOperation {
     private final OperationExecutorState state;
+    private final List<Slice> params;
 
-    FlushAll(OperationExecutorState state) {
+    FlushAll(OperationExecutorState state, List<Slice> params) {
         this.state = state;
+        this.params = params;
+    }
+
+    /**
+     * @return whether ASYNC is specified, so that the keys are released by the lazy-free worker.
+     */
+    static boolean isAsync(List<Slice> params) {
+        if (params.isEmpty()) {
+            return false;
+        }
+        String mode = params.get(0).toString();
+        if (params.size() > 1 || !"async".equalsIgnoreCase(mode) && !"sync".equalsIgnoreCase(mode)) {
+            throw new ArgumentException("ERR syntax error");
+        }
+        return "async".equalsIgnoreCase(mode);
     }
 
     @Override
     public Slice execute() {
-        state.clearAll();
+        state.clearAll(isAsync(params));
         return Response.OK;
     }
 }
@@ -15,7 +15,7 @@ class FlushDB extends AbstractRedisOperation {
     }
 
     protected Slice response(){
-        base().clear();
+        base().clear(FlushAll.isAsync(params()));
         return Response.OK;
     }
 }
@@ -4,11 +4,51 @@ import com.github.fppt.jedismock.operations.RedisCommand;
 import com.github.fppt.jedismock.operations.RedisOperation;
 import com.github.fppt.jedismock.server.Response;
 import com.github.fppt.jedismock.datastructures.Slice;
+import com.github.fppt.jedismock.storage.LazyFree;
 
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Only the fields of the lazy-free worker are reported, in the sections of Redis.
+ */
 @RedisCommand(value = "info", transactional = false)
 class Info implements RedisOperation {
+    private final List<Slice> params;
+
+    Info(List<Slice> params) {
+        this.params = params;
+    }
+
+    private boolean isRequested(String section) {
+        if (params.isEmpty()) {
+            return true;
+        }
+        for (Slice param : params) {
+            String requested = param.toString();
+            if (section.equalsIgnoreCase(requested) || "all".equalsIgnoreCase(requested)
+                    || "default".equalsIgnoreCase(requested) || "everything".equalsIgnoreCase(requested)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     @Override
     public Slice execute() {
-        return Response.bulkString(Slice.create("Redis Mock Server Info"));
+        Map<String, String> sections = new LinkedHashMap<>();
+        sections.put("Memory", "lazyfree_pending_objects:" + LazyFree.pendingObjects() + Response.LINE_SEPARATOR);
+        sections.put("Stats", "lazyfreed_objects:" + LazyFree.freedObjects() + Response.LINE_SEPARATOR);
+        StringBuilder result = new StringBuilder();
+        sections.forEach((name, fields) -> {
+            if (isRequested(name)) {
+                if (result.length() > 0) {
+                    result.append(Response.LINE_SEPARATOR);
+                }
+                result.append("# ").append(name).append(Response.LINE_SEPARATOR).append(fields);
+            }
+        });
+        return Response.bulkString(Slice.create(result.toString()));
     }
 }
@@ -0,0 +1,21 @@
+package com.github.fppt.jedismock.operations.server;
+
+import com.github.fppt.jedismock.datastructures.Slice;
+import com.github.fppt.jedismock.operations.RedisCommand;
+import com.github.fppt.jedismock.operations.RedisOperation;
+import com.github.fppt.jedismock.server.Response;
+import com.github.fppt.jedismock.storage.OperationExecutorState;
+
+@RedisCommand("lastsave")
+class LastSave implements RedisOperation {
+    private final OperationExecutorState state;
+
+    LastSave(OperationExecutorState state) {
+        this.state = state;
+    }
+
+    @Override
+    public Slice execute() {
+        return Response.integer(state.dumpFile().getLastSave());
+    }
+}
@@ -0,0 +1,50 @@
+package com.github.fppt.jedismock.operations.server;
+
+import com.github.fppt.jedismock.datastructures.Slice;
+import com.github.fppt.jedismock.exception.ArgumentException;
+import com.github.fppt.jedismock.operations.AbstractRedisOperation;
+import com.github.fppt.jedismock.operations.RedisCommand;
+import com.github.fppt.jedismock.server.Response;
+import com.github.fppt.jedismock.storage.RedisBase;
+
+import java.util.List;
+
+import static com.github.fppt.jedismock.Utils.convertToInteger;
+
+/**
+ * Only MEMORY USAGE is supported.
+ */
+@RedisCommand("memory")
+class Memory extends AbstractRedisOperation {
+    private static final int DEFAULT_SAMPLES = 5;
+
+    Memory(RedisBase base, List<Slice> params) {
+        super(base, params);
+    }
+
+    @Override
+    protected int minArgs() {
+        return 1;
+    }
+
+    @Override
+    protected Slice response() {
+        String subcommand = params().get(0).toString();
+        if (!"usage".equalsIgnoreCase(subcommand) || params().size() != 2 && params().size() != 4) {
+            throw new ArgumentException(String.format("ERR unknown subcommand or wrong number of arguments for '%s'",
+                    subcommand));
+        }
+        int samples = DEFAULT_SAMPLES;
+        if (params().size() == 4) {
+            if (!"samples".equalsIgnoreCase(params().get(2).toString())) {
+                throw new ArgumentException("ERR syntax error");
+            }
+            samples = convertToInteger(params().get(3).toString());
+            if (samples < 0) {
+                throw new ArgumentException("ERR syntax error");
+            }
+        }
+        Long usage = base().memoryUsage(params().get(1), samples);
+        return usage == null ? Response.NULL : Response.integer(usage);
+    }
+}
@@ -2,17 +2,43 @@ package com.github.fppt.jedismock.operations.server;
 
 import com.github.fppt.jedismock.datastructures.Slice;
 import com.github.fppt.jedismock.operations.CommandFactory;
+import com.github.fppt.jedismock.operations.CommandKeys;
 import com.github.fppt.jedismock.operations.RedisOperation;
 import com.github.fppt.jedismock.server.RedisOperationExecutor;
 import com.github.fppt.jedismock.server.Response;
+import com.github.fppt.jedismock.storage.LockManager;
+import com.github.fppt.jedismock.storage.LockPlan;
+import com.github.fppt.jedismock.storage.MemoryLimit;
 import com.github.fppt.jedismock.storage.OperationExecutorState;
 import org.slf4j.LoggerFactory;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
 
 public class MockExecutor {
 
     private static final org.slf4j.Logger LOG = LoggerFactory.getLogger(RedisOperationExecutor.class);
+    private static final String OOM_ERROR = "OOM command not allowed when used memory > 'maxmemory'.";
+    /**
+     * Commands which may increase the used memory, rejected when the memory limit is exceeded
+     * ('denyoom' in Redis).
+     */
+    private static final Set<String> DENY_OOM = new HashSet<>(Arrays.asList("append", "bitfield", "bitop",
+            "blmove", "brpoplpush", "copy", "decr", "decrby", "geoadd", "georadius", "georadiusbymember",
+            "geosearchstore", "getset", "hincrby", "hincrbyfloat", "hmset", "hset", "hsetnx", "incr", "incrby",
+            "incrbyfloat", "linsert", "lmove", "lpush", "lpushx", "lset", "mset", "msetnx", "pfadd", "pfmerge",
+            "psetex", "restore", "rpoplpush", "rpush", "rpushx", "sadd", "sdiffstore", "set", "setbit", "setex",
+            "setnx", "setrange", "sinterstore", "sort", "sunionstore", "xadd", "zadd", "zdiffstore", "zincrby",
+            "zinterstore", "zrangestore", "zunionstore"));
+    /**
+     * Names of the commands which may access other databases than the selected one, looked for in the scripts.
+     */
+    private static final Pattern CROSS_DATABASE_COMMANDS =
+            Pattern.compile("select|swapdb|move|copy|flushall", Pattern.CASE_INSENSITIVE);
 
     /**
      * Proceed with execution, mocking the Redis behaviour.
@@ -21,35 +47,91 @@ public class MockExecutor {
      * @param commandParams Command parameters.
      */
     public static Slice proceed(OperationExecutorState state, String name, List<Slice> commandParams) {
+        LockManager locks = state.locks();
+        MemoryLimit memoryLimit = state.memoryLimit();
+        if (memoryLimit.isExceeded()) {
+            //Keys of any database may be evicted
+            try (LockManager.Held ignored = locks.acquire(LockPlan.server())) {
+                memoryLimit.evict();
+            }
+        }
+        LockPlan plan = locks.isFineGrained() ? lockPlan(state, name, commandParams) : LockPlan.server();
+        try (LockManager.Held ignored = locks.acquire(plan)) {
+            if (DENY_OOM.contains(name) && memoryLimit.isExceeded()) {
+                state.errorTransaction();
+                return Response.error(OOM_ERROR);
+            }
+            return state.appendOnlyFile().execute(state, name, commandParams,
+                    () -> execute(state, name, commandParams, plan));
+        }
+    }
 
-        synchronized (state.lock()) {
-            try {
-                //Checking if we are affecting the server or client state.
-                //This is done outside the context of a transaction which is why it's a separate check
-                RedisOperation operation = CommandFactory.buildOperation(name, false, state, commandParams);
-                if (operation != null) {
-                    return operation.execute();
-                }
+    private static Slice execute(OperationExecutorState state, String name, List<Slice> commandParams,
+                                 LockPlan plan) {
+        try {
+            //Checking if we are affecting the server or client state.
+            //This is done outside the context of a transaction which is why it's a separate check
+            RedisOperation operation = CommandFactory.buildOperation(name, false, state, commandParams);
+            if (operation != null) {
+                return operation.execute();
+            }
 
-                //Checking if we are mutating the transaction or the redisBases
-                operation = CommandFactory.buildOperation(name, true, state, commandParams);
-                if (operation != null) {
-                    if (state.isTransactionModeOn()) {
-                        state.tx().add(operation);
-                        return Response.clientResponse(name, Response.QUEUED);
-                    } else {
-                        return Response.clientResponse(name, operation.execute());
-                    }
+            //Checking if we are mutating the transaction or the redisBases
+            operation = CommandFactory.buildOperation(name, true, state, commandParams);
+            if (operation != null) {
+                if (state.isTransactionModeOn()) {
+                    state.tx().add(state.appendOnlyFile().queued(state, name, commandParams, operation));
+                    state.addTransactionLocks(plan);
+                    return Response.clientResponse(name, Response.QUEUED);
                 } else {
-                    state.errorTransaction();
-                    return Response.error(String.format("Unsupported operation: %s", name));
+                    return Response.clientResponse(name, operation.execute());
                 }
-            } catch (Exception e) {
-                LOG.error("Malformed request", e);
+            } else {
                 state.errorTransaction();
-                return Response.error(e.getMessage());
+                return Response.error(String.format("Unsupported operation: %s", name));
             }
+        } catch (Exception e) {
+            LOG.error("Malformed request", e);
+            state.errorTransaction();
+            return Response.error(e.getMessage());
+        }
+    }
+
+    /**
+     * Determines the locks a command needs in fine-grained locking mode.
+     */
+    private static LockPlan lockPlan(OperationExecutorState state, String name, List<Slice> commandParams) {
+        int database = state.getSelected();
+        if ("exec".equals(name)) {
+            //Reading the plan is safe, since it is only modified by the thread serving this connection
+            LockPlan transactionLocks = state.getTransactionLocks();
+            return transactionLocks == null ? LockPlan.keys(database, Collections.emptyList()) : transactionLocks;
+        }
+        if (!CommandFactory.exists(name)) {
+            return LockPlan.server();
+        }
+        List<Slice> keys = CommandKeys.keys(name, commandParams);
+        if ("eval".equals(name) || "evalsha".equals(name)) {
+            //Scripts may access keys they do not declare, and even other databases
+            return mayLeaveDatabase(state, name, commandParams) ? LockPlan.server() : LockPlan.database(database);
+        }
+        if (CommandFactory.usesExecutorState(name)) {
+            return LockPlan.server();
+        }
+        return keys == null ? LockPlan.database(database) : LockPlan.keys(database, keys);
+    }
+
+    /**
+     * @return false if the script certainly calls no commands which access other databases.
+     */
+    private static boolean mayLeaveDatabase(OperationExecutorState state, String name, List<Slice> commandParams) {
+        if (commandParams.isEmpty()) {
+            return false;
         }
+        String script = "eval".equals(name)
+                ? commandParams.get(0).toString()
+                : state.base().getCachedLuaScript(commandParams.get(0).toString());
+        return script == null || CROSS_DATABASE_COMMANDS.matcher(script).find();
     }
 
     /**
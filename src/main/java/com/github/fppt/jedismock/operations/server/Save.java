@@ -0,0 +1,39 @@
+package com.github.fppt.jedismock.operations.server;
+
+import com.github.fppt.jedismock.datastructures.Slice;
+import com.github.fppt.jedismock.operations.RedisCommand;
+import com.github.fppt.jedismock.operations.RedisOperation;
+import com.github.fppt.jedismock.server.Response;
+import com.github.fppt.jedismock.storage.DumpFile;
+import com.github.fppt.jedismock.storage.OperationExecutorState;
+
+import java.io.IOException;
+
+@RedisCommand("save")
+class Save implements RedisOperation {
+    static final String IN_PROGRESS_ERROR = "ERR Background save already in progress";
+    static final String NOT_CONFIGURED_ERROR = "ERR dump file is not configured, see ServiceOptions.withDumpFile";
+
+    private final OperationExecutorState state;
+
+    Save(OperationExecutorState state) {
+        this.state = state;
+    }
+
+    @Override
+    public Slice execute() {
+        DumpFile dumpFile = state.dumpFile();
+        if (dumpFile.getPath() == null) {
+            return Response.error(NOT_CONFIGURED_ERROR);
+        }
+        if (dumpFile.isBackgroundSaveInProgress()) {
+            return Response.error(IN_PROGRESS_ERROR);
+        }
+        try {
+            dumpFile.save();
+        } catch (IOException e) {
+            return Response.error("ERR " + e.getMessage());
+        }
+        return Response.OK;
+    }
+}
@@ -19,7 +19,7 @@ class SAdd extends AbstractRedisOperation {
     @Override
     protected Slice response() {
         Slice key = params().get(0);
-        RMSet setDBObj = getSetFromBaseOrCreateEmpty(key);
+        RMSet setDBObj = getModifiableSetFromBaseOrCreateEmpty(key);
         Set<Slice> set = setDBObj.getStoredData();
 
         int count = 0;
@@ -33,7 +33,7 @@ class SPop extends AbstractRedisOperation {
 
     protected Slice response() {
         Slice key = params().get(0);
-        Set<Slice> set = getSetFromBaseOrCreateEmpty(key).getStoredData();
+        Set<Slice> set = getModifiableSetFromBaseOrCreateEmpty(key).getStoredData();
 
         int numberOfElementsToBeRemoved = params().size() > 1
                 ? convertToInteger(params().get(1).toString())
@@ -20,7 +20,7 @@ class SRem extends AbstractRedisOperation {
 
     final int remove() {
         Slice key = params().get(0);
-        RMSet setDBObj = getSetFromBaseOrCreateEmpty(key);
+        RMSet setDBObj = getModifiableSetFromBaseOrCreateEmpty(key);
         Set<Slice> set = setDBObj.getStoredData();
         if (set == null) {
             return 0;
@@ -1,5 +1,6 @@
 package com.github.fppt.jedismock.operations.sets;
 
+import com.github.fppt.jedismock.GlobPattern;
 import com.github.fppt.jedismock.datastructures.RMSet;
 import com.github.fppt.jedismock.operations.RedisCommand;
 import com.github.fppt.jedismock.operations.keys.Scan;
@@ -9,7 +10,6 @@ import com.github.fppt.jedismock.storage.RedisBase;
 
 import java.util.List;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 @RedisCommand("sscan")
 class SScan extends Scan {
@@ -27,14 +27,13 @@ class SScan extends Scan {
     }
 
     @Override
-    protected List<Slice> getMatchingValues(String regex, long cursor, long count) {
+    protected long scan(GlobPattern match, long cursor, long count, List<Slice> result) {
         RMSet setDBObj = getSetFromBaseOrCreateEmpty(keySlice);
         Set<Slice> set = setDBObj.getStoredData();
-        this.size = set.size();
-        return set.stream().skip(cursor)
-                .limit(count)
-                .filter(x -> x.toString().matches(regex))
-                .map(Response::bulkString)
-                .collect(Collectors.toList());
+        return scan(set, setDBObj::scanIndex, cursor, count, member -> {
+            if (match.matches(member)) {
+                result.add(Response.bulkString(member));
+            }
+        });
     }
 }
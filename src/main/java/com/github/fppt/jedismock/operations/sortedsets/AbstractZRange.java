@@ -4,23 +4,21 @@ import com.github.fppt.jedismock.datastructures.RMZSet;
 import com.github.fppt.jedismock.datastructures.Slice;
 import com.github.fppt.jedismock.datastructures.ZSetEntry;
 import com.github.fppt.jedismock.datastructures.ZSetEntryBound;
+import com.github.fppt.jedismock.datastructures.ZSetRange;
 import com.github.fppt.jedismock.exception.ArgumentException;
+import com.github.fppt.jedismock.server.RespWriter;
 import com.github.fppt.jedismock.server.Response;
 import com.github.fppt.jedismock.storage.RedisBase;
 
 import java.util.ArrayList;
 import java.util.EnumSet;
 import java.util.List;
-import java.util.NavigableSet;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import static com.github.fppt.jedismock.Utils.convertToLong;
 import static com.github.fppt.jedismock.operations.sortedsets.AbstractZRange.Options.LIMIT;
 import static com.github.fppt.jedismock.operations.sortedsets.AbstractZRange.Options.REV;
 import static com.github.fppt.jedismock.operations.sortedsets.AbstractZRange.Options.WITHSCORES;
 import static com.github.fppt.jedismock.operations.sortedsets.AbstractZRange.Options.values;
-import static java.util.Collections.emptyNavigableSet;
 
 abstract class AbstractZRange extends AbstractByScoreOperation {
 
@@ -47,12 +45,8 @@ abstract class AbstractZRange extends AbstractByScoreOperation {
     protected abstract ZSetEntryBound getStartBound(Slice start);
     protected abstract ZSetEntryBound getEndBound(Slice end);
 
-    protected NavigableSet<ZSetEntry> getRange(ZSetEntryBound start, ZSetEntryBound end) {
-        if (mapDBObj.isEmpty()) {
-            return emptyNavigableSet();
-        }
-
-        NavigableSet<ZSetEntry> subset =
+    protected ZSetRange getRange(ZSetEntryBound start, ZSetEntryBound end) {
+        ZSetRange subset =
                 mapDBObj.subset(start, end);
         if (options.contains(REV)) {
             subset = subset.descendingSet();
@@ -61,67 +55,35 @@ abstract class AbstractZRange extends AbstractByScoreOperation {
 
     }
 
-    protected Slice getSliceFromRange(NavigableSet<ZSetEntry> entries) {
-        final List<Slice> list;
+    protected Slice getSliceFromRange(ZSetRange entries) {
+        List<ZSetEntry> range = new ArrayList<>();
         if (options.contains(LIMIT)) {
-            if (count == -1) {
-                if (options.contains(WITHSCORES)) {
-                    list = entries.stream()
-                            .skip(offset)
-                            .flatMap(AbstractZRange::getSliceStream)
-                            .map(Response::bulkString)
-                            .collect(Collectors.toList());
-                } else {
-                    list = entries.stream()
-                            .skip(offset)
-                            .map(ZSetEntry::getValue)
-                            .map(Response::bulkString)
-                            .collect(Collectors.toList());
-                }
-            } else {
-                if (options.contains(WITHSCORES)) {
-                    list = entries.stream()
-                            .skip(offset)
-                            .limit(count)
-                            .flatMap(AbstractZRange::getSliceStream)
-                            .map(Response::bulkString)
-                            .collect(Collectors.toList());
-                } else {
-                    list = entries.stream()
-                            .skip(offset)
-                            .limit(count)
-                            .map(ZSetEntry::getValue)
-                            .map(Response::bulkString)
-                            .collect(Collectors.toList());
+            //The entries are skipped by rank rather than one by one
+            for (ZSetEntry entry : entries.skip(offset)) {
+                if (count >= 0 && range.size() >= count) {
+                    break;
                 }
-
+                range.add(entry);
             }
         } else {
-            if (options.contains(WITHSCORES)) {
-                list = entries.stream()
-                        .flatMap(AbstractZRange::getSliceStream)
-                        .map(Response::bulkString)
-                        .collect(Collectors.toList());
-            } else {
-                list = entries.stream()
-                        .map(ZSetEntry::getValue)
-                        .map(Response::bulkString)
-                        .collect(Collectors.toList());
+            range.addAll(entries);
+        }
+        boolean withScores = options.contains(WITHSCORES);
+        RespWriter writer = new RespWriter().arrayHeader(withScores ? range.size() * 2 : range.size());
+        for (ZSetEntry e : range) {
+            writer.bulkString(e.getValue());
+            if (withScores) {
+                writer.bulkString(formatScore(e.getScore()));
             }
         }
-
-        return Response.array(list);
+        return writer.toSlice();
     }
 
-    protected static Stream<Slice> getSliceStream(ZSetEntry e) {
-        if (e.getScore() % 1 == 0) {
-            return Stream.of(
-                    e.getValue(),
-                    Slice.create(String.format("%.0f", e.getScore())));
+    protected static String formatScore(double score) {
+        if (score % 1 == 0) {
+            return String.format("%.0f", score);
         }
-        return Stream.of(
-                e.getValue(),
-                Slice.create(String.valueOf(e.getScore())));
+        return String.valueOf(score);
     }
 
     protected final void parseArgs() {
@@ -141,12 +103,8 @@ abstract class AbstractZRange extends AbstractByScoreOperation {
         }
     }
 
-    protected Slice remRangeFromKey(NavigableSet<ZSetEntry> entries) {
-        int count = 0;
-        for (ZSetEntry entry : new ArrayList<>(entries)) {
-            mapDBObj.remove(entry.getValue());
-            count++;
-        }
+    protected Slice remRangeFromKey(ZSetRange entries) {
+        int count = mapDBObj.remove(entries);
         if (mapDBObj.isEmpty()) {
             base().deleteValue(key);
         } else {
@@ -6,7 +6,6 @@ import com.github.fppt.jedismock.datastructures.ZSetEntryBound;
 import com.github.fppt.jedismock.storage.RedisBase;
 
 import java.util.List;
-import java.util.stream.Collectors;
 
 import static com.github.fppt.jedismock.Utils.convertToInteger;
 import static com.github.fppt.jedismock.operations.sortedsets.AbstractZRange.Options.REV;
@@ -19,11 +18,7 @@ abstract class AbstractZRangeByIndex extends AbstractZRange {
 
     @Override
     public final ZSetEntryBound getStartBound(Slice startSlice) {
-        ZSetEntry entry = mapDBObj.entries(options.contains(REV)).stream()
-                .skip(convertToInteger(startSlice.toString()))
-                .limit(1)
-                .collect(Collectors.toList())
-                .get(0);
+        ZSetEntry entry = mapDBObj.entries(options.contains(REV)).get(convertToInteger(startSlice.toString()));
         return new ZSetEntryBound(entry, true);
     }
 
@@ -5,7 +5,7 @@ import com.github.fppt.jedismock.datastructures.Slice;
 import com.github.fppt.jedismock.exception.ArgumentException;
 import com.github.fppt.jedismock.operations.RedisCommand;
 import com.github.fppt.jedismock.server.Response;
-import com.github.fppt.jedismock.storage.OperationExecutorState;
+import com.github.fppt.jedismock.storage.RedisBase;
 
 import java.util.EnumSet;
 import java.util.Iterator;
@@ -24,16 +24,14 @@ class ZAdd extends AbstractByScoreOperation {
     enum Options {
         XX, NX, LT, GT, CH, INCR
     }
-    private final Object lock;
 
     private final EnumSet<Options> options = EnumSet.noneOf(Options.class);
 
     private int countAdd = 0;
     private int countChange = 0;
 
-    ZAdd(OperationExecutorState state, List<Slice> params) {
-        super(state.base(), params);
-        this.lock = state.lock();
+    ZAdd(RedisBase base, List<Slice> params) {
+        super(base, params);
     }
 
     @Override
@@ -55,7 +53,7 @@ class ZAdd extends AbstractByScoreOperation {
 
     private Slice incr() {
         Slice key = params().get(0);
-        final RMZSet mapDBObj = getZSetFromBaseOrCreateEmpty(key);
+        final RMZSet mapDBObj = getModifiableZSetFromBaseOrCreateEmpty(key);
         if (params().size() != 3) {
             throw new ArgumentException("ERR INCR option supports a single increment-element pair");
         }
@@ -71,7 +69,6 @@ class ZAdd extends AbstractByScoreOperation {
             if (countChange + countAdd > 0) {
                 mapDBObj.put(member, newScore);
                 base().putValue(key, mapDBObj);
-                lock.notifyAll();
                 return Response.bulkString(Slice.create(String.valueOf(newScore)));
             }
         }
@@ -80,7 +77,7 @@ class ZAdd extends AbstractByScoreOperation {
 
     private Slice adding() {
         Slice key = params().get(0);
-        final RMZSet mapDBObj = getZSetFromBaseOrCreateEmpty(key);
+        final RMZSet mapDBObj = getModifiableZSetFromBaseOrCreateEmpty(key);
         if (((params().size()) & 1) == 0) {
             throw new ArgumentException("ERR syntax error");
         }
@@ -98,7 +95,6 @@ class ZAdd extends AbstractByScoreOperation {
         }
         if (countAdd + countChange > 0) {
             base().putValue(key, mapDBObj);
-            lock.notifyAll();
         }
         return options.contains(CH) ? Response.integer(countAdd + countChange) :
                 Response.integer(countAdd);
@@ -33,7 +33,7 @@ public class ZIncrBy extends AbstractByScoreOperation {
         Slice key = params().get(0);
         String increment = params().get(1).toString();
         Slice member = params().get(2);
-        final RMZSet mapDBObj = getZSetFromBaseOrCreateEmpty(key);
+        final RMZSet mapDBObj = getModifiableZSetFromBaseOrCreateEmpty(key);
         double score = (mapDBObj.getScore(member) == null) ? 0d :
                 mapDBObj.getScore(member);
 
@@ -39,7 +39,7 @@ public class ZMPop extends ZPop {
     protected Slice getResult() {
         for (int i = 0; i < numKeys; i++) {
             Slice key = params().get(i + 1);
-            RMZSet mapDBObj = getZSetFromBaseOrCreateEmpty(key);
+            RMZSet mapDBObj = getModifiableZSetFromBaseOrCreateEmpty(key);
             if (!mapDBObj.isEmpty()) {
                 List<Slice> newParams = new ArrayList<>();
                 newParams.add(key);
@@ -36,7 +36,7 @@ class ZPop extends AbstractByScoreOperation {
         }
 
         final Slice key = params().get(0);
-        final RMZSet mapDBObj = getZSetFromBaseOrCreateEmpty(key);
+        final RMZSet mapDBObj = getModifiableZSetFromBaseOrCreateEmpty(key);
         List<Slice> result = new ArrayList<>();
         if (mapDBObj.isEmpty()) {
             return result;
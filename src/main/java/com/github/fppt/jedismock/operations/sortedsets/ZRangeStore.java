@@ -3,14 +3,14 @@ package com.github.fppt.jedismock.operations.sortedsets;
 import com.github.fppt.jedismock.datastructures.RMZSet;
 import com.github.fppt.jedismock.datastructures.Slice;
 import com.github.fppt.jedismock.datastructures.ZSetEntry;
+import com.github.fppt.jedismock.datastructures.ZSetRange;
 import com.github.fppt.jedismock.exception.ArgumentException;
 import com.github.fppt.jedismock.operations.RedisCommand;
 import com.github.fppt.jedismock.server.Response;
-import com.github.fppt.jedismock.storage.OperationExecutorState;
+import com.github.fppt.jedismock.storage.RedisBase;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.NavigableSet;
 
 import static com.github.fppt.jedismock.operations.sortedsets.AbstractZRange.Options.BYLEX;
 import static com.github.fppt.jedismock.operations.sortedsets.AbstractZRange.Options.BYSCORE;
@@ -20,11 +20,9 @@ import static com.github.fppt.jedismock.operations.sortedsets.AbstractZRange.Opt
 
 @RedisCommand("zrangestore")
 class ZRangeStore extends AbstractZRangeByIndex {
-    private final Object lock;
 
-    ZRangeStore(OperationExecutorState state, List<Slice> params) {
-        super(state.base(), params);
-        this.lock = state.lock();
+    ZRangeStore(RedisBase base, List<Slice> params) {
+        super(base, params);
     }
 
     @Override
@@ -75,29 +73,21 @@ class ZRangeStore extends AbstractZRangeByIndex {
             return Response.integer(0);
         }
 
-        NavigableSet<ZSetEntry> entries = getRange(getStartBound(Slice.create(String.valueOf(startIndex))), getStartBound(Slice.create(String.valueOf(endIndex))));
+        ZSetRange entries = getRange(getStartBound(Slice.create(String.valueOf(startIndex))), getStartBound(Slice.create(String.valueOf(endIndex))));
 
         return saveToNewKey(keyDest, entries);
     }
 
-    private Slice saveToNewKey(Slice keyDest, NavigableSet<ZSetEntry> entries) {
+    private Slice saveToNewKey(Slice keyDest, ZSetRange entries) {
         RMZSet resultZSet = new RMZSet();
         if (options.contains(LIMIT)) {
-            int tempOffset = 0;
             int tempCount = 0;
-            for (ZSetEntry entry : entries) {
-                if (tempOffset < offset) {
-                    tempOffset++;
-                    continue;
-                }
-                if (count == -1) {
-                    resultZSet.put(entry.getValue(), entry.getScore());
-                } else if (tempCount < count) {
-                    resultZSet.put(entry.getValue(), entry.getScore());
-                    tempCount++;
-                } else {
+            for (ZSetEntry entry : entries.skip(offset)) {
+                if (count >= 0 && tempCount >= count) {
                     break;
                 }
+                resultZSet.put(entry.getValue(), entry.getScore());
+                tempCount++;
             }
         } else {
             for (ZSetEntry entry : entries) {
@@ -107,7 +97,6 @@ class ZRangeStore extends AbstractZRangeByIndex {
         base().deleteValue(keyDest);
         if (resultZSet.size() > 0) {
             base().putValue(keyDest, resultZSet);
-            lock.notifyAll();
         }
         return Response.integer(resultZSet.size());
     }
@@ -2,7 +2,6 @@ package com.github.fppt.jedismock.operations.sortedsets;
 
 import com.github.fppt.jedismock.datastructures.RMZSet;
 import com.github.fppt.jedismock.datastructures.Slice;
-import com.github.fppt.jedismock.datastructures.ZSetEntry;
 import com.github.fppt.jedismock.operations.RedisCommand;
 import com.github.fppt.jedismock.server.Response;
 import com.github.fppt.jedismock.storage.RedisBase;
@@ -37,8 +36,7 @@ public class ZRank extends AbstractByScoreOperation {
                     : Response.NULL;
         }
 
-        int rank = mapDBObj.entries(isRev)
-                .headSet(new ZSetEntry(mapDBObj.getScore(member), member)).size();
+        int rank = mapDBObj.rank(member, isRev);
         return withScores
                 ? Response.array(Stream.of(Response.integer(rank),
                             Response.integer(Math.round(mapDBObj.getScore(member))))
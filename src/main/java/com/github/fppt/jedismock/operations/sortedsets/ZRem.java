@@ -18,7 +18,7 @@ class ZRem extends AbstractRedisOperation {
 
     protected Slice response() {
         Slice key = params().get(0);
-        final RMZSet mapDBObj = getZSetFromBaseOrCreateEmpty(key);
+        final RMZSet mapDBObj = getModifiableZSetFromBaseOrCreateEmpty(key);
         if (mapDBObj.isEmpty()) {
             return Response.integer(0);
         }
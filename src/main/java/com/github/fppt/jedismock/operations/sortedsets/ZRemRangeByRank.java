@@ -18,7 +18,7 @@ public class ZRemRangeByRank extends AbstractZRangeByIndex {
     protected Slice response() {
         expectNoOptions();
         key = params().get(0);
-        mapDBObj = getZSetFromBaseOrCreateEmpty(key);
+        mapDBObj = getModifiableZSetFromBaseOrCreateEmpty(key);
 
         if (checkWrongIndex()) {
             return Response.integer(0);
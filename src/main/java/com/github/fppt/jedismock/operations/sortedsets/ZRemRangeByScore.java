@@ -17,7 +17,7 @@ public class ZRemRangeByScore extends AbstractZRangeByScore {
     protected Slice response() {
         expectNoOptions();
         key = params().get(0);
-        mapDBObj = getZSetFromBaseOrCreateEmpty(key);
+        mapDBObj = getModifiableZSetFromBaseOrCreateEmpty(key);
 
         final Slice start = params().get(1);
         final Slice end = params().get(2);
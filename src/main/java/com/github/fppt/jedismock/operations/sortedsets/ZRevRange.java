@@ -1,14 +1,13 @@
 package com.github.fppt.jedismock.operations.sortedsets;
 
 import com.github.fppt.jedismock.datastructures.Slice;
-import com.github.fppt.jedismock.datastructures.ZSetEntry;
+import com.github.fppt.jedismock.datastructures.ZSetRange;
 import com.github.fppt.jedismock.exception.ArgumentException;
 import com.github.fppt.jedismock.operations.RedisCommand;
 import com.github.fppt.jedismock.server.Response;
 import com.github.fppt.jedismock.storage.RedisBase;
 
 import java.util.List;
-import java.util.NavigableSet;
 
 import static com.github.fppt.jedismock.operations.sortedsets.AbstractZRange.Options.BYLEX;
 import static com.github.fppt.jedismock.operations.sortedsets.AbstractZRange.Options.BYSCORE;
@@ -34,7 +33,7 @@ class ZRevRange extends AbstractZRangeByIndex {
             return Response.EMPTY_ARRAY;
         }
 
-        NavigableSet<ZSetEntry> entries = getRange(
+        ZSetRange entries = getRange(
                 getStartBound(Slice.create(String.valueOf(endIndex))),
                 getEndBound(Slice.create(String.valueOf(startIndex))));
 
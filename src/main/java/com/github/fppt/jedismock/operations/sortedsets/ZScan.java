@@ -1,5 +1,6 @@
 package com.github.fppt.jedismock.operations.sortedsets;
 
+import com.github.fppt.jedismock.GlobPattern;
 import com.github.fppt.jedismock.datastructures.RMZSet;
 import com.github.fppt.jedismock.datastructures.Slice;
 import com.github.fppt.jedismock.operations.RedisCommand;
@@ -7,8 +8,6 @@ import com.github.fppt.jedismock.operations.keys.Scan;
 import com.github.fppt.jedismock.server.Response;
 import com.github.fppt.jedismock.storage.RedisBase;
 
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 import java.util.List;
 
 @RedisCommand("zscan")
@@ -25,16 +24,14 @@ class ZScan extends Scan {
     }
 
     @Override
-    protected List<Slice> getMatchingValues(String regex, long cursor, long count) {
+    protected long scan(GlobPattern match, long cursor, long count, List<Slice> result) {
         RMZSet mapDBObj = getZSetFromBaseOrCreateEmpty(keySlice);
-        return mapDBObj.entries(false).stream()
-                .skip(cursor)
-                .limit(count)
-                .filter(e -> e.getValue().toString().matches(regex))
-                .flatMap(e -> Stream.of(e.getValue(),
-                        Slice.create(String.valueOf(e.getScore()))))
-                .map(Response::bulkString)
-                .collect(Collectors.toList());
+        return scan(mapDBObj.members(), mapDBObj::scanIndex, cursor, count, member -> {
+            if (match.matches(member)) {
+                result.add(Response.bulkString(member));
+                result.add(Response.bulkString(Slice.create(String.valueOf(mapDBObj.getScore(member)))));
+            }
+        });
     }
 
 }
@@ -5,7 +5,7 @@ import com.github.fppt.jedismock.datastructures.Slice;
 import com.github.fppt.jedismock.datastructures.ZSetEntry;
 import com.github.fppt.jedismock.exception.ArgumentException;
 import com.github.fppt.jedismock.server.Response;
-import com.github.fppt.jedismock.storage.OperationExecutorState;
+import com.github.fppt.jedismock.storage.RedisBase;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -28,11 +28,8 @@ abstract class ZStore extends AbstractByScoreOperation {
 
     protected boolean withScores = false;
 
-    private final Object lock;
-
-    ZStore(OperationExecutorState state, List<Slice> params) {
-        super(state.base(), params);
-        this.lock = state.lock();
+    ZStore(RedisBase base, List<Slice> params) {
+        super(base, params);
     }
 
     protected abstract RMZSet getResult(RMZSet zset1, RMZSet zset2, double weight);
@@ -171,7 +168,6 @@ abstract class ZStore extends AbstractByScoreOperation {
         RMZSet mapDBObj = getFinishedZSet();
         if (!mapDBObj.isEmpty()) {
             base().putValue(keyDest, mapDBObj);
-            lock.notifyAll();
         }
         return mapDBObj.size();
     }
@@ -3,15 +3,15 @@ package com.github.fppt.jedismock.operations.sortedsets;
 import com.github.fppt.jedismock.datastructures.Slice;
 import com.github.fppt.jedismock.operations.RedisCommand;
 import com.github.fppt.jedismock.server.Response;
-import com.github.fppt.jedismock.storage.OperationExecutorState;
+import com.github.fppt.jedismock.storage.RedisBase;
 
 import java.util.List;
 
 @RedisCommand("zunionstore")
 class ZUnionStore extends AbstractZUnion {
 
-    ZUnionStore(OperationExecutorState state, List<Slice> params) {
-        super(state, params);
+    ZUnionStore(RedisBase base, List<Slice> params) {
+        super(base, params);
     }
 
     @Override
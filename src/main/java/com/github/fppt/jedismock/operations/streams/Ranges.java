@@ -7,6 +7,7 @@ import com.github.fppt.jedismock.datastructures.streams.SequencedMapIterator;
 import com.github.fppt.jedismock.datastructures.streams.StreamId;
 import com.github.fppt.jedismock.exception.WrongStreamKeyException;
 import com.github.fppt.jedismock.operations.AbstractRedisOperation;
+import com.github.fppt.jedismock.server.RespWriter;
 import com.github.fppt.jedismock.server.Response;
 import com.github.fppt.jedismock.storage.RedisBase;
 
@@ -115,30 +116,23 @@ public class Ranges extends AbstractRedisOperation {
                 ? map.iterator(start)
                 : map.reverseIterator(start);
 
-        List<Slice> output = new ArrayList<>();
+        List<Map.Entry<StreamId, SequencedMap<Slice, Slice>>> output = new ArrayList<>();
 
         int entriesAdded = 1;
 
         while (it.hasNext() && entriesAdded++ <= count) {
-            List<Slice> entrySlice = new ArrayList<>();
             Map.Entry<StreamId, SequencedMap<Slice, Slice>> entry = it.next();
 
             if (multiplier * entry.getKey().compareTo(end) > 0) {
                 break;
             }
 
-            entry.getValue().forEach((key, value) -> {
-                entrySlice.add(Response.bulkString(key));
-                entrySlice.add(Response.bulkString(value));
-            });
-
-            output.add(Response.array(
-                    Response.bulkString(entry.getKey().toSlice()),
-                    Response.array(entrySlice)
-            ));
+            output.add(entry);
         }
 
-        return Response.array(output);
+        RespWriter writer = new RespWriter();
+        StreamEntries.write(writer, output);
+        return writer.toSlice();
     }
 
     @Override
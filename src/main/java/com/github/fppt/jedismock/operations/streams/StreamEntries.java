@@ -0,0 +1,30 @@
+package com.github.fppt.jedismock.operations.streams;
+
+import com.github.fppt.jedismock.datastructures.Slice;
+import com.github.fppt.jedismock.datastructures.streams.SequencedMap;
+import com.github.fppt.jedismock.datastructures.streams.StreamId;
+import com.github.fppt.jedismock.server.RespWriter;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encoding of stream entries in replies.
+ */
+final class StreamEntries {
+    private StreamEntries() {
+    }
+
+    /**
+     * Writes entries as an array of {@code [id, [field, value, ...]]} pairs.
+     */
+    static void write(RespWriter writer, List<Map.Entry<StreamId, SequencedMap<Slice, Slice>>> entries) {
+        writer.arrayHeader(entries.size());
+        for (Map.Entry<StreamId, SequencedMap<Slice, Slice>> entry : entries) {
+            writer.arrayHeader(2)
+                    .bulkString(entry.getKey().toSlice())
+                    .arrayHeader(entry.getValue().size() * 2);
+            entry.getValue().forEach((field, value) -> writer.bulkString(field).bulkString(value));
+        }
+    }
+}
@@ -51,7 +51,7 @@ public class XAdd extends AbstractRedisOperation {
     @Override
     protected Slice response() {
         Slice key = params().get(0);
-        RMStream stream = getStreamFromBaseOrCreateEmpty(key);
+        RMStream stream = getModifiableStreamFromBaseOrCreateEmpty(key);
         SequencedMap<StreamId, SequencedMap<Slice, Slice>> map = stream.getStoredData();
 
         int idInd = 1; // 'id' index
@@ -29,7 +29,8 @@ public class XDel extends AbstractRedisOperation {
     @Override
     protected Slice response() {
         Slice key = params().get(0);
-        SequencedMap<StreamId, SequencedMap<Slice, Slice>> map = getStreamFromBaseOrCreateEmpty(key).getStoredData();
+        SequencedMap<StreamId, SequencedMap<Slice, Slice>> map =
+                getModifiableStreamFromBaseOrCreateEmpty(key).getStoredData();
 
         List<StreamId> idsToBeDeleted = new ArrayList<>();
         try {
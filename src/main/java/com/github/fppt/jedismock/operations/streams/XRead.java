@@ -7,10 +7,14 @@ import com.github.fppt.jedismock.datastructures.streams.StreamId;
 import com.github.fppt.jedismock.exception.WrongStreamKeyException;
 import com.github.fppt.jedismock.operations.AbstractRedisOperation;
 import com.github.fppt.jedismock.operations.RedisCommand;
+import com.github.fppt.jedismock.server.RespWriter;
 import com.github.fppt.jedismock.server.Response;
+import com.github.fppt.jedismock.storage.BlockedClients;
+import com.github.fppt.jedismock.storage.LockManager;
 import com.github.fppt.jedismock.storage.OperationExecutorState;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -25,15 +29,31 @@ import static com.github.fppt.jedismock.datastructures.streams.StreamErrors.XREA
  */
 @RedisCommand("xread")
 public class XRead extends AbstractRedisOperation {
-    private final Object lock;
+    private final LockManager locks;
     private final boolean isInTransaction;
 
     public XRead(OperationExecutorState state, List<Slice> params) {
         super(state.base(), params);
-        lock = state.lock();
+        locks = state.locks();
         isInTransaction = state.isTransactionModeOn();
     }
 
+    /**
+     * @return true if any of the streams has entries after the given id.
+     */
+    private boolean hasNewEntries(SequencedMap<Slice, StreamId> mapKeyToBeginEntryId) {
+        for (Map.Entry<Slice, StreamId> entry : mapKeyToBeginEntryId) {
+            if (base().exists(entry.getKey())
+                    && entry.getValue()
+                    .compareTo(getStreamFromBaseOrCreateEmpty(entry.getKey())
+                            .getStoredData()
+                            .getTail()) < 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     @Override
     protected int minArgs() {
         return 3;
@@ -104,61 +124,30 @@ public class XRead extends AbstractRedisOperation {
             }
         }
 
-        List<Slice> output = new ArrayList<>();
-
         /* Blocking */
-        long waitEnd = System.nanoTime() + blockTimeNanosec;
-        long waitTimeNanos;
-
-        if (isBlocking) {
-            boolean updated = false; // should be unblocked after XADD was invoked
-            if (blockTimeNanosec > 0) {
-                try {
-                    while (!isInTransaction && !updated && (waitTimeNanos = waitEnd - System.nanoTime()) >= 0) {
-                        for (Map.Entry<Slice, StreamId> entry : mapKeyToBeginEntryId) {
-                            if (base().exists(entry.getKey())
-                                    && entry.getValue()
-                                    .compareTo(getStreamFromBaseOrCreateEmpty(entry.getKey())
-                                    .getStoredData()
-                                    .getTail()) < 0) {
-                                updated = true;
-                                break;
-                            }
-                        }
-
-                        if (waitTimeNanos / 1_000_000 < 500) {
-                            lock.wait(waitTimeNanos / 1_000_000, (int) waitTimeNanos % 1_000_000);
-                        } else {
-                            lock.wait(500, 0);
+        if (isBlocking && !isInTransaction && !hasNewEntries(mapKeyToBeginEntryId)) {
+            List<Slice> keys = new ArrayList<>();
+            mapKeyToBeginEntryId.forEach((key, id) -> keys.add(key));
+            long waitEnd = System.nanoTime() + blockTimeNanosec;
+            try (BlockedClients.Waiter waiter = base().blockedClients().block(keys, false)) {
+                do {
+                    long waitTimeNanos = 0;
+                    if (blockTimeNanosec != 0) {
+                        waitTimeNanos = waitEnd - System.nanoTime();
+                        if (waitTimeNanos <= 0) {
+                            break;
                         }
                     }
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    return Response.NULL;
-                }
-            } else {
-                try {
-                    while (!isInTransaction && !updated) {
-                        for (Map.Entry<Slice, StreamId> entry : mapKeyToBeginEntryId) {
-                            if (base().exists(entry.getKey())
-                                    && getStreamFromBaseOrCreateEmpty(entry.getKey())
-                                        .getStoredData()
-                                        .getTail()
-                                        .compareTo(entry.getValue()) > 0) {
-                                updated = true;
-                                break;
-                            }
-                        }
-                        lock.wait(500, 0);
-                    }
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    return Response.NULL;
-                }
+                    locks.await(waiter, waitTimeNanos);
+                } while (!hasNewEntries(mapKeyToBeginEntryId));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return Response.NULL;
             }
         }
 
         /* Response */
+        Map<Slice, List<Map.Entry<StreamId, SequencedMap<Slice, Slice>>>> output = new LinkedHashMap<>();
         mapKeyToBeginEntryId.forEach((key, id) -> {
             SequencedMap<StreamId, SequencedMap<Slice, Slice>> map = getStreamFromBaseOrCreateEmpty(key).getStoredData();
             SequencedMapIterator<StreamId, SequencedMap<Slice, Slice>> it;
@@ -180,31 +169,21 @@ public class XRead extends AbstractRedisOperation {
 
             it = map.iterator(id);
 
-            List<Slice> data = new ArrayList<>();
+            List<Map.Entry<StreamId, SequencedMap<Slice, Slice>>> data = new ArrayList<>();
             int addedEntries = 1;
 
             while (it.hasNext() && addedEntries++ <= count) {
-                Map.Entry<StreamId, SequencedMap<Slice, Slice>> entry = it.next();
-
-                List<Slice> values = new ArrayList<>();
-
-                entry.getValue().forEach((k, v) -> {
-                    values.add(Response.bulkString(k));
-                    values.add(Response.bulkString(v));
-                });
-
-                data.add(Response.array(
-                        Response.bulkString(entry.getKey().toSlice()),
-                        Response.array(values)
-                ));
+                data.add(it.next());
             }
 
-            output.add(Response.array(
-                    Response.bulkString(key),
-                    Response.array(data)
-            ));
+            output.put(key, data);
         });
 
-        return Response.array(output);
+        RespWriter writer = new RespWriter().arrayHeader(output.size());
+        output.forEach((key, data) -> {
+            writer.arrayHeader(2).bulkString(key);
+            StreamEntries.write(writer, data);
+        });
+        return writer.toSlice();
     }
 }
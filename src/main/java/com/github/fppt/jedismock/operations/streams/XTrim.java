@@ -63,7 +63,8 @@ public class XTrim extends AbstractRedisOperation {
     protected Slice response() {
         /* Begin parsing arguments */
         Slice key = params().get(0);
-        SequencedMap<StreamId, SequencedMap<Slice, Slice>> map = getStreamFromBaseOrCreateEmpty(key).getStoredData();
+        SequencedMap<StreamId, SequencedMap<Slice, Slice>> map =
+                getModifiableStreamFromBaseOrCreateEmpty(key).getStoredData();
 
         String criterion = params().get(1).toString(); // (MAXLEN|MINID) option
         int thresholdPosition = 2;
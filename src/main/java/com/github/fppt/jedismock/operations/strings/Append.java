@@ -18,14 +18,14 @@ class Append extends AbstractRedisOperation {
     protected Slice response() {
         Slice key = params().get(0);
         Slice value = params().get(1);
-        RMString s = base().getRMString(key);
+        RMString s = base().getModifiableRMString(key);
 
         if (s == null) {
             base().putValue(key, value.extract());
             return Response.integer(value.length());
         }
 
-        s.add(value.data());
+        s.add(value);
         base().putValue(key, s);
         return Response.integer(s.size());
     }
@@ -8,8 +8,6 @@ import com.github.fppt.jedismock.storage.RedisBase;
 
 import java.util.List;
 
-import static com.github.fppt.jedismock.Utils.convertToLong;
-
 abstract class IncrOrDecrBy extends AbstractRedisOperation {
     IncrOrDecrBy(RedisBase base, List<Slice> params) {
         super(base, params);
@@ -20,15 +18,16 @@ abstract class IncrOrDecrBy extends AbstractRedisOperation {
     protected Slice response() {
         Slice key = params().get(0);
         long d = incrementOrDecrementValue(params());
-        RMString v = base().getRMString(key);
+        RMString v = base().getModifiableRMString(key);
 
         if (v == null) {
-            base().putValue(key, RMString.create(String.valueOf(d)));
+            base().putValue(key, RMString.create(d));
             return Response.integer(d);
         }
 
-        long r = convertToLong(v.getStoredDataAsString()) + d;
-        base().putValueWithoutClearingTtl(key, RMString.create(String.valueOf(r)));
+        //The counter is updated in place, without formatting or parsing it
+        long r = v.incrementBy(d);
+        base().putValueWithoutClearingTtl(key, v);
         return Response.integer(r);
     }
 }
@@ -2,18 +2,21 @@ package com.github.fppt.jedismock.operations.strings;
 
 import com.github.fppt.jedismock.datastructures.RMString;
 import com.github.fppt.jedismock.datastructures.Slice;
+import com.github.fppt.jedismock.exception.ArgumentException;
 import com.github.fppt.jedismock.operations.AbstractRedisOperation;
 import com.github.fppt.jedismock.operations.RedisCommand;
 import com.github.fppt.jedismock.server.Response;
 import com.github.fppt.jedismock.storage.RedisBase;
 
 import java.util.List;
-import java.util.Optional;
 
 import static com.github.fppt.jedismock.Utils.convertToInteger;
 
 @RedisCommand("setrange")
 public class SetRange extends AbstractRedisOperation {
+    //Redis limits strings to 512 MB
+    private static final long MAX_SIZE = 512L * 1024 * 1024;
+
     public SetRange(RedisBase base, List<Slice> params) {
         super(base, params);
     }
@@ -23,21 +26,24 @@ public class SetRange extends AbstractRedisOperation {
         Slice key = params().get(0);
         int offset = convertToInteger(params().get(1).toString());
         Slice value = params().get(2);
-        String oldValue = Optional.ofNullable(base().getRMString(key))
-                .map(RMString::getStoredDataAsString)
-                .orElse("");
-        String padding = "";
-        if (offset > oldValue.length()) {
-            padding = new String(new byte[offset - oldValue.length()]);
+        if (offset < 0) {
+            throw new ArgumentException("ERR offset is out of range");
+        }
+        RMString oldValue = base().getModifiableRMString(key);
+        if (value.length() == 0) {
+            return Response.integer(oldValue == null ? 0 : oldValue.size());
+        }
+        if ((long) offset + value.length() > MAX_SIZE) {
+            throw new ArgumentException("ERR string exceeds maximum allowed size (proto-max-bulk-len)");
         }
-        String newValue =
-                oldValue.substring(0, Math.min(offset, oldValue.length()))
-                        + padding
-                        + value.toString();
-        if (offset + value.length() < oldValue.length()) {
-            newValue += oldValue.substring(offset + value.length());
+        if (oldValue == null) {
+            RMString newValue = new RMString();
+            newValue.setRange(offset, value);
+            base().putValue(key, newValue);
+            return Response.integer(newValue.size());
         }
-        base().putValue(key, Slice.create(newValue).extract(), null);
-        return Response.integer(newValue.length());
+        oldValue.setRange(offset, value);
+        base().putValueWithoutClearingTtl(key, oldValue);
+        return Response.integer(oldValue.size());
     }
 }
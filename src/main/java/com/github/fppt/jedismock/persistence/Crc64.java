@@ -0,0 +1,31 @@
+package com.github.fppt.jedismock.persistence;
+
+/**
+ * CRC-64/Jones checksum used by Redis for RDB files and DUMP payloads
+ * (reflected polynomial 0xad93d23594c935a9, zero initial value, no final xor).
+ */
+final class Crc64 {
+    private static final long POLYNOMIAL = 0x95ac9329ac4bc9b5L;
+    private static final long[] TABLE = new long[256];
+
+    static {
+        for (int i = 0; i < TABLE.length; i++) {
+            long crc = i;
+            for (int bit = 0; bit < 8; bit++) {
+                crc = (crc & 1) != 0 ? (crc >>> 1) ^ POLYNOMIAL : crc >>> 1;
+            }
+            TABLE[i] = crc;
+        }
+    }
+
+    private Crc64() {
+    }
+
+    static long update(long crc, byte[] data, int offset, int length) {
+        long result = crc;
+        for (int i = offset; i < offset + length; i++) {
+            result = TABLE[(int) ((result ^ data[i]) & 0xff)] ^ (result >>> 8);
+        }
+        return result;
+    }
+}
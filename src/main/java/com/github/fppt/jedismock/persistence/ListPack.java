@@ -0,0 +1,179 @@
+package com.github.fppt.jedismock.persistence;
+
+import com.github.fppt.jedismock.datastructures.Slice;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Listpack, the compact encoding of small collections and stream nodes used by Redis 7.
+ *
+ * A listpack is a header (total size and number of elements), the elements and the end marker.
+ * Each element is an encoded string or integer followed by its length, so that it can be traversed backwards.
+ */
+final class ListPack {
+    private static final int HEADER_SIZE = 6;
+    private static final int END = 0xff;
+    private static final int UNKNOWN_COUNT = 0xffff;
+
+    private byte[] buffer = new byte[64];
+    private int size = HEADER_SIZE;
+    private int count;
+
+    /**
+     * @return the elements of a listpack, integers being converted to their decimal representation.
+     */
+    static List<Slice> elements(byte[] data) throws IOException {
+        if (data.length < HEADER_SIZE + 1) {
+            throw new IOException("Listpack is too short");
+        }
+        List<Slice> result = new ArrayList<>();
+        int position = HEADER_SIZE;
+        try {
+            while ((data[position] & 0xff) != END) {
+                int encoding = data[position] & 0xff;
+                int length;
+                if ((encoding & 0x80) == 0) {
+                    result.add(integer(encoding));
+                    length = 1;
+                } else if ((encoding & 0xc0) == 0x80) {
+                    int stringLength = encoding & 0x3f;
+                    result.add(Slice.create(data, position + 1, stringLength));
+                    length = 1 + stringLength;
+                } else if ((encoding & 0xe0) == 0xc0) {
+                    int value = ((encoding & 0x1f) << 8) | (data[position + 1] & 0xff);
+                    result.add(integer(value >= 1 << 12 ? value - (1 << 13) : value));
+                    length = 2;
+                } else if ((encoding & 0xf0) == 0xe0) {
+                    int stringLength = ((encoding & 0x0f) << 8) | (data[position + 1] & 0xff);
+                    result.add(Slice.create(data, position + 2, stringLength));
+                    length = 2 + stringLength;
+                } else if (encoding == 0xf0) {
+                    int stringLength = (int) littleEndian(data, position + 1, 4);
+                    result.add(Slice.create(data, position + 5, stringLength));
+                    length = 5 + stringLength;
+                } else if (encoding >= 0xf1 && encoding <= 0xf4) {
+                    int bytes = encoding == 0xf4 ? 8 : encoding - 0xef;
+                    long value = littleEndian(data, position + 1, bytes);
+                    //Sign extension
+                    int shift = 64 - 8 * bytes;
+                    result.add(integer(value << shift >> shift));
+                    length = 1 + bytes;
+                } else {
+                    throw new IOException("Invalid listpack encoding " + encoding);
+                }
+                position += length + backLengthSize(length);
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Listpack is truncated", e);
+        }
+        return result;
+    }
+
+    static long littleEndian(byte[] data, int offset, int bytes) {
+        long result = 0;
+        for (int i = bytes - 1; i >= 0; i--) {
+            result = (result << 8) | (data[offset + i] & 0xff);
+        }
+        return result;
+    }
+
+    static Slice integer(long value) {
+        return Slice.create(Long.toString(value).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static int backLengthSize(int length) {
+        if (length <= 127) {
+            return 1;
+        } else if (length < 16383) {
+            return 2;
+        } else if (length < 2097151) {
+            return 3;
+        } else if (length < 268435455) {
+            return 4;
+        }
+        return 5;
+    }
+
+    void append(Slice value) {
+        int length = value.length();
+        int start = size;
+        if (length < 64) {
+            ensureCapacity(1 + length);
+            buffer[size++] = (byte) (0x80 | length);
+        } else if (length < 4096) {
+            ensureCapacity(2 + length);
+            buffer[size++] = (byte) (0xe0 | (length >>> 8));
+            buffer[size++] = (byte) length;
+        } else {
+            ensureCapacity(5 + length);
+            buffer[size++] = (byte) 0xf0;
+            writeLittleEndian(length, 4);
+        }
+        value.copyTo(buffer, size);
+        size += length;
+        appendBackLength(size - start);
+    }
+
+    void append(long value) {
+        int start = size;
+        ensureCapacity(9);
+        if (value >= 0 && value <= 127) {
+            buffer[size++] = (byte) value;
+        } else if (value >= -4096 && value <= 4095) {
+            buffer[size++] = (byte) (0xc0 | ((value >> 8) & 0x1f));
+            buffer[size++] = (byte) value;
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            buffer[size++] = (byte) 0xf1;
+            writeLittleEndian(value, 2);
+        } else if (value >= -(1 << 23) && value < 1 << 23) {
+            buffer[size++] = (byte) 0xf2;
+            writeLittleEndian(value, 3);
+        } else if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+            buffer[size++] = (byte) 0xf3;
+            writeLittleEndian(value, 4);
+        } else {
+            buffer[size++] = (byte) 0xf4;
+            writeLittleEndian(value, 8);
+        }
+        appendBackLength(size - start);
+    }
+
+    /**
+     * @return the encoded listpack, no more elements can be appended afterwards.
+     */
+    byte[] toByteArray() {
+        ensureCapacity(1);
+        buffer[size++] = (byte) END;
+        int end = size;
+        size = 0;
+        writeLittleEndian(end, 4);
+        writeLittleEndian(Math.min(count, UNKNOWN_COUNT), 2);
+        return Arrays.copyOf(buffer, end);
+    }
+
+    private void appendBackLength(int length) {
+        ensureCapacity(5);
+        int bytes = backLengthSize(length);
+        for (int i = bytes - 1; i >= 0; i--) {
+            int group = (length >>> (7 * i)) & 0x7f;
+            buffer[size++] = (byte) (i == bytes - 1 ? group : group | 0x80);
+        }
+        count++;
+    }
+
+    private void writeLittleEndian(long value, int bytes) {
+        for (int i = 0; i < bytes; i++) {
+            buffer[size++] = (byte) (value >>> (8 * i));
+        }
+    }
+
+    private void ensureCapacity(int extra) {
+        if (size + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+        }
+    }
+}
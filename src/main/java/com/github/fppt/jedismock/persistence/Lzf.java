@@ -0,0 +1,48 @@
+package com.github.fppt.jedismock.persistence;
+
+import java.io.IOException;
+
+/**
+ * Decompression of the LZF-compressed strings which Redis writes to RDB files.
+ */
+final class Lzf {
+    private Lzf() {
+    }
+
+    static byte[] decompress(byte[] input, int outputLength) throws IOException {
+        byte[] output = new byte[outputLength];
+        int in = 0;
+        int out = 0;
+        try {
+            while (in < input.length) {
+                int control = input[in++] & 0xff;
+                if (control < 32) {
+                    //Literal run of control + 1 bytes
+                    System.arraycopy(input, in, output, out, control + 1);
+                    in += control + 1;
+                    out += control + 1;
+                } else {
+                    //Back reference
+                    int length = control >>> 5;
+                    if (length == 7) {
+                        length += input[in++] & 0xff;
+                    }
+                    int reference = out - ((control & 0x1f) << 8) - (input[in++] & 0xff) - 1;
+                    if (reference < 0) {
+                        throw new IOException("Invalid LZF back reference");
+                    }
+                    //Byte by byte, since the ranges may overlap
+                    for (int i = 0; i < length + 2; i++) {
+                        output[out++] = output[reference++];
+                    }
+                }
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Invalid LZF compressed string", e);
+        }
+        if (out != outputLength) {
+            throw new IOException("Invalid LZF compressed string length");
+        }
+        return output;
+    }
+}
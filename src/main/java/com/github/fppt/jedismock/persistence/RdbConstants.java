@@ -0,0 +1,76 @@
+package com.github.fppt.jedismock.persistence;
+
+/**
+ * Opcodes, value types and length encodings of the RDB format, named as in rdb.h of Redis.
+ */
+final class RdbConstants {
+    static final String MAGIC = "REDIS";
+    /**
+     * Version of the written files (Redis 5.0 and 6.x), which can be loaded by any later Redis version.
+     */
+    static final int WRITTEN_VERSION = 9;
+    /**
+     * Latest version of the files which can be loaded (Redis 7.4).
+     */
+    static final int MAX_VERSION = 12;
+
+    static final int OPCODE_SLOT_INFO = 0xf4;
+    static final int OPCODE_FUNCTION2 = 0xf5;
+    static final int OPCODE_MODULE_AUX = 0xf7;
+    static final int OPCODE_IDLE = 0xf8;
+    static final int OPCODE_FREQ = 0xf9;
+    static final int OPCODE_AUX = 0xfa;
+    static final int OPCODE_RESIZEDB = 0xfb;
+    static final int OPCODE_EXPIRETIME_MS = 0xfc;
+    static final int OPCODE_EXPIRETIME = 0xfd;
+    static final int OPCODE_SELECTDB = 0xfe;
+    static final int OPCODE_EOF = 0xff;
+
+    static final int TYPE_STRING = 0;
+    static final int TYPE_LIST = 1;
+    static final int TYPE_SET = 2;
+    static final int TYPE_ZSET = 3;
+    static final int TYPE_HASH = 4;
+    static final int TYPE_ZSET_2 = 5;
+    static final int TYPE_LIST_ZIPLIST = 10;
+    static final int TYPE_SET_INTSET = 11;
+    static final int TYPE_ZSET_ZIPLIST = 12;
+    static final int TYPE_HASH_ZIPLIST = 13;
+    static final int TYPE_LIST_QUICKLIST = 14;
+    static final int TYPE_STREAM_LISTPACKS = 15;
+    static final int TYPE_HASH_LISTPACK = 16;
+    static final int TYPE_ZSET_LISTPACK = 17;
+    static final int TYPE_LIST_QUICKLIST_2 = 18;
+    static final int TYPE_STREAM_LISTPACKS_2 = 19;
+    static final int TYPE_SET_LISTPACK = 20;
+    static final int TYPE_STREAM_LISTPACKS_3 = 21;
+
+    static final int QUICKLIST_NODE_PLAIN = 1;
+
+    static final int LENGTH_6BIT = 0;
+    static final int LENGTH_14BIT = 1;
+    static final int LENGTH_32BIT = 0x80;
+    static final int LENGTH_64BIT = 0x81;
+    static final int LENGTH_ENCODED = 3;
+    static final int ENCODING_INT8 = 0;
+    static final int ENCODING_INT16 = 1;
+    static final int ENCODING_INT32 = 2;
+    static final int ENCODING_LZF = 3;
+
+    static final int MODULE_OPCODE_EOF = 0;
+    static final int MODULE_OPCODE_SINT = 1;
+    static final int MODULE_OPCODE_UINT = 2;
+    static final int MODULE_OPCODE_FLOAT = 3;
+    static final int MODULE_OPCODE_DOUBLE = 4;
+    static final int MODULE_OPCODE_STRING = 5;
+
+    static final int STREAM_ITEM_FLAG_DELETED = 1;
+    static final int STREAM_ITEM_FLAG_SAMEFIELDS = 2;
+    /**
+     * Maximum number of entries of a stream node, the same as the default 'stream-node-max-entries' of Redis.
+     */
+    static final int STREAM_NODE_MAX_ENTRIES = 100;
+
+    private RdbConstants() {
+    }
+}
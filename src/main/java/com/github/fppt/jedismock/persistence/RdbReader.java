@@ -0,0 +1,619 @@
+package com.github.fppt.jedismock.persistence;
+
+import com.github.fppt.jedismock.datastructures.RMDataStructure;
+import com.github.fppt.jedismock.datastructures.RMHash;
+import com.github.fppt.jedismock.datastructures.RMList;
+import com.github.fppt.jedismock.datastructures.RMSet;
+import com.github.fppt.jedismock.datastructures.RMZSet;
+import com.github.fppt.jedismock.datastructures.Slice;
+import com.github.fppt.jedismock.datastructures.streams.RMStream;
+import com.github.fppt.jedismock.datastructures.streams.SequencedMap;
+import com.github.fppt.jedismock.datastructures.streams.StreamId;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static com.github.fppt.jedismock.persistence.RdbConstants.ENCODING_INT16;
+import static com.github.fppt.jedismock.persistence.RdbConstants.ENCODING_INT32;
+import static com.github.fppt.jedismock.persistence.RdbConstants.ENCODING_INT8;
+import static com.github.fppt.jedismock.persistence.RdbConstants.ENCODING_LZF;
+import static com.github.fppt.jedismock.persistence.RdbConstants.LENGTH_14BIT;
+import static com.github.fppt.jedismock.persistence.RdbConstants.LENGTH_32BIT;
+import static com.github.fppt.jedismock.persistence.RdbConstants.LENGTH_64BIT;
+import static com.github.fppt.jedismock.persistence.RdbConstants.LENGTH_6BIT;
+import static com.github.fppt.jedismock.persistence.RdbConstants.LENGTH_ENCODED;
+import static com.github.fppt.jedismock.persistence.RdbConstants.MAGIC;
+import static com.github.fppt.jedismock.persistence.RdbConstants.MAX_VERSION;
+import static com.github.fppt.jedismock.persistence.RdbConstants.MODULE_OPCODE_DOUBLE;
+import static com.github.fppt.jedismock.persistence.RdbConstants.MODULE_OPCODE_EOF;
+import static com.github.fppt.jedismock.persistence.RdbConstants.MODULE_OPCODE_FLOAT;
+import static com.github.fppt.jedismock.persistence.RdbConstants.MODULE_OPCODE_SINT;
+import static com.github.fppt.jedismock.persistence.RdbConstants.MODULE_OPCODE_STRING;
+import static com.github.fppt.jedismock.persistence.RdbConstants.MODULE_OPCODE_UINT;
+import static com.github.fppt.jedismock.persistence.RdbConstants.OPCODE_AUX;
+import static com.github.fppt.jedismock.persistence.RdbConstants.OPCODE_EOF;
+import static com.github.fppt.jedismock.persistence.RdbConstants.OPCODE_EXPIRETIME;
+import static com.github.fppt.jedismock.persistence.RdbConstants.OPCODE_EXPIRETIME_MS;
+import static com.github.fppt.jedismock.persistence.RdbConstants.OPCODE_FREQ;
+import static com.github.fppt.jedismock.persistence.RdbConstants.OPCODE_FUNCTION2;
+import static com.github.fppt.jedismock.persistence.RdbConstants.OPCODE_IDLE;
+import static com.github.fppt.jedismock.persistence.RdbConstants.OPCODE_MODULE_AUX;
+import static com.github.fppt.jedismock.persistence.RdbConstants.OPCODE_RESIZEDB;
+import static com.github.fppt.jedismock.persistence.RdbConstants.OPCODE_SELECTDB;
+import static com.github.fppt.jedismock.persistence.RdbConstants.OPCODE_SLOT_INFO;
+import static com.github.fppt.jedismock.persistence.RdbConstants.QUICKLIST_NODE_PLAIN;
+import static com.github.fppt.jedismock.persistence.RdbConstants.STREAM_ITEM_FLAG_DELETED;
+import static com.github.fppt.jedismock.persistence.RdbConstants.STREAM_ITEM_FLAG_SAMEFIELDS;
+import static com.github.fppt.jedismock.persistence.RdbConstants.TYPE_HASH;
+import static com.github.fppt.jedismock.persistence.RdbConstants.TYPE_HASH_LISTPACK;
+import static com.github.fppt.jedismock.persistence.RdbConstants.TYPE_HASH_ZIPLIST;
+import static com.github.fppt.jedismock.persistence.RdbConstants.TYPE_LIST;
+import static com.github.fppt.jedismock.persistence.RdbConstants.TYPE_LIST_QUICKLIST;
+import static com.github.fppt.jedismock.persistence.RdbConstants.TYPE_LIST_QUICKLIST_2;
+import static com.github.fppt.jedismock.persistence.RdbConstants.TYPE_LIST_ZIPLIST;
+import static com.github.fppt.jedismock.persistence.RdbConstants.TYPE_SET;
+import static com.github.fppt.jedismock.persistence.RdbConstants.TYPE_SET_INTSET;
+import static com.github.fppt.jedismock.persistence.RdbConstants.TYPE_SET_LISTPACK;
+import static com.github.fppt.jedismock.persistence.RdbConstants.TYPE_STREAM_LISTPACKS;
+import static com.github.fppt.jedismock.persistence.RdbConstants.TYPE_STREAM_LISTPACKS_2;
+import static com.github.fppt.jedismock.persistence.RdbConstants.TYPE_STREAM_LISTPACKS_3;
+import static com.github.fppt.jedismock.persistence.RdbConstants.TYPE_STRING;
+import static com.github.fppt.jedismock.persistence.RdbConstants.TYPE_ZSET;
+import static com.github.fppt.jedismock.persistence.RdbConstants.TYPE_ZSET_2;
+import static com.github.fppt.jedismock.persistence.RdbConstants.TYPE_ZSET_LISTPACK;
+import static com.github.fppt.jedismock.persistence.RdbConstants.TYPE_ZSET_ZIPLIST;
+
+/**
+ * Reads the keys from a file in the RDB format, written either by {@link RdbWriter} or by Redis up to version 7.4.
+ *
+ * All the encodings of strings, lists, sets, sorted sets, hashes and streams are supported.
+ * Auxiliary fields, functions, module metadata and consumer groups of streams are skipped, since Jedis Mock
+ * does not support them. Values of modules and hashes with expiring fields can not be loaded.
+ */
+public final class RdbReader {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    /**
+     * First version which has a checksum at the end of file.
+     */
+    private static final int CHECKSUM_VERSION = 5;
+
+    private final InputStream in;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+    private int limit;
+    //Number of the bytes read before the current contents of the buffer
+    private long bufferStart;
+    //The bytes of the buffer before this position are already taken into account in the checksum
+    private int checksumPosition;
+    private long checksum;
+
+    /**
+     * Receives the keys read from a file.
+     */
+    public interface KeyHandler {
+        /**
+         * @param deadline expiration time in Unix milliseconds, -1 if the key does not expire.
+         */
+        void accept(int database, Slice key, RMDataStructure value, long deadline);
+    }
+
+    public RdbReader(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * Reads the whole file, verifying its checksum.
+     */
+    public void read(KeyHandler handler) throws IOException {
+        int version = readHeader();
+        int database = 0;
+        long deadline = -1;
+        while (true) {
+            int type = readByte();
+            switch (type) {
+                case OPCODE_EXPIRETIME_MS:
+                    deadline = readLittleEndian(8);
+                    break;
+                case OPCODE_EXPIRETIME:
+                    deadline = readLittleEndian(4) * 1000;
+                    break;
+                case OPCODE_FREQ:
+                    readByte();
+                    break;
+                case OPCODE_IDLE:
+                    readLength();
+                    break;
+                case OPCODE_SELECTDB:
+                    database = (int) readLength();
+                    break;
+                case OPCODE_RESIZEDB:
+                    readLength();
+                    readLength();
+                    break;
+                case OPCODE_SLOT_INFO:
+                    //Slot number, number of keys and number of expiring keys
+                    readLength();
+                    readLength();
+                    readLength();
+                    break;
+                case OPCODE_AUX:
+                    readString();
+                    readString();
+                    break;
+                case OPCODE_FUNCTION2:
+                    readString();
+                    break;
+                case OPCODE_MODULE_AUX:
+                    //Module id, the opcode of the 'when' field and the field itself
+                    readLength();
+                    readLength();
+                    readLength();
+                    skipModuleValue();
+                    break;
+                case OPCODE_EOF:
+                    verifyChecksum(version);
+                    return;
+                default:
+                    Slice key = Slice.create(readString());
+                    handler.accept(database, key, readValue(type), deadline);
+                    deadline = -1;
+            }
+        }
+    }
+
+    /**
+     * Reads a value serialized by the DUMP command, either of Jedis Mock or of Redis up to version 7.4.
+     *
+     * @param payload the value in the RDB encoding, followed by the RDB version and the checksum.
+     * @throws IOException if the payload is corrupted or can not be loaded.
+     */
+    public static RMDataStructure readDump(byte[] payload) throws IOException {
+        int length = payload.length;
+        if (length < 10) {
+            throw new IOException("DUMP payload version or checksum are wrong");
+        }
+        int version = (payload[length - 10] & 0xff) | (payload[length - 9] & 0xff) << 8;
+        long expected = 0;
+        for (int i = 0; i < 8; i++) {
+            expected |= (payload[length - 8 + i] & 0xffL) << (8 * i);
+        }
+        if (version > MAX_VERSION || Crc64.update(0, payload, 0, length - 8) != expected) {
+            throw new IOException("DUMP payload version or checksum are wrong");
+        }
+        RdbReader reader = new RdbReader(new ByteArrayInputStream(payload, 0, length - 10));
+        RMDataStructure value;
+        try {
+            value = reader.readValue(reader.readByte());
+        } catch (IOException | RuntimeException e) {
+            throw new IOException("Bad data format", e);
+        }
+        if (reader.bytesRead() != length - 10) {
+            throw new IOException("Bad data format");
+        }
+        return value;
+    }
+
+    /**
+     * @return number of the bytes of the file read so far.
+     */
+    public long bytesRead() {
+        return bufferStart + position;
+    }
+
+    /**
+     * @return the data following the end of the file in the stream (e.g. commands of an append only file
+     * which starts with a snapshot), including the data read ahead into the buffer.
+     */
+    public InputStream remaining() {
+        return new SequenceInputStream(new ByteArrayInputStream(buffer, position, limit - position), in);
+    }
+
+    private int readHeader() throws IOException {
+        String header = new String(readBytes(MAGIC.length() + 4), StandardCharsets.US_ASCII);
+        if (!header.startsWith(MAGIC)) {
+            throw new IOException("Wrong signature trying to load DB from file");
+        }
+        int version;
+        try {
+            version = Integer.parseInt(header.substring(MAGIC.length()));
+        } catch (NumberFormatException e) {
+            throw new IOException("Wrong signature trying to load DB from file", e);
+        }
+        if (version < 1 || version > MAX_VERSION) {
+            throw new IOException("Can't handle RDB format version " + version);
+        }
+        return version;
+    }
+
+    private void verifyChecksum(int version) throws IOException {
+        if (version < CHECKSUM_VERSION) {
+            return;
+        }
+        checksum = Crc64.update(checksum, buffer, checksumPosition, position - checksumPosition);
+        checksumPosition = position;
+        long expected = readLittleEndian(8);
+        //Zero checksum means the checksum was disabled when the file was saved
+        if (expected != 0 && expected != checksum) {
+            throw new IOException("Wrong RDB checksum");
+        }
+    }
+
+    private RMDataStructure readValue(int type) throws IOException {
+        switch (type) {
+            case TYPE_STRING:
+                //Bitmaps and HyperLogLogs are restored from their string representation, as by SET
+                return Slice.create(readString()).extract();
+            case TYPE_LIST: {
+                long length = readLength();
+                List<Slice> elements = new ArrayList<>();
+                for (long i = 0; i < length; i++) {
+                    elements.add(Slice.create(readString()));
+                }
+                return new RMList(elements);
+            }
+            case TYPE_LIST_ZIPLIST:
+                return new RMList(ZipList.elements(readString()));
+            case TYPE_LIST_QUICKLIST:
+            case TYPE_LIST_QUICKLIST_2: {
+                long nodes = readLength();
+                List<Slice> elements = new ArrayList<>();
+                for (long i = 0; i < nodes; i++) {
+                    if (type == TYPE_LIST_QUICKLIST) {
+                        elements.addAll(ZipList.elements(readString()));
+                    } else if (readLength() == QUICKLIST_NODE_PLAIN) {
+                        //A large element is kept as is
+                        elements.add(Slice.create(readString()));
+                    } else {
+                        elements.addAll(ListPack.elements(readString()));
+                    }
+                }
+                return new RMList(elements);
+            }
+            case TYPE_SET: {
+                long length = readLength();
+                RMSet set = new RMSet();
+                for (long i = 0; i < length; i++) {
+                    set.getStoredData().add(Slice.create(readString()));
+                }
+                return set;
+            }
+            case TYPE_SET_INTSET:
+                return new RMSet(new HashSet<>(ZipList.intSetElements(readString())));
+            case TYPE_SET_LISTPACK:
+                return new RMSet(new HashSet<>(ListPack.elements(readString())));
+            case TYPE_ZSET:
+            case TYPE_ZSET_2: {
+                long length = readLength();
+                RMZSet zset = new RMZSet();
+                for (long i = 0; i < length; i++) {
+                    Slice member = Slice.create(readString());
+                    zset.put(member, type == TYPE_ZSET_2
+                            ? Double.longBitsToDouble(readLittleEndian(8)) : readStringDouble());
+                }
+                return zset;
+            }
+            case TYPE_ZSET_ZIPLIST:
+                return zset(ZipList.elements(readString()));
+            case TYPE_ZSET_LISTPACK:
+                return zset(ListPack.elements(readString()));
+            case TYPE_HASH: {
+                long length = readLength();
+                RMHash hash = new RMHash();
+                for (long i = 0; i < length; i++) {
+                    hash.put(Slice.create(readString()), Slice.create(readString()));
+                }
+                return hash;
+            }
+            case TYPE_HASH_ZIPLIST:
+                return hash(ZipList.elements(readString()));
+            case TYPE_HASH_LISTPACK:
+                return hash(ListPack.elements(readString()));
+            case TYPE_STREAM_LISTPACKS:
+            case TYPE_STREAM_LISTPACKS_2:
+            case TYPE_STREAM_LISTPACKS_3:
+                return readStream(type);
+            default:
+                throw new IOException("Unsupported RDB value type " + type);
+        }
+    }
+
+    /**
+     * @param elements members followed by their scores.
+     */
+    private static RMZSet zset(List<Slice> elements) throws IOException {
+        RMZSet zset = new RMZSet();
+        for (int i = 0; i + 1 < elements.size(); i += 2) {
+            zset.put(elements.get(i), parseDouble(elements.get(i + 1).toString()));
+        }
+        return zset;
+    }
+
+    /**
+     * @param elements fields followed by their values.
+     */
+    private static RMHash hash(List<Slice> elements) {
+        RMHash hash = new RMHash();
+        for (int i = 0; i + 1 < elements.size(); i += 2) {
+            hash.put(elements.get(i), elements.get(i + 1));
+        }
+        return hash;
+    }
+
+    /**
+     * Reads a stream, which entries are stored in listpacks of consecutive entries, the IDs of the entries
+     * being relative to the ID of the first entry of their listpack.
+     */
+    private RMStream readStream(int type) throws IOException {
+        RMStream stream = new RMStream();
+        long nodes = readLength();
+        for (long i = 0; i < nodes; i++) {
+            byte[] masterKey = readString();
+            if (masterKey.length != 16) {
+                throw new IOException("Stream node key entry is not the size of a stream ID");
+            }
+            StreamId master = new StreamId(bigEndian(masterKey, 0), bigEndian(masterKey, 8));
+            try {
+                readStreamNode(stream, master, ListPack.elements(readString()).iterator());
+            } catch (NoSuchElementException | NumberFormatException e) {
+                throw new IOException("Invalid stream node", e);
+            }
+        }
+        //Number of entries
+        readLength();
+        stream.updateLastId(new StreamId(readLength(), readLength()));
+        if (type >= TYPE_STREAM_LISTPACKS_2) {
+            //First ID, maximal deleted ID and number of entries ever added
+            for (int i = 0; i < 5; i++) {
+                readLength();
+            }
+        }
+        skipConsumerGroups(type);
+        return stream;
+    }
+
+    private static void readStreamNode(RMStream stream, StreamId master, Iterator<Slice> elements) {
+        long count = nextLong(elements) + nextLong(elements);
+        List<Slice> masterFields = new ArrayList<>();
+        for (long i = nextLong(elements); i > 0; i--) {
+            masterFields.add(elements.next());
+        }
+        //End of the master entry
+        nextLong(elements);
+        for (long i = 0; i < count; i++) {
+            long flags = nextLong(elements);
+            StreamId id = new StreamId(master.getFirstPart() + nextLong(elements),
+                    master.getSecondPart() + nextLong(elements));
+            SequencedMap<Slice, Slice> fields = new SequencedMap<>();
+            if ((flags & STREAM_ITEM_FLAG_SAMEFIELDS) != 0) {
+                for (Slice field : masterFields) {
+                    fields.append(field, elements.next());
+                }
+            } else {
+                for (long j = nextLong(elements); j > 0; j--) {
+                    fields.append(elements.next(), elements.next());
+                }
+            }
+            //Number of the listpack elements of the entry
+            nextLong(elements);
+            if ((flags & STREAM_ITEM_FLAG_DELETED) == 0) {
+                stream.getStoredData().append(id, fields);
+            }
+        }
+    }
+
+    private static long nextLong(Iterator<Slice> elements) {
+        return Long.parseLong(elements.next().toString());
+    }
+
+    private void skipConsumerGroups(int type) throws IOException {
+        long groups = readLength();
+        for (long i = 0; i < groups; i++) {
+            //Name and last delivered ID
+            readString();
+            readLength();
+            readLength();
+            if (type >= TYPE_STREAM_LISTPACKS_2) {
+                //Number of entries read
+                readLength();
+            }
+            //Pending entries: ID, delivery time and delivery count
+            for (long pending = readLength(); pending > 0; pending--) {
+                readBytes(16);
+                readBytes(8);
+                readLength();
+            }
+            for (long consumers = readLength(); consumers > 0; consumers--) {
+                //Name, seen time and active time
+                readString();
+                readBytes(8);
+                if (type >= TYPE_STREAM_LISTPACKS_3) {
+                    readBytes(8);
+                }
+                //IDs of the pending entries
+                for (long pending = readLength(); pending > 0; pending--) {
+                    readBytes(16);
+                }
+            }
+        }
+    }
+
+    private void skipModuleValue() throws IOException {
+        while (true) {
+            long opcode = readLength();
+            if (opcode == MODULE_OPCODE_EOF) {
+                return;
+            } else if (opcode == MODULE_OPCODE_SINT || opcode == MODULE_OPCODE_UINT) {
+                readLength();
+            } else if (opcode == MODULE_OPCODE_FLOAT) {
+                readBytes(4);
+            } else if (opcode == MODULE_OPCODE_DOUBLE) {
+                readBytes(8);
+            } else if (opcode == MODULE_OPCODE_STRING) {
+                readString();
+            } else {
+                throw new IOException("Unknown module opcode " + opcode);
+            }
+        }
+    }
+
+    /**
+     * Reads a score of the legacy sorted set encoding, stored as a string of at most 255 bytes.
+     */
+    private double readStringDouble() throws IOException {
+        int length = readByte();
+        switch (length) {
+            case 253:
+                return Double.NaN;
+            case 254:
+                return Double.POSITIVE_INFINITY;
+            case 255:
+                return Double.NEGATIVE_INFINITY;
+            default:
+                return parseDouble(new String(readBytes(length), StandardCharsets.US_ASCII));
+        }
+    }
+
+    private static double parseDouble(String value) throws IOException {
+        switch (value.toLowerCase()) {
+            case "inf":
+            case "+inf":
+                return Double.POSITIVE_INFINITY;
+            case "-inf":
+                return Double.NEGATIVE_INFINITY;
+            default:
+                try {
+                    return Double.parseDouble(value);
+                } catch (NumberFormatException e) {
+                    throw new IOException("Invalid score " + value, e);
+                }
+        }
+    }
+
+    private long readLength() throws IOException {
+        return readLength(readByte());
+    }
+
+    private long readLength(int first) throws IOException {
+        switch (first >>> 6) {
+            case LENGTH_6BIT:
+                return first & 0x3f;
+            case LENGTH_14BIT:
+                return ((first & 0x3f) << 8) | readByte();
+            case LENGTH_ENCODED:
+                throw new IOException("Unexpected encoded length");
+            default:
+                if (first == LENGTH_32BIT) {
+                    return readBigEndian(4);
+                } else if (first == LENGTH_64BIT) {
+                    return readBigEndian(8);
+                }
+                throw new IOException("Unknown length encoding " + first);
+        }
+    }
+
+    /**
+     * Reads a string, which may be stored as an integer or compressed.
+     */
+    private byte[] readString() throws IOException {
+        int first = readByte();
+        if (first >>> 6 != LENGTH_ENCODED) {
+            return readBytes(toInt(readLength(first)));
+        }
+        switch (first & 0x3f) {
+            case ENCODING_INT8:
+                return integer(readLittleEndian(1), 1);
+            case ENCODING_INT16:
+                return integer(readLittleEndian(2), 2);
+            case ENCODING_INT32:
+                return integer(readLittleEndian(4), 4);
+            case ENCODING_LZF: {
+                int compressedLength = toInt(readLength());
+                int length = toInt(readLength());
+                return Lzf.decompress(readBytes(compressedLength), length);
+            }
+            default:
+                throw new IOException("Unknown string encoding " + (first & 0x3f));
+        }
+    }
+
+    private static byte[] integer(long value, int bytes) {
+        int shift = 64 - 8 * bytes;
+        return Long.toString(value << shift >> shift).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static int toInt(long length) throws IOException {
+        if (length < 0 || length > Integer.MAX_VALUE) {
+            throw new IOException("String is too long: " + length);
+        }
+        return (int) length;
+    }
+
+    private static long bigEndian(byte[] data, int offset) {
+        long result = 0;
+        for (int i = 0; i < 8; i++) {
+            result = (result << 8) | (data[offset + i] & 0xff);
+        }
+        return result;
+    }
+
+    private long readLittleEndian(int bytes) throws IOException {
+        long result = 0;
+        for (int i = 0; i < bytes; i++) {
+            result |= (long) readByte() << (8 * i);
+        }
+        return result;
+    }
+
+    private long readBigEndian(int bytes) throws IOException {
+        long result = 0;
+        for (int i = 0; i < bytes; i++) {
+            result = (result << 8) | readByte();
+        }
+        return result;
+    }
+
+    private int readByte() throws IOException {
+        if (position == limit) {
+            fill();
+        }
+        return buffer[position++] & 0xff;
+    }
+
+    private byte[] readBytes(int length) throws IOException {
+        byte[] result = new byte[length];
+        int copied = 0;
+        while (copied < length) {
+            if (position == limit) {
+                fill();
+            }
+            int chunk = Math.min(limit - position, length - copied);
+            System.arraycopy(buffer, position, result, copied, chunk);
+            position += chunk;
+            copied += chunk;
+        }
+        return result;
+    }
+
+    /**
+     * Reads the next chunk of the file into the buffer, which has been consumed.
+     */
+    private void fill() throws IOException {
+        checksum = Crc64.update(checksum, buffer, checksumPosition, position - checksumPosition);
+        int read = in.read(buffer, 0, buffer.length);
+        if (read <= 0) {
+            throw new IOException("Unexpected end of RDB file");
+        }
+        bufferStart += limit;
+        position = 0;
+        checksumPosition = 0;
+        limit = read;
+    }
+}
@@ -0,0 +1,365 @@
+package com.github.fppt.jedismock.persistence;
+
+import com.github.fppt.jedismock.datastructures.RMDataStructure;
+import com.github.fppt.jedismock.datastructures.RMHash;
+import com.github.fppt.jedismock.datastructures.RMList;
+import com.github.fppt.jedismock.datastructures.RMSet;
+import com.github.fppt.jedismock.datastructures.RMString;
+import com.github.fppt.jedismock.datastructures.RMZSet;
+import com.github.fppt.jedismock.datastructures.Slice;
+import com.github.fppt.jedismock.datastructures.StringCompatible;
+import com.github.fppt.jedismock.datastructures.ZSetEntry;
+import com.github.fppt.jedismock.datastructures.streams.RMStream;
+import com.github.fppt.jedismock.datastructures.streams.SequencedMap;
+import com.github.fppt.jedismock.datastructures.streams.StreamId;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static com.github.fppt.jedismock.persistence.RdbConstants.ENCODING_INT16;
+import static com.github.fppt.jedismock.persistence.RdbConstants.ENCODING_INT32;
+import static com.github.fppt.jedismock.persistence.RdbConstants.ENCODING_INT8;
+import static com.github.fppt.jedismock.persistence.RdbConstants.LENGTH_14BIT;
+import static com.github.fppt.jedismock.persistence.RdbConstants.LENGTH_32BIT;
+import static com.github.fppt.jedismock.persistence.RdbConstants.LENGTH_64BIT;
+import static com.github.fppt.jedismock.persistence.RdbConstants.LENGTH_ENCODED;
+import static com.github.fppt.jedismock.persistence.RdbConstants.MAGIC;
+import static com.github.fppt.jedismock.persistence.RdbConstants.OPCODE_AUX;
+import static com.github.fppt.jedismock.persistence.RdbConstants.OPCODE_EOF;
+import static com.github.fppt.jedismock.persistence.RdbConstants.OPCODE_EXPIRETIME_MS;
+import static com.github.fppt.jedismock.persistence.RdbConstants.OPCODE_SELECTDB;
+import static com.github.fppt.jedismock.persistence.RdbConstants.STREAM_ITEM_FLAG_SAMEFIELDS;
+import static com.github.fppt.jedismock.persistence.RdbConstants.STREAM_NODE_MAX_ENTRIES;
+import static com.github.fppt.jedismock.persistence.RdbConstants.TYPE_HASH;
+import static com.github.fppt.jedismock.persistence.RdbConstants.TYPE_LIST;
+import static com.github.fppt.jedismock.persistence.RdbConstants.TYPE_SET;
+import static com.github.fppt.jedismock.persistence.RdbConstants.TYPE_STREAM_LISTPACKS;
+import static com.github.fppt.jedismock.persistence.RdbConstants.TYPE_STRING;
+import static com.github.fppt.jedismock.persistence.RdbConstants.TYPE_ZSET_2;
+import static com.github.fppt.jedismock.persistence.RdbConstants.WRITTEN_VERSION;
+
+/**
+ * Writes the keys in the RDB format of Redis, so that the file can be loaded both by Jedis Mock and by Redis.
+ *
+ * Collections are written in their plain (not compact) encodings, which every Redis version since 5.0 can load.
+ * Bitmaps are written as strings of their bytes, as in Redis, and HyperLogLogs as the same strings GET returns
+ * for them.
+ */
+public final class RdbWriter {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    /**
+     * Longest string which may hold a 32-bit integer.
+     */
+    private static final int MAX_INTEGER_LENGTH = 11;
+
+    private final OutputStream out;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+    private long checksum;
+
+    public RdbWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    public void writeHeader() throws IOException {
+        write(String.format("%s%04d", MAGIC, WRITTEN_VERSION).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Writes an auxiliary field, such as the version of the server which has created the file.
+     */
+    public void writeAux(String key, String value) throws IOException {
+        write(OPCODE_AUX);
+        writeString(Slice.create(key));
+        writeString(Slice.create(value));
+    }
+
+    /**
+     * Starts the keys of a database.
+     */
+    public void selectDatabase(int database) throws IOException {
+        write(OPCODE_SELECTDB);
+        writeLength(database);
+    }
+
+    /**
+     * @param deadline expiration time in Unix milliseconds, -1 if the key does not expire.
+     */
+    public void writeKey(Slice key, RMDataStructure value, long deadline) throws IOException {
+        if (deadline != -1) {
+            write(OPCODE_EXPIRETIME_MS);
+            writeLittleEndian(deadline, 8);
+        }
+        writeType(value);
+        writeString(key);
+        writeValue(value);
+    }
+
+    /**
+     * Writes the end of file marker and the checksum, and flushes the output.
+     */
+    public void finish() throws IOException {
+        write(OPCODE_EOF);
+        writeChecksum();
+    }
+
+    /**
+     * Serializes a value in the format of the DUMP command of Redis: the value in the RDB encoding,
+     * followed by the RDB version and the checksum of the preceding bytes.
+     */
+    public static byte[] dump(RMDataStructure value) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        RdbWriter writer = new RdbWriter(out);
+        writer.writeType(value);
+        writer.writeValue(value);
+        writer.writeLittleEndian(WRITTEN_VERSION, 2);
+        writer.writeChecksum();
+        return out.toByteArray();
+    }
+
+    private void writeChecksum() throws IOException {
+        flushBuffer();
+        writeLittleEndian(checksum, 8);
+        out.write(buffer, 0, position);
+        position = 0;
+        out.flush();
+    }
+
+    private void writeType(RMDataStructure value) throws IOException {
+        if (value instanceof RMString || value instanceof StringCompatible) {
+            write(TYPE_STRING);
+        } else if (value instanceof RMList) {
+            write(TYPE_LIST);
+        } else if (value instanceof RMSet) {
+            write(TYPE_SET);
+        } else if (value instanceof RMZSet) {
+            write(TYPE_ZSET_2);
+        } else if (value instanceof RMHash) {
+            write(TYPE_HASH);
+        } else if (value instanceof RMStream) {
+            write(TYPE_STREAM_LISTPACKS);
+        } else {
+            throw new IOException("Unsupported value type " + value.getTypeName());
+        }
+    }
+
+    private void writeValue(RMDataStructure value) throws IOException {
+        if (value instanceof RMString || value instanceof StringCompatible) {
+            writeString(value.getAsSlice());
+        } else if (value instanceof RMList) {
+            writeStrings(((RMList) value).getStoredData());
+        } else if (value instanceof RMSet) {
+            writeStrings(((RMSet) value).getStoredData());
+        } else if (value instanceof RMZSet) {
+            RMZSet zset = (RMZSet) value;
+            writeLength(zset.size());
+            for (ZSetEntry entry : zset.entries(false)) {
+                writeString(entry.getValue());
+                writeLittleEndian(Double.doubleToLongBits(entry.getScore()), 8);
+            }
+        } else if (value instanceof RMHash) {
+            Map<Slice, Slice> fields = ((RMHash) value).getStoredData();
+            writeLength(fields.size());
+            for (Map.Entry<Slice, Slice> field : fields.entrySet()) {
+                writeString(field.getKey());
+                writeString(field.getValue());
+            }
+        } else {
+            writeStream((RMStream) value);
+        }
+    }
+
+    private void writeStrings(Collection<Slice> elements) throws IOException {
+        writeLength(elements.size());
+        for (Slice element : elements) {
+            writeString(element);
+        }
+    }
+
+    /**
+     * Writes the entries of a stream in nodes of consecutive entries. Each node is a listpack,
+     * which fields of the entries are omitted when they are the same as the fields of the first entry.
+     */
+    private void writeStream(RMStream stream) throws IOException {
+        SequencedMap<StreamId, SequencedMap<Slice, Slice>> entries = stream.getStoredData();
+        writeLength((entries.size() + STREAM_NODE_MAX_ENTRIES - 1) / STREAM_NODE_MAX_ENTRIES);
+        Iterator<Map.Entry<StreamId, SequencedMap<Slice, Slice>>> iterator = entries.iterator();
+        List<Map.Entry<StreamId, SequencedMap<Slice, Slice>>> node = new ArrayList<>(STREAM_NODE_MAX_ENTRIES);
+        while (iterator.hasNext()) {
+            node.clear();
+            while (iterator.hasNext() && node.size() < STREAM_NODE_MAX_ENTRIES) {
+                node.add(iterator.next());
+            }
+            writeStreamNode(node);
+        }
+        writeLength(entries.size());
+        writeLength(stream.getLastId().getFirstPart());
+        writeLength(stream.getLastId().getSecondPart());
+        //Consumer groups are not supported
+        writeLength(0);
+    }
+
+    private void writeStreamNode(List<Map.Entry<StreamId, SequencedMap<Slice, Slice>>> node) throws IOException {
+        StreamId master = node.get(0).getKey();
+        byte[] masterKey = new byte[16];
+        for (int i = 0; i < 8; i++) {
+            masterKey[i] = (byte) (master.getFirstPart() >>> (56 - 8 * i));
+            masterKey[8 + i] = (byte) (master.getSecondPart() >>> (56 - 8 * i));
+        }
+        writeString(Slice.create(masterKey));
+
+        ListPack listPack = new ListPack();
+        List<Slice> masterFields = new ArrayList<>();
+        node.get(0).getValue().forEach((field, value) -> masterFields.add(field));
+        listPack.append(node.size());
+        //Number of deleted entries
+        listPack.append(0);
+        listPack.append(masterFields.size());
+        masterFields.forEach(listPack::append);
+        listPack.append(0);
+        for (Map.Entry<StreamId, SequencedMap<Slice, Slice>> entry : node) {
+            SequencedMap<Slice, Slice> fields = entry.getValue();
+            boolean sameFields = hasFields(fields, masterFields);
+            listPack.append(sameFields ? STREAM_ITEM_FLAG_SAMEFIELDS : 0);
+            listPack.append(entry.getKey().getFirstPart() - master.getFirstPart());
+            listPack.append(entry.getKey().getSecondPart() - master.getSecondPart());
+            if (!sameFields) {
+                listPack.append(fields.size());
+            }
+            for (Map.Entry<Slice, Slice> field : fields) {
+                if (!sameFields) {
+                    listPack.append(field.getKey());
+                }
+                listPack.append(field.getValue());
+            }
+            //Number of the listpack elements of the entry, so that the entries can be traversed backwards
+            listPack.append(sameFields ? fields.size() + 3 : 2L * fields.size() + 4);
+        }
+        writeString(Slice.create(listPack.toByteArray()));
+    }
+
+    private static boolean hasFields(SequencedMap<Slice, Slice> fields, List<Slice> expected) {
+        if (fields.size() != expected.size()) {
+            return false;
+        }
+        Iterator<Slice> expectedFields = expected.iterator();
+        for (Map.Entry<Slice, Slice> field : fields) {
+            if (!field.getKey().equals(expectedFields.next())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void writeLength(long length) throws IOException {
+        if (length >= 0 && length < 1 << 6) {
+            write((int) length);
+        } else if (length >= 0 && length < 1 << 14) {
+            write((LENGTH_14BIT << 6) | (int) (length >>> 8));
+            write((int) length);
+        } else if (length >= 0 && length <= 0xffffffffL) {
+            write(LENGTH_32BIT);
+            writeBigEndian(length, 4);
+        } else {
+            write(LENGTH_64BIT);
+            writeBigEndian(length, 8);
+        }
+    }
+
+    /**
+     * Writes a string, as an integer if it is a decimal representation of a 32-bit integer.
+     */
+    private void writeString(Slice value) throws IOException {
+        Long integer = parseInteger(value);
+        if (integer == null) {
+            writeLength(value.length());
+            write(value);
+        } else if (integer >= Byte.MIN_VALUE && integer <= Byte.MAX_VALUE) {
+            write((LENGTH_ENCODED << 6) | ENCODING_INT8);
+            writeLittleEndian(integer, 1);
+        } else if (integer >= Short.MIN_VALUE && integer <= Short.MAX_VALUE) {
+            write((LENGTH_ENCODED << 6) | ENCODING_INT16);
+            writeLittleEndian(integer, 2);
+        } else {
+            write((LENGTH_ENCODED << 6) | ENCODING_INT32);
+            writeLittleEndian(integer, 4);
+        }
+    }
+
+    /**
+     * @return the 32-bit integer the string represents, null if the string is not exactly
+     * the decimal representation of such an integer.
+     */
+    private static Long parseInteger(Slice value) {
+        int length = value.length();
+        if (length == 0 || length > MAX_INTEGER_LENGTH) {
+            return null;
+        }
+        boolean negative = value.byteAt(0) == '-';
+        int start = negative ? 1 : 0;
+        if (length == start || value.byteAt(start) == '0' && length > 1) {
+            //No digits, leading zeros or negative zero
+            return null;
+        }
+        long result = 0;
+        for (int i = start; i < length; i++) {
+            byte digit = value.byteAt(i);
+            if (digit < '0' || digit > '9') {
+                return null;
+            }
+            result = result * 10 + (digit - '0');
+        }
+        result = negative ? -result : result;
+        return result >= Integer.MIN_VALUE && result <= Integer.MAX_VALUE ? result : null;
+    }
+
+    private void writeLittleEndian(long value, int bytes) throws IOException {
+        for (int i = 0; i < bytes; i++) {
+            write((int) (value >>> (8 * i)));
+        }
+    }
+
+    private void writeBigEndian(long value, int bytes) throws IOException {
+        for (int i = bytes - 1; i >= 0; i--) {
+            write((int) (value >>> (8 * i)));
+        }
+    }
+
+    private void write(int value) throws IOException {
+        if (position == buffer.length) {
+            flushBuffer();
+        }
+        buffer[position++] = (byte) value;
+    }
+
+    private void write(byte[] data) throws IOException {
+        write(Slice.create(data));
+    }
+
+    private void write(Slice data) throws IOException {
+        if (position + data.length() > buffer.length) {
+            flushBuffer();
+        }
+        if (data.length() > buffer.length) {
+            byte[] bytes = data.data();
+            checksum = Crc64.update(checksum, bytes, 0, bytes.length);
+            out.write(bytes);
+        } else {
+            data.copyTo(buffer, position);
+            position += data.length();
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        checksum = Crc64.update(checksum, buffer, 0, position);
+        out.write(buffer, 0, position);
+        position = 0;
+    }
+}
@@ -0,0 +1,118 @@
+package com.github.fppt.jedismock.persistence;
+
+import com.github.fppt.jedismock.datastructures.Slice;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reading of ziplists and intsets, the compact encodings of small collections written by Redis before 7.0.
+ */
+final class ZipList {
+    private static final int HEADER_SIZE = 10;
+    private static final int END = 0xff;
+
+    private ZipList() {
+    }
+
+    /**
+     * @return the elements of a ziplist, integers being converted to their decimal representation.
+     */
+    static List<Slice> elements(byte[] data) throws IOException {
+        List<Slice> result = new ArrayList<>();
+        int position = HEADER_SIZE;
+        try {
+            while ((data[position] & 0xff) != END) {
+                //Length of the previous entry takes 1 or 5 bytes
+                position += (data[position] & 0xff) < 254 ? 1 : 5;
+                int encoding = data[position] & 0xff;
+                switch (encoding >>> 6) {
+                    case 0:
+                        result.add(Slice.create(data, position + 1, encoding & 0x3f));
+                        position += 1 + (encoding & 0x3f);
+                        break;
+                    case 1: {
+                        int length = ((encoding & 0x3f) << 8) | (data[position + 1] & 0xff);
+                        result.add(Slice.create(data, position + 2, length));
+                        position += 2 + length;
+                        break;
+                    }
+                    case 2: {
+                        int length = (int) bigEndian(data, position + 1, 4);
+                        result.add(Slice.create(data, position + 5, length));
+                        position += 5 + length;
+                        break;
+                    }
+                    default:
+                        position += 1 + readInteger(data, position, encoding, result);
+                }
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Ziplist is truncated", e);
+        }
+        return result;
+    }
+
+    /**
+     * @return number of bytes taken by the integer after its encoding.
+     */
+    private static int readInteger(byte[] data, int position, int encoding, List<Slice> result) throws IOException {
+        int bytes;
+        switch (encoding) {
+            case 0xc0:
+                bytes = 2;
+                break;
+            case 0xd0:
+                bytes = 4;
+                break;
+            case 0xe0:
+                bytes = 8;
+                break;
+            case 0xf0:
+                bytes = 3;
+                break;
+            case 0xfe:
+                bytes = 1;
+                break;
+            default:
+                if (encoding >= 0xf1 && encoding <= 0xfd) {
+                    //Immediate 4-bit value from 0 to 12
+                    result.add(ListPack.integer((encoding & 0x0f) - 1));
+                    return 0;
+                }
+                throw new IOException("Invalid ziplist encoding " + encoding);
+        }
+        int shift = 64 - 8 * bytes;
+        result.add(ListPack.integer(ListPack.littleEndian(data, position + 1, bytes) << shift >> shift));
+        return bytes;
+    }
+
+    /**
+     * @return the elements of an intset: a sorted array of integers of the same width.
+     */
+    static List<Slice> intSetElements(byte[] data) throws IOException {
+        if (data.length < 8) {
+            throw new IOException("Intset is too short");
+        }
+        int width = (int) ListPack.littleEndian(data, 0, 4);
+        int length = (int) ListPack.littleEndian(data, 4, 4);
+        if (width != 2 && width != 4 && width != 8 || data.length != 8 + (long) width * length) {
+            throw new IOException("Invalid intset");
+        }
+        int shift = 64 - 8 * width;
+        List<Slice> result = new ArrayList<>(length);
+        for (int i = 0; i < length; i++) {
+            result.add(ListPack.integer(ListPack.littleEndian(data, 8 + i * width, width) << shift >> shift));
+        }
+        return result;
+    }
+
+    private static long bigEndian(byte[] data, int offset, int bytes) {
+        long result = 0;
+        for (int i = 0; i < bytes; i++) {
+            result = (result << 8) | (data[offset + i] & 0xff);
+        }
+        return result;
+    }
+}
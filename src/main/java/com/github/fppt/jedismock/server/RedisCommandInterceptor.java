@@ -13,7 +13,8 @@ public interface RedisCommandInterceptor {
      * You can either use it for overriding the default behaviour, or for checking the fact that specific
      * command is set to Redis.
      *
-     * WARNING: if you are going to mutate state, synchronize on state.lock() first!
+     * WARNING: if you are going to mutate state, acquire the server lock with
+     * state.locks().acquire(LockPlan.server()) first!
      * (see com.github.fppt.jedismock.operations.server.MockExecutor#proceed)
      *
      * @param state Executor state, which includes shared database and connection-specific state.
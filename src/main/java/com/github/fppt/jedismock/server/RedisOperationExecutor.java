@@ -2,6 +2,7 @@ package com.github.fppt.jedismock.server;
 
 import com.github.fppt.jedismock.commands.RedisCommand;
 import com.github.fppt.jedismock.datastructures.Slice;
+import com.github.fppt.jedismock.operations.CommandFactory;
 import com.github.fppt.jedismock.storage.OperationExecutorState;
 
 import java.util.List;
@@ -22,7 +23,7 @@ public class RedisOperationExecutor {
         }
         List<Slice> params = command.parameters();
         List<Slice> commandParams = params.subList(1, params.size());
-        String name = new String(params.get(0).data()).toLowerCase();
+        String name = CommandFactory.commandName(params.get(0));
         return state.owner().options().getCommandInterceptor()
                 .execCommand(state, name, commandParams);
     }
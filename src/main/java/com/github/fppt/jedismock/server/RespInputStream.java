@@ -0,0 +1,111 @@
+package com.github.fppt.jedismock.server;
+
+import com.github.fppt.jedismock.exception.ParseErrorException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Objects;
+
+/**
+ * Buffered input stream for reading RESP messages from a client connection.
+ *
+ * Unlike {@link java.io.BufferedInputStream}, it is not synchronized (every connection
+ * is read by a single thread), and bulk reads larger than the internal buffer
+ * go straight into the destination array.
+ */
+public class RespInputStream extends InputStream {
+    public static final int DEFAULT_BUFFER_SIZE = 16 * 1024;
+
+    private final InputStream in;
+    private final byte[] buf;
+    private int pos;
+    private int limit;
+
+    public RespInputStream(InputStream in) {
+        this(in, DEFAULT_BUFFER_SIZE);
+    }
+
+    public RespInputStream(InputStream in, int bufferSize) {
+        this.in = in;
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("Buffer size <= 0");
+        }
+        this.buf = new byte[bufferSize];
+    }
+
+    private boolean fill() throws IOException {
+        pos = 0;
+        limit = 0;
+        int n = in.read(buf, 0, buf.length);
+        if (n <= 0) {
+            return false;
+        }
+        limit = n;
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (pos >= limit && !fill()) {
+            return -1;
+        }
+        return buf[pos++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        Objects.requireNonNull(b);
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (len == 0) {
+            return 0;
+        }
+        int buffered = limit - pos;
+        if (buffered > 0) {
+            int n = Math.min(buffered, len);
+            System.arraycopy(buf, pos, b, off, n);
+            pos += n;
+            return n;
+        }
+        if (len >= buf.length) {
+            //Large payloads are read directly into the destination, bypassing the buffer
+            return in.read(b, off, len);
+        }
+        if (!fill()) {
+            return -1;
+        }
+        int n = Math.min(limit, len);
+        System.arraycopy(buf, 0, b, off, n);
+        pos = n;
+        return n;
+    }
+
+    /**
+     * @return number of bytes that are already buffered and can be consumed without blocking.
+     */
+    public int buffered() {
+        return limit - pos;
+    }
+
+    /**
+     * @return true if a complete command is already buffered, so that it can be parsed without blocking.
+     */
+    public boolean hasCompleteCommand() {
+        try {
+            return SliceParser.commandEnd(buf, pos, limit) >= 0;
+        } catch (ParseErrorException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public int available() throws IOException {
+        return buffered() + in.available();
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
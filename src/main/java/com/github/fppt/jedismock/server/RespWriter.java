@@ -0,0 +1,232 @@
+package com.github.fppt.jedismock.server;
+
+import com.github.fppt.jedismock.datastructures.Slice;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Growable buffer for encoding RESP replies.
+ *
+ * Array headers, bulk strings and integers are written directly into the buffer, so nested
+ * replies are encoded in one pass instead of copying finished child replies at every level.
+ * Headers for small lengths and integers are precomputed.
+ */
+public final class RespWriter {
+    static final int SHARED_HEADERS = 256;
+    private static final int DEFAULT_CAPACITY = 64;
+    /**
+     * After a reset, a buffer that grew larger than this is released.
+     */
+    private static final int MAX_RETAINED_CAPACITY = 1024 * 1024;
+    private static final byte[] CRLF = {'\r', '\n'};
+    private static final byte[] NULL_BULK_STRING = "$-1\r\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NULL_ARRAY = "*-1\r\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[][] BULK_HEADERS = precompute('$');
+    private static final byte[][] ARRAY_HEADERS = precompute('*');
+    private static final byte[][] INTEGERS = precompute(':');
+
+    private final int initialCapacity;
+    private byte[] buf;
+    private int size;
+    /**
+     * True when the buffer is referenced by a slice returned from {@link #toSlice()}
+     * and therefore must not be overwritten.
+     */
+    private boolean shared;
+
+    public RespWriter() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public RespWriter(int initialCapacity) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("Capacity < 0");
+        }
+        this.initialCapacity = initialCapacity;
+        this.buf = new byte[initialCapacity];
+    }
+
+    private static byte[][] precompute(char prefix) {
+        byte[][] result = new byte[SHARED_HEADERS][];
+        for (int i = 0; i < SHARED_HEADERS; i++) {
+            result[i] = (prefix + Integer.toString(i) + "\r\n").getBytes(StandardCharsets.US_ASCII);
+        }
+        return result;
+    }
+
+    /**
+     * @return number of decimal digits (and sign) needed to write the value.
+     */
+    static int decimalLength(long v) {
+        if (v < 0) {
+            return v == Long.MIN_VALUE ? 20 : 1 + decimalLength(-v);
+        }
+        int length = 1;
+        while (v >= 10) {
+            v /= 10;
+            length++;
+        }
+        return length;
+    }
+
+    /**
+     * @return encoded size of a header like {@code $<value>\r\n}.
+     */
+    static int headerLength(long value) {
+        return 1 + decimalLength(value) + CRLF.length;
+    }
+
+    /**
+     * @return encoded size of a bulk string with the given contents.
+     */
+    static int bulkStringLength(Slice value) {
+        return value == null ? NULL_BULK_STRING.length : headerLength(value.length()) + value.length() + CRLF.length;
+    }
+
+    public RespWriter arrayHeader(int length) {
+        if (length < 0) {
+            return write(NULL_ARRAY);
+        }
+        if (length < SHARED_HEADERS) {
+            return write(ARRAY_HEADERS[length]);
+        }
+        return header('*', length);
+    }
+
+    public RespWriter bulkString(Slice value) {
+        if (value == null) {
+            return write(NULL_BULK_STRING);
+        }
+        int length = value.length();
+        if (length < SHARED_HEADERS) {
+            write(BULK_HEADERS[length]);
+        } else {
+            header('$', length);
+        }
+        ensureCapacity(length + CRLF.length);
+        value.copyTo(buf, size);
+        size += length;
+        return write(CRLF);
+    }
+
+    public RespWriter bulkString(String value) {
+        return bulkString(value == null ? null : Slice.create(value));
+    }
+
+    public RespWriter nullBulkString() {
+        return write(NULL_BULK_STRING);
+    }
+
+    public RespWriter nullArray() {
+        return write(NULL_ARRAY);
+    }
+
+    public RespWriter integer(long value) {
+        if (value >= 0 && value < SHARED_HEADERS) {
+            return write(INTEGERS[(int) value]);
+        }
+        return header(':', value);
+    }
+
+    public RespWriter simpleString(String value) {
+        return line('+', value);
+    }
+
+    public RespWriter error(String message) {
+        return line('-', message);
+    }
+
+    /**
+     * Appends a reply that is already RESP-encoded.
+     */
+    public RespWriter raw(Slice encoded) {
+        int length = encoded.length();
+        ensureCapacity(length);
+        encoded.copyTo(buf, size);
+        size += length;
+        return this;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns written data as a slice. No data is copied: the buffer is handed over to the slice,
+     * and the writer switches to a new buffer on the next write.
+     */
+    public Slice toSlice() {
+        shared = true;
+        return Slice.create(buf, 0, size);
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(buf, 0, size);
+    }
+
+    /**
+     * Discards written data, so that the buffer can be reused.
+     */
+    public void reset() {
+        size = 0;
+        if (shared || buf.length > MAX_RETAINED_CAPACITY) {
+            buf = new byte[initialCapacity];
+            shared = false;
+        }
+    }
+
+    private RespWriter line(char prefix, String value) {
+        byte[] bytes = value.getBytes();
+        ensureCapacity(1 + bytes.length + CRLF.length);
+        buf[size++] = (byte) prefix;
+        System.arraycopy(bytes, 0, buf, size, bytes.length);
+        size += bytes.length;
+        return write(CRLF);
+    }
+
+    private RespWriter header(char prefix, long value) {
+        int length = decimalLength(value);
+        ensureCapacity(1 + length + CRLF.length);
+        buf[size++] = (byte) prefix;
+        if (value == Long.MIN_VALUE) {
+            byte[] digits = Long.toString(value).getBytes(StandardCharsets.US_ASCII);
+            System.arraycopy(digits, 0, buf, size, digits.length);
+        } else {
+            long v = value;
+            if (v < 0) {
+                buf[size] = '-';
+                v = -v;
+            }
+            int i = size + length;
+            do {
+                buf[--i] = (byte) ('0' + v % 10);
+                v /= 10;
+            } while (v != 0);
+        }
+        size += length;
+        return write(CRLF);
+    }
+
+    private RespWriter write(byte[] bytes) {
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buf, size, bytes.length);
+        size += bytes.length;
+        return this;
+    }
+
+    private void ensureCapacity(int additional) {
+        int required = size + additional;
+        if (required < 0) {
+            throw new OutOfMemoryError("Reply is too large");
+        }
+        if (shared) {
+            buf = Arrays.copyOf(buf, Math.max(required, initialCapacity));
+            shared = false;
+        } else if (required > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(required, Math.max(buf.length * 2, DEFAULT_CAPACITY)));
+        }
+    }
+}
@@ -3,9 +3,7 @@ package com.github.fppt.jedismock.server;
 import com.github.fppt.jedismock.datastructures.Slice;
 import org.slf4j.LoggerFactory;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -22,6 +20,19 @@ public class Response {
     public static final Slice NULL_ARRAY = Slice.create("*-1" + LINE_SEPARATOR);
 
     private static final org.slf4j.Logger LOG = LoggerFactory.getLogger(Response.class);
+    private static final Slice[] SHARED_INTEGERS = new Slice[RespWriter.SHARED_HEADERS];
+    private static final Slice MESSAGE = Slice.create("message");
+    private static final Slice PMESSAGE = Slice.create("pmessage");
+    private static final Slice SUBSCRIBE = Slice.create("subscribe");
+    private static final Slice PSUBSCRIBE = Slice.create("psubscribe");
+    private static final Slice UNSUBSCRIBE = Slice.create("unsubscribe");
+    private static final Slice PUNSUBSCRIBE = Slice.create("punsubscribe");
+
+    static {
+        for (int i = 0; i < SHARED_INTEGERS.length; i++) {
+            SHARED_INTEGERS[i] = new RespWriter(RespWriter.headerLength(i)).integer(i).toSlice();
+        }
+    }
 
     private Response() {
     }
@@ -30,25 +41,18 @@ public class Response {
         if (slice == null) {
             return NULL;
         }
-
-        ByteArrayOutputStream bo = new ByteArrayOutputStream();
-
-        try {
-            bo.write(String.format("$%d%s", slice.data().length, LINE_SEPARATOR).getBytes());
-            bo.write(slice.data());
-            bo.write(LINE_SEPARATOR.getBytes());
-        } catch (IOException e) {
-            throw new IllegalStateException(e);
-        }
-        return Slice.create(bo.toByteArray());
+        return new RespWriter(RespWriter.bulkStringLength(slice)).bulkString(slice).toSlice();
     }
 
     public static Slice error(String s) {
-        return Slice.create(String.format("-%s%s", s, LINE_SEPARATOR));
+        return new RespWriter(s.length() + 3).error(s).toSlice();
     }
 
     public static Slice integer(long v) {
-        return Slice.create(String.format(":%d%s", v, LINE_SEPARATOR));
+        if (v >= 0 && v < SHARED_INTEGERS.length) {
+            return SHARED_INTEGERS[(int) v];
+        }
+        return new RespWriter(RespWriter.headerLength(v)).integer(v).toSlice();
     }
 
     public static Slice doubleValue(double v) {
@@ -56,98 +60,74 @@ public class Response {
     }
 
     public static Slice array(Slice... values) {
-        ByteArrayOutputStream bo = new ByteArrayOutputStream();
-        try {
-            bo.write(String.format("*%d%s", values.length, LINE_SEPARATOR).getBytes());
-            for (Slice value : values) {
-                bo.write(value.data());
-            }
-        } catch (IOException e) {
-            throw new IllegalStateException(e);
-        }
-        return Slice.create(bo.toByteArray());
+        return array(Arrays.asList(values));
     }
 
     public static Slice array(List<Slice> values) {
-        ByteArrayOutputStream bo = new ByteArrayOutputStream();
-        try {
-            bo.write(String.format("*%d%s", values.size(), LINE_SEPARATOR).getBytes());
-            for (Slice value : values) {
-                bo.write(value.data());
-            }
-        } catch (IOException e) {
-            throw new IllegalStateException(e);
+        int length = RespWriter.headerLength(values.size());
+        for (Slice value : values) {
+            length += value.length();
+        }
+        RespWriter writer = new RespWriter(length).arrayHeader(values.size());
+        for (Slice value : values) {
+            writer.raw(value);
         }
-        return Slice.create(bo.toByteArray());
+        return writer.toSlice();
     }
 
     public static Slice publishedMessage(Slice channel, Slice message) {
-        Slice operation = SliceParser.consumeParameter("$7\r\nmessage\r\n".getBytes());
-
-        List<Slice> slices = new ArrayList<>();
-        slices.add(Response.bulkString(operation));
-        slices.add(Response.bulkString(channel));
-        slices.add(Response.bulkString(message));
-
-        return array(slices);
+        return new RespWriter()
+                .arrayHeader(3)
+                .bulkString(MESSAGE)
+                .bulkString(channel)
+                .bulkString(message)
+                .toSlice();
     }
 
     public static Slice publishedPMessage(Slice pattern, Slice channel, Slice message) {
-        Slice operation = SliceParser.consumeParameter("$8\r\npmessage\r\n".getBytes());
-
-        List<Slice> slices = new ArrayList<>();
-        slices.add(Response.bulkString(operation));
-        slices.add(Response.bulkString(pattern));
-        slices.add(Response.bulkString(channel));
-        slices.add(Response.bulkString(message));
-
-        return array(slices);
+        return new RespWriter()
+                .arrayHeader(4)
+                .bulkString(PMESSAGE)
+                .bulkString(pattern)
+                .bulkString(channel)
+                .bulkString(message)
+                .toSlice();
     }
 
     public static Slice subscribedToChannel(List<Slice> channels) {
-        Slice operation = SliceParser.consumeParameter("$9\r\nsubscribe\r\n".getBytes());
-        List<Slice> slices = new ArrayList<>();
-        int i = 0;
-        for (Slice channel : channels) {
-            slices.add(Response.bulkString(operation));
-            slices.add(bulkString(channel));
-            slices.add(Response.integer(++i));
-        }
-        return array(slices);
+        return subscribed(SUBSCRIBE, channels);
     }
 
     public static Slice psubscribedToChannel(List<Slice> patterns) {
-        Slice operation = SliceParser.consumeParameter("$10\r\npsubscribe\r\n".getBytes());
-        List<Slice> slices = new ArrayList<>();
+        return subscribed(PSUBSCRIBE, patterns);
+    }
+
+    private static Slice subscribed(Slice operation, List<Slice> channels) {
+        RespWriter writer = new RespWriter().arrayHeader(channels.size() * 3);
         int i = 0;
-        for (Slice pattern : patterns) {
-            slices.add(Response.bulkString(operation));
-            slices.add(bulkString(pattern));
-            slices.add(Response.integer(++i));
+        for (Slice channel : channels) {
+            writer.bulkString(operation)
+                    .bulkString(channel)
+                    .integer(++i);
         }
-        return array(slices);
+        return writer.toSlice();
     }
 
     public static Slice unsubscribe(Slice channel, int remainingSubscriptions) {
-        Slice operation = SliceParser.consumeParameter("$11\r\nunsubscribe\r\n".getBytes());
-
-        List<Slice> slices = new ArrayList<>();
-        slices.add(Response.bulkString(operation));
-        slices.add(Response.bulkString(channel));
-        slices.add(Response.integer(remainingSubscriptions));
-
-        return array(slices);
+        return unsubscribed(UNSUBSCRIBE, channel, remainingSubscriptions);
     }
 
     public static Slice punsubscribe(Slice channel, int remainingSubscriptions) {
-        Slice operation = SliceParser.consumeParameter("$12\r\npunsubscribe\r\n".getBytes());
-
-        List<Slice> slices = new ArrayList<>();
-        slices.add(Response.bulkString(operation));
-        slices.add(Response.bulkString(channel));
-        slices.add(Response.integer(remainingSubscriptions));
+        return unsubscribed(PUNSUBSCRIBE, channel, remainingSubscriptions);
+    }
 
-        return array(slices);
+    private static Slice unsubscribed(Slice operation, Slice channel, int remainingSubscriptions) {
+        return new RespWriter()
+                .arrayHeader(3)
+                .bulkString(operation)
+                .bulkString(channel)
+                .integer(remainingSubscriptions)
+                .toSlice();
     }
 
     public static Slice clientResponse(String command, Slice response) {
@@ -1,20 +1,55 @@
 package com.github.fppt.jedismock.server;
 
 import com.github.fppt.jedismock.operations.server.MockExecutor;
+import com.github.fppt.jedismock.storage.AppendFsync;
+import com.github.fppt.jedismock.storage.MaxMemoryPolicy;
 
+import java.nio.file.Path;
+import java.util.Objects;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Created by Xiaolu on 2015/4/22.
  */
 public class ServiceOptions {
+    /**
+     * Default frequency of the active expiry cycle, the same as the default 'hz' of Redis.
+     */
+    public static final int DEFAULT_ACTIVE_EXPIRY_HZ = 10;
+
     private final RedisCommandInterceptor commandInterceptor;
     private final boolean clusterMode;
+    private final int nioThreads;
+    private final boolean virtualThreads;
+    private final boolean fineGrainedLocking;
+    private final int activeExpiryHz;
+    private final long maxMemory;
+    private final MaxMemoryPolicy maxMemoryPolicy;
+    private final Path dumpFile;
+    private final Path appendOnlyFile;
+    private final AppendFsync appendFsync;
 
     private ServiceOptions(
             RedisCommandInterceptor commandInterceptor, boolean clusterMode) {
+        this(commandInterceptor, clusterMode, 0, true, false, DEFAULT_ACTIVE_EXPIRY_HZ, 0,
+                MaxMemoryPolicy.NOEVICTION, null, null, AppendFsync.EVERYSEC);
+    }
+
+    private ServiceOptions(
+            RedisCommandInterceptor commandInterceptor, boolean clusterMode, int nioThreads, boolean virtualThreads,
+            boolean fineGrainedLocking, int activeExpiryHz, long maxMemory, MaxMemoryPolicy maxMemoryPolicy,
+            Path dumpFile, Path appendOnlyFile, AppendFsync appendFsync) {
         this.commandInterceptor = commandInterceptor;
         this.clusterMode = clusterMode;
+        this.nioThreads = nioThreads;
+        this.virtualThreads = virtualThreads;
+        this.fineGrainedLocking = fineGrainedLocking;
+        this.activeExpiryHz = activeExpiryHz;
+        this.maxMemory = maxMemory;
+        this.maxMemoryPolicy = maxMemoryPolicy;
+        this.dumpFile = dumpFile;
+        this.appendOnlyFile = appendOnlyFile;
+        this.appendFsync = appendFsync;
     }
 
     public RedisCommandInterceptor getCommandInterceptor() {
@@ -25,11 +60,184 @@ public class ServiceOptions {
         return clusterMode;
     }
 
+    public boolean isNioTransportEnabled() {
+        return nioThreads > 0;
+    }
+
+    /**
+     * @return number of I/O threads of non-blocking transport, 0 if thread-per-connection transport is used.
+     */
+    public int getNioThreads() {
+        return nioThreads;
+    }
+
+    /**
+     * @return true if client connections should run on virtual threads when the JVM supports them (Java 21+).
+     */
+    public boolean isVirtualThreadsEnabled() {
+        return virtualThreads;
+    }
+
+    /**
+     * @return true if commands lock only the keys or databases they work with instead of the whole server.
+     */
+    public boolean isFineGrainedLockingEnabled() {
+        return fineGrainedLocking;
+    }
+
+    /**
+     * @return how many times per second the keys with expired time to live are removed in background,
+     * 0 if keys are only removed when accessed.
+     */
+    public int getActiveExpiryHz() {
+        return activeExpiryHz;
+    }
+
+    /**
+     * Sets how many times per second the keys with expired time to live are removed in background
+     * (10 by default). Expiration is checked against the server clock, so with a fixed or offset clock
+     * the keys are removed only after the clock is moved past their deadlines.
+     *
+     * @param hz frequency of the active expiry cycle, 0 to remove the expired keys only when they are accessed.
+     */
+    public ServiceOptions withActiveExpiry(int hz) {
+        if (hz < 0) {
+            throw new IllegalArgumentException("Active expiry frequency must not be negative");
+        }
+        return new ServiceOptions(commandInterceptor, clusterMode, nioThreads, virtualThreads, fineGrainedLocking,
+                hz, maxMemory, maxMemoryPolicy, dumpFile, appendOnlyFile, appendFsync);
+    }
+
+    /**
+     * @return maximum number of bytes used by the keys and their values, 0 if the memory is not limited.
+     */
+    public long getMaxMemory() {
+        return maxMemory;
+    }
+
+    public MaxMemoryPolicy getMaxMemoryPolicy() {
+        return maxMemoryPolicy;
+    }
+
+    /**
+     * Limits the memory used by the keys and their values in all the databases, like 'maxmemory' and
+     * 'maxmemory-policy' of Redis. When the limit is exceeded, keys are evicted according to the policy before
+     * executing a command. If nothing can be evicted, commands which may increase the used memory fail
+     * with an OOM error. The memory is estimated approximately, sampling the elements of large collections.
+     *
+     * @param bytes  maximum number of bytes, 0 to remove the limit.
+     * @param policy how the keys to evict are chosen.
+     */
+    public ServiceOptions withMaxMemory(long bytes, MaxMemoryPolicy policy) {
+        if (bytes < 0) {
+            throw new IllegalArgumentException("Memory limit must not be negative");
+        }
+        return new ServiceOptions(commandInterceptor, clusterMode, nioThreads, virtualThreads, fineGrainedLocking,
+                activeExpiryHz, bytes, Objects.requireNonNull(policy), dumpFile, appendOnlyFile, appendFsync);
+    }
+
+    /**
+     * @return the file the databases are saved to, null if the databases are not saved.
+     */
+    public Path getDumpFile() {
+        return dumpFile;
+    }
+
+    /**
+     * Sets the file in the RDB format of Redis which the databases are saved to by SAVE and BGSAVE,
+     * like 'dir' and 'dbfilename' of Redis. If the file exists when the server is started, the keys
+     * are loaded from it before the connections are accepted. Files saved by Redis can be loaded too.
+     *
+     * @param file the dump file, its directory must exist.
+     */
+    public ServiceOptions withDumpFile(Path file) {
+        return new ServiceOptions(commandInterceptor, clusterMode, nioThreads, virtualThreads, fineGrainedLocking,
+                activeExpiryHz, maxMemory, maxMemoryPolicy, Objects.requireNonNull(file), appendOnlyFile, appendFsync);
+    }
+
+    /**
+     * @return the file the write commands are logged to, null if the commands are not logged.
+     */
+    public Path getAppendOnlyFile() {
+        return appendOnlyFile;
+    }
+
+    public AppendFsync getAppendFsync() {
+        return appendFsync;
+    }
+
+    /**
+     * Logs the write commands to a file, like 'appendonly' and 'appendfilename' of Redis, flushing it
+     * once per second. See {@link #withAppendOnlyFile(Path, AppendFsync)}.
+     *
+     * @param file the append only file, its directory must exist.
+     */
+    public ServiceOptions withAppendOnlyFile(Path file) {
+        return withAppendOnlyFile(file, AppendFsync.EVERYSEC);
+    }
+
+    /**
+     * Logs the write commands to a file, like 'appendonly', 'appendfilename' and 'appendfsync' of Redis.
+     * If the file exists when the server is started, it is replayed instead of loading the dump file.
+     * Otherwise, the file is created with a snapshot of the loaded data. BGREWRITEAOF compacts the file.
+     *
+     * @param file  the append only file, its directory must exist.
+     * @param fsync how often the file is flushed to the disk.
+     */
+    public ServiceOptions withAppendOnlyFile(Path file, AppendFsync fsync) {
+        return new ServiceOptions(commandInterceptor, clusterMode, nioThreads, virtualThreads, fineGrainedLocking,
+                activeExpiryHz, maxMemory, maxMemoryPolicy, dumpFile, Objects.requireNonNull(file),
+                Objects.requireNonNull(fsync));
+    }
+
     /**
      * Enables cluster mode for Jedis Mock, compatible with JedisCluster and RedisClusterClient from Lettuce.
      */
     public ServiceOptions withClusterModeEnabled() {
-        return new ServiceOptions(commandInterceptor, true);
+        return new ServiceOptions(commandInterceptor, true, nioThreads, virtualThreads, fineGrainedLocking,
+                activeExpiryHz, maxMemory, maxMemoryPolicy, dumpFile, appendOnlyFile, appendFsync);
+    }
+
+    /**
+     * Enables non-blocking transport: all the connections are served by a small fixed number of I/O threads
+     * instead of a dedicated thread per connection. Number of I/O threads is chosen
+     * based on the number of available processors.
+     */
+    public ServiceOptions withNioTransport() {
+        return withNioTransport(Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2)));
+    }
+
+    /**
+     * Enables non-blocking transport with the given number of I/O threads.
+     *
+     * @param ioThreads number of threads serving client connections.
+     */
+    public ServiceOptions withNioTransport(int ioThreads) {
+        if (ioThreads <= 0) {
+            throw new IllegalArgumentException("Number of I/O threads must be positive");
+        }
+        return new ServiceOptions(commandInterceptor, clusterMode, ioThreads, virtualThreads, fineGrainedLocking,
+                activeExpiryHz, maxMemory, maxMemoryPolicy, dumpFile, appendOnlyFile, appendFsync);
+    }
+
+    /**
+     * Makes Jedis Mock serve client connections with platform threads even when virtual threads
+     * are available (Java 21+).
+     */
+    public ServiceOptions withVirtualThreadsDisabled() {
+        return new ServiceOptions(commandInterceptor, clusterMode, nioThreads, false, fineGrainedLocking,
+                activeExpiryHz, maxMemory, maxMemoryPolicy, dumpFile, appendOnlyFile, appendFsync);
+    }
+
+    /**
+     * Enables fine-grained locking: commands lock only the keys they access (or the database they work with),
+     * so that clients working with different keys or databases do not wait for each other.
+     * Commands affecting connection or server state (e.g. SELECT, SUBSCRIBE, blocking commands) still
+     * lock the whole server. Lua scripts must pass all the keys they access in KEYS.
+     */
+    public ServiceOptions withFineGrainedLocking() {
+        return new ServiceOptions(commandInterceptor, clusterMode, nioThreads, virtualThreads, true, activeExpiryHz,
+                maxMemory, maxMemoryPolicy, dumpFile, appendOnlyFile, appendFsync);
     }
 
     public static ServiceOptions defaultOptions() {
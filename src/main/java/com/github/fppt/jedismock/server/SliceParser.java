@@ -5,11 +5,15 @@ import com.github.fppt.jedismock.exception.EOFException;
 import com.github.fppt.jedismock.exception.ParseErrorException;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 
 public class SliceParser {
+    /**
+     * Maximum length of a bulk string, same as the default 'proto-max-bulk-len' in Redis.
+     */
+    private static final long MAX_BULK_LENGTH = 512 * 1024 * 1024;
+    private static final int MAX_HEADER_LENGTH = 32;
 
     public static byte consumeByte(InputStream messageInput) throws EOFException {
         int b;
@@ -39,7 +43,8 @@ public class SliceParser {
             if (c == '\r') {
                 break;
             }
-            if (!isNumber(c)) {
+            //The number must not overflow, a larger one is an error anyway
+            if (!isNumber(c) || ret > (Long.MAX_VALUE - 9) / 10) {
                 throw new ParseErrorException();
             }
             ret = ret * 10 + c - '0';
@@ -52,11 +57,24 @@ public class SliceParser {
     }
 
     public static Slice consumeSlice(InputStream messageInput, long len) throws ParseErrorException {
-        ByteArrayOutputStream bo = new ByteArrayOutputStream();
-        for (long i = 0; i < len; i++) {
-            bo.write(consumeByte(messageInput));
+        if (len < 0 || len > MAX_BULK_LENGTH) {
+            throw new ParseErrorException();
         }
-        return Slice.create(bo.toByteArray());
+        byte[] data = new byte[(int) len];
+        int offset = 0;
+        while (offset < data.length) {
+            int n;
+            try {
+                n = messageInput.read(data, offset, data.length - offset);
+            } catch (IOException e) {
+                throw new EOFException();
+            }
+            if (n == -1) {
+                throw new EOFException();
+            }
+            offset += n;
+        }
+        return Slice.create(data);
     }
 
     public static long consumeCount(InputStream messageInput) throws ParseErrorException {
@@ -86,6 +104,83 @@ public class SliceParser {
         return '0' <= c && c <= '9';
     }
 
+    /**
+     * Finds the end of a command (RESP array of bulk strings) which starts at the given position,
+     * without copying any data.
+     *
+     * @param data buffer containing received bytes
+     * @param from position of the first byte of the command
+     * @param to   position after the last received byte
+     * @return position after the end of the command, or -1 if the command is not fully received yet
+     * @throws ParseErrorException if the data is not a well-formed command
+     */
+    public static int commandEnd(byte[] data, int from, int to) throws ParseErrorException {
+        if (from >= to) {
+            return -1;
+        }
+        if (data[from] != '*') {
+            throw new ParseErrorException();
+        }
+        int lineEnd = lineEnd(data, from + 1, to);
+        if (lineEnd < 0 || lineEnd + 1 >= to) {
+            return -1;
+        }
+        long count = parseHeaderNumber(data, from + 1, lineEnd);
+        int pos = lineEnd + 2;
+        for (long i = 0; i < count; i++) {
+            if (pos >= to) {
+                return -1;
+            }
+            if (data[pos] != '$') {
+                throw new ParseErrorException();
+            }
+            lineEnd = lineEnd(data, pos + 1, to);
+            if (lineEnd < 0 || lineEnd + 1 >= to) {
+                return -1;
+            }
+            long len = parseHeaderNumber(data, pos + 1, lineEnd);
+            long end = lineEnd + 2 + len + 2;
+            if (end > to) {
+                return -1;
+            }
+            if (data[(int) end - 2] != '\r' || data[(int) end - 1] != '\n') {
+                throw new ParseErrorException();
+            }
+            pos = (int) end;
+        }
+        return pos;
+    }
+
+    private static int lineEnd(byte[] data, int from, int to) throws ParseErrorException {
+        int limit = Math.min(to, from + MAX_HEADER_LENGTH);
+        for (int i = from; i < limit; i++) {
+            if (data[i] == '\r') {
+                return i;
+            }
+        }
+        if (limit < to) {
+            throw new ParseErrorException();
+        }
+        return -1;
+    }
+
+    private static long parseHeaderNumber(byte[] data, int from, int lineEnd) throws ParseErrorException {
+        if (from == lineEnd || data[lineEnd + 1] != '\n') {
+            throw new ParseErrorException();
+        }
+        long ret = 0;
+        for (int i = from; i < lineEnd; i++) {
+            if (!isNumber(data[i])) {
+                throw new ParseErrorException();
+            }
+            ret = ret * 10 + data[i] - '0';
+            if (ret > MAX_BULK_LENGTH) {
+                throw new ParseErrorException();
+            }
+        }
+        return ret;
+    }
+
     public static Slice consumeParameter(InputStream messageInput) throws ParseErrorException {
         expectByte(messageInput, (byte) '$');
         long len = consumeLong(messageInput);
@@ -0,0 +1,19 @@
+package com.github.fppt.jedismock.storage;
+
+/**
+ * When the commands written to the append only file are flushed to the disk, the same as 'appendfsync' of Redis.
+ */
+public enum AppendFsync {
+    /**
+     * The file is flushed after every command, before the reply is sent.
+     */
+    ALWAYS,
+    /**
+     * The file is flushed once per second, so that at most a second of writes is lost if the machine crashes.
+     */
+    EVERYSEC,
+    /**
+     * The commands are written to the file once per second, flushing is left to the operating system.
+     */
+    NO
+}
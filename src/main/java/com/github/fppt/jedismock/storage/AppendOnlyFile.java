@@ -0,0 +1,661 @@
+package com.github.fppt.jedismock.storage;
+
+import com.github.fppt.jedismock.commands.RedisCommand;
+import com.github.fppt.jedismock.commands.RedisCommandParser;
+import com.github.fppt.jedismock.datastructures.Slice;
+import com.github.fppt.jedismock.exception.EOFException;
+import com.github.fppt.jedismock.exception.ParseErrorException;
+import com.github.fppt.jedismock.operations.CommandFactory;
+import com.github.fppt.jedismock.operations.CommandKeys;
+import com.github.fppt.jedismock.operations.RedisOperation;
+import com.github.fppt.jedismock.persistence.RdbReader;
+import com.github.fppt.jedismock.server.RedisCommandInterceptor;
+import com.github.fppt.jedismock.server.RespInputStream;
+import com.github.fppt.jedismock.server.RespWriter;
+import com.github.fppt.jedismock.server.Response;
+import com.github.fppt.jedismock.server.SliceParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Log of the write commands executed by a server, the same as 'appendonly' of Redis.
+ *
+ * The commands are accumulated in memory and written to the file according to the {@link AppendFsync} policy.
+ * Like in Redis, the file starts with a snapshot of the databases in the RDB format, followed by the commands
+ * executed after the snapshot was taken. BGREWRITEAOF replaces the whole log with a new snapshot.
+ * When the server is started, the file is replayed without going through the network.
+ */
+public final class AppendOnlyFile {
+    private static final Logger LOG = LoggerFactory.getLogger(AppendOnlyFile.class);
+    /**
+     * Accumulated commands are written to the file when they take more than this, without waiting for the
+     * next periodic flush.
+     */
+    private static final int WRITE_THRESHOLD = 64 * 1024;
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final byte[] RDB_MAGIC = "REDIS".getBytes(StandardCharsets.US_ASCII);
+    private static final Slice SELECT = Slice.create("select");
+    private static final Slice MULTI = Slice.create("multi");
+    private static final Slice EXEC = Slice.create("exec");
+    private static final Slice EVAL = Slice.create("eval");
+    private static final Slice PEXPIREAT = Slice.create("pexpireat");
+    private static final Slice DEL = Slice.create("del");
+    private static final Slice SREM = Slice.create("srem");
+    /**
+     * Commands which may modify the data ('write' in Redis), by their names.
+     */
+    private static final Map<String, Slice> WRITE_COMMANDS = new HashMap<>();
+    /**
+     * Commands which may set a time to live relative to the current time. They are followed by PEXPIREAT
+     * in the log, so that the keys expire at the same time when the log is replayed later.
+     */
+    private static final Set<String> RELATIVE_EXPIRY = new HashSet<>(Arrays.asList("expire", "pexpire", "set",
+            "setex", "psetex", "getex", "restore"));
+
+    static {
+        for (String name : Arrays.asList("append", "bitfield", "bitop", "blmove", "blmpop", "blpop", "brpop",
+                "brpoplpush", "bzmpop", "bzpopmax", "bzpopmin", "copy", "decr", "decrby", "del", "eval", "evalsha",
+                "expire", "expireat", "flushall", "flushdb", "geoadd", "georadius", "georadiusbymember",
+                "geosearchstore", "getdel", "getex", "getset", "hdel", "hincrby", "hincrbyfloat", "hmset", "hset",
+                "hsetnx", "incr", "incrby", "incrbyfloat", "linsert", "lmove", "lmpop", "lpop", "lpush", "lpushx",
+                "lrem", "lset", "ltrim", "migrate", "move", "mset", "msetnx", "persist", "pexpire", "pexpireat",
+                "pfadd", "pfmerge", "psetex", "rename", "renamenx", "restore", "rpop", "rpoplpush", "rpush", "rpushx",
+                "sadd", "sdiffstore", "set", "setbit", "setex", "setnx", "setrange", "sinterstore", "smove", "sort",
+                "spop", "srem", "sunionstore", "swapdb", "unlink", "xack", "xadd", "xautoclaim", "xclaim", "xdel",
+                "xgroup", "xreadgroup", "xsetid", "xtrim", "zadd", "zdiffstore", "zincrby", "zinterstore", "zmpop",
+                "zpopmax", "zpopmin", "zrangestore", "zrem", "zremrangebylex", "zremrangebyrank", "zremrangebyscore",
+                "zunionstore")) {
+            WRITE_COMMANDS.put(name, Slice.create(name));
+        }
+    }
+
+    private final Path path;
+    private final AppendFsync fsync;
+    private final Map<Integer, RedisBase> redisBases;
+    private final Supplier<Clock> clockSupplier;
+    //The fields below are guarded by this object
+    private final RespWriter buffer = new RespWriter(WRITE_THRESHOLD);
+    //Commands executed while a rewrite is in progress, which are appended to the rewritten file
+    private RespWriter rewriteBuffer;
+    private FileOutputStream out;
+    //Database selected by the last logged command
+    private int selected = -1;
+    //MULTI is written before the first command of a transaction which modifies the data
+    private boolean transactionStarted;
+    private boolean multiWritten;
+    private ScheduledExecutorService flusher;
+    private volatile Thread rewrite;
+
+    /**
+     * @param path       the file, null if the commands are not logged.
+     * @param fsync      how often the file is flushed.
+     * @param redisBases databases of the server.
+     */
+    public AppendOnlyFile(Path path, AppendFsync fsync, Map<Integer, RedisBase> redisBases,
+                          Supplier<Clock> clockSupplier) {
+        this.path = path;
+        this.fsync = Objects.requireNonNull(fsync);
+        this.redisBases = Objects.requireNonNull(redisBases);
+        this.clockSupplier = Objects.requireNonNull(clockSupplier);
+    }
+
+    public static AppendOnlyFile none() {
+        return new AppendOnlyFile(null, AppendFsync.NO, new HashMap<>(), Clock::systemDefaultZone);
+    }
+
+    public boolean isEnabled() {
+        return path != null;
+    }
+
+    /**
+     * @return true if the file exists, so it should be loaded instead of the dump file.
+     */
+    public boolean exists() {
+        return path != null && Files.exists(path);
+    }
+
+    public boolean isRewriteInProgress() {
+        return rewrite != null;
+    }
+
+    /**
+     * Replays the file. Must be called before the server accepts connections. Like in Redis with
+     * 'aof-load-truncated', an incomplete command or transaction at the end of the file (e.g. after a crash)
+     * is discarded and the file is truncated.
+     *
+     * @param state    state without an owner, used for executing the commands.
+     * @param executor executes the commands of the file.
+     */
+    public void load(OperationExecutorState state, RedisCommandInterceptor executor) throws IOException {
+        long size = Files.size(path);
+        long loaded;
+        try (PushbackInputStream in = new PushbackInputStream(Files.newInputStream(path), RDB_MAGIC.length)) {
+            byte[] magic = new byte[RDB_MAGIC.length];
+            int read = 0;
+            while (read < magic.length) {
+                int n = in.read(magic, read, magic.length - read);
+                if (n < 0) {
+                    break;
+                }
+                read += n;
+            }
+            in.unread(magic, 0, read);
+            if (Arrays.equals(magic, RDB_MAGIC)) {
+                RdbReader reader = new RdbReader(in);
+                DumpFile.read(reader, redisBases, clockSupplier);
+                loaded = reader.bytesRead() + replay(reader.remaining(), state, executor);
+            } else {
+                loaded = replay(in, state, executor);
+            }
+        }
+        if (loaded < size) {
+            LOG.warn("Truncating the append only file {} to {} bytes, the last command is incomplete", path, loaded);
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                channel.truncate(loaded);
+            }
+        }
+    }
+
+    /**
+     * Executes the commands of the file.
+     *
+     * @return number of the bytes of the complete commands, not counting the commands of an unfinished
+     * transaction.
+     */
+    private static long replay(InputStream input, OperationExecutorState state, RedisCommandInterceptor executor)
+            throws IOException {
+        CountingInputStream in = new CountingInputStream(new RespInputStream(input, READ_BUFFER_SIZE));
+        long complete = 0;
+        while (true) {
+            RedisCommand command;
+            try {
+                command = RedisCommandParser.parse(in);
+            } catch (EOFException e) {
+                return complete;
+            } catch (ParseErrorException e) {
+                throw new IOException("Bad file format reading the append only file at offset " + in.count);
+            }
+            List<Slice> params = command.parameters();
+            String name = CommandFactory.commandName(params.get(0));
+            List<Slice> args = params.subList(1, params.size());
+            if ("select".equals(name)) {
+                //Unlike SELECT sent by a client, it does not depend on the connection options
+                state.changeActiveRedisBase(Integer.parseInt(args.get(0).toString()));
+            } else if (CommandFactory.exists(name)) {
+                executor.execCommand(state, name, args);
+            } else {
+                throw new IOException("Unknown command '" + name + "' reading the append only file");
+            }
+            if (!state.isTransactionModeOn()) {
+                complete = in.count;
+            }
+        }
+    }
+
+    /**
+     * Opens the file for appending the commands. If the file does not exist, it is created with a snapshot
+     * of the databases (e.g. loaded from the dump file).
+     */
+    public void open() throws IOException {
+        if (path == null) {
+            return;
+        }
+        if (!Files.exists(path)) {
+            Path temporary = createTemporaryFile();
+            try {
+                try (FileOutputStream file = new FileOutputStream(temporary.toFile());
+                     Snapshot snapshot = Snapshot.take(redisBases, clockSupplier.get())) {
+                    DumpFile.write(file, snapshot);
+                    file.getFD().sync();
+                }
+                moveToTarget(temporary);
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+        }
+        synchronized (this) {
+            out = new FileOutputStream(path.toFile(), true);
+            if (fsync != AppendFsync.ALWAYS) {
+                flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                    Thread thread = new Thread(r, "jedis-mock-aof-flush");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                flusher.scheduleWithFixedDelay(this::flushPeriodically, 1, 1, TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    /**
+     * Waits for the rewrite in progress, writes and flushes the accumulated commands and closes the file.
+     */
+    public void close() throws IOException {
+        if (path == null) {
+            return;
+        }
+        awaitRewrite();
+        synchronized (this) {
+            if (flusher != null) {
+                flusher.shutdownNow();
+                flusher = null;
+            }
+            if (out != null) {
+                try {
+                    flush(true);
+                } finally {
+                    out.close();
+                    out = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Executes a command and logs it if it modified the data. Must be called under the locks of the command.
+     *
+     * @param command executes the command and returns the reply.
+     */
+    public Slice execute(OperationExecutorState state, String name, List<Slice> params, Supplier<Slice> command) {
+        if (path == null) {
+            return command.get();
+        }
+        if ("exec".equals(name)) {
+            //Commands of a transaction are logged when they are executed, see queued()
+            synchronized (this) {
+                transactionStarted = true;
+                try {
+                    return command.get();
+                } finally {
+                    if (multiWritten) {
+                        write(Arrays.asList(EXEC));
+                        afterCommand();
+                    }
+                    transactionStarted = false;
+                    multiWritten = false;
+                }
+            }
+        }
+        if (!WRITE_COMMANDS.containsKey(name) || state.isTransactionModeOn()) {
+            return command.get();
+        }
+        //Some operations modify their parameters
+        List<Slice> logged = new ArrayList<>(params);
+        int database = state.getSelected();
+        RedisBase base = state.base(database);
+        Slice response = command.get();
+        append(database, base, name, logged, response);
+        return response;
+    }
+
+    /**
+     * @return the operation queued in a transaction, which is logged when it is executed by EXEC.
+     */
+    public RedisOperation queued(OperationExecutorState state, String name, List<Slice> params,
+                                 RedisOperation operation) {
+        if (path == null || !WRITE_COMMANDS.containsKey(name)) {
+            return operation;
+        }
+        List<Slice> logged = new ArrayList<>(params);
+        int database = state.getSelected();
+        RedisBase base = state.base(database);
+        return () -> {
+            Slice response = operation.execute();
+            append(database, base, name, logged, response);
+            return response;
+        };
+    }
+
+    private synchronized void append(int database, RedisBase base, String name, List<Slice> params,
+                                     Slice response) {
+        if (response.length() > 0 && response.byteAt(0) == '-') {
+            return;
+        }
+        List<Slice> command = effect(base, name, params, response);
+        if (command == null) {
+            return;
+        }
+        if (database != selected) {
+            write(Arrays.asList(SELECT, Slice.create(Integer.toString(database))));
+            selected = database;
+        }
+        if (transactionStarted && !multiWritten) {
+            write(Arrays.asList(MULTI));
+            multiWritten = true;
+        }
+        write(command);
+        if (RELATIVE_EXPIRY.contains(name)) {
+            Long deadline = base.getDeadline(params.get(0));
+            if (deadline != null && deadline != KeyEntry.NO_DEADLINE) {
+                write(Arrays.asList(PEXPIREAT, params.get(0), Slice.create(Long.toString(deadline))));
+            }
+        }
+        if (!transactionStarted) {
+            afterCommand();
+        }
+    }
+
+    /**
+     * @return the command which has the same effect as the executed one when replayed, or null if the command
+     * did nothing.
+     */
+    private static List<Slice> effect(RedisBase base, String name, List<Slice> params, Slice response) {
+        List<Slice> command = new ArrayList<>(params.size() + 1);
+        switch (name) {
+            //Blocking commands are logged as their non-blocking counterparts, named without the leading 'b',
+            //so that the replay never waits
+            case "blpop":
+            case "brpop":
+            case "bzpopmin":
+            case "bzpopmax":
+                if (isNull(response)) {
+                    return null;
+                }
+                command.add(Slice.create(name.substring(1)));
+                command.add(firstElement(response));
+                return command;
+            case "brpoplpush":
+            case "blmove":
+                if (isNull(response)) {
+                    return null;
+                }
+                command.add(Slice.create(name.substring(1)));
+                command.addAll(params.subList(0, params.size() - 1));
+                return command;
+            case "blmpop":
+            case "bzmpop":
+                if (isNull(response)) {
+                    return null;
+                }
+                command.add(Slice.create(name.substring(1)));
+                command.addAll(params.subList(1, params.size()));
+                return command;
+            case "migrate":
+                //The migrated keys are removed, unless they are copied
+                command.add(DEL);
+                for (Slice key : CommandKeys.keys(name, params)) {
+                    if (!base.exists(key)) {
+                        command.add(key);
+                    }
+                }
+                return command.size() > 1 ? command : null;
+            case "xadd":
+                if (isNull(response)) {
+                    return null;
+                }
+                //The generated ID is logged instead of '*' or '<ms>-*'
+                command.add(WRITE_COMMANDS.get(name));
+                command.addAll(params);
+                command.set(streamIdIndex(params) + 1, SliceParser.consumeParameter(response.data()));
+                return command;
+            case "spop":
+                //The members are popped randomly, so the removal of the popped ones is logged
+                if (isNull(response)) {
+                    return null;
+                }
+                command.add(SREM);
+                command.add(params.get(0));
+                if (params.size() > 1) {
+                    command.addAll(elements(response));
+                } else {
+                    command.add(SliceParser.consumeParameter(response.data()));
+                }
+                return command.size() > 2 ? command : null;
+            case "evalsha":
+                //The script cache is not persisted
+                String script = base.getCachedLuaScript(params.get(0).toString());
+                if (script == null) {
+                    return null;
+                }
+                command.add(EVAL);
+                command.add(Slice.create(script));
+                command.addAll(params.subList(1, params.size()));
+                return command;
+            default:
+                command.add(WRITE_COMMANDS.get(name));
+                command.addAll(params);
+                return command;
+        }
+    }
+
+    private static boolean isNull(Slice response) {
+        return response.equals(Response.NULL_ARRAY) || response.equals(Response.NULL);
+    }
+
+    private static Slice firstElement(Slice array) {
+        InputStream in = new ByteArrayInputStream(array.data());
+        SliceParser.consumeCount(in);
+        return SliceParser.consumeParameter(in);
+    }
+
+    private static List<Slice> elements(Slice array) {
+        InputStream in = new ByteArrayInputStream(array.data());
+        long count = SliceParser.consumeCount(in);
+        List<Slice> result = new ArrayList<>();
+        for (long i = 0; i < count; i++) {
+            result.add(SliceParser.consumeParameter(in));
+        }
+        return result;
+    }
+
+    /**
+     * @return index of the ID among the parameters of XADD, which follows the key and the options.
+     */
+    private static int streamIdIndex(List<Slice> params) {
+        int index = 1;
+        if ("nomkstream".equalsIgnoreCase(params.get(index).toString())) {
+            index++;
+        }
+        String criterion = params.get(index).toString();
+        if ("maxlen".equalsIgnoreCase(criterion) || "minid".equalsIgnoreCase(criterion)) {
+            index++;
+            String operator = params.get(index).toString();
+            if ("~".equals(operator) || "=".equals(operator)) {
+                index++;
+            }
+            index++;
+            if ("limit".equalsIgnoreCase(params.get(index).toString())) {
+                index += 2;
+            }
+        }
+        return index;
+    }
+
+    private void write(List<Slice> command) {
+        write(buffer, command);
+        if (rewriteBuffer != null) {
+            write(rewriteBuffer, command);
+        }
+    }
+
+    private static void write(RespWriter writer, List<Slice> command) {
+        writer.arrayHeader(command.size());
+        for (Slice argument : command) {
+            writer.bulkString(argument);
+        }
+    }
+
+    private void afterCommand() {
+        try {
+            if (fsync == AppendFsync.ALWAYS) {
+                flush(true);
+            } else if (buffer.size() >= WRITE_THRESHOLD) {
+                flush(false);
+            }
+        } catch (IOException e) {
+            LOG.error("Writing the append only file failed", e);
+        }
+    }
+
+    private void flushPeriodically() {
+        try {
+            flush(fsync == AppendFsync.EVERYSEC);
+        } catch (IOException e) {
+            LOG.error("Writing the append only file failed", e);
+        }
+    }
+
+    /**
+     * Writes the accumulated commands to the file.
+     *
+     * @param sync whether the file should be flushed to the disk.
+     */
+    private synchronized void flush(boolean sync) throws IOException {
+        if (out == null) {
+            return;
+        }
+        if (buffer.size() > 0) {
+            buffer.writeTo(out);
+            buffer.reset();
+        }
+        if (sync) {
+            out.getChannel().force(false);
+        }
+    }
+
+    /**
+     * Starts rewriting the file in background: it is replaced with a snapshot of the databases, followed
+     * by the commands executed while the new file is written. Must be called under the server lock,
+     * which is held only while a {@link Snapshot} of the databases is taken.
+     *
+     * @return false if a rewrite is already in progress.
+     */
+    public synchronized boolean backgroundRewrite() {
+        if (rewrite != null) {
+            return false;
+        }
+        Snapshot snapshot = Snapshot.take(redisBases, clockSupplier.get());
+        rewriteBuffer = new RespWriter();
+        //The commands following the snapshot must select their database
+        selected = -1;
+        Thread thread = new Thread(() -> {
+            try {
+                rewrite(snapshot);
+            } catch (IOException | RuntimeException e) {
+                LOG.error("Background append only file rewriting failed", e);
+            } finally {
+                snapshot.close();
+                synchronized (this) {
+                    rewriteBuffer = null;
+                }
+                rewrite = null;
+            }
+        }, "jedis-mock-bgrewriteaof");
+        thread.setDaemon(true);
+        rewrite = thread;
+        thread.start();
+        return true;
+    }
+
+    /**
+     * Waits until the rewrite in progress, if any, is completed.
+     */
+    public void awaitRewrite() {
+        Thread thread = rewrite;
+        if (thread != null) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void rewrite(Snapshot snapshot) throws IOException {
+        Path temporary = createTemporaryFile();
+        try {
+            FileOutputStream file = new FileOutputStream(temporary.toFile());
+            try {
+                DumpFile.write(file, snapshot);
+            } catch (IOException e) {
+                file.close();
+                throw e;
+            }
+            //The commands executed meanwhile are appended while new commands wait
+            synchronized (this) {
+                try {
+                    rewriteBuffer.writeTo(file);
+                    file.getFD().sync();
+                } finally {
+                    file.close();
+                }
+                if (out != null) {
+                    out.close();
+                }
+                moveToTarget(temporary);
+                out = new FileOutputStream(path.toFile(), true);
+                //Everything accumulated so far is either in the snapshot or in the appended commands
+                buffer.reset();
+            }
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private Path createTemporaryFile() throws IOException {
+        return Files.createTempFile(path.toAbsolutePath().getParent(), "temp-rewriteaof-", ".aof");
+    }
+
+    private void moveToTarget(Path temporary) throws IOException {
+        try {
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Counts the bytes consumed by the command parser.
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int result = in.read();
+            if (result >= 0) {
+                count++;
+            }
+            return result;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int result = in.read(b, off, len);
+            if (result > 0) {
+                count += result;
+            }
+            return result;
+        }
+    }
+}
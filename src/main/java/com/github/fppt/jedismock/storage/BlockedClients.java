@@ -0,0 +1,174 @@
+package com.github.fppt.jedismock.storage;
+
+import com.github.fppt.jedismock.datastructures.Slice;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Predicate;
+
+/**
+ * Clients blocked on the keys of a database (BLPOP, BZPOPMIN, XREAD BLOCK etc.), in the order they were blocked.
+ *
+ * When a key is written, only the clients blocked on this key are woken up: the first one which consumes
+ * values (e.g. BLPOP) and all the ones which only read them (e.g. XREAD). A consuming client should
+ * signal the key again if it leaves values there, so that the remaining values are served in FIFO order,
+ * like in Redis. A consuming client which is unblocked without taking values from the key it was woken up for
+ * (it took them from another key, timed out or was interrupted) passes the signal on to the next client.
+ */
+public final class BlockedClients {
+    //Guarded by this
+    private final Map<Slice, Deque<Waiter>> consumers = new HashMap<>();
+    private final Map<Slice, Deque<Waiter>> readers = new HashMap<>();
+    private final Predicate<Slice> hasValues;
+    //Number of blocked clients, allows writers to skip synchronization when nobody is blocked
+    private volatile int blocked;
+
+    /**
+     * A client blocked on keys.
+     */
+    public final class Waiter implements AutoCloseable {
+        private final Thread thread = Thread.currentThread();
+        private final Set<Slice> keys;
+        private final boolean consuming;
+        //The key which was written since the client started waiting, if any
+        private volatile Slice readyKey;
+        //The key the client takes values from, if any
+        private Slice consumedKey;
+
+        private Waiter(Set<Slice> keys, boolean consuming) {
+            this.keys = keys;
+            this.consuming = consuming;
+        }
+
+        /**
+         * Parks the current thread until one of the keys is written or the timeout elapses.
+         * The caller must not hold any locks the writers need.
+         *
+         * @param timeoutNanos maximum time to wait, 0 to wait indefinitely.
+         */
+        void park(long timeoutNanos) throws InterruptedException {
+            if (readyKey == null) {
+                if (timeoutNanos == 0) {
+                    LockSupport.park(this);
+                } else {
+                    LockSupport.parkNanos(this, timeoutNanos);
+                }
+            }
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+
+        /**
+         * Forgets the previous signal, must be called before the keys are checked.
+         */
+        void reset() {
+            readyKey = null;
+        }
+
+        /**
+         * Records the key the client takes values from once unblocked.
+         *
+         * @param key the key, null if there is none.
+         */
+        public void consume(Slice key) {
+            consumedKey = key;
+        }
+
+        private boolean wake(Slice key) {
+            if (readyKey != null) {
+                return false;
+            }
+            readyKey = key;
+            LockSupport.unpark(thread);
+            return true;
+        }
+
+        /**
+         * Unblocks the client, passing on the signal of a key it does not take values from.
+         */
+        @Override
+        public void close() {
+            synchronized (BlockedClients.this) {
+                Map<Slice, Deque<Waiter>> waiters = consuming ? consumers : readers;
+                for (Slice k : keys) {
+                    Deque<Waiter> queue = waiters.get(k);
+                    if (queue != null) {
+                        queue.remove(this);
+                        if (queue.isEmpty()) {
+                            waiters.remove(k);
+                        }
+                    }
+                }
+                blocked--;
+                Slice key = readyKey;
+                if (consuming && key != null && !key.equals(consumedKey) && hasValues.test(key)) {
+                    signal(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param hasValues tells whether a key has values for the consuming clients.
+     */
+    public BlockedClients(Predicate<Slice> hasValues) {
+        this.hasValues = hasValues;
+    }
+
+    /**
+     * Blocks the current thread's client on the given keys.
+     *
+     * @param consuming true if the client removes the values it receives.
+     */
+    public Waiter block(Collection<Slice> keys, boolean consuming) {
+        Waiter waiter = new Waiter(new LinkedHashSet<>(keys), consuming);
+        synchronized (this) {
+            Map<Slice, Deque<Waiter>> waiters = consuming ? consumers : readers;
+            for (Slice key : waiter.keys) {
+                waiters.computeIfAbsent(key, k -> new ArrayDeque<>()).add(waiter);
+            }
+            blocked++;
+        }
+        return waiter;
+    }
+
+    /**
+     * Wakes up the clients blocked on a key which was written.
+     */
+    public void signal(Slice key) {
+        if (blocked == 0) {
+            return;
+        }
+        synchronized (this) {
+            Deque<Waiter> queue = readers.get(key);
+            if (queue != null) {
+                for (Waiter waiter : queue) {
+                    waiter.wake(key);
+                }
+            }
+            queue = consumers.get(key);
+            if (queue != null) {
+                //Clients which are already woken up, but not yet unblocked, are skipped
+                for (Waiter waiter : queue) {
+                    if (waiter.wake(key)) {
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return number of the blocked clients.
+     */
+    public int size() {
+        return blocked;
+    }
+}
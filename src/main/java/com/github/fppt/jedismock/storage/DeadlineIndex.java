@@ -0,0 +1,85 @@
+package com.github.fppt.jedismock.storage;
+
+import com.github.fppt.jedismock.datastructures.ScanIndex;
+import com.github.fppt.jedismock.datastructures.Slice;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Keys with a time to live, ordered by their deadlines.
+ *
+ * Entries are not removed when the deadline of a key is changed or the key is deleted: such stale entries
+ * are returned when they are due, and the caller checks the actual deadline of the key. The index is compacted
+ * when deadlines are written too, so that it does not grow while the expired keys are not removed actively.
+ */
+final class DeadlineIndex {
+    /**
+     * The index is rebuilt when stale entries take more space than the live ones (but not for small indices).
+     */
+    private static final int MIN_COMPACTION_SIZE = 1024;
+
+    //Guarded by this
+    private final PriorityQueue<Entry> queue = new PriorityQueue<>();
+
+    private static final class Entry implements Comparable<Entry> {
+        private final long deadline;
+        private final Slice key;
+
+        private Entry(long deadline, Slice key) {
+            this.deadline = deadline;
+            this.key = key;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            return Long.compare(deadline, other.deadline);
+        }
+    }
+
+    synchronized void add(Slice key, long deadline) {
+        queue.add(new Entry(deadline, key));
+    }
+
+    /**
+     * Removes and returns the keys which deadlines are not after the given time.
+     *
+     * @param limit maximum number of keys to return.
+     */
+    synchronized List<Slice> pollExpired(long now, int limit) {
+        List<Slice> result = new ArrayList<>();
+        while (result.size() < limit && !queue.isEmpty() && queue.peek().deadline <= now) {
+            result.add(queue.poll().key);
+        }
+        return result;
+    }
+
+    /**
+     * Drops the stale entries if there are too many of them.
+     *
+     * @param volatileKeys the keys with a time to live.
+     * @param keyspace     the keys with their actual deadlines.
+     */
+    synchronized void compact(ScanIndex volatileKeys, Map<Slice, KeyEntry> keyspace) {
+        if (queue.size() <= MIN_COMPACTION_SIZE || queue.size() <= 2 * volatileKeys.size()) {
+            return;
+        }
+        queue.clear();
+        volatileKeys.scan(0, Long.MAX_VALUE, key -> {
+            KeyEntry entry = keyspace.get(key);
+            if (entry != null && entry.deadline != KeyEntry.NO_DEADLINE) {
+                queue.add(new Entry(entry.deadline, key));
+            }
+        });
+    }
+
+    synchronized void clear() {
+        queue.clear();
+    }
+
+    synchronized int size() {
+        return queue.size();
+    }
+}
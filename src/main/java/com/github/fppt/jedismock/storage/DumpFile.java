@@ -0,0 +1,205 @@
+package com.github.fppt.jedismock.storage;
+
+import com.github.fppt.jedismock.persistence.RdbReader;
+import com.github.fppt.jedismock.persistence.RdbWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Clock;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * Snapshot of all the databases of a server in a file of the Redis RDB format, the same as 'dbfilename' of Redis.
+ *
+ * The file is loaded when the server is started, and is written by SAVE and BGSAVE. Like in Redis, the snapshot
+ * is written to a temporary file first, which then replaces the file, so that the file is never left half-written.
+ */
+public final class DumpFile {
+    private static final Logger LOG = LoggerFactory.getLogger(DumpFile.class);
+
+    private final Path path;
+    private final Map<Integer, RedisBase> redisBases;
+    private final Supplier<Clock> clockSupplier;
+    private volatile Thread backgroundSave;
+    private volatile long lastSave;
+
+    /**
+     * @param path       the file, null if the databases are not saved.
+     * @param redisBases databases of the server.
+     */
+    public DumpFile(Path path, Map<Integer, RedisBase> redisBases, Supplier<Clock> clockSupplier) {
+        this.path = path;
+        this.redisBases = Objects.requireNonNull(redisBases);
+        this.clockSupplier = Objects.requireNonNull(clockSupplier);
+        this.lastSave = clockSupplier.get().millis() / 1000;
+    }
+
+    public static DumpFile none() {
+        return new DumpFile(null, Collections.emptyMap(), Clock::systemDefaultZone);
+    }
+
+    /**
+     * @return the file, null if the databases are not saved.
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * @return Unix time in seconds of the last successful save, or of the start of the server.
+     */
+    public long getLastSave() {
+        return lastSave;
+    }
+
+    public boolean isBackgroundSaveInProgress() {
+        return backgroundSave != null;
+    }
+
+    /**
+     * Replaces the contents of all the databases with the keys of the file, if the file exists.
+     * The keys which have already expired are skipped. Must be called before the server accepts connections.
+     */
+    public void load() throws IOException {
+        if (path == null || !Files.exists(path)) {
+            return;
+        }
+        redisBases.values().forEach(RedisBase::clear);
+        try (InputStream in = Files.newInputStream(path)) {
+            read(new RdbReader(in), redisBases, clockSupplier);
+        }
+    }
+
+    /**
+     * Puts the keys read from a snapshot to the databases, skipping the keys which have already expired.
+     */
+    static void read(RdbReader reader, Map<Integer, RedisBase> redisBases, Supplier<Clock> clockSupplier)
+            throws IOException {
+        long now = clockSupplier.get().millis();
+        reader.read((database, key, value, deadline) -> {
+            if (deadline != KeyEntry.NO_DEADLINE && deadline <= now) {
+                return;
+            }
+            RedisBase base = redisBases.computeIfAbsent(database, index -> new RedisBase(clockSupplier));
+            base.putValue(key, value, null);
+            if (deadline != KeyEntry.NO_DEADLINE) {
+                base.setDeadline(key, deadline);
+            }
+        });
+    }
+
+    /**
+     * Writes all the databases to the file. Must be called under the server lock.
+     */
+    public void save() throws IOException {
+        try (Snapshot snapshot = Snapshot.take(redisBases, clockSupplier.get())) {
+            writeFile(out -> write(out, snapshot));
+        }
+    }
+
+    /**
+     * Writes all the databases to the file in background. Must be called under the server lock,
+     * which is held only while a {@link Snapshot} of the databases is taken.
+     *
+     * @return false if a background save is already in progress.
+     */
+    public boolean backgroundSave() {
+        if (backgroundSave != null) {
+            return false;
+        }
+        Snapshot snapshot = Snapshot.take(redisBases, clockSupplier.get());
+        Thread thread = new Thread(() -> {
+            try {
+                writeFile(out -> write(out, snapshot));
+            } catch (IOException | RuntimeException e) {
+                LOG.error("Background saving failed", e);
+            } finally {
+                snapshot.close();
+                backgroundSave = null;
+            }
+        }, "jedis-mock-bgsave");
+        thread.setDaemon(true);
+        backgroundSave = thread;
+        thread.start();
+        return true;
+    }
+
+    /**
+     * Waits until the background save in progress, if any, is completed.
+     */
+    public void awaitBackgroundSave() {
+        Thread thread = backgroundSave;
+        if (thread != null) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Writes a snapshot of the databases. May be called without holding the lock.
+     */
+    static void write(OutputStream out, Snapshot snapshot) throws IOException {
+        RdbWriter writer = new RdbWriter(out);
+        writer.writeHeader();
+        writer.writeAux("redis-bits", "64");
+        writer.writeAux("ctime", Long.toString(snapshot.time() / 1000));
+        writer.writeAux("used-mem", Long.toString(snapshot.usedMemory()));
+        try {
+            for (Map.Entry<Integer, KeyspaceSnapshot> database : snapshot.databases().entrySet()) {
+                KeyspaceSnapshot keyspace = database.getValue();
+                if (keyspace.size() == 0) {
+                    continue;
+                }
+                writer.selectDatabase(database.getKey());
+                keyspace.forEachEntry((key, entry) -> {
+                    try {
+                        writer.writeKey(key, entry.value, entry.deadline);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.finish();
+    }
+
+    private void writeFile(Output output) throws IOException {
+        Path target = path.toAbsolutePath();
+        Path temporary = Files.createTempFile(target.getParent(), "temp-", ".rdb");
+        try {
+            try (FileOutputStream out = new FileOutputStream(temporary.toFile())) {
+                output.writeTo(out);
+                out.getFD().sync();
+            }
+            try {
+                Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            lastSave = clockSupplier.get().millis() / 1000;
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private interface Output {
+        void writeTo(OutputStream out) throws IOException;
+    }
+}
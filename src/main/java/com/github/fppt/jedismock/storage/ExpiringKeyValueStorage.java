@@ -2,19 +2,45 @@ package com.github.fppt.jedismock.storage;
 
 import com.github.fppt.jedismock.datastructures.RMDataStructure;
 import com.github.fppt.jedismock.datastructures.RMHash;
+import com.github.fppt.jedismock.datastructures.ScanIndex;
 import com.github.fppt.jedismock.datastructures.Slice;
 
 import java.time.Clock;
-import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.function.Supplier;
 
 public class ExpiringKeyValueStorage {
     private final Supplier<Clock> clockSupplier;
-    private final Map<Slice, RMDataStructure> values = new HashMap<>();
-    private final Map<Slice, Long> ttls = new HashMap<>();
+    //Concurrent, since different keys can be modified simultaneously in fine-grained locking mode.
+    //The keyspace and its indices are replaced under the lock of the database when they are cleared lazily.
+    private Map<Slice, KeyEntry> keyspace = new ConcurrentHashMap<>();
+    private ScanIndex scanIndex = new ScanIndex();
+    //Keys with a time to live, sampled by the volatile eviction policies
+    private ScanIndex volatileIndex = new ScanIndex();
+    private final AtomicLong usedMemory = new AtomicLong();
+    //Open snapshots of the keyspace, the entries are preserved for them before being modified
+    private final List<KeyspaceSnapshot> snapshots = new CopyOnWriteArrayList<>();
+    //Generation of the entries put from now on, incremented by taking a snapshot
+    private volatile long generation;
+    //Entries and values of this generation or an earlier one may be shared with an open snapshot
+    private volatile long sharedGeneration = -1;
+    private final Function<Slice, KeyEntry> newEntry = key -> {
+        preserve(key, null);
+        scanIndex.add(key);
+        return new KeyEntry(generation);
+    };
+    private DeadlineIndex deadlines = new DeadlineIndex();
     private final Consumer<Slice> keyChangeNotifier;
 
     public ExpiringKeyValueStorage(Supplier<Clock> clockSupplier, Consumer<Slice> keyChangeNotifier) {
@@ -22,92 +48,279 @@ public class ExpiringKeyValueStorage {
         this.keyChangeNotifier = Objects.requireNonNull(keyChangeNotifier);
     }
 
-    public Map<Slice, RMDataStructure> values() {
-        return values;
+    /**
+     * @return number of the stored keys, including the expired ones which are not removed yet.
+     */
+    public int size() {
+        return keyspace.size();
     }
 
-    public Map<Slice, Long> ttls() {
-        return ttls;
+    /**
+     * @return the keys which have not expired. The expired keys are removed on the way.
+     */
+    public Set<Slice> keys() {
+        long now = getMillis();
+        Set<Slice> result = new HashSet<>();
+        Iterator<Map.Entry<Slice, KeyEntry>> entries = keyspace.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<Slice, KeyEntry> entry = entries.next();
+            if (entry.getValue().isExpired(now)) {
+                preserve(entry.getKey(), entry.getValue());
+                entries.remove();
+                removed(entry.getKey(), entry.getValue());
+            } else {
+                result.add(entry.getKey());
+            }
+        }
+        return result;
     }
 
-    public void delete(Slice key) {
+    /**
+     * Visits the keys starting from the cursor, skipping the expired ones.
+     *
+     * @return cursor to continue the iteration from, 0 if all the keys have been visited.
+     * @see ScanIndex#scan(long, long, Consumer)
+     */
+    public long scan(long cursor, long count, Consumer<Slice> action) {
+        return scanIndex.scan(cursor, count, key -> {
+            if (liveEntry(key) != null) {
+                action.accept(key);
+            }
+        });
+    }
+
+    /**
+     * @return the removed value, null if there was no such key.
+     */
+    public RMDataStructure delete(Slice key) {
         keyChangeNotifier.accept(key);
-        ttls().remove(key);
-        values().remove(key);
+        return remove(key);
+    }
+
+    private RMDataStructure remove(Slice key) {
+        KeyEntry entry = keyspace.get(key);
+        if (entry == null) {
+            return null;
+        }
+        //The entry is preserved before it is removed, so that a snapshot being visited does not miss it
+        preserve(key, entry);
+        keyspace.remove(key);
+        removed(key, entry);
+        return entry.value;
+    }
+
+    /**
+     * Updates the indices and the used memory after a key has been removed from the keyspace.
+     */
+    private void removed(Slice key, KeyEntry entry) {
+        scanIndex.remove(key);
+        if (entry.deadline != KeyEntry.NO_DEADLINE) {
+            volatileIndex.remove(key);
+        }
+        usedMemory.addAndGet(-entry.memory);
+    }
+
+    /**
+     * Re-estimates the memory taken by a key after it has been modified.
+     */
+    private void account(Slice key, KeyEntry entry) {
+        long memory = MemoryEstimator.estimate(key, entry.value, MemoryEstimator.DEFAULT_SAMPLES);
+        usedMemory.addAndGet(memory - entry.memory);
+        entry.memory = memory;
+    }
+
+    /**
+     * @return estimated number of bytes taken by the keys and their values.
+     */
+    public long usedMemory() {
+        return usedMemory.get();
+    }
+
+    /**
+     * @param samples number of sampled elements of a collection, 0 to take all the elements into account.
+     * @return estimated number of bytes taken by the key and its value, null if there is no such key.
+     */
+    public Long memoryUsage(Slice key, int samples) {
+        KeyEntry entry = liveEntry(key);
+        return entry == null ? null : MemoryEstimator.estimate(key, entry.value, samples);
+    }
+
+    /**
+     * Picks random keys, for example to choose the ones to evict. Expired keys found on the way are removed.
+     *
+     * @param volatileOnly whether only the keys with a time to live are sampled.
+     * @param count        number of distinct keys to pick.
+     */
+    void sample(boolean volatileOnly, int count, BiConsumer<Slice, KeyEntry> action) {
+        ScanIndex index = volatileOnly ? volatileIndex : scanIndex;
+        index.randomElements(count, key -> {
+            KeyEntry entry = liveEntry(key);
+            if (entry != null) {
+                //Collections may have been modified in place since they were put
+                account(key, entry);
+                action.accept(key, entry);
+            }
+        });
     }
 
     public void delete(Slice key1, Slice key2) {
         keyChangeNotifier.accept(key1);
         Objects.requireNonNull(key2);
 
-        if (!verifyKey(key1)) {
+        KeyEntry entry = liveEntry(key1);
+        if (entry == null) {
             return;
         }
-        RMHash sortedSetByKey = getRMSortedSet(key1);
-        Map<Slice, Slice> storedData = sortedSetByKey.getStoredData();
+        entry = modifiable(key1, entry, true);
+        Map<Slice, Slice> storedData = asHash(entry.value).getStoredData();
 
-        if (!storedData.containsKey(key2)) {
-            return;
+        if (storedData.remove(key2) != null) {
+            if (storedData.isEmpty()) {
+                remove(key1);
+            } else {
+                account(key1, entry);
+            }
         }
+    }
 
-        storedData.remove(key2);
-
-        if (storedData.isEmpty()) {
-            values.remove(key1);
+    /**
+     * Removes all the keys. The watchers of the keys are not notified.
+     *
+     * @param lazyFree whether the keyspace is only detached, in constant time unless a snapshot is open,
+     *                 and cleared by the {@link LazyFree} worker.
+     */
+    void clear(boolean lazyFree) {
+        if (!snapshots.isEmpty()) {
+            keyspace.forEach(this::preserve);
         }
-
-        if (!values().containsKey(key1)) {
-            ttls().remove(key1);
+        usedMemory.set(0);
+        if (!lazyFree) {
+            keyspace.clear();
+            scanIndex.clear();
+            volatileIndex.clear();
+            deadlines.clear();
+            return;
         }
+        Map<Slice, KeyEntry> detachedKeyspace = keyspace;
+        ScanIndex detachedScanIndex = scanIndex;
+        ScanIndex detachedVolatileIndex = volatileIndex;
+        DeadlineIndex detachedDeadlines = deadlines;
+        keyspace = new ConcurrentHashMap<>();
+        scanIndex = new ScanIndex();
+        volatileIndex = new ScanIndex();
+        deadlines = new DeadlineIndex();
+        LazyFree.free(detachedKeyspace.size(), () -> {
+            detachedKeyspace.clear();
+            detachedScanIndex.clear();
+            detachedVolatileIndex.clear();
+            detachedDeadlines.clear();
+        });
     }
 
-    public void clear() {
-        for (Slice key : values().keySet()) {
-            if (!isKeyOutdated(key)) {
-                keyChangeNotifier.accept(key);
+    /**
+     * Removes the keys which time to live has expired.
+     *
+     * @param limit maximum number of keys to check.
+     * @return number of the checked keys, less than the limit if there are no more expired keys.
+     */
+    public int expireKeys(int limit) {
+        long now = getMillis();
+        List<Slice> candidates = deadlines.pollExpired(now, limit);
+        for (Slice key : candidates) {
+            //The deadline might have been changed or removed since it was indexed
+            KeyEntry entry = keyspace.get(key);
+            if (entry != null && entry.isExpired(now)) {
+                delete(key);
             }
         }
-        values().clear();
-        ttls().clear();
+        deadlines.compact(volatileIndex, keyspace);
+        return candidates.size();
     }
 
+    /**
+     * @return the value of the key, which must not be modified in place, since it may be shared with a snapshot.
+     */
     public RMDataStructure getValue(Slice key) {
-        if (!verifyKey(key)) {
+        return getValue(key, false);
+    }
+
+    /**
+     * @return the value of the key, which the caller may modify in place. A value shared with a snapshot
+     * is copied first, so that the snapshot is not affected.
+     */
+    public RMDataStructure getModifiableValue(Slice key) {
+        return getValue(key, true);
+    }
+
+    private RMDataStructure getValue(Slice key, boolean modifiable) {
+        KeyEntry entry = liveEntry(key);
+        if (entry == null) {
             return null;
         }
-        return values().get(key);
+        //The access time is updated by reading too, so a shared entry is copied, but not its value
+        entry = modifiable(key, entry, modifiable);
+        entry.touch(getMillis());
+        return entry.value;
     }
 
-    private boolean verifyKey(Slice key) {
+    /**
+     * @return the entry of the key, or null if there is no such key. An expired key is removed.
+     */
+    private KeyEntry liveEntry(Slice key) {
         Objects.requireNonNull(key);
-        if (!values().containsKey(key)) {
-            return false;
+        KeyEntry entry = keyspace.get(key);
+        if (entry == null) {
+            return null;
         }
-
-        if (isKeyOutdated(key)) {
+        if (entry.isExpired(getMillis())) {
             delete(key);
-            return false;
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * @return the entry of the key, created if there is no such key. An expired key is reset
+     * as if it did not exist.
+     *
+     * @param copyValue whether the value is going to be modified in place, rather than replaced.
+     */
+    private KeyEntry entryForWrite(Slice key, long now, boolean copyValue) {
+        KeyEntry entry = modifiable(key, keyspace.computeIfAbsent(key, newEntry), copyValue);
+        if (entry.isExpired(now)) {
+            setValue(entry, null);
+            changeDeadline(key, entry, KeyEntry.NO_DEADLINE);
+        }
+        if (entry.value == null) {
+            entry.lastAccess = now;
+            entry.frequency = KeyEntry.LFU_INIT_VAL;
+        } else {
+            entry.touch(now);
         }
-        return true;
+        return entry;
     }
 
-    boolean isKeyOutdated(Slice key) {
-        Long deadline = ttls().get(key);
-        return deadline != null && deadline != -1 && deadline <= getMillis();
+    /**
+     * @return the deadline of the key, -1 if the key has no time to live, null if there is no such key.
+     * The deadline of an expired key which is not removed yet is returned as is.
+     */
+    public Long getDeadline(Slice key) {
+        KeyEntry entry = keyspace.get(key);
+        return entry == null ? null : entry.deadline;
     }
 
     public Long getTTL(Slice key) {
         Objects.requireNonNull(key);
-        Long deadline = ttls().get(key);
-        if (deadline == null) {
+        KeyEntry entry = keyspace.get(key);
+        if (entry == null) {
             return null;
         }
-        if (deadline == -1) {
-            return deadline;
+        if (entry.deadline == KeyEntry.NO_DEADLINE) {
+            return KeyEntry.NO_DEADLINE;
         }
         long now = getMillis();
-        if (now < deadline) {
-            return deadline - now;
+        if (now < entry.deadline) {
+            return entry.deadline - now;
         }
         delete(key);
         return null;
@@ -122,19 +335,25 @@ public class ExpiringKeyValueStorage {
         return clockSupplier.get().millis();
     }
 
-    public void put(Slice key, RMDataStructure value, Long ttl) {
+    /**
+     * @return the replaced value, null if there was no such key.
+     */
+    public RMDataStructure put(Slice key, RMDataStructure value, Long ttl) {
         keyChangeNotifier.accept(key);
-        values().put(key, value);
-        configureTTL(key, ttl);
+        Objects.requireNonNull(value);
+        long now = getMillis();
+        KeyEntry entry = entryForWrite(key, now, false);
+        RMDataStructure replaced = entry.value;
+        setValue(entry, value);
+        configureTTL(key, entry, ttl, now);
+        account(key, entry);
+        return replaced;
     }
 
     // Put inside
     public void put(Slice key, Slice value, Long ttl) {
-        keyChangeNotifier.accept(key);
-        Objects.requireNonNull(key);
         Objects.requireNonNull(value);
-        values().put(key, value.extract());
-        configureTTL(key, ttl);
+        put(key, value.extract(), ttl);
     }
 
     // Put into inner RMHMap
@@ -143,70 +362,186 @@ public class ExpiringKeyValueStorage {
         Objects.requireNonNull(key1);
         Objects.requireNonNull(key2);
         Objects.requireNonNull(value);
-        RMHash mapByKey;
-
-        if (!values.containsKey(key1)) {
-            mapByKey = new RMHash();
-            values.put(key1, mapByKey);
-        } else {
-            mapByKey = getRMSortedSet(key1);
+        long now = getMillis();
+        KeyEntry entry = entryForWrite(key1, now, true);
+        if (entry.value == null) {
+            setValue(entry, new RMHash());
         }
-        mapByKey.put(key2, value);
-        configureTTL(key1, ttl);
+        asHash(entry.value).put(key2, value);
+        configureTTL(key1, entry, ttl, now);
+        account(key1, entry);
     }
 
-    private RMHash getRMSortedSet(Slice key) {
-        RMDataStructure valueByKey = values.get(key);
-        if (!isSortedSetValue(valueByKey)) {
-            valueByKey.raiseTypeCastException();
+    private void setValue(KeyEntry entry, RMDataStructure value) {
+        entry.value = value;
+        entry.valueGeneration = generation;
+    }
+
+    private static RMHash asHash(RMDataStructure value) {
+        if (!(value instanceof RMHash)) {
+            value.raiseTypeCastException();
         }
+        return (RMHash) value;
+    }
 
-        return (RMHash) valueByKey;
+    /**
+     * @param ttl time to live in milliseconds, -1 to remove the deadline, null to keep the current one.
+     */
+    private void configureTTL(Slice key, KeyEntry entry, Long ttl, long now) {
+        entry.version++;
+        if (ttl != null) {
+            changeDeadline(key, entry, ttl == -1 ? KeyEntry.NO_DEADLINE : now + ttl);
+        }
     }
 
-    private void configureTTL(Slice key, Long ttl) {
-        if (ttl == null) {
-            // If a TTL hasn't been provided, we don't want to override the TTL. However, if no TTL is set for this key,
-            // we should still set it to -1L
-            if (getTTL(key) == null) {
-                setDeadline(key, -1L);
-            }
-        } else {
-            if (ttl != -1) {
-                setTTL(key, ttl);
-            } else {
-                setDeadline(key, -1L);
+    private void changeDeadline(Slice key, KeyEntry entry, long deadline) {
+        boolean wasVolatile = entry.deadline != KeyEntry.NO_DEADLINE;
+        entry.deadline = deadline;
+        if (deadline != KeyEntry.NO_DEADLINE) {
+            deadlines.add(key, deadline);
+            if (!wasVolatile) {
+                volatileIndex.add(key);
             }
+        } else if (wasVolatile) {
+            volatileIndex.remove(key);
         }
+        //Stale entries are dropped here too, since the expired keys may be never polled with active expiry disabled
+        deadlines.compact(volatileIndex, keyspace);
     }
 
     public long setDeadline(Slice key, long deadline) {
         Objects.requireNonNull(key);
-        if (values().containsKey(key)) {
-            ttls().put(key, deadline);
-            return 1L;
+        KeyEntry entry = keyspace.get(key);
+        if (entry == null) {
+            return 0L;
         }
-        return 0L;
+        entry = modifiable(key, entry, false);
+        changeDeadline(key, entry, deadline);
+        entry.version++;
+        return 1L;
     }
 
-    public boolean exists(Slice slice) {
-        return verifyKey(slice);
+    /**
+     * Sets the access statistics of a key, as used by the eviction policies.
+     *
+     * @param idleMillis time in milliseconds since the last access, null to keep the time of the last access.
+     * @param frequency  logarithmic access frequency counter, null to keep the counter.
+     */
+    public void setAccess(Slice key, Long idleMillis, Integer frequency) {
+        Objects.requireNonNull(key);
+        KeyEntry entry = keyspace.get(key);
+        if (entry == null) {
+            return;
+        }
+        entry = modifiable(key, entry, false);
+        if (idleMillis != null) {
+            entry.lastAccess = getMillis() - idleMillis;
+        }
+        if (frequency != null) {
+            entry.frequency = frequency;
+        }
     }
 
-    private boolean isSortedSetValue(RMDataStructure value) {
-        return value instanceof RMHash;
+    /**
+     * Called before the entry of a key is modified.
+     *
+     * @param copyValue whether the value is going to be modified in place, so that a shared value is copied too.
+     * @return the entry, or its copy replacing it in the keyspace if the entry may be shared with a snapshot.
+     */
+    private KeyEntry modifiable(Slice key, KeyEntry entry, boolean copyValue) {
+        preserve(key, entry);
+        long shared = sharedGeneration;
+        boolean entryShared = entry.generation <= shared;
+        boolean valueShared = copyValue && entry.value != null && entry.valueGeneration <= shared;
+        if (!entryShared && !valueShared) {
+            return entry;
+        }
+        KeyEntry result = entry;
+        if (entryShared) {
+            result = entry.copy(generation);
+            keyspace.put(key, result);
+        }
+        if (valueShared) {
+            setValue(result, entry.value.copy());
+        }
+        return result;
     }
 
-    public Slice type(Slice key) {
-        //We also check for ttl here
-        if (!verifyKey(key)) {
-            return Slice.create("none");
+    /**
+     * Preserves the entry of a key for the open snapshots, before the entry is modified or removed.
+     *
+     * @param entry the entry, null if the key is being created.
+     */
+    private void preserve(Slice key, KeyEntry entry) {
+        for (KeyspaceSnapshot snapshot : snapshots) {
+            snapshot.preserve(key, entry);
         }
-        RMDataStructure valueByKey = getValue(key);
+    }
 
-        if (valueByKey == null) {
+    /**
+     * Takes a snapshot of the keyspace in constant time. Must be called under the lock of the database.
+     *
+     * @param time current time of the server clock, the keys expired by then are not in the snapshot.
+     */
+    KeyspaceSnapshot snapshot(long time) {
+        synchronized (snapshots) {
+            long current = generation;
+            KeyspaceSnapshot snapshot = new KeyspaceSnapshot(this, keyspace, current, time);
+            snapshots.add(snapshot);
+            sharedGeneration = current;
+            generation = current + 1;
+            return snapshot;
+        }
+    }
+
+    /**
+     * Forgets a closed snapshot, so that the entries shared with it only are modified in place from now on.
+     */
+    void release(KeyspaceSnapshot snapshot) {
+        synchronized (snapshots) {
+            snapshots.remove(snapshot);
+            sharedGeneration = snapshots.stream().mapToLong(KeyspaceSnapshot::generation).max().orElse(-1);
+        }
+    }
+
+    /**
+     * Reverts the keys modified since the snapshot was taken or last restored. The restored values are shared
+     * with the snapshot, so that it can be restored again. Must be called under the lock of the database.
+     *
+     * @param restored called with each restored key.
+     */
+    void restore(KeyspaceSnapshot snapshot, Consumer<Slice> restored) {
+        snapshot.pollModified().forEach((key, original) -> {
+            keyChangeNotifier.accept(key);
+            remove(key);
+            if (original != null) {
+                //The value keeps its generation, so it is copied before it is modified
+                KeyEntry entry = original.copy(generation);
+                preserve(key, null);
+                keyspace.put(key, entry);
+                scanIndex.add(key);
+                if (entry.deadline != KeyEntry.NO_DEADLINE) {
+                    deadlines.add(key, entry.deadline);
+                    volatileIndex.add(key);
+                }
+                usedMemory.addAndGet(entry.memory);
+                restored.accept(key);
+            }
+        });
+        //Reverting the keys has marked them as modified again
+        snapshot.pollModified();
+    }
+
+    public boolean exists(Slice slice) {
+        return liveEntry(slice) != null;
+    }
+
+    public Slice type(Slice key) {
+        //We also check for ttl here
+        KeyEntry entry = liveEntry(key);
+        if (entry == null) {
             return Slice.create("none");
         }
-        return Slice.create(valueByKey.getTypeName());
+        return Slice.create(entry.value.getTypeName());
     }
 }
@@ -0,0 +1,106 @@
+package com.github.fppt.jedismock.storage;
+
+import com.github.fppt.jedismock.datastructures.RMDataStructure;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * An entry of the keyspace: the value of a key together with its metadata.
+ *
+ * Entries are modified while holding the lock of their key. An entry which may be shared with an open
+ * {@link KeyspaceSnapshot} is never modified in place, it is replaced with a copy instead.
+ */
+final class KeyEntry {
+    static final long NO_DEADLINE = -1L;
+    /**
+     * Access frequency of a new key, so that it is not evicted before it has a chance to be accessed again.
+     */
+    static final int LFU_INIT_VAL = 5;
+    private static final int LFU_MAX_VAL = 255;
+    private static final int LFU_LOG_FACTOR = 10;
+    private static final long LFU_DECAY_MILLIS = 60_000L;
+
+    /**
+     * Generation of the keyspace when the entry was put, the entry belongs to the snapshots
+     * of the same or a later generation.
+     */
+    final long generation;
+    RMDataStructure value;
+    /**
+     * Generation of the keyspace when the value was put, the value may be referenced by the snapshots
+     * of the same or a later generation.
+     */
+    long valueGeneration;
+    /**
+     * Expiration time in milliseconds of the server clock, {@link #NO_DEADLINE} if the key does not expire.
+     */
+    long deadline = NO_DEADLINE;
+    /**
+     * Time of the last access in milliseconds of the server clock.
+     */
+    long lastAccess;
+    /**
+     * Logarithmic access frequency counter, as in Redis: the more the key is accessed,
+     * the less likely the counter is incremented. Decremented by one for each minute without access.
+     */
+    int frequency = LFU_INIT_VAL;
+    /**
+     * Incremented each time the value or the deadline of the key is replaced.
+     */
+    long version;
+    /**
+     * Estimated number of bytes taken by the key and its value, as accounted in the used memory.
+     */
+    long memory;
+    /**
+     * Generation of the last snapshot which has visited the entry, see {@link KeyspaceSnapshot#forEachEntry}.
+     */
+    long visited = -1;
+
+    KeyEntry(long generation) {
+        this.generation = generation;
+        this.valueGeneration = generation;
+    }
+
+    /**
+     * @return a copy of the entry of another generation, which shares the value with this one.
+     */
+    KeyEntry copy(long generation) {
+        KeyEntry copy = new KeyEntry(generation);
+        copy.value = value;
+        copy.valueGeneration = valueGeneration;
+        copy.deadline = deadline;
+        copy.lastAccess = lastAccess;
+        copy.frequency = frequency;
+        copy.version = version;
+        copy.memory = memory;
+        return copy;
+    }
+
+    boolean isExpired(long now) {
+        return deadline != NO_DEADLINE && deadline <= now;
+    }
+
+    /**
+     * Records an access to the key.
+     */
+    void touch(long now) {
+        int counter = frequency(now);
+        if (counter < LFU_MAX_VAL) {
+            int base = Math.max(counter - LFU_INIT_VAL, 0);
+            if (ThreadLocalRandom.current().nextDouble() * (base * LFU_LOG_FACTOR + 1) < 1) {
+                counter++;
+            }
+        }
+        frequency = counter;
+        lastAccess = now;
+    }
+
+    /**
+     * @return access frequency counter decayed by the time passed since the last access.
+     */
+    int frequency(long now) {
+        long periods = (now - lastAccess) / LFU_DECAY_MILLIS;
+        return periods > 0 ? (int) Math.max(frequency - periods, 0) : frequency;
+    }
+}
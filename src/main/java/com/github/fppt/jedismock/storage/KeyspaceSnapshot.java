@@ -0,0 +1,128 @@
+package com.github.fppt.jedismock.storage;
+
+import com.github.fppt.jedismock.datastructures.Slice;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+/**
+ * Snapshot of the keyspace of a database, taken in constant time.
+ *
+ * Nothing is copied when the snapshot is taken: the entries of the keyspace are shared with it instead.
+ * While the snapshot is open, a shared entry is replaced with a copy the first time the key is accessed,
+ * since even reading updates the access time, and the original entry is preserved for the snapshot. The copy
+ * shares the value until the value is modified in place. Thus the snapshot is made of the entries of the keyspace
+ * which have not been replaced since, together with the preserved ones.
+ */
+final class KeyspaceSnapshot {
+    //Preserved in place of a key which did not exist when the snapshot was taken
+    private static final KeyEntry ABSENT = new KeyEntry(-1);
+
+    private final ExpiringKeyValueStorage storage;
+    private final Map<Slice, KeyEntry> keyspace;
+    private final long generation;
+    private final long time;
+    private final int size;
+    //Entries of the keys which have been modified or removed since the snapshot was taken
+    private final Map<Slice, KeyEntry> preserved = new ConcurrentHashMap<>();
+    //Keys which may differ from the snapshot, since the snapshot was taken or last restored
+    private final Set<Slice> modified = ConcurrentHashMap.newKeySet();
+    private volatile boolean open = true;
+
+    KeyspaceSnapshot(ExpiringKeyValueStorage storage, Map<Slice, KeyEntry> keyspace, long generation, long time) {
+        this.storage = storage;
+        this.keyspace = keyspace;
+        this.generation = generation;
+        this.time = time;
+        this.size = keyspace.size();
+    }
+
+    long generation() {
+        return generation;
+    }
+
+    ExpiringKeyValueStorage storage() {
+        return storage;
+    }
+
+    /**
+     * @return number of the keys when the snapshot was taken, including the expired ones.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Called before a key of the keyspace is modified or removed.
+     *
+     * @param entry current entry of the key, null if the key is being created.
+     */
+    void preserve(Slice key, KeyEntry entry) {
+        if (entry == null) {
+            preserved.putIfAbsent(key, ABSENT);
+        } else if (entry.generation <= generation) {
+            preserved.putIfAbsent(key, entry);
+        }
+        modified.add(key);
+    }
+
+    /**
+     * @return the keys which may differ from the snapshot, with their entries in the snapshot,
+     * null for the keys which did not exist. The keys are no longer considered modified.
+     */
+    Map<Slice, KeyEntry> pollModified() {
+        List<Slice> keys = new ArrayList<>(modified);
+        modified.clear();
+        Map<Slice, KeyEntry> result = new HashMap<>();
+        for (Slice key : keys) {
+            KeyEntry entry = preserved.get(key);
+            result.put(key, entry == ABSENT ? null : entry);
+        }
+        return result;
+    }
+
+    /**
+     * Visits the keys of the snapshot which had not expired when it was taken, with their entries.
+     * May be called concurrently with the modification of the keyspace.
+     */
+    void forEachEntry(BiConsumer<Slice, KeyEntry> action) {
+        //Entries are marked as visited, so only one snapshot of the keyspace is visited at a time
+        synchronized (storage) {
+            keyspace.forEach((key, entry) -> {
+                //Preserving an entry happens before it is replaced, so it is visited either here or below
+                if (entry.generation <= generation) {
+                    entry.visited = generation;
+                    visit(key, entry, action);
+                }
+            });
+            preserved.forEach((key, entry) -> {
+                if (entry != ABSENT && entry.visited != generation) {
+                    visit(key, entry, action);
+                }
+            });
+        }
+    }
+
+    private void visit(Slice key, KeyEntry entry, BiConsumer<Slice, KeyEntry> action) {
+        if (entry.value != null && !entry.isExpired(time)) {
+            action.accept(key, entry);
+        }
+    }
+
+    /**
+     * Releases the entries preserved for the snapshot, so that the keys are no longer copied when modified.
+     */
+    void close() {
+        if (open) {
+            open = false;
+            storage.release(this);
+            preserved.clear();
+            modified.clear();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.github.fppt.jedismock.storage;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Background worker which releases the keyspaces detached by FLUSHALL ASYNC and FLUSHDB ASYNC, like the lazy-free
+ * thread of Redis.
+ *
+ * The commands only detach a keyspace while holding the lock, the worker clears it and its indices, so that
+ * the garbage collector reclaims them without further work of the commands. A value removed by UNLINK
+ * or overwritten by SET or RENAME is not cleared, since it may be shared with a snapshot: the command only drops
+ * its reference, so it is not counted as freed.
+ * The worker is shared by all the servers of the JVM, as the thread is shared by the databases of a Redis process.
+ */
+public final class LazyFree {
+    private static final AtomicLong PENDING = new AtomicLong();
+    private static final AtomicLong FREED = new AtomicLong();
+    private static final ExecutorService WORKER = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "jedis-mock-lazy-free");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private LazyFree() {
+    }
+
+    /**
+     * @return number of the objects detached from the keyspace which are not released yet.
+     */
+    public static long pendingObjects() {
+        return PENDING.get();
+    }
+
+    /**
+     * @return number of the objects released by the worker since the JVM was started.
+     */
+    public static long freedObjects() {
+        return FREED.get();
+    }
+
+    /**
+     * Waits until the objects detached so far are released.
+     */
+    public static void awaitPending() {
+        try {
+            WORKER.submit(() -> { }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param objects number of the objects released, as reported by {@link #pendingObjects()}.
+     * @param release releases the detached structures.
+     */
+    static void free(long objects, Runnable release) {
+        PENDING.addAndGet(objects);
+        WORKER.execute(() -> {
+            try {
+                release.run();
+            } finally {
+                PENDING.addAndGet(-objects);
+                FREED.addAndGet(objects);
+            }
+        });
+    }
+}
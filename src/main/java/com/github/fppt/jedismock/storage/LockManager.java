@@ -0,0 +1,119 @@
+package com.github.fppt.jedismock.storage;
+
+import com.github.fppt.jedismock.datastructures.Slice;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Synchronizes command execution.
+ *
+ * By default, all the commands are executed while holding the server-wide lock exclusively. In fine-grained mode,
+ * commands take the locks described by their {@link LockPlan}: a server-wide read-write lock,
+ * a read-write lock per database and a fixed number of lock stripes per database, chosen by key hash.
+ */
+public final class LockManager {
+    static final int STRIPES = 64;
+
+    private final boolean fineGrained;
+    private final ReentrantReadWriteLock serverLock = new ReentrantReadWriteLock();
+    private final Map<Integer, DatabaseLocks> databases = new ConcurrentHashMap<>();
+
+    /**
+     * @param fineGrained true if fine-grained locking is enabled.
+     */
+    public LockManager(boolean fineGrained) {
+        this.fineGrained = fineGrained;
+    }
+
+    /**
+     * Releases the locks when closed.
+     */
+    @FunctionalInterface
+    public interface Held extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private static final class DatabaseLocks {
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private final Lock[] stripes = new Lock[STRIPES];
+
+        private DatabaseLocks() {
+            for (int i = 0; i < STRIPES; i++) {
+                stripes[i] = new ReentrantLock();
+            }
+        }
+    }
+
+    static int stripe(Slice key) {
+        int h = key.hashCode();
+        return (h ^ (h >>> 16)) & (STRIPES - 1);
+    }
+
+    public boolean isFineGrained() {
+        return fineGrained;
+    }
+
+    /**
+     * Acquires the locks of a locking plan.
+     */
+    public Held acquire(LockPlan plan) {
+        if (plan.scope() == LockPlan.Scope.SERVER) {
+            Lock lock = serverLock.writeLock();
+            lock.lock();
+            return lock::unlock;
+        }
+        Lock server = serverLock.readLock();
+        server.lock();
+        DatabaseLocks database = databases.computeIfAbsent(plan.database(), k -> new DatabaseLocks());
+        if (plan.scope() == LockPlan.Scope.DATABASE) {
+            Lock lock = database.lock.writeLock();
+            lock.lock();
+            return () -> {
+                lock.unlock();
+                server.unlock();
+            };
+        }
+        Lock lock = database.lock.readLock();
+        lock.lock();
+        int[] stripes = plan.stripes();
+        for (int stripe : stripes) {
+            database.stripes[stripe].lock();
+        }
+        return () -> {
+            for (int i = stripes.length - 1; i >= 0; i--) {
+                database.stripes[stripes[i]].unlock();
+            }
+            lock.unlock();
+            server.unlock();
+        };
+    }
+
+    /**
+     * Waits until a key the client is blocked on is written, releasing the server lock held by the current command.
+     *
+     * @param timeoutNanos maximum time to wait, 0 to wait indefinitely.
+     */
+    public void await(BlockedClients.Waiter waiter, long timeoutNanos) throws InterruptedException {
+        if (!serverLock.isWriteLockedByCurrentThread()) {
+            throw new IllegalStateException("ERR blocking is not allowed in this context");
+        }
+        //No keys can be written while the lock is held, so no signals are lost
+        waiter.reset();
+        int holds = serverLock.getWriteHoldCount();
+        for (int i = 0; i < holds; i++) {
+            serverLock.writeLock().unlock();
+        }
+        try {
+            waiter.park(timeoutNanos);
+        } finally {
+            for (int i = 0; i < holds; i++) {
+                serverLock.writeLock().lock();
+            }
+        }
+    }
+}
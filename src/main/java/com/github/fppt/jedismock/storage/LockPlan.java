@@ -0,0 +1,89 @@
+package com.github.fppt.jedismock.storage;
+
+import com.github.fppt.jedismock.datastructures.Slice;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Describes which locks a command needs in fine-grained locking mode.
+ *
+ * Locks are always acquired in the same order (server, database, key stripes in ascending order),
+ * so commands which need several locks cannot deadlock.
+ */
+public final class LockPlan {
+    private static final LockPlan SERVER = new LockPlan(Scope.SERVER, -1, new int[0]);
+
+    enum Scope {
+        /**
+         * Only the stripes of the given keys of a database are locked.
+         */
+        KEYS,
+        /**
+         * The whole database is locked exclusively.
+         */
+        DATABASE,
+        /**
+         * All the databases are locked exclusively.
+         */
+        SERVER
+    }
+
+    private final Scope scope;
+    private final int database;
+    private final int[] stripes;
+
+    private LockPlan(Scope scope, int database, int[] stripes) {
+        this.scope = scope;
+        this.database = database;
+        this.stripes = stripes;
+    }
+
+    public static LockPlan server() {
+        return SERVER;
+    }
+
+    public static LockPlan database(int database) {
+        return new LockPlan(Scope.DATABASE, database, new int[0]);
+    }
+
+    public static LockPlan keys(int database, Collection<Slice> keys) {
+        return new LockPlan(Scope.KEYS, database,
+                keys.stream().mapToInt(LockManager::stripe).sorted().distinct().toArray());
+    }
+
+    /**
+     * @return a plan which covers both this and the other plan.
+     */
+    public LockPlan merge(LockPlan other) {
+        if (scope == Scope.SERVER || other.scope == Scope.SERVER || database != other.database) {
+            return SERVER;
+        }
+        if (scope == Scope.DATABASE) {
+            return this;
+        }
+        if (other.scope == Scope.DATABASE) {
+            return other;
+        }
+        int[] union = Arrays.copyOf(stripes, stripes.length + other.stripes.length);
+        System.arraycopy(other.stripes, 0, union, stripes.length, other.stripes.length);
+        return new LockPlan(Scope.KEYS, database, Arrays.stream(union).sorted().distinct().toArray());
+    }
+
+    Scope scope() {
+        return scope;
+    }
+
+    int database() {
+        return database;
+    }
+
+    int[] stripes() {
+        return stripes;
+    }
+
+    @Override
+    public String toString() {
+        return scope == Scope.SERVER ? "SERVER" : scope + "(" + database + ")" + Arrays.toString(stripes);
+    }
+}
@@ -0,0 +1,59 @@
+package com.github.fppt.jedismock.storage;
+
+/**
+ * How keys are chosen for eviction when the used memory exceeds the limit, the same as 'maxmemory-policy' of Redis.
+ */
+public enum MaxMemoryPolicy {
+    /**
+     * Nothing is evicted: commands which may increase the used memory fail.
+     */
+    NOEVICTION(false),
+    /**
+     * The least recently used keys are evicted.
+     */
+    ALLKEYS_LRU(false),
+    /**
+     * The least recently used keys with a time to live are evicted.
+     */
+    VOLATILE_LRU(true),
+    /**
+     * The least frequently used keys are evicted.
+     */
+    ALLKEYS_LFU(false),
+    /**
+     * The least frequently used keys with a time to live are evicted.
+     */
+    VOLATILE_LFU(true),
+    /**
+     * Random keys are evicted.
+     */
+    ALLKEYS_RANDOM(false),
+    /**
+     * Random keys with a time to live are evicted.
+     */
+    VOLATILE_RANDOM(true),
+    /**
+     * The keys with the nearest expiration time are evicted.
+     */
+    VOLATILE_TTL(true);
+
+    private final boolean volatileOnly;
+
+    MaxMemoryPolicy(boolean volatileOnly) {
+        this.volatileOnly = volatileOnly;
+    }
+
+    /**
+     * @return true if only the keys with a time to live can be evicted.
+     */
+    boolean isVolatileOnly() {
+        return volatileOnly;
+    }
+
+    /**
+     * @return the name used in Redis configuration, e.g. 'allkeys-lru'.
+     */
+    public String getName() {
+        return name().toLowerCase().replace('_', '-');
+    }
+}
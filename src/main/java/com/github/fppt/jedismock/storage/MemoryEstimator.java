@@ -0,0 +1,115 @@
+package com.github.fppt.jedismock.storage;
+
+import com.github.fppt.jedismock.datastructures.RMDataStructure;
+import com.github.fppt.jedismock.datastructures.RMHash;
+import com.github.fppt.jedismock.datastructures.RMHyperLogLog;
+import com.github.fppt.jedismock.datastructures.RMList;
+import com.github.fppt.jedismock.datastructures.RMSet;
+import com.github.fppt.jedismock.datastructures.RMString;
+import com.github.fppt.jedismock.datastructures.RMZSet;
+import com.github.fppt.jedismock.datastructures.Slice;
+import com.github.fppt.jedismock.datastructures.streams.RMStream;
+import com.github.fppt.jedismock.datastructures.streams.SequencedMap;
+import com.github.fppt.jedismock.datastructures.streams.StreamId;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+/**
+ * Approximate number of bytes taken by the keys and their values.
+ *
+ * Like MEMORY USAGE in Redis, the size of a collection is extrapolated from a few of its elements,
+ * so that the estimation is cheap regardless of the size of the collection.
+ */
+final class MemoryEstimator {
+    /**
+     * Default number of sampled elements of a collection, the same as in MEMORY USAGE.
+     */
+    static final int DEFAULT_SAMPLES = 5;
+    /**
+     * Keyspace entry, its metadata and the object headers.
+     */
+    private static final long KEY_OVERHEAD = 96;
+    /**
+     * Object header and array header of a string.
+     */
+    private static final long STRING_OVERHEAD = 32;
+    /**
+     * Hash table entry or list node referring to an element.
+     */
+    private static final long ELEMENT_OVERHEAD = 48;
+    /**
+     * Score and the node of the ordered index of a sorted set member.
+     */
+    private static final long ZSET_ELEMENT_OVERHEAD = 56;
+
+    private MemoryEstimator() {
+    }
+
+    /**
+     * @param samples number of sampled elements of a collection, 0 to take all the elements into account.
+     */
+    static long estimate(Slice key, RMDataStructure value, int samples) {
+        return KEY_OVERHEAD + STRING_OVERHEAD + key.length() + valueSize(value, samples);
+    }
+
+    private static long valueSize(RMDataStructure value, int samples) {
+        if (value instanceof RMString) {
+            return STRING_OVERHEAD + ((RMString) value).size();
+        }
+        if (value instanceof RMHyperLogLog) {
+            return STRING_OVERHEAD + ((RMHyperLogLog) value).getSize();
+        }
+        if (value instanceof RMList) {
+            return STRING_OVERHEAD + sample(((RMList) value).getStoredData().iterator(),
+                    ((RMList) value).size(), samples, MemoryEstimator::elementSize);
+        }
+        if (value instanceof RMSet) {
+            return STRING_OVERHEAD + sample(((RMSet) value).getStoredData().iterator(),
+                    ((RMSet) value).getStoredData().size(), samples, MemoryEstimator::elementSize);
+        }
+        if (value instanceof RMHash) {
+            Map<Slice, Slice> fields = ((RMHash) value).getStoredData();
+            return STRING_OVERHEAD + sample(fields.entrySet().iterator(), fields.size(), samples,
+                    field -> elementSize(field.getKey()) + STRING_OVERHEAD + field.getValue().length());
+        }
+        if (value instanceof RMZSet) {
+            RMZSet zset = (RMZSet) value;
+            return STRING_OVERHEAD + sample(zset.members().iterator(), zset.size(), samples,
+                    member -> elementSize(member) + ZSET_ELEMENT_OVERHEAD);
+        }
+        if (value instanceof RMStream) {
+            Iterator<Map.Entry<StreamId, SequencedMap<Slice, Slice>>> entries =
+                    ((RMStream) value).getStoredData().iterator();
+            return STRING_OVERHEAD + sample(entries, ((RMStream) value).getStoredData().size(), samples,
+                    entry -> ELEMENT_OVERHEAD + STRING_OVERHEAD + fieldsSize(entry.getValue()));
+        }
+        return STRING_OVERHEAD;
+    }
+
+    private static long elementSize(Slice element) {
+        return ELEMENT_OVERHEAD + STRING_OVERHEAD + element.length();
+    }
+
+    private static long fieldsSize(SequencedMap<Slice, Slice> fields) {
+        long result = 0;
+        for (Map.Entry<Slice, Slice> field : fields) {
+            result += elementSize(field.getKey()) + STRING_OVERHEAD + field.getValue().length();
+        }
+        return result;
+    }
+
+    /**
+     * @return total size of the elements, extrapolated from the first sampled ones.
+     */
+    private static <T> long sample(Iterator<T> elements, int size, int samples, ToLongFunction<T> elementSize) {
+        long sampledSize = 0;
+        int sampled = 0;
+        while (elements.hasNext() && (samples == 0 || sampled < samples)) {
+            sampledSize += elementSize.applyAsLong(elements.next());
+            sampled++;
+        }
+        return sampled == 0 ? 0 : sampledSize * size / sampled;
+    }
+}
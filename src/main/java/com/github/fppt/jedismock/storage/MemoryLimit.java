@@ -0,0 +1,122 @@
+package com.github.fppt.jedismock.storage;
+
+import com.github.fppt.jedismock.datastructures.Slice;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limit of the memory used by all the databases of a server, the same as 'maxmemory' of Redis.
+ *
+ * Like in Redis, the keys to evict are chosen by sampling: a few random keys of each database are picked,
+ * and the best one according to the policy is evicted, until the used memory is below the limit.
+ */
+public final class MemoryLimit {
+    /**
+     * Number of keys sampled in each database, the same as the default 'maxmemory-samples' of Redis.
+     */
+    private static final int SAMPLES = 5;
+
+    private final long maxMemory;
+    private final MaxMemoryPolicy policy;
+    private final Map<Integer, RedisBase> redisBases;
+    private final AtomicLong evictedKeys = new AtomicLong();
+
+    /**
+     * @param maxMemory  maximum number of bytes used by the keys and their values, 0 for no limit.
+     * @param redisBases databases of the server.
+     */
+    public MemoryLimit(long maxMemory, MaxMemoryPolicy policy, Map<Integer, RedisBase> redisBases) {
+        this.maxMemory = maxMemory;
+        this.policy = Objects.requireNonNull(policy);
+        this.redisBases = Objects.requireNonNull(redisBases);
+    }
+
+    public static MemoryLimit unlimited() {
+        return new MemoryLimit(0, MaxMemoryPolicy.NOEVICTION, Collections.emptyMap());
+    }
+
+    /**
+     * @return estimated number of bytes used by the keys and their values in all the databases.
+     */
+    public long usedMemory() {
+        long result = 0;
+        for (RedisBase redisBase : redisBases.values()) {
+            result += redisBase.usedMemory();
+        }
+        return result;
+    }
+
+    public boolean isExceeded() {
+        return maxMemory > 0 && usedMemory() > maxMemory;
+    }
+
+    /**
+     * @return number of keys evicted since the server has been started.
+     */
+    public long getEvictedKeys() {
+        return evictedKeys.get();
+    }
+
+    /**
+     * Evicts the keys until the used memory is below the limit. Must be called under the server lock.
+     *
+     * @return false if the used memory still exceeds the limit, since there are no more keys to evict.
+     */
+    public boolean evict() {
+        if (policy == MaxMemoryPolicy.NOEVICTION) {
+            return !isExceeded();
+        }
+        while (isExceeded()) {
+            Candidate best = new Candidate();
+            for (RedisBase redisBase : redisBases.values()) {
+                long now = redisBase.getClock().millis();
+                redisBase.keyValueStorage().sample(policy.isVolatileOnly(), SAMPLES,
+                        (key, entry) -> best.offer(redisBase, key, score(entry, now)));
+            }
+            if (best.key == null) {
+                return false;
+            }
+            best.base.deleteValue(best.key);
+            evictedKeys.incrementAndGet();
+        }
+        return true;
+    }
+
+    /**
+     * @return how good a key is for eviction: the greater, the better.
+     */
+    private long score(KeyEntry entry, long now) {
+        switch (policy) {
+            case ALLKEYS_LRU:
+            case VOLATILE_LRU:
+                return now - entry.lastAccess;
+            case ALLKEYS_LFU:
+            case VOLATILE_LFU:
+                return -entry.frequency(now);
+            case VOLATILE_TTL:
+                return -entry.deadline;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * The best key for eviction among the sampled ones.
+     */
+    private static final class Candidate {
+        private RedisBase base;
+        private Slice key;
+        private long score;
+
+        private void offer(RedisBase base, Slice key, long score) {
+            if (this.key == null || score > this.score) {
+                this.base = base;
+                this.key = key;
+                this.score = score;
+            }
+        }
+    }
+}
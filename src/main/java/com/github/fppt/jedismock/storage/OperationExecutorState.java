@@ -10,22 +10,70 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.HashSet;
+import java.util.function.Supplier;
 
 public class OperationExecutorState {
     public enum TransactionState {NORMAL, MULTI, ERRORED}
 
     private final RedisClient owner;
     private final Map<Integer, RedisBase> redisBases;
+    private final LockManager locks;
+    private final MemoryLimit memoryLimit;
+    private final DumpFile dumpFile;
+    private final AppendOnlyFile appendOnlyFile;
+    private final Supplier<Clock> clockSupplier;
     private TransactionState transactionState = TransactionState.NORMAL;
     private final List<RedisOperation> tx = new ArrayList<>();
     private final Set<Slice> watchedKeys = new HashSet<>();
-    private boolean watchedKeysAffected = false;
+    //Modified by the clients which change the watched keys
+    private volatile boolean watchedKeysAffected = false;
+    private LockPlan transactionLocks;
     private int selectedRedisBase = 0;
     private String clientName;
 
     public OperationExecutorState(RedisClient owner, Map<Integer, RedisBase> redisBases) {
+        this(owner, redisBases, new LockManager(false));
+    }
+
+    public OperationExecutorState(RedisClient owner, Map<Integer, RedisBase> redisBases, LockManager locks) {
+        this(owner, redisBases, locks, MemoryLimit.unlimited());
+    }
+
+    public OperationExecutorState(RedisClient owner, Map<Integer, RedisBase> redisBases, LockManager locks,
+                                  MemoryLimit memoryLimit) {
+        this(owner, redisBases, locks, memoryLimit, DumpFile.none());
+    }
+
+    public OperationExecutorState(RedisClient owner, Map<Integer, RedisBase> redisBases, LockManager locks,
+                                  MemoryLimit memoryLimit, DumpFile dumpFile) {
+        this(owner, redisBases, locks, memoryLimit, dumpFile, AppendOnlyFile.none());
+    }
+
+    public OperationExecutorState(RedisClient owner, Map<Integer, RedisBase> redisBases, LockManager locks,
+                                  MemoryLimit memoryLimit, DumpFile dumpFile, AppendOnlyFile appendOnlyFile) {
+        this(owner, redisBases, locks, memoryLimit, dumpFile, appendOnlyFile, () -> owner.getClock());
+    }
+
+    /**
+     * Creates a state for executing commands which are not received from a client, e.g. read from a file.
+     * Such a state has no owner.
+     */
+    public OperationExecutorState(Map<Integer, RedisBase> redisBases, LockManager locks,
+                                  Supplier<Clock> clockSupplier) {
+        this(null, redisBases, locks, MemoryLimit.unlimited(), DumpFile.none(), AppendOnlyFile.none(),
+                clockSupplier);
+    }
+
+    private OperationExecutorState(RedisClient owner, Map<Integer, RedisBase> redisBases, LockManager locks,
+                                   MemoryLimit memoryLimit, DumpFile dumpFile, AppendOnlyFile appendOnlyFile,
+                                   Supplier<Clock> clockSupplier) {
         this.owner = owner;
         this.redisBases = redisBases;
+        this.locks = locks;
+        this.memoryLimit = memoryLimit;
+        this.dumpFile = dumpFile;
+        this.appendOnlyFile = appendOnlyFile;
+        this.clockSupplier = clockSupplier;
     }
 
     public RedisBase base() {
@@ -50,6 +98,21 @@ public class OperationExecutorState {
 
     public void transactionMode(boolean isTransactionModeOn) {
         this.transactionState = isTransactionModeOn ? TransactionState.MULTI : TransactionState.NORMAL;
+        this.transactionLocks = null;
+    }
+
+    /**
+     * Records the locks needed by a command queued in a transaction (fine-grained locking mode).
+     */
+    public void addTransactionLocks(LockPlan plan) {
+        transactionLocks = transactionLocks == null ? plan : transactionLocks.merge(plan);
+    }
+
+    /**
+     * @return locks needed by all the commands queued in a transaction, or null if no commands are queued.
+     */
+    public LockPlan getTransactionLocks() {
+        return transactionLocks;
     }
 
     public boolean isTransactionModeOn() {
@@ -67,15 +130,42 @@ public class OperationExecutorState {
     }
 
     public void clearAll() {
+        clearAll(false);
+    }
+
+    /**
+     * @param lazyFree whether the keys are released by the {@link LazyFree} worker, as by FLUSHALL ASYNC.
+     */
+    public void clearAll(boolean lazyFree) {
         for (RedisBase redisBase : redisBases.values()) {
-            redisBase.clear();
+            redisBase.clear(lazyFree);
         }
     }
 
+    /**
+     * @deprecated commands are no longer synchronized on this object, use {@link #locks()} instead.
+     */
+    @Deprecated
     public Object lock() {
         return redisBases;
     }
 
+    public LockManager locks() {
+        return locks;
+    }
+
+    public MemoryLimit memoryLimit() {
+        return memoryLimit;
+    }
+
+    public DumpFile dumpFile() {
+        return dumpFile;
+    }
+
+    public AppendOnlyFile appendOnlyFile() {
+        return appendOnlyFile;
+    }
+
     public void checkWatchedKeysNotExpired() {
         for (Slice key : watchedKeys) {
             base().exists(key);
@@ -115,7 +205,7 @@ public class OperationExecutorState {
     }
 
     public Clock getClock() {
-        return owner.getClock();
+        return clockSupplier.get();
     }
 
     public String getHost() {
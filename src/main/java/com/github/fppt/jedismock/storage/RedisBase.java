@@ -1,7 +1,6 @@
 package com.github.fppt.jedismock.storage;
 
-import com.github.fppt.jedismock.Utils;
-import com.github.fppt.jedismock.datastructures.RMBitMap;
+import com.github.fppt.jedismock.GlobPattern;
 import com.github.fppt.jedismock.datastructures.RMDataStructure;
 import com.github.fppt.jedismock.datastructures.RMHash;
 import com.github.fppt.jedismock.datastructures.RMHyperLogLog;
@@ -10,6 +9,7 @@ import com.github.fppt.jedismock.datastructures.RMSet;
 import com.github.fppt.jedismock.datastructures.streams.RMStream;
 import com.github.fppt.jedismock.datastructures.RMString;
 import com.github.fppt.jedismock.datastructures.RMZSet;
+import com.github.fppt.jedismock.datastructures.ScanIndex;
 import com.github.fppt.jedismock.datastructures.Slice;
 import com.github.fppt.jedismock.RedisClient;
 
@@ -18,11 +18,12 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
 
 /**
@@ -32,9 +33,11 @@ public class RedisBase {
     private final Supplier<Clock> clockSupplier;
     private final Map<Slice, Set<RedisClient>> subscribers = new HashMap<>();
     private final Map<Slice, Set<RedisClient>> psubscribers = new HashMap<>();
-    private final Map<Slice, Set<OperationExecutorState>> watchedKeys = new HashMap<>();
-    private final Map<String, String> cachedLuaScripts = new HashMap<>();
+    //Concurrent, since keys are watched and modified under different locks in fine-grained locking mode
+    private final Map<Slice, Set<OperationExecutorState>> watchedKeys = new ConcurrentHashMap<>();
+    private final Map<String, String> cachedLuaScripts = new ConcurrentHashMap<>();
     private final ExpiringKeyValueStorage keyValueStorage;
+    private final BlockedClients blockedClients = new BlockedClients(this::exists);
 
     public RedisBase(Supplier<Clock> clockSupplier) {
         this.clockSupplier = Objects.requireNonNull(clockSupplier);
@@ -48,25 +51,62 @@ public class RedisBase {
     }
 
     public Set<Slice> keys() {
-        Iterator<Slice> slices = keyValueStorage.values().keySet().iterator();
-        Set<Slice> result = new HashSet<>();
-        while (slices.hasNext()) {
-            Slice key = slices.next();
-            if (keyValueStorage.isKeyOutdated(key)) {
-                slices.remove();
-            } else {
-                result.add(key);
-            }
-        }
-        return result;
+        return keyValueStorage.keys();
+    }
+
+    /**
+     * @return number of the stored keys, including the expired ones which are not removed yet.
+     */
+    public int size() {
+        return keyValueStorage.size();
+    }
+
+    /**
+     * @return estimated number of bytes taken by the keys and their values.
+     */
+    public long usedMemory() {
+        return keyValueStorage.usedMemory();
+    }
+
+    /**
+     * @param samples number of sampled elements of a collection, 0 to take all the elements into account.
+     * @return estimated number of bytes taken by the key and its value, null if there is no such key.
+     */
+    public Long memoryUsage(Slice key, int samples) {
+        return keyValueStorage.memoryUsage(key, samples);
+    }
+
+    ExpiringKeyValueStorage keyValueStorage() {
+        return keyValueStorage;
     }
 
+    /**
+     * Visits the keys starting from the cursor.
+     *
+     * @return cursor to continue the iteration from, 0 if all the keys have been visited.
+     * @see ScanIndex#scan(long, long, Consumer)
+     */
+    public long scan(long cursor, long count, Consumer<Slice> action) {
+        return keyValueStorage.scan(cursor, count, action);
+    }
+
+    /**
+     * @return the value of the key, which must not be modified in place, since it may be shared with a snapshot.
+     * Values which are modified in place or moved to another key are got by {@link #getModifiableValue(Slice)}.
+     */
     public RMDataStructure getValue(Slice key) {
         return keyValueStorage.getValue(key);
     }
 
-    private <T extends RMDataStructure> T getStructure(Slice key, Class<T> tClass) {
-        RMDataStructure value = getValue(key);
+    /**
+     * @return the value of the key, which may be modified in place. A value shared with a snapshot is copied.
+     */
+    public RMDataStructure getModifiableValue(Slice key) {
+        return keyValueStorage.getModifiableValue(key);
+    }
+
+    private <T extends RMDataStructure> T getStructure(Slice key, Class<T> tClass, boolean modifiable) {
+        RMDataStructure value = modifiable ? getModifiableValue(key) : getValue(key);
         if (value == null) {
             return null;
         }
@@ -78,46 +118,55 @@ public class RedisBase {
     }
 
     public RMStream getStream(Slice key) {
-        return getStructure(key, RMStream.class);
+        return getStructure(key, RMStream.class, false);
+    }
+
+    public RMStream getModifiableStream(Slice key) {
+        return getStructure(key, RMStream.class, true);
     }
 
     public RMSet getSet(Slice key) {
-        return getStructure(key, RMSet.class);
+        return getStructure(key, RMSet.class, false);
+    }
+
+    public RMSet getModifiableSet(Slice key) {
+        return getStructure(key, RMSet.class, true);
     }
 
     public RMZSet getZSet(Slice key) {
-        return getStructure(key, RMZSet.class);
+        return getStructure(key, RMZSet.class, false);
+    }
+
+    public RMZSet getModifiableZSet(Slice key) {
+        return getStructure(key, RMZSet.class, true);
     }
 
     public RMList getList(Slice key) {
-        return getStructure(key, RMList.class);
+        return getStructure(key, RMList.class, false);
+    }
+
+    public RMList getModifiableList(Slice key) {
+        return getStructure(key, RMList.class, true);
     }
 
     public RMHash getHash(Slice key) {
-        return getStructure(key, RMHash.class);
+        return getStructure(key, RMHash.class, false);
     }
 
     public RMHyperLogLog getHLL(Slice key) {
-        return getStructure(key, RMHyperLogLog.class);
+        return getStructure(key, RMHyperLogLog.class, false);
+    }
+
+    public RMHyperLogLog getModifiableHLL(Slice key) {
+        return getStructure(key, RMHyperLogLog.class, true);
     }
 
     public RMString getRMString(Slice key) {
-        return getStructure(key, RMString.class);
+        return getStructure(key, RMString.class, false);
     }
 
-    public RMBitMap getBitMap(Slice key) {
-        RMDataStructure value = getValue(key);
-        if (value == null) {
-            return null;
-        }
-        if (value instanceof RMBitMap) {
-            return (RMBitMap) value;
-        }
-        if (value instanceof RMString) {
-            return new RMBitMap(((RMString) value).getStoredData());
-        }
-        value.raiseTypeCastException();
-        return null;
+    public RMString getModifiableRMString(Slice key) {
+        return getStructure(key, RMString.class, true);
     }
 
     public Slice getSlice(Slice key) {
@@ -164,14 +213,54 @@ public class RedisBase {
     }
 
     public Long getDeadline(Slice key) {
-        return keyValueStorage.ttls().get(key);
+        return keyValueStorage.getDeadline(key);
+    }
+
+    public void setAccess(Slice key, Long idleMillis, Integer frequency) {
+        keyValueStorage.setAccess(key, idleMillis, frequency);
+    }
+
+    /**
+     * Removes the keys which time to live has expired.
+     *
+     * @param limit maximum number of keys to check.
+     * @return number of the checked keys, less than the limit if there are no more expired keys.
+     */
+    public int expireKeys(int limit) {
+        return keyValueStorage.expireKeys(limit);
     }
 
     public void clear() {
-        keyValueStorage.clear();
+        clear(false);
+    }
+
+    /**
+     * @param lazyFree whether the keys are released by the {@link LazyFree} worker, as by FLUSHDB ASYNC.
+     */
+    public void clear(boolean lazyFree) {
+        clearKeys(lazyFree);
         subscribers.clear();
     }
 
+    /**
+     * Removes all the keys, notifying the watchers of the existing ones.
+     */
+    void clearKeys(boolean lazyFree) {
+        for (Slice key : watchedKeys.keySet()) {
+            if (keyValueStorage.exists(key)) {
+                markKeyModified(key);
+            }
+        }
+        keyValueStorage.clear(lazyFree);
+    }
+
+    /**
+     * Replaces the keys with the ones of a snapshot of this database.
+     */
+    void restore(KeyspaceSnapshot snapshot) {
+        keyValueStorage.restore(snapshot, blockedClients::signal);
+    }
+
     public void putSlice(Slice key, Slice value, Long ttl) {
         keyValueStorage.put(key, value, ttl);
     }
@@ -186,10 +275,11 @@ public class RedisBase {
 
     public void putValue(Slice key, RMDataStructure value, Long ttl) {
         keyValueStorage.put(key, value, ttl);
+        blockedClients.signal(key);
     }
 
     public void putValue(Slice key, RMDataStructure value) {
-        keyValueStorage.put(key, value, -1L);
+        putValue(key, value, -1L);
     }
 
     public void deleteValue(Slice key) {
@@ -248,11 +338,9 @@ public class RedisBase {
 
     public Map<Slice, Set<RedisClient>> getPsubscribers(Slice channel) {
         Map<Slice, Set<RedisClient>> matchingPatterns = new HashMap<>();
-        String channelStr = channel.toString();
         for (Map.Entry<Slice, Set<RedisClient>> patternSubscribedClients : psubscribers.entrySet()) {
             Slice jedisPattern = patternSubscribedClients.getKey();
-            String regexpPattern = getRegexpFromPattern(jedisPattern);
-            if (!channelStr.matches(regexpPattern)) {
+            if (!GlobPattern.compile(jedisPattern).matches(channel)) {
                 continue;
             }
             matchingPatterns.put(jedisPattern, patternSubscribedClients.getValue());
@@ -260,14 +348,6 @@ public class RedisBase {
         return matchingPatterns;
     }
 
-    private static String getRegexpFromPattern(Slice pattern) {
-        String patternStr = pattern.toString();
-        if (patternStr.isEmpty()) {
-            return ".*";
-        }
-        return Utils.createRegexFromGlob(patternStr);
-    }
-
     public int getNumpat() {
         return psubscribers.size();
     }
@@ -308,22 +388,30 @@ public class RedisBase {
         return keyValueStorage.type(slice);
     }
 
+    /**
+     * @return clients blocked on the keys of this database, which are woken up when the keys are written.
+     */
+    public BlockedClients blockedClients() {
+        return blockedClients;
+    }
+
     public void watch(OperationExecutorState state, Slice key) {
-        watchedKeys.computeIfAbsent(key, k -> new HashSet<>()).add(state);
+        watchedKeys.compute(key, (k, states) -> {
+            Set<OperationExecutorState> result = states == null ? ConcurrentHashMap.newKeySet() : states;
+            result.add(state);
+            return result;
+        });
     }
 
     public void unwatchSingleKey(OperationExecutorState state, Slice key) {
-        Set<OperationExecutorState> states = watchedKeys.get(key);
-        if (states != null) {
+        watchedKeys.computeIfPresent(key, (k, states) -> {
             states.remove(state);
-            if (states.isEmpty()) {
-                watchedKeys.remove(key);
-            }
-        }
+            return states.isEmpty() ? null : states;
+        });
     }
 
     public void markKeyModified(Slice key) {
-        watchedKeys.getOrDefault(key, new HashSet<>()).forEach(OperationExecutorState::watchedKeyIsAffected);
+        watchedKeys.getOrDefault(key, Collections.emptySet()).forEach(OperationExecutorState::watchedKeyIsAffected);
     }
 
     public String getCachedLuaScript(String sha1) {
@@ -0,0 +1,97 @@
+package com.github.fppt.jedismock.storage;
+
+import java.time.Clock;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Snapshot of all the databases of a server, taken in constant time regardless of the size of the databases.
+ *
+ * The keys are not copied when the snapshot is taken. Instead, while the snapshot is open, the metadata of a key
+ * (e.g. its access time) is copied the first time the key is accessed after the snapshot was taken (or restored),
+ * and its value is copied only the first time the value is modified in place, so that the snapshot is not affected
+ * by the modifications. Reading a key never copies its value. Restoring the snapshot takes time proportional
+ * to the number of the accessed keys.
+ * A snapshot should be closed once it is not needed anymore.
+ */
+public final class Snapshot implements AutoCloseable {
+    private final Map<Integer, KeyspaceSnapshot> databases;
+    private final long time;
+    private final long usedMemory;
+    private volatile boolean closed;
+
+    private Snapshot(Map<Integer, KeyspaceSnapshot> databases, long time, long usedMemory) {
+        this.databases = databases;
+        this.time = time;
+        this.usedMemory = usedMemory;
+    }
+
+    /**
+     * Takes a snapshot of the databases. Must be called under the server lock.
+     */
+    public static Snapshot take(Map<Integer, RedisBase> redisBases, Clock clock) {
+        long time = clock.millis();
+        Map<Integer, KeyspaceSnapshot> databases = new TreeMap<>();
+        long usedMemory = 0;
+        for (Map.Entry<Integer, RedisBase> database : redisBases.entrySet()) {
+            ExpiringKeyValueStorage storage = database.getValue().keyValueStorage();
+            databases.put(database.getKey(), storage.snapshot(time));
+            usedMemory += storage.usedMemory();
+        }
+        return new Snapshot(Collections.unmodifiableMap(databases), time, usedMemory);
+    }
+
+    /**
+     * Replaces the contents of the databases with the snapshot. The databases created since the snapshot
+     * was taken are cleared. Must be called under the server lock.
+     *
+     * @param redisBases databases of the server the snapshot was taken from.
+     */
+    public void restore(Map<Integer, RedisBase> redisBases) {
+        if (closed) {
+            throw new IllegalStateException("The snapshot is closed");
+        }
+        for (Map.Entry<Integer, KeyspaceSnapshot> database : databases.entrySet()) {
+            RedisBase base = redisBases.get(database.getKey());
+            if (base == null || base.keyValueStorage() != database.getValue().storage()) {
+                throw new IllegalArgumentException("The snapshot has been taken from another server");
+            }
+        }
+        for (Map.Entry<Integer, RedisBase> database : redisBases.entrySet()) {
+            KeyspaceSnapshot snapshot = databases.get(database.getKey());
+            if (snapshot == null) {
+                database.getValue().clearKeys(false);
+            } else {
+                database.getValue().restore(snapshot);
+            }
+        }
+    }
+
+    /**
+     * @return keyspace snapshots by the indices of the databases, in ascending order.
+     */
+    Map<Integer, KeyspaceSnapshot> databases() {
+        return databases;
+    }
+
+    /**
+     * @return time in milliseconds of the server clock when the snapshot was taken.
+     */
+    long time() {
+        return time;
+    }
+
+    /**
+     * @return estimated number of bytes taken by the keys of all the databases when the snapshot was taken.
+     */
+    long usedMemory() {
+        return usedMemory;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        databases.values().forEach(KeyspaceSnapshot::close);
+    }
+}
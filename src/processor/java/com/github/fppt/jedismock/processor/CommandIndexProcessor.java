@@ -0,0 +1,111 @@
+package com.github.fppt.jedismock.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Annotation processor which collects all the operations annotated with {@code @RedisCommand}
+ * into an index resource, so that operations are not searched for on the classpath at runtime.
+ *
+ * Each line of the index has the following format: {@code <command name> <transactional> <class name>}.
+ * The processor is only run while building Jedis-Mock itself.
+ */
+public class CommandIndexProcessor extends AbstractProcessor {
+    private static final String INDEX_RESOURCE = "META-INF/jedis-mock/commands.index";
+    private static final String REDIS_COMMAND = "com.github.fppt.jedismock.operations.RedisCommand";
+    private static final String REDIS_OPERATION = "com.github.fppt.jedismock.operations.RedisOperation";
+
+    private final Set<String> lines = new TreeSet<>();
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton(REDIS_COMMAND);
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        TypeElement redisCommand = processingEnv.getElementUtils().getTypeElement(REDIS_COMMAND);
+        TypeElement redisOperation = processingEnv.getElementUtils().getTypeElement(REDIS_OPERATION);
+        if (redisCommand != null) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(redisCommand)) {
+                addCommand((TypeElement) element, redisCommand, redisOperation);
+            }
+        }
+        if (roundEnv.processingOver() && !lines.isEmpty()) {
+            writeIndex();
+        }
+        return false;
+    }
+
+    private void addCommand(TypeElement type, TypeElement redisCommand, TypeElement redisOperation) {
+        TypeMirror operationType = processingEnv.getTypeUtils().erasure(redisOperation.asType());
+        if (type.getModifiers().contains(Modifier.ABSTRACT)
+                || !processingEnv.getTypeUtils().isAssignable(type.asType(), operationType)) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "@RedisCommand must only annotate non-abstract implementations of RedisOperation", type);
+            return;
+        }
+        String name = null;
+        boolean transactional = true;
+        for (AnnotationMirror mirror : type.getAnnotationMirrors()) {
+            if (!mirror.getAnnotationType().asElement().equals(redisCommand)) {
+                continue;
+            }
+            for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry
+                    : mirror.getElementValues().entrySet()) {
+                String attribute = entry.getKey().getSimpleName().toString();
+                if ("value".equals(attribute)) {
+                    name = (String) entry.getValue().getValue();
+                } else if ("transactional".equals(attribute)) {
+                    transactional = (Boolean) entry.getValue().getValue();
+                }
+            }
+        }
+        if (name == null || name.isEmpty() || name.contains(" ")) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Invalid command name", type);
+            return;
+        }
+        lines.add(String.format("%s %b %s", name, transactional,
+                processingEnv.getElementUtils().getBinaryName(type)));
+    }
+
+    private void writeIndex() {
+        try {
+            FileObject resource = processingEnv.getFiler()
+                    .createResource(StandardLocation.CLASS_OUTPUT, "", INDEX_RESOURCE);
+            try (Writer writer = new OutputStreamWriter(resource.openOutputStream(), StandardCharsets.UTF_8)) {
+                for (String line : lines) {
+                    writer.write(line);
+                    writer.write('\n');
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Unable to write " + INDEX_RESOURCE + ": " + e.getMessage());
+        }
+    }
+}
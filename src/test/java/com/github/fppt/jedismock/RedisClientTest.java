@@ -4,10 +4,15 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.Socket;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
 
 class RedisClientTest {
     Socket s;
@@ -28,4 +33,31 @@ class RedisClientTest {
         redisClient.run();
     }
 
+    @Test
+    void pipelinedResponsesAreWrittenAtOnce() throws IOException {
+        String ping = "*1\r\n$4\r\nPING\r\n";
+        Socket socket = Mockito.mock(Socket.class);
+        Mockito.when(socket.getInputStream())
+                .thenReturn(new ByteArrayInputStream((ping + ping + ping).getBytes()));
+        ByteArrayOutputStream received = new ByteArrayOutputStream();
+        AtomicInteger writes = new AtomicInteger();
+        Mockito.when(socket.getOutputStream()).thenReturn(new OutputStream() {
+            @Override
+            public void write(int b) {
+                writes.incrementAndGet();
+                received.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                writes.incrementAndGet();
+                received.write(b, off, len);
+            }
+        });
+        new RedisClient(new RedisServer(), socket, c -> {
+        }).run();
+        assertThat(received.toString()).isEqualTo("$4\r\nPONG\r\n$4\r\nPONG\r\n$4\r\nPONG\r\n");
+        assertThat(writes.get()).isEqualTo(1);
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,109 @@
+package com.github.fppt.jedismock;
+
+import com.github.fppt.jedismock.server.ServiceOptions;
+import com.github.fppt.jedismock.storage.RedisBase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestActiveExpiry {
+    private static final int KEYS = 10_000;
+
+    private RedisServer server;
+
+    private RedisServer start(ServiceOptions options) throws IOException {
+        server = RedisServer.newRedisServer().setOptions(options);
+        server.setClock(Clock.fixed(Instant.ofEpochMilli(1_000_000_000_000L), ZoneId.systemDefault()));
+        return server.start();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        server.stop();
+    }
+
+    private RedisBase database() {
+        return server.getRedisBases().get(0);
+    }
+
+    private void writeKeys(Jedis jedis) {
+        Pipeline pipeline = jedis.pipelined();
+        for (int i = 0; i < KEYS; i++) {
+            pipeline.psetex("session:" + i, 1000 + i % 10, "value");
+        }
+        pipeline.set("persistent", "value");
+        pipeline.sync();
+    }
+
+    private void awaitSize(int size) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (database().size() != size && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(database().size()).isEqualTo(size);
+    }
+
+    private void advanceClock(Duration duration) {
+        server.setClock(Clock.offset(server.getClock(), duration));
+    }
+
+    @Test
+    void expiredKeysAreRemovedWithoutAccess() throws Exception {
+        start(ServiceOptions.defaultOptions().withActiveExpiry(100));
+        try (Jedis jedis = new Jedis(server.getHost(), server.getBindPort())) {
+            writeKeys(jedis);
+            //The clock is frozen, so nothing expires
+            Thread.sleep(100);
+            assertThat(database().size()).isEqualTo(KEYS + 1);
+            advanceClock(Duration.ofMillis(1004));
+            awaitSize(KEYS / 2 + 1);
+            advanceClock(Duration.ofSeconds(1));
+            awaitSize(1);
+            assertThat(jedis.get("persistent")).isEqualTo("value");
+        }
+    }
+
+    @Test
+    void changedDeadlinesAreRespected() throws Exception {
+        start(ServiceOptions.defaultOptions().withActiveExpiry(100));
+        try (Jedis jedis = new Jedis(server.getHost(), server.getBindPort())) {
+            jedis.psetex("persisted", 1000, "value");
+            jedis.persist("persisted");
+            jedis.psetex("prolonged", 1000, "value");
+            jedis.pexpire("prolonged", 5000);
+            jedis.psetex("shortened", 5000, "value");
+            jedis.pexpire("shortened", 1000);
+            advanceClock(Duration.ofSeconds(2));
+            awaitSize(2);
+            assertThat(jedis.exists("persisted")).isTrue();
+            assertThat(jedis.exists("prolonged")).isTrue();
+            advanceClock(Duration.ofSeconds(4));
+            awaitSize(1);
+            assertThat(jedis.exists("persisted")).isTrue();
+        }
+    }
+
+    @Test
+    void activeExpiryCanBeDisabled() throws Exception {
+        start(ServiceOptions.defaultOptions().withActiveExpiry(0));
+        try (Jedis jedis = new Jedis(server.getHost(), server.getBindPort())) {
+            writeKeys(jedis);
+            advanceClock(Duration.ofSeconds(10));
+            Thread.sleep(200);
+            assertThat(database().size()).isEqualTo(KEYS + 1);
+            //Expired keys are still removed lazily
+            assertThat(jedis.exists("session:0")).isFalse();
+            assertThat(database().size()).isEqualTo(KEYS);
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package com.github.fppt.jedismock;
+
+import com.github.fppt.jedismock.server.ServiceOptions;
+import com.github.fppt.jedismock.storage.AppendFsync;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Protocol;
+import redis.clients.jedis.StreamEntryID;
+import redis.clients.jedis.Transaction;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.jedis.resps.StreamEntry;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.Collections;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TestAppendOnlyFile {
+    private static final Instant NOW = Instant.ofEpochMilli(1_700_000_000_000L);
+
+    @TempDir
+    Path directory;
+    private Path file;
+    private RedisServer server;
+    private Jedis jedis;
+
+    private void start(ServiceOptions options, Instant now) throws IOException {
+        server = RedisServer.newRedisServer()
+                .setOptions(options)
+                .setClock(Clock.fixed(now, ZoneId.systemDefault()))
+                .start();
+        jedis = new Jedis(server.getHost(), server.getBindPort());
+    }
+
+    private void start(AppendFsync fsync, Instant now) throws IOException {
+        file = directory.resolve("appendonly.aof");
+        start(ServiceOptions.defaultOptions().withAppendOnlyFile(file, fsync), now);
+    }
+
+    private void stop() throws IOException {
+        jedis.close();
+        server.stop();
+        server = null;
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (server != null) {
+            stop();
+        }
+    }
+
+    @Test
+    void writeCommandsAreReplayedOnStart() throws IOException {
+        start(AppendFsync.EVERYSEC, NOW);
+        jedis.set("string", "value");
+        jedis.incrBy("counter", 10);
+        jedis.decr("counter");
+        jedis.rpush("list", "a", "b", "c");
+        jedis.lpop("list");
+        jedis.sadd("set", "a", "b");
+        jedis.zadd("zset", 1.5, "a");
+        jedis.hset("hash", "field", "value");
+        jedis.del("string");
+        jedis.select(3);
+        jedis.set("other", "database");
+        stop();
+
+        start(AppendFsync.EVERYSEC, NOW);
+        assertThat(jedis.exists("string")).isFalse();
+        assertThat(jedis.get("counter")).isEqualTo("9");
+        assertThat(jedis.lrange("list", 0, -1)).containsExactly("b", "c");
+        assertThat(jedis.smembers("set")).containsExactlyInAnyOrder("a", "b");
+        assertThat(jedis.zscore("zset", "a")).isEqualTo(1.5);
+        assertThat(jedis.hget("hash", "field")).isEqualTo("value");
+        jedis.select(3);
+        assertThat(jedis.get("other")).isEqualTo("database");
+    }
+
+    @Test
+    void relativeTimeToLiveIsKeptOnReplay() throws IOException {
+        start(AppendFsync.ALWAYS, NOW);
+        jedis.setex("setex", 10, "value");
+        jedis.set("expire", "value");
+        jedis.pexpire("expire", 20_000);
+        jedis.set("expired", "value");
+        jedis.pexpire("expired", 1000);
+        stop();
+
+        start(AppendFsync.ALWAYS, NOW.plusSeconds(5));
+        assertThat(jedis.pttl("setex")).isEqualTo(5000);
+        assertThat(jedis.pttl("expire")).isEqualTo(15_000);
+        assertThat(jedis.exists("expired")).isFalse();
+    }
+
+    @Test
+    void transactionsAndScriptsAreReplayed() throws IOException {
+        start(AppendFsync.ALWAYS, NOW);
+        Transaction transaction = jedis.multi();
+        transaction.set("a", "1");
+        transaction.incr("a");
+        transaction.get("a");
+        transaction.exec();
+        jedis.watch("a");
+        jedis.set("a", "changed");
+        transaction = jedis.multi();
+        transaction.set("a", "discarded");
+        assertThat(transaction.exec()).isNull();
+        String sha = jedis.scriptLoad("return redis.call('incrby', KEYS[1], ARGV[1])");
+        jedis.evalsha(sha, Collections.singletonList("counter"), Collections.singletonList("5"));
+        jedis.eval("return redis.call('incr', KEYS[1])", 1, "counter");
+        stop();
+
+        start(AppendFsync.ALWAYS, NOW);
+        assertThat(jedis.get("a")).isEqualTo("changed");
+        assertThat(jedis.get("counter")).isEqualTo("6");
+    }
+
+    @Test
+    void blockingCommandsAreLoggedAsNonBlocking() throws IOException {
+        start(AppendFsync.ALWAYS, NOW);
+        jedis.rpush("list", "a", "b");
+        jedis.blpop(1, "empty", "list");
+        assertThat(jedis.brpop(0.01, "empty")).isNull();
+        stop();
+
+        String log = new String(Files.readAllBytes(file), StandardCharsets.ISO_8859_1);
+        assertThat(log).contains("lpop").doesNotContain("blpop").doesNotContain("brpop");
+        start(AppendFsync.ALWAYS, NOW);
+        assertThat(jedis.lrange("list", 0, -1)).containsExactly("b");
+    }
+
+    @Test
+    void generatedStreamIdsAreReplayed() throws IOException {
+        start(AppendFsync.ALWAYS, NOW);
+        StreamEntryID generated = jedis.xadd("stream", StreamEntryID.NEW_ENTRY, Collections.singletonMap("a", "1"));
+        jedis.sendCommand(Protocol.Command.XADD, "stream", "MAXLEN", "=", "10", "1800000000000-*", "b", "2");
+        stop();
+
+        start(AppendFsync.ALWAYS, NOW.plusSeconds(1));
+        assertThat(jedis.xrange("stream", "-", "+")).extracting(StreamEntry::getID)
+                .containsExactly(generated, new StreamEntryID(1_800_000_000_000L, 0));
+    }
+
+    @Test
+    void poppedMembersAreReplayed() throws IOException {
+        start(AppendFsync.ALWAYS, NOW);
+        for (int i = 0; i < 100; i++) {
+            jedis.sadd("set", "member" + i);
+        }
+        jedis.spop("set");
+        jedis.spop("set", 10);
+        Set<String> members = jedis.smembers("set");
+        stop();
+
+        String log = new String(Files.readAllBytes(file), StandardCharsets.ISO_8859_1);
+        assertThat(log).contains("srem").doesNotContain("spop");
+        start(AppendFsync.ALWAYS, NOW);
+        assertThat(jedis.smembers("set")).hasSize(89).isEqualTo(members);
+    }
+
+    @Test
+    void commandIsWrittenBeforeReplyWhenAlwaysFlushed() throws IOException {
+        start(AppendFsync.ALWAYS, NOW);
+        long size = Files.size(file);
+        jedis.set("key", "value");
+        assertThat(Files.size(file)).isGreaterThan(size);
+        size = Files.size(file);
+        jedis.get("key");
+        assertThatThrownBy(() -> jedis.incr("key")).isInstanceOf(JedisDataException.class);
+        assertThat(Files.size(file)).isEqualTo(size);
+    }
+
+    @Test
+    void rewriteCompactsTheFile() throws IOException {
+        start(AppendFsync.ALWAYS, NOW);
+        for (int i = 0; i < 1000; i++) {
+            jedis.incr("counter");
+        }
+        long size = Files.size(file);
+        assertThat(jedis.bgrewriteaof()).isEqualTo("Background append only file rewriting started");
+        jedis.incr("counter");
+        server.getAppendOnlyFile().awaitRewrite();
+        jedis.incr("counter");
+        assertThat(Files.size(file)).isLessThan(size / 10);
+        stop();
+
+        start(AppendFsync.ALWAYS, NOW);
+        assertThat(jedis.get("counter")).isEqualTo("1002");
+    }
+
+    @Test
+    void incompleteCommandAtTheEndIsDiscarded() throws IOException {
+        start(AppendFsync.ALWAYS, NOW);
+        jedis.set("complete", "value");
+        stop();
+        long size = Files.size(file);
+        Files.write(file, "*1\r\n$5\r\nmulti\r\n*3\r\n$3\r\nset\r\n$1\r\na\r\n$1\r\nb\r\n*3\r\n$3\r\nset\r\n$3\r\nkey"
+                .getBytes(StandardCharsets.US_ASCII), StandardOpenOption.APPEND);
+
+        start(AppendFsync.ALWAYS, NOW);
+        assertThat(jedis.keys("*")).containsExactly("complete");
+        assertThat(Files.size(file)).isEqualTo(size);
+    }
+
+    @Test
+    void unknownCommandIsNotLoaded() throws IOException {
+        file = directory.resolve("appendonly.aof");
+        Files.write(file, "*1\r\n$7\r\nunknown\r\n".getBytes(StandardCharsets.US_ASCII));
+        server = RedisServer.newRedisServer().setOptions(ServiceOptions.defaultOptions().withAppendOnlyFile(file));
+        assertThatThrownBy(() -> server.start()).isInstanceOf(IOException.class)
+                .hasMessage("Unknown command 'unknown' reading the append only file");
+        server = null;
+    }
+
+    @Test
+    void fileIsCreatedFromDumpAndPreferredToIt() throws IOException {
+        Path dump = directory.resolve("dump.rdb");
+        file = directory.resolve("appendonly.aof");
+        start(ServiceOptions.defaultOptions().withDumpFile(dump), NOW);
+        jedis.set("saved", "value");
+        jedis.save();
+        stop();
+
+        ServiceOptions options = ServiceOptions.defaultOptions().withDumpFile(dump).withAppendOnlyFile(file);
+        start(options, NOW);
+        assertThat(jedis.get("saved")).isEqualTo("value");
+        jedis.set("logged", "value");
+        stop();
+
+        start(options, NOW);
+        assertThat(jedis.keys("*")).containsExactlyInAnyOrder("saved", "logged");
+    }
+
+    private static long flushThreads() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> "jedis-mock-aof-flush".equals(thread.getName()))
+                .count();
+    }
+
+    @Test
+    void fileIsNotOpenedWhenPortIsBusy() throws IOException {
+        start(AppendFsync.EVERYSEC, NOW);
+        long threads = flushThreads();
+        RedisServer busy = RedisServer.newRedisServer(server.getBindPort())
+                .setOptions(ServiceOptions.defaultOptions().withAppendOnlyFile(file, AppendFsync.EVERYSEC));
+        assertThatThrownBy(busy::start).isInstanceOf(IOException.class);
+        assertThat(flushThreads()).isEqualTo(threads);
+    }
+
+    @Test
+    void rewriteFailsWithoutFile() throws IOException {
+        start(ServiceOptions.defaultOptions(), NOW);
+        assertThatThrownBy(() -> jedis.bgrewriteaof()).isInstanceOf(JedisDataException.class)
+                .hasMessageStartingWith("ERR append only file is not configured");
+    }
+}
@@ -0,0 +1,203 @@
+package com.github.fppt.jedismock;
+
+import com.github.fppt.jedismock.datastructures.Slice;
+import com.github.fppt.jedismock.storage.BlockedClients;
+import com.github.fppt.jedismock.storage.LockManager;
+import com.github.fppt.jedismock.storage.LockPlan;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Transaction;
+import redis.clients.jedis.StreamEntryID;
+import redis.clients.jedis.params.XReadParams;
+import redis.clients.jedis.resps.StreamEntry;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestBlockedClients {
+    private static final int CLIENTS = 5;
+
+    private RedisServer server;
+    private ExecutorService executor;
+    private final List<Jedis> connections = new ArrayList<>();
+    //Threads blocked by the tests directly, in the order they were blocked
+    private final List<Thread> parked = Collections.synchronizedList(new ArrayList<>());
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = RedisServer.newRedisServer().start();
+        executor = Executors.newCachedThreadPool();
+        //Creates the database
+        connect().exists("key");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        connections.forEach(Jedis::close);
+        executor.shutdownNow();
+        server.stop();
+    }
+
+    private Jedis connect() {
+        Jedis jedis = new Jedis(server.getHost(), server.getBindPort());
+        connections.add(jedis);
+        return jedis;
+    }
+
+    private BlockedClients blockedClients() {
+        return server.getRedisBases().get(0).blockedClients();
+    }
+
+    private void awaitBlocked(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (blockedClients().size() != count && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(blockedClients().size()).isEqualTo(count);
+    }
+
+    /**
+     * Blocks the clients one by one, so that the order they are blocked in is known.
+     */
+    private <T> List<CompletableFuture<T>> blockClients(Function<Jedis, T> command) throws InterruptedException {
+        List<CompletableFuture<T>> results = new ArrayList<>();
+        for (int i = 0; i < CLIENTS; i++) {
+            Jedis jedis = connect();
+            results.add(CompletableFuture.supplyAsync(() -> command.apply(jedis), executor));
+            awaitBlocked(i + 1);
+        }
+        return results;
+    }
+
+    @Test
+    void clientsAreServedInFifoOrder() throws Exception {
+        List<CompletableFuture<List<String>>> results = blockClients(jedis -> jedis.blpop(0, "list"));
+        Jedis jedis = connect();
+        for (int i = 0; i < CLIENTS; i++) {
+            jedis.rpush("list", "value" + i);
+            assertThat(results.get(i).get(10, TimeUnit.SECONDS)).containsExactly("list", "value" + i);
+        }
+        awaitBlocked(0);
+    }
+
+    @Test
+    void allValuesOfOnePushAreServed() throws Exception {
+        List<CompletableFuture<List<String>>> results = blockClients(jedis -> jedis.blpop(0, "list"));
+        Jedis jedis = connect();
+        jedis.rpush("list", "value0", "value1", "value2");
+        for (int i = 0; i < 3; i++) {
+            assertThat(results.get(i).get(10, TimeUnit.SECONDS)).containsExactly("list", "value" + i);
+        }
+        awaitBlocked(CLIENTS - 3);
+        assertThat(results.get(3)).isNotDone();
+        assertThat(jedis.exists("list")).isFalse();
+    }
+
+    @Test
+    void onlyClientsBlockedOnWrittenKeyAreWokenUp() throws Exception {
+        Jedis blocked = connect();
+        CompletableFuture<List<String>> result =
+                CompletableFuture.supplyAsync(() -> blocked.brpop(0, "a", "b"), executor);
+        awaitBlocked(1);
+        Jedis jedis = connect();
+        jedis.zadd("c", 1, "member");
+        jedis.rpush("d", "value");
+        assertThat(blockedClients().size()).isEqualTo(1);
+        jedis.rpush("b", "value");
+        assertThat(result.get(10, TimeUnit.SECONDS)).containsExactly("b", "value");
+        awaitBlocked(0);
+    }
+
+    @Test
+    void allReadersAreWokenUp() throws Exception {
+        List<CompletableFuture<List<Map.Entry<String, List<StreamEntry>>>>> results =
+                blockClients(jedis -> jedis.xread(XReadParams.xReadParams().block(0),
+                        Collections.singletonMap("stream", new StreamEntryID(0, 1))));
+        connect().xadd("stream", new StreamEntryID(1, 1), Collections.singletonMap("field", "value"));
+        for (CompletableFuture<List<Map.Entry<String, List<StreamEntry>>>> result : results) {
+            assertThat(result.get(10, TimeUnit.SECONDS).get(0).getValue())
+                    .extracting(StreamEntry::getID).containsExactly(new StreamEntryID(1, 1));
+        }
+        awaitBlocked(0);
+    }
+
+    @Test
+    void signalIsPassedOnWhenClientTakesFromAnotherKey() throws Exception {
+        Jedis first = connect();
+        CompletableFuture<List<String>> firstResult =
+                CompletableFuture.supplyAsync(() -> first.blpop(0, "b", "a"), executor);
+        awaitBlocked(1);
+        Jedis second = connect();
+        CompletableFuture<List<String>> secondResult =
+                CompletableFuture.supplyAsync(() -> second.blpop(0, "a"), executor);
+        awaitBlocked(2);
+        //The first client is woken up for the first key, but takes the value of the key it is blocked on first
+        Transaction transaction = connect().multi();
+        transaction.rpush("a", "value0");
+        transaction.rpush("b", "value1");
+        transaction.exec();
+        assertThat(firstResult.get(10, TimeUnit.SECONDS)).containsExactly("b", "value1");
+        assertThat(secondResult.get(10, TimeUnit.SECONDS)).containsExactly("a", "value0");
+        awaitBlocked(0);
+    }
+
+    @Test
+    void signalIsPassedOnByInterruptedClient() throws Exception {
+        LockManager locks = new LockManager(false);
+        BlockedClients clients = new BlockedClients(key -> true);
+        Slice key = Slice.create("key");
+        Future<Boolean> first = executor.submit(() -> awaitSignal(locks, clients, key));
+        Thread firstThread = awaitParked(0);
+        Future<Boolean> second = executor.submit(() -> awaitSignal(locks, clients, key));
+        awaitParked(1);
+        //The interrupted client is woken up first, it unblocks after the signal under the lock
+        try (LockManager.Held ignored = locks.acquire(LockPlan.server())) {
+            firstThread.interrupt();
+            clients.signal(key);
+        }
+        assertThat(first.get(10, TimeUnit.SECONDS)).isFalse();
+        assertThat(second.get(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(clients.size()).isZero();
+    }
+
+    /**
+     * @return true if the client was signalled, false if it was interrupted.
+     */
+    private boolean awaitSignal(LockManager locks, BlockedClients clients, Slice key) {
+        try (LockManager.Held ignored = locks.acquire(LockPlan.server());
+             BlockedClients.Waiter waiter = clients.block(Collections.singletonList(key), true)) {
+            parked.add(Thread.currentThread());
+            locks.await(waiter, 0);
+            return true;
+        } catch (InterruptedException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return the thread which started waiting with the given index, once it is parked.
+     */
+    private Thread awaitParked(int index) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while ((parked.size() <= index || !(LockSupport.getBlocker(parked.get(index))
+                instanceof BlockedClients.Waiter)) && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(parked).hasSize(index + 1);
+        return parked.get(index);
+    }
+}
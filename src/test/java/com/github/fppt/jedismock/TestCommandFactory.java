@@ -0,0 +1,38 @@
+package com.github.fppt.jedismock;
+
+import com.github.fppt.jedismock.datastructures.Slice;
+import com.github.fppt.jedismock.operations.CommandFactory;
+import com.github.fppt.jedismock.operations.RedisOperation;
+import com.github.fppt.jedismock.storage.OperationExecutorState;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class TestCommandFactory {
+    @Test
+    void knownCommandNamesAreShared() {
+        String name = CommandFactory.commandName(Slice.create("GET"));
+        assertThat(name).isEqualTo("get");
+        assertThat(CommandFactory.commandName(Slice.create("get"))).isSameAs(name);
+        assertThat(CommandFactory.commandName(Slice.create("xxGETxx".getBytes(), 2, 3))).isSameAs(name);
+    }
+
+    @Test
+    void otherCommandNamesAreLowerCased() {
+        assertThat(CommandFactory.commandName(Slice.create("GeT"))).isEqualTo("get");
+        assertThat(CommandFactory.commandName(Slice.create("NOSUCHCOMMAND"))).isEqualTo("nosuchcommand");
+    }
+
+    @Test
+    void operationsAreBuilt() {
+        OperationExecutorState state = mock(OperationExecutorState.class);
+        RedisOperation operation = CommandFactory.buildOperation("get", true, state,
+                Collections.singletonList(Slice.create("key")));
+        assertThat(operation.getClass().getSimpleName()).isEqualTo("Get");
+        assertThat(CommandFactory.buildOperation("get", false, state, Collections.emptyList())).isNull();
+        assertThat(CommandFactory.buildOperation("nosuchcommand", true, state, Collections.emptyList())).isNull();
+    }
+}
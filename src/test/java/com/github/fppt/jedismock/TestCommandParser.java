@@ -4,12 +4,14 @@ import com.github.fppt.jedismock.commands.RedisCommand;
 import com.github.fppt.jedismock.commands.RedisCommandParser;
 import com.github.fppt.jedismock.exception.EOFException;
 import com.github.fppt.jedismock.exception.ParseErrorException;
+import com.github.fppt.jedismock.server.RespInputStream;
 import com.github.fppt.jedismock.server.SliceParser;
 import org.junit.jupiter.api.Test;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Arrays;
 
 import static com.github.fppt.jedismock.commands.RedisCommandParser.parse;
 import static com.github.fppt.jedismock.server.SliceParser.expectByte;
@@ -77,6 +79,28 @@ public class TestCommandParser {
         assertThat(cmd.parameters().get(2).toString()).isEqualTo("ef");
     }
 
+    @Test
+    public void testParseSeveralCommandsFromBufferedStream() throws ParseErrorException {
+        InputStream stream = new RespInputStream(new ByteArrayInputStream(
+                "*2\r\n$3\r\nGET\r\n$1\r\na\r\n*1\r\n$4\r\nPING\r\n".getBytes()), 4);
+        RedisCommand first = parse(stream);
+        assertThat(first.parameters()).hasSize(2);
+        assertThat(first.parameters().get(1).toString()).isEqualTo("a");
+        RedisCommand second = parse(stream);
+        assertThat(second.parameters().get(0).toString()).isEqualTo("PING");
+        assertThatThrownBy(() -> parse(stream))
+                .isInstanceOf(EOFException.class);
+    }
+
+    @Test
+    public void testConsumeBulkLargerThanBuffer() throws ParseErrorException {
+        byte[] payload = new byte[100_000];
+        Arrays.fill(payload, (byte) 'x');
+        byte[] message = ("$" + payload.length + "\r\n" + new String(payload) + "\r\n").getBytes();
+        InputStream stream = new RespInputStream(new ByteArrayInputStream(message), 1024);
+        assertThat(consumeParameter(stream).data()).isEqualTo(payload);
+    }
+
     @Test
     public void testConsumeCharacterError() throws ParseErrorException {
         InputStream stream = new ByteArrayInputStream("".getBytes());
@@ -124,6 +148,22 @@ public class TestCommandParser {
                 .isInstanceOf(EOFException.class);
     }
 
+    @Test
+    public void testConsumeLongOverflow() {
+        InputStream stream = new ByteArrayInputStream("99999999999999999999\r".getBytes());
+        assertThatThrownBy(() -> consumeLong(stream))
+                .isInstanceOf(ParseErrorException.class);
+    }
+
+    @Test
+    public void testConsumeParameterTooLong() {
+        InputStream stream = new ByteArrayInputStream("$536870913\r\nabc\r\n".getBytes());
+        assertThatThrownBy(() -> consumeParameter(stream))
+                .isInstanceOf(ParseErrorException.class);
+        assertThatThrownBy(() -> consumeSlice(new ByteArrayInputStream(new byte[0]), -1))
+                .isInstanceOf(ParseErrorException.class);
+    }
+
     @Test
     public void testConsumeStringError() {
         InputStream stream = new ByteArrayInputStream("abc".getBytes());
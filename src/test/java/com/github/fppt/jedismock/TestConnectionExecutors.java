@@ -0,0 +1,65 @@
+package com.github.fppt.jedismock;
+
+import com.github.fppt.jedismock.server.ServiceOptions;
+import org.junit.jupiter.api.Test;
+import redis.clients.jedis.Jedis;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestConnectionExecutors {
+
+    private static boolean runsOnVirtualThread(ExecutorService executor) throws Exception {
+        Thread thread = executor.submit(Thread::currentThread).get();
+        Method isVirtual;
+        try {
+            isVirtual = Thread.class.getMethod("isVirtual");
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+        return (Boolean) isVirtual.invoke(thread);
+    }
+
+    private static boolean virtualThreadsSupported() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    @Test
+    public void virtualThreadsAreUsedWhenSupported() throws Exception {
+        ExecutorService executor = ConnectionExecutors.newConnectionExecutor(true);
+        try {
+            assertThat(runsOnVirtualThread(executor)).isEqualTo(virtualThreadsSupported());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void platformThreadsAreUsedWhenVirtualThreadsAreDisabled() throws Exception {
+        ExecutorService executor = ConnectionExecutors.newConnectionExecutor(false);
+        try {
+            assertThat(runsOnVirtualThread(executor)).isFalse();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void serverWorksWithVirtualThreadsDisabled() throws IOException {
+        RedisServer server = RedisServer.newRedisServer()
+                .setOptions(ServiceOptions.defaultOptions().withVirtualThreadsDisabled())
+                .start();
+        try (Jedis jedis = new Jedis(server.getHost(), server.getBindPort())) {
+            assertThat(jedis.ping()).isEqualTo("PONG");
+        }
+        server.stop();
+    }
+}
@@ -0,0 +1,164 @@
+package com.github.fppt.jedismock;
+
+import com.github.fppt.jedismock.server.ServiceOptions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.StreamEntryID;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.jedis.params.XAddParams;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TestDumpFile {
+    private static final Instant NOW = Instant.ofEpochMilli(1_700_000_000_000L);
+
+    @TempDir
+    Path directory;
+    private RedisServer server;
+    private Jedis jedis;
+
+    private void start(Path file, Instant now) throws IOException {
+        ServiceOptions options = ServiceOptions.defaultOptions();
+        server = RedisServer.newRedisServer()
+                .setOptions(file == null ? options : options.withDumpFile(file))
+                .setClock(Clock.fixed(now, ZoneId.systemDefault()))
+                .start();
+        jedis = new Jedis(server.getHost(), server.getBindPort());
+    }
+
+    private void stop() throws IOException {
+        jedis.close();
+        server.stop();
+        server = null;
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (server != null) {
+            stop();
+        }
+    }
+
+    @Test
+    void savedKeysAreLoadedOnStart() throws IOException {
+        Path file = directory.resolve("dump.rdb");
+        start(file, NOW);
+        jedis.set("string", "value");
+        jedis.set("counter", "42");
+        jedis.psetex("volatile", 10_000, "value");
+        jedis.rpush("list", "a", "b", "c");
+        jedis.sadd("set", "a", "b");
+        jedis.zadd("zset", 1.5, "a");
+        Map<String, String> fields = new HashMap<>();
+        fields.put("f1", "v1");
+        fields.put("f2", "v2");
+        jedis.hset("hash", fields);
+        StreamEntryID id = jedis.xadd("stream", XAddParams.xAddParams(), Collections.singletonMap("f", "v"));
+        jedis.pfadd("hll", "a", "b", "c");
+        jedis.select(5);
+        jedis.set("other", "database");
+        assertThat(jedis.save()).isEqualTo("OK");
+        stop();
+
+        assertThat(file).exists();
+        start(file, NOW.plusSeconds(1));
+        assertThat(jedis.get("string")).isEqualTo("value");
+        assertThat(jedis.incr("counter")).isEqualTo(43);
+        assertThat(jedis.pttl("volatile")).isEqualTo(9_000);
+        assertThat(jedis.lrange("list", 0, -1)).containsExactly("a", "b", "c");
+        assertThat(jedis.smembers("set")).containsExactlyInAnyOrder("a", "b");
+        assertThat(jedis.zscore("zset", "a")).isEqualTo(1.5);
+        assertThat(jedis.hgetAll("hash")).isEqualTo(fields);
+        assertThat(jedis.xrange("stream", "-", "+")).singleElement()
+                .satisfies(entry -> assertThat(entry.getID()).isEqualTo(id))
+                .satisfies(entry -> assertThat(entry.getFields()).isEqualTo(Collections.singletonMap("f", "v")));
+        assertThat(jedis.pfcount("hll")).isEqualTo(3);
+        jedis.select(5);
+        assertThat(jedis.get("other")).isEqualTo("database");
+    }
+
+    @Test
+    void expiredKeysAreNotLoaded() throws IOException {
+        Path file = directory.resolve("dump.rdb");
+        start(file, NOW);
+        jedis.psetex("volatile", 1000, "value");
+        jedis.set("persistent", "value");
+        jedis.save();
+        stop();
+
+        start(file, NOW.plus(Duration.ofSeconds(1)));
+        assertThat(jedis.keys("*")).containsExactly("persistent");
+    }
+
+    @Test
+    void backgroundSaveWritesSnapshot() throws IOException {
+        Path file = directory.resolve("dump.rdb");
+        start(file, NOW);
+        for (int i = 0; i < 1000; i++) {
+            jedis.rpush("list", "element" + i);
+        }
+        assertThat(jedis.bgsave()).isEqualTo("Background saving started");
+        //Modifications made after the command are not in the snapshot
+        jedis.del("list");
+        stop();
+
+        start(file, NOW);
+        assertThat(jedis.llen("list")).isEqualTo(1000);
+    }
+
+    @Test
+    void lastSaveIsUpdated() throws IOException {
+        start(directory.resolve("dump.rdb"), NOW);
+        assertThat(jedis.lastsave()).isEqualTo(NOW.getEpochSecond());
+        server.setClock(Clock.fixed(NOW.plusSeconds(10), ZoneId.systemDefault()));
+        jedis.save();
+        assertThat(jedis.lastsave()).isEqualTo(NOW.getEpochSecond() + 10);
+    }
+
+    @Test
+    void existingKeysAreReplacedByLoadedOnes() throws IOException {
+        Path file = directory.resolve("dump.rdb");
+        start(file, NOW);
+        jedis.set("saved", "value");
+        jedis.save();
+        jedis.set("unsaved", "value");
+        stop();
+
+        start(file, NOW);
+        assertThat(jedis.keys("*")).containsExactly("saved");
+    }
+
+    @Test
+    void saveFailsWithoutDumpFile() throws IOException {
+        start(null, NOW);
+        assertThatThrownBy(() -> jedis.save()).isInstanceOf(JedisDataException.class)
+                .hasMessageStartingWith("ERR dump file is not configured");
+        assertThatThrownBy(() -> jedis.bgsave()).isInstanceOf(JedisDataException.class)
+                .hasMessageStartingWith("ERR dump file is not configured");
+    }
+
+    @Test
+    void corruptedFileIsNotLoaded() throws IOException {
+        Path file = directory.resolve("dump.rdb");
+        Files.write(file, asList("not a dump"));
+        server = RedisServer.newRedisServer().setOptions(ServiceOptions.defaultOptions().withDumpFile(file));
+        assertThatThrownBy(() -> server.start()).isInstanceOf(IOException.class)
+                .hasMessage("Wrong signature trying to load DB from file");
+        server = null;
+    }
+}
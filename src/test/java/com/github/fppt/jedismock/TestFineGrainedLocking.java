@@ -0,0 +1,171 @@
+package com.github.fppt.jedismock;
+
+import com.github.fppt.jedismock.server.ServiceOptions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Transaction;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestFineGrainedLocking {
+    private static final int THREADS = 8;
+    private static final int ITERATIONS = 300;
+
+    private RedisServer server;
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = RedisServer.newRedisServer()
+                .setOptions(ServiceOptions.defaultOptions().withFineGrainedLocking())
+                .start();
+        executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        executor.shutdownNow();
+        server.stop();
+    }
+
+    private Jedis connect() {
+        return new Jedis(server.getHost(), server.getBindPort());
+    }
+
+    private interface ClientTask {
+        void run(int thread, Jedis jedis);
+    }
+
+    private void runConcurrently(ClientTask task) throws Exception {
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            int thread = i;
+            futures.add(executor.submit(() -> {
+                try (Jedis jedis = connect()) {
+                    task.run(thread, jedis);
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    void concurrentUpdatesAreAtomic() throws Exception {
+        runConcurrently((thread, jedis) -> {
+            for (int i = 0; i < ITERATIONS; i++) {
+                jedis.incr("shared");
+                jedis.incr("own" + thread);
+                jedis.hincrBy("hash", "field", 1);
+                jedis.mset("a" + thread, "1", "b" + thread, "2");
+            }
+        });
+        try (Jedis jedis = connect()) {
+            assertThat(jedis.get("shared")).isEqualTo(String.valueOf(THREADS * ITERATIONS));
+            assertThat(jedis.hget("hash", "field")).isEqualTo(String.valueOf(THREADS * ITERATIONS));
+            for (int i = 0; i < THREADS; i++) {
+                assertThat(jedis.get("own" + i)).isEqualTo(String.valueOf(ITERATIONS));
+            }
+            assertThat(jedis.dbSize()).isEqualTo(2 + THREADS * 3);
+        }
+    }
+
+    @Test
+    void databasesAreIndependent() throws Exception {
+        runConcurrently((thread, jedis) -> {
+            jedis.select(thread % 2);
+            for (int i = 0; i < ITERATIONS; i++) {
+                jedis.sadd("set", thread + ":" + i);
+            }
+        });
+        try (Jedis jedis = connect()) {
+            assertThat(jedis.scard("set")).isEqualTo(THREADS / 2 * ITERATIONS);
+            jedis.select(1);
+            assertThat(jedis.scard("set")).isEqualTo(THREADS / 2 * ITERATIONS);
+            jedis.flushDB();
+            jedis.select(0);
+            assertThat(jedis.scard("set")).isEqualTo(THREADS / 2 * ITERATIONS);
+        }
+    }
+
+    @Test
+    void transactionsAreIsolated() throws Exception {
+        runConcurrently((thread, jedis) -> {
+            for (int i = 0; i < ITERATIONS; i++) {
+                Transaction transaction = jedis.multi();
+                transaction.decr("from");
+                transaction.incr("to");
+                transaction.exec();
+                Transaction read = jedis.multi();
+                read.get("from");
+                read.get("to");
+                //Both keys are changed within the same transaction, so the sum is always zero
+                assertThat(read.exec().stream().mapToLong(v -> Long.parseLong((String) v)).sum()).isZero();
+            }
+        });
+        try (Jedis jedis = connect()) {
+            assertThat(jedis.get("to")).isEqualTo(String.valueOf(THREADS * ITERATIONS));
+        }
+    }
+
+    @Test
+    void scriptsLockTheirDatabase() throws Exception {
+        runConcurrently((thread, jedis) -> {
+            for (int i = 0; i < ITERATIONS; i++) {
+                //The key is not declared
+                jedis.eval("local v = redis.call('get', ARGV[1]) or '0'; " +
+                                "redis.call('set', ARGV[1], tonumber(v) + 1)",
+                        Collections.emptyList(), Collections.singletonList("counter"));
+            }
+        });
+        try (Jedis jedis = connect()) {
+            assertThat(jedis.get("counter")).isEqualTo(String.valueOf(THREADS * ITERATIONS));
+        }
+    }
+
+    @Test
+    void scriptsSelectingDatabasesLockServer() throws Exception {
+        runConcurrently((thread, jedis) -> {
+            for (int i = 0; i < ITERATIONS; i++) {
+                if (thread % 2 == 0) {
+                    jedis.eval("redis.call('select', 1); local v = redis.call('get', 'counter') or '0'; " +
+                            "redis.call('set', 'counter', tonumber(v) + 1)");
+                } else {
+                    jedis.select(1);
+                    jedis.incr("counter");
+                    jedis.select(0);
+                }
+            }
+        });
+        try (Jedis jedis = connect()) {
+            jedis.select(1);
+            assertThat(jedis.get("counter")).isEqualTo(String.valueOf(THREADS * ITERATIONS));
+        }
+    }
+
+    @Test
+    void blockingCommandsAreWokenUp() throws Exception {
+        try (Jedis blocked = connect(); Jedis jedis = connect()) {
+            CompletableFuture<List<String>> result =
+                    CompletableFuture.supplyAsync(() -> blocked.blpop(0, "list"), executor);
+            //Unrelated commands are not blocked
+            jedis.set("key", "value");
+            assertThat(jedis.get("key")).isEqualTo("value");
+            jedis.rpush("list", "element");
+            assertThat(result.get(10, TimeUnit.SECONDS)).containsExactly("list", "element");
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.github.fppt.jedismock;
+
+import com.github.fppt.jedismock.datastructures.Slice;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestGlobPattern {
+
+    @ParameterizedTest
+    @CsvSource(value = {
+            "*, anything, true",
+            "h?llo, hello, true",
+            "h?llo, hllo, false",
+            "h*llo, hllo, true",
+            "h*llo, heeeello, true",
+            "h*llo, hellox, false",
+            "h[ae]llo, hallo, true",
+            "h[ae]llo, hillo, false",
+            "h[^e]llo, hallo, true",
+            "h[^e]llo, hello, false",
+            "h[a-b]llo, hbllo, true",
+            "h[b-a]llo, hbllo, true",
+            "h[a-b]llo, hcllo, false",
+            "h\\*llo, h*llo, true",
+            "h\\*llo, hello, false",
+            "[\\]], ], true",
+            "a*b*c, aXbYc, true",
+            "a*b*c, aXbY, false",
+            "*a*a*a*a*a*a*a*a*a*a*b, aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa, false",
+            "[abc, d, false",
+            "[abc, c, true",
+            "\\, \\, true",
+            "abc*, abc, true",
+    }, ignoreLeadingAndTrailingWhitespace = false, delimiterString = ", ")
+    void matchesLikeRedis(String pattern, String string, boolean expected) {
+        assertThat(GlobPattern.compile(pattern).matches(Slice.create(string))).isEqualTo(expected);
+    }
+
+    @Test
+    void matchesBytes() {
+        GlobPattern pattern = GlobPattern.compile(Slice.create(new byte[]{'k', '?', (byte) 0xff}));
+        assertThat(pattern.matches(Slice.create(new byte[]{'k', (byte) 0x80, (byte) 0xff}))).isTrue();
+        assertThat(pattern.matches(Slice.create(new byte[]{'k', (byte) 0x80, (byte) 0xfe}))).isFalse();
+    }
+
+    @Test
+    void emptyPatternMatchesEmptyString() {
+        assertThat(GlobPattern.compile("").matches(Slice.empty())).isTrue();
+        assertThat(GlobPattern.compile("").matches(Slice.create("a"))).isFalse();
+    }
+}
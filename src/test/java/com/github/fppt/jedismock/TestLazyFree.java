@@ -0,0 +1,105 @@
+package com.github.fppt.jedismock;
+
+import com.github.fppt.jedismock.storage.LazyFree;
+import com.github.fppt.jedismock.storage.Snapshot;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Transaction;
+import redis.clients.jedis.args.FlushMode;
+
+import java.io.IOException;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestLazyFree {
+    private RedisServer server;
+    private Jedis jedis;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = RedisServer.newRedisServer().start();
+        jedis = new Jedis(server.getHost(), server.getBindPort());
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        jedis.close();
+        server.stop();
+    }
+
+    private static String[] members(int count) {
+        return IntStream.range(0, count).mapToObj(Integer::toString).toArray(String[]::new);
+    }
+
+    @Test
+    void singleValuesAreNotCountedAsFreed() {
+        jedis.sadd("unlinked", members(1000));
+        jedis.sadd("overwritten", members(100));
+        jedis.rpush("renamed", "a");
+        jedis.sadd("small", members(10));
+        LazyFree.awaitPending();
+        long freed = LazyFree.freedObjects();
+        assertThat(jedis.unlink("unlinked", "small", "missing")).isEqualTo(2);
+        jedis.set("overwritten", "value");
+        jedis.sadd("target", members(100));
+        jedis.rename("renamed", "target");
+        LazyFree.awaitPending();
+        //The values are left to the garbage collector, since they may be shared with a snapshot
+        assertThat(LazyFree.freedObjects()).isEqualTo(freed);
+        assertThat(jedis.exists("unlinked")).isFalse();
+        assertThat(jedis.get("overwritten")).isEqualTo("value");
+        assertThat(jedis.lrange("target", 0, -1)).containsExactly("a");
+    }
+
+    @Test
+    void flushAsyncDetachesTheKeyspace() {
+        jedis.mset(members(1000));
+        jedis.select(1);
+        jedis.set("other", "database");
+        long freed = LazyFree.freedObjects();
+        jedis.flushAll(FlushMode.ASYNC);
+        assertThat(jedis.dbSize()).isZero();
+        jedis.set("new", "value");
+        jedis.select(0);
+        assertThat(jedis.dbSize()).isZero();
+        LazyFree.awaitPending();
+        assertThat(LazyFree.freedObjects() - freed).isGreaterThanOrEqualTo(501);
+        jedis.select(1);
+        assertThat(jedis.get("new")).isEqualTo("value");
+        assertThat(jedis.info("memory")).contains("lazyfree_pending_objects:");
+        assertThat(jedis.info()).contains("lazyfreed_objects:");
+    }
+
+    @Test
+    void flushAsyncAbortsTransactionsWatchingExistingKeys() {
+        jedis.set("watched", "value");
+        try (Jedis other = new Jedis(server.getHost(), server.getBindPort())) {
+            jedis.watch("watched", "missing");
+            other.flushDB(FlushMode.ASYNC);
+            Transaction transaction = jedis.multi();
+            transaction.set("watched", "changed");
+            assertThat(transaction.exec()).isNull();
+
+            jedis.watch("missing");
+            other.flushDB(FlushMode.ASYNC);
+            transaction = jedis.multi();
+            transaction.set("missing", "set");
+            assertThat(transaction.exec()).containsExactly("OK");
+        }
+    }
+
+    @Test
+    void snapshotIsRestoredAfterFlushAsync() {
+        jedis.rpush("list", "a", "b");
+        try (Snapshot snapshot = server.snapshot()) {
+            jedis.flushAll(FlushMode.ASYNC);
+            jedis.set("new", "value");
+            server.restore(snapshot);
+        }
+        assertThat(jedis.keys("*")).containsExactly("list");
+        assertThat(jedis.lrange("list", 0, -1)).containsExactly("a", "b");
+    }
+}
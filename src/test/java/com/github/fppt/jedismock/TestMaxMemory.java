@@ -0,0 +1,146 @@
+package com.github.fppt.jedismock;
+
+import com.github.fppt.jedismock.server.ServiceOptions;
+import com.github.fppt.jedismock.storage.MaxMemoryPolicy;
+import com.github.fppt.jedismock.storage.RedisBase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.exceptions.JedisDataException;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TestMaxMemory {
+    private static final long MAX_MEMORY = 20_000;
+    private static final String VALUE = new String(new char[1000]).replace('\0', 'v');
+
+    private RedisServer server;
+    private Jedis jedis;
+
+    private void start(MaxMemoryPolicy policy) throws IOException {
+        server = RedisServer.newRedisServer()
+                .setOptions(ServiceOptions.defaultOptions().withMaxMemory(MAX_MEMORY, policy));
+        server.setClock(Clock.fixed(Instant.ofEpochMilli(1_000_000_000_000L), ZoneId.systemDefault()));
+        server.start();
+        jedis = new Jedis(server.getHost(), server.getBindPort());
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        jedis.close();
+        server.stop();
+    }
+
+    private void advanceClock(Duration duration) {
+        server.setClock(Clock.offset(server.getClock(), duration));
+    }
+
+    private long usedMemory() {
+        return server.getRedisBases().values().stream().mapToLong(RedisBase::usedMemory).sum();
+    }
+
+    @Test
+    void leastRecentlyUsedKeysAreEvicted() throws IOException {
+        start(MaxMemoryPolicy.ALLKEYS_LRU);
+        jedis.set("hot", VALUE);
+        for (int i = 0; i < 100; i++) {
+            advanceClock(Duration.ofSeconds(1));
+            jedis.set("key" + i, VALUE);
+            assertThat(jedis.get("hot")).isEqualTo(VALUE);
+        }
+        assertThat(jedis.dbSize()).isLessThan(30);
+        assertThat(usedMemory()).isLessThanOrEqualTo(MAX_MEMORY + 2 * VALUE.length());
+        assertThat(server.getMemoryLimit().getEvictedKeys()).isGreaterThan(70);
+        assertThat(jedis.exists("key99")).isTrue();
+    }
+
+    @Test
+    void frequentlyUsedKeysAreNotEvicted() throws IOException {
+        start(MaxMemoryPolicy.ALLKEYS_LFU);
+        jedis.set("hot", VALUE);
+        for (int i = 0; i < 100; i++) {
+            jedis.get("hot");
+        }
+        for (int i = 0; i < 100; i++) {
+            jedis.set("key" + i, VALUE);
+        }
+        assertThat(jedis.exists("hot")).isTrue();
+        assertThat(jedis.dbSize()).isLessThan(30);
+    }
+
+    @Test
+    void keysOfAllDatabasesAreEvicted() throws IOException {
+        start(MaxMemoryPolicy.ALLKEYS_RANDOM);
+        for (int i = 0; i < 100; i++) {
+            jedis.select(i % 2);
+            jedis.set("key" + i, VALUE);
+        }
+        assertThat(usedMemory()).isLessThanOrEqualTo(MAX_MEMORY + 2 * VALUE.length());
+        assertThat(server.getRedisBases()).hasSize(2);
+    }
+
+    @Test
+    void keysWithNearestDeadlineAreEvicted() throws IOException {
+        start(MaxMemoryPolicy.VOLATILE_TTL);
+        jedis.set("persistent", VALUE);
+        for (int i = 0; i < 100; i++) {
+            jedis.setex("key" + i, 1000 - i, VALUE);
+        }
+        assertThat(jedis.exists("persistent")).isTrue();
+        assertThat(jedis.exists("key0")).isTrue();
+        assertThat(usedMemory()).isLessThanOrEqualTo(MAX_MEMORY + 2 * VALUE.length());
+    }
+
+    @Test
+    void writesFailWhenNothingCanBeEvicted() throws IOException {
+        start(MaxMemoryPolicy.VOLATILE_LRU);
+        for (int i = 0; i < 100; i++) {
+            try {
+                jedis.set("key" + i, VALUE);
+            } catch (JedisDataException e) {
+                assertThat(e).hasMessage("OOM command not allowed when used memory > 'maxmemory'.");
+                assertThat(i).isGreaterThan(10);
+                break;
+            }
+        }
+        assertThat(jedis.get("key0")).isEqualTo(VALUE);
+        assertThatThrownBy(() -> jedis.rpush("list", "value"))
+                .isInstanceOf(JedisDataException.class).hasMessageStartingWith("OOM");
+        //Commands which free memory are still allowed
+        assertThat(jedis.del("key0", "key1")).isEqualTo(2);
+        jedis.rpush("list", "value");
+    }
+
+    @Test
+    void memoryIsNotLimitedByDefault() throws IOException {
+        server = RedisServer.newRedisServer().start();
+        jedis = new Jedis(server.getHost(), server.getBindPort());
+        for (int i = 0; i < 100; i++) {
+            jedis.set("key" + i, VALUE);
+        }
+        assertThat(jedis.dbSize()).isEqualTo(100);
+    }
+
+    @Test
+    void memoryUsageIsEstimated() throws IOException {
+        start(MaxMemoryPolicy.NOEVICTION);
+        jedis.set("string", VALUE);
+        for (int i = 0; i < 10; i++) {
+            jedis.rpush("list", VALUE);
+        }
+        assertThat(jedis.memoryUsage("string")).isGreaterThan((long) VALUE.length()).isLessThan(2L * VALUE.length());
+        assertThat(jedis.memoryUsage("list", 0)).isGreaterThan(10L * VALUE.length())
+                .isEqualTo(jedis.memoryUsage("list"));
+        assertThat(jedis.memoryUsage("missing")).isNull();
+        assertThat(usedMemory()).isEqualTo(jedis.memoryUsage("string") + jedis.memoryUsage("list"));
+        jedis.del("string", "list");
+        assertThat(usedMemory()).isZero();
+    }
+}
@@ -0,0 +1,93 @@
+package com.github.fppt.jedismock;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.jedis.params.MigrateParams;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TestMigrate {
+    private RedisServer source;
+    private RedisServer target;
+    private Jedis jedis;
+    private Jedis targetJedis;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        source = RedisServer.newRedisServer().start();
+        target = RedisServer.newRedisServer().start();
+        jedis = new Jedis(source.getHost(), source.getBindPort());
+        targetJedis = new Jedis(target.getHost(), target.getBindPort());
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        jedis.close();
+        targetJedis.close();
+        source.stop();
+        target.stop();
+    }
+
+    @Test
+    void keyIsMovedToTheTargetDatabase() {
+        jedis.rpush("list", "a", "b");
+        jedis.pexpire("list", 100_000);
+        assertThat(jedis.migrate(target.getHost(), target.getBindPort(), "list", 3, 1000)).isEqualTo("OK");
+        assertThat(jedis.exists("list")).isFalse();
+        targetJedis.select(3);
+        assertThat(targetJedis.lrange("list", 0, -1)).containsExactly("a", "b");
+        assertThat(targetJedis.pttl("list")).isBetween(90_000L, 100_000L);
+    }
+
+    @Test
+    void severalKeysAreCopied() {
+        jedis.set("a", "1");
+        jedis.sadd("b", "2");
+        assertThat(jedis.migrate(target.getHost(), target.getBindPort(), 0, 1000,
+                MigrateParams.migrateParams().copy().auth("password"), "a", "b", "missing")).isEqualTo("OK");
+        assertThat(jedis.get("a")).isEqualTo("1");
+        assertThat(jedis.smembers("b")).containsExactly("2");
+        assertThat(targetJedis.get("a")).isEqualTo("1");
+        assertThat(targetJedis.smembers("b")).containsExactly("2");
+        assertThat(targetJedis.exists("missing")).isFalse();
+    }
+
+    @Test
+    void existingKeyIsReplacedOnlyWithReplace() {
+        jedis.set("key", "new");
+        targetJedis.set("key", "old");
+        assertThatThrownBy(() -> jedis.migrate(target.getHost(), target.getBindPort(), "key", 0, 1000))
+                .isInstanceOf(JedisDataException.class)
+                .hasMessage("ERR Target instance replied with error: BUSYKEY Target key name already exists.");
+        assertThat(jedis.get("key")).isEqualTo("new");
+        assertThat(jedis.migrate(target.getHost(), target.getBindPort(), 0, 1000,
+                MigrateParams.migrateParams().replace(), "key")).isEqualTo("OK");
+        assertThat(targetJedis.get("key")).isEqualTo("new");
+        assertThat(jedis.exists("key")).isFalse();
+    }
+
+    @Test
+    void missingKeysAreReported() {
+        assertThat(jedis.migrate(target.getHost(), target.getBindPort(), "missing", 0, 1000)).isEqualTo("NOKEY");
+    }
+
+    @Test
+    void unreachableTargetIsReported() throws IOException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        jedis.set("key", "value");
+        assertThatThrownBy(() -> jedis.migrate(target.getHost(), port, "key", 0, 1000))
+                .isInstanceOf(JedisDataException.class)
+                .hasMessage("IOERR error or timeout connecting to the client");
+        assertThat(jedis.get("key")).isEqualTo("value");
+    }
+}
@@ -0,0 +1,98 @@
+package com.github.fppt.jedismock;
+
+import com.github.fppt.jedismock.server.ServiceOptions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.util.SafeEncoder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TestNioTransport {
+    private RedisServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = RedisServer.newRedisServer()
+                .setOptions(ServiceOptions.defaultOptions().withNioTransport(2))
+                .start();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        server.stop();
+    }
+
+    @Test
+    void manyConnectionsAreServed() {
+        List<Jedis> connections = new ArrayList<>();
+        try {
+            for (int i = 0; i < 50; i++) {
+                Jedis jedis = new Jedis(server.getHost(), server.getBindPort());
+                connections.add(jedis);
+                assertThat(jedis.set("key" + i, "value" + i)).isEqualTo("OK");
+            }
+            for (int i = 0; i < connections.size(); i++) {
+                assertThat(connections.get(i).get("key" + (connections.size() - i - 1)))
+                        .isEqualTo("value" + (connections.size() - i - 1));
+            }
+        } finally {
+            connections.forEach(Jedis::close);
+        }
+    }
+
+    @Test
+    void pipelinedCommandsAndLargeValues() {
+        char[] chars = new char[200_000];
+        Arrays.fill(chars, 'v');
+        String largeValue = new String(chars);
+        try (Jedis jedis = new Jedis(server.getHost(), server.getBindPort())) {
+            Pipeline pipeline = jedis.pipelined();
+            List<Response<Long>> responses = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                responses.add(pipeline.incr("counter"));
+            }
+            pipeline.set("large", largeValue);
+            Response<String> large = pipeline.get("large");
+            pipeline.sync();
+            for (int i = 0; i < responses.size(); i++) {
+                assertThat(responses.get(i).get()).isEqualTo(i + 1);
+            }
+            assertThat(large.get()).isEqualTo(largeValue);
+        }
+    }
+
+    @Test
+    void blockingCommandDoesNotBlockOtherConnections() throws Exception {
+        try (Jedis consumer = new Jedis(server.getHost(), server.getBindPort());
+             Jedis producer = new Jedis(server.getHost(), server.getBindPort())) {
+            CompletableFuture<List<String>> popped = CompletableFuture.supplyAsync(() -> consumer.blpop(10, "queue"));
+            //Wait until the consumer is blocked
+            Thread.sleep(200);
+            assertThat(producer.ping()).isEqualTo("PONG");
+            producer.rpush("queue", "item");
+            assertThat(popped.get(5, TimeUnit.SECONDS)).containsExactly("queue", "item");
+            assertThat(consumer.ping()).isEqualTo("PONG");
+        }
+    }
+
+    @Test
+    void quitRepliesAndClosesConnection() {
+        try (Jedis jedis = new Jedis(server.getHost(), server.getBindPort())) {
+            assertThat(jedis.sendCommand(() -> SafeEncoder.encode("QUIT"))).isEqualTo("OK".getBytes());
+            assertThatThrownBy(jedis::ping).isInstanceOf(JedisConnectionException.class);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.github.fppt.jedismock;
+
+import com.github.fppt.jedismock.datastructures.Slice;
+import com.github.fppt.jedismock.server.RespWriter;
+import com.github.fppt.jedismock.server.Response;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestRespWriter {
+    @Test
+    void writesNestedReplies() {
+        Slice reply = new RespWriter()
+                .arrayHeader(3)
+                .bulkString(Slice.create("key"))
+                .arrayHeader(2)
+                .integer(-42)
+                .integer(1000)
+                .bulkString((Slice) null)
+                .toSlice();
+        assertThat(reply.toString()).isEqualTo("*3\r\n$3\r\nkey\r\n*2\r\n:-42\r\n:1000\r\n$-1\r\n");
+    }
+
+    @Test
+    void writesIntegers() {
+        for (long value : new long[]{0, 9, 10, 255, 256, -1, -10, 123456789012L, Long.MAX_VALUE, Long.MIN_VALUE}) {
+            assertThat(new RespWriter().integer(value).toSlice().toString()).isEqualTo(":" + value + "\r\n");
+            assertThat(Response.integer(value).toString()).isEqualTo(":" + value + "\r\n");
+        }
+    }
+
+    @Test
+    void writesLongBulkStrings() {
+        byte[] value = new byte[100_000];
+        Arrays.fill(value, (byte) 'x');
+        Slice reply = new RespWriter().bulkString(Slice.create(value)).toSlice();
+        assertThat(reply.toString()).isEqualTo("$100000\r\n" + new String(value) + "\r\n");
+        assertThat(Response.bulkString(Slice.create(value))).isEqualTo(reply);
+    }
+
+    @Test
+    void slicesAreNotAffectedByFurtherWrites() {
+        RespWriter writer = new RespWriter();
+        Slice first = writer.simpleString("OK").toSlice();
+        writer.error("ERR");
+        writer.reset();
+        writer.integer(1);
+        assertThat(first).isEqualTo(Response.OK);
+        assertThat(writer.toSlice().toString()).isEqualTo(":1\r\n");
+    }
+
+    @Test
+    void compatibilityLayerProducesSameReplies() {
+        assertThat(Response.array(Response.bulkString(Slice.create("a")), Response.integer(5)).toString())
+                .isEqualTo("*2\r\n$1\r\na\r\n:5\r\n");
+        assertThat(Response.EMPTY_ARRAY.toString()).isEqualTo("*0\r\n");
+        assertThat(Response.error("ERR oops").toString()).isEqualTo("-ERR oops\r\n");
+        assertThat(Response.publishedMessage(Slice.create("ch"), Slice.create("msg")).toString())
+                .isEqualTo("*3\r\n$7\r\nmessage\r\n$2\r\nch\r\n$3\r\nmsg\r\n");
+    }
+}
@@ -0,0 +1,197 @@
+package com.github.fppt.jedismock;
+
+import com.github.fppt.jedismock.datastructures.RMDataStructure;
+import com.github.fppt.jedismock.datastructures.Slice;
+import com.github.fppt.jedismock.server.ServiceOptions;
+import com.github.fppt.jedismock.storage.RedisBase;
+import com.github.fppt.jedismock.storage.Snapshot;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
+
+public class TestSnapshot {
+    private static final Instant NOW = Instant.ofEpochMilli(1_700_000_000_000L);
+
+    @TempDir
+    Path directory;
+    private RedisServer server;
+    private Jedis jedis;
+
+    private void start(ServiceOptions options) throws IOException {
+        server = RedisServer.newRedisServer()
+                .setOptions(options)
+                .setClock(Clock.fixed(NOW, ZoneId.systemDefault()))
+                .start();
+        jedis = new Jedis(server.getHost(), server.getBindPort());
+    }
+
+    private void stop() throws IOException {
+        jedis.close();
+        server.stop();
+        server = null;
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (server != null) {
+            stop();
+        }
+    }
+
+    private void populate() {
+        jedis.set("string", "value");
+        jedis.rpush("list", "a", "b");
+        jedis.hset("hash", "field", "value");
+        jedis.zadd("zset", 1, "a");
+        jedis.sadd("set", "a");
+        jedis.setex("volatile", 100, "value");
+    }
+
+    private void modify() {
+        jedis.set("string", "changed");
+        jedis.rpush("list", "c");
+        jedis.hdel("hash", "field");
+        jedis.zincrby("zset", 1, "a");
+        jedis.del("set");
+        jedis.persist("volatile");
+        jedis.set("new", "value");
+        jedis.select(1);
+        jedis.set("other", "database");
+        jedis.select(0);
+    }
+
+    private void assertPopulated() {
+        assertThat(jedis.keys("*")).containsExactlyInAnyOrder("string", "list", "hash", "zset", "set", "volatile");
+        assertThat(jedis.get("string")).isEqualTo("value");
+        assertThat(jedis.lrange("list", 0, -1)).containsExactly("a", "b");
+        assertThat(jedis.hgetAll("hash")).containsExactly(entry("field", "value"));
+        assertThat(jedis.zscore("zset", "a")).isEqualTo(1);
+        assertThat(jedis.smembers("set")).containsExactly("a");
+        assertThat(jedis.ttl("volatile")).isEqualTo(100);
+        jedis.select(1);
+        assertThat(jedis.dbSize()).isZero();
+        jedis.select(0);
+    }
+
+    @Test
+    void restoreRevertsModifications() throws IOException {
+        start(ServiceOptions.defaultOptions());
+        populate();
+        try (Snapshot snapshot = server.snapshot()) {
+            modify();
+            server.restore(snapshot);
+            assertPopulated();
+            //The restored values are shared with the snapshot, which is not affected by their modification
+            modify();
+            server.restore(snapshot);
+            assertPopulated();
+        }
+        jedis.rpush("list", "c");
+        assertThat(jedis.lrange("list", 0, -1)).containsExactly("a", "b", "c");
+    }
+
+    @Test
+    void valuesAreCopiedOnlyWhenModified() throws IOException {
+        start(ServiceOptions.defaultOptions());
+        populate();
+        RedisBase base = server.getRedisBases().get(0);
+        RMDataStructure list = base.getValue(Slice.create("list"));
+        RMDataStructure set = base.getValue(Slice.create("set"));
+        try (Snapshot snapshot = server.snapshot()) {
+            assertThat(jedis.lrange("list", 0, -1)).containsExactly("a", "b");
+            assertThat(jedis.smembers("set")).containsExactly("a");
+            assertThat(base.getValue(Slice.create("list"))).isSameAs(list);
+            jedis.sadd("set", "b");
+            assertThat(base.getValue(Slice.create("set"))).isNotSameAs(set);
+            server.restore(snapshot);
+            assertThat(jedis.smembers("set")).containsExactly("a");
+        }
+    }
+
+    @Test
+    void restoreWakesUpBlockedClients() throws Exception {
+        start(ServiceOptions.defaultOptions());
+        jedis.rpush("list", "a");
+        try (Snapshot snapshot = server.snapshot();
+             Jedis blocked = new Jedis(server.getHost(), server.getBindPort())) {
+            jedis.del("list");
+            Thread restore = new Thread(() -> {
+                try {
+                    //Gives the client some time to block
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                server.restore(snapshot);
+            });
+            restore.start();
+            assertThat(blocked.blpop(10, "list")).containsExactly("list", "a");
+            restore.join();
+        }
+    }
+
+    @Test
+    void closedSnapshotCannotBeRestored() throws IOException {
+        start(ServiceOptions.defaultOptions());
+        Snapshot snapshot = server.snapshot();
+        snapshot.close();
+        assertThatThrownBy(() -> server.restore(snapshot)).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void snapshotOfAnotherServerCannotBeRestored() throws IOException {
+        start(ServiceOptions.defaultOptions());
+        RedisServer other = RedisServer.newRedisServer().start();
+        try (Jedis client = new Jedis(other.getHost(), other.getBindPort())) {
+            client.set("key", "value");
+        }
+        try (Snapshot snapshot = other.snapshot()) {
+            assertThatThrownBy(() -> server.restore(snapshot)).isInstanceOf(IllegalArgumentException.class);
+        } finally {
+            other.stop();
+        }
+    }
+
+    @Test
+    void backgroundSaveWritesKeysAsOfTheCommand() throws IOException {
+        Path file = directory.resolve("dump.rdb");
+        start(ServiceOptions.defaultOptions().withDumpFile(file));
+        Pipeline pipeline = jedis.pipelined();
+        for (int i = 0; i < 10_000; i++) {
+            pipeline.set("key" + i, "value");
+        }
+        pipeline.sync();
+        populate();
+        jedis.bgsave();
+        //Modified while the keys are written in background, or even before
+        modify();
+        for (int i = 0; i < 10_000; i++) {
+            pipeline.del("key" + i);
+        }
+        pipeline.sync();
+        server.getDumpFile().awaitBackgroundSave();
+        stop();
+
+        start(ServiceOptions.defaultOptions().withDumpFile(file));
+        assertThat(jedis.dbSize()).isEqualTo(10_006);
+        assertThat(jedis.get("key9999")).isEqualTo("value");
+        pipeline = jedis.pipelined();
+        for (int i = 0; i < 10_000; i++) {
+            pipeline.del("key" + i);
+        }
+        pipeline.sync();
+        assertPopulated();
+    }
+}
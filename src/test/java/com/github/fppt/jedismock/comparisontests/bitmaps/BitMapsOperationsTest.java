@@ -5,12 +5,17 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.TestTemplate;
 import org.junit.jupiter.api.extension.ExtendWith;
 import redis.clients.jedis.Jedis;
+import redis.clients.jedis.args.BitCountOption;
+import redis.clients.jedis.args.BitOP;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.jedis.params.BitPosParams;
 
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 @ExtendWith(ComparisonBase.class)
 public class BitMapsOperationsTest {
@@ -65,4 +70,82 @@ public class BitMapsOperationsTest {
         assertThat(jedis.getbit("something2", 1)).isTrue();
         assertThat(jedis.getbit("something2", 41)).isTrue();
     }
+
+    @TestTemplate
+    void testBitOrderMatchesString(Jedis jedis) {
+        assertThat(jedis.get("bm")).isEqualTo("42");
+        jedis.setbit("bm", 1, true);
+        assertThat(jedis.get("bm")).isEqualTo("t2");
+    }
+
+    @TestTemplate
+    void testBitCount(Jedis jedis) {
+        assertThat(jedis.bitcount("bm")).isEqualTo(6);
+        assertThat(jedis.bitcount("bm", 1, 1)).isEqualTo(3);
+        assertThat(jedis.bitcount("bm", -1, -1)).isEqualTo(3);
+        assertThat(jedis.bitcount("bm", 3, 10, BitCountOption.BIT)).isEqualTo(3);
+        assertThat(jedis.bitcount("bm", 5, 2, BitCountOption.BIT)).isEqualTo(0);
+        assertThat(jedis.bitcount("absent")).isEqualTo(0);
+        jedis.set("long", "The quick brown fox jumps over the lazy dog");
+        assertThat(jedis.bitcount("long")).isEqualTo(161);
+        assertThat(jedis.bitcount("long", 1, -2)).isEqualTo(153);
+        assertThat(jedis.bitcount("long", 9, 300, BitCountOption.BIT)).isEqualTo(137);
+    }
+
+    @TestTemplate
+    void testBitPos(Jedis jedis) {
+        assertThat(jedis.bitpos("bm", true)).isEqualTo(2);
+        assertThat(jedis.bitpos("bm", false)).isEqualTo(0);
+        assertThat(jedis.bitpos("bm", true, new BitPosParams(1))).isEqualTo(10);
+        assertThat(jedis.bitpos("bm", true, new BitPosParams(6, 9).modifier(BitCountOption.BIT))).isEqualTo(-1);
+        assertThat(jedis.bitpos("absent", true)).isEqualTo(-1);
+        assertThat(jedis.bitpos("absent", false)).isEqualTo(0);
+        jedis.set("ones".getBytes(), new byte[]{-1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -2});
+        assertThat(jedis.bitpos("ones", false)).isEqualTo(95);
+        assertThat(jedis.bitpos("ones", false, new BitPosParams(0, 10))).isEqualTo(-1);
+        jedis.setbit("ones", 95, true);
+        assertThat(jedis.bitpos("ones", false)).isEqualTo(96);
+        assertThat(jedis.bitpos("ones", false, new BitPosParams(0, -1))).isEqualTo(-1);
+    }
+
+    @TestTemplate
+    void testBitOp(Jedis jedis) {
+        jedis.set("a", "foobar-foobar");
+        jedis.set("b", "abcdef");
+        assertThat(jedis.bitop(BitOP.AND, "and", "a", "b")).isEqualTo(13);
+        assertThat(jedis.get("and".getBytes()))
+                .containsExactly(0x60, 0x62, 0x63, 0x60, 0x61, 0x62, 0, 0, 0, 0, 0, 0, 0);
+        assertThat(jedis.bitop(BitOP.OR, "or", "a", "b", "absent")).isEqualTo(13);
+        assertThat(jedis.get("or")).isEqualTo("goofev-foobar");
+        jedis.bitop(BitOP.XOR, "xor", "a", "b");
+        jedis.bitop(BitOP.XOR, "xor", "xor", "b");
+        assertThat(jedis.get("xor")).isEqualTo("foobar-foobar");
+        jedis.bitop(BitOP.NOT, "not", "b");
+        assertThat(jedis.get("not".getBytes())).containsExactly(0x9e, 0x9d, 0x9c, 0x9b, 0x9a, 0x99);
+        assertThat(jedis.bitop(BitOP.AND, "or", "absent")).isEqualTo(0);
+        assertThat(jedis.exists("or")).isFalse();
+        assertThatThrownBy(() -> jedis.bitop(BitOP.NOT, "not", "a", "b"))
+                .isInstanceOf(JedisDataException.class)
+                .hasMessage("ERR BITOP NOT must be called with a single source key.");
+    }
+
+    @TestTemplate
+    void testBitField(Jedis jedis) {
+        assertThat(jedis.bitfield("bf", "SET", "i8", "0", "100", "GET", "u4", "0", "INCRBY", "i8", "0", "30"))
+                .containsExactly(0L, 6L, -126L);
+        assertThat(jedis.bitfield("bf", "OVERFLOW", "SAT", "INCRBY", "u2", "#3", "5", "INCRBY", "i8", "0", "-200",
+                "OVERFLOW", "FAIL", "INCRBY", "u2", "#3", "4", "SET", "i3", "100", "1"))
+                .containsExactly(3L, -128L, null, 0L);
+        assertThat(jedis.bitfieldReadonly("bf", "GET", "i8", "0", "GET", "u2", "6", "GET", "i64", "1"))
+                .containsExactly(-128L, 0L, 0L);
+        assertThat(jedis.strlen("bf")).isEqualTo(13);
+        assertThat(jedis.bitfield("absent", "GET", "u8", "100")).containsExactly(0L);
+        assertThat(jedis.exists("absent")).isFalse();
+        assertThatThrownBy(() -> jedis.bitfield("bf", "GET", "u64", "0"))
+                .isInstanceOf(JedisDataException.class)
+                .hasMessageStartingWith("ERR Invalid bitfield type");
+        assertThatThrownBy(() -> jedis.bitfieldReadonly("bf", "SET", "u8", "0", "1"))
+                .isInstanceOf(JedisDataException.class)
+                .hasMessage("ERR BITFIELD_RO only supports the GET subcommand");
+    }
 }
@@ -90,4 +90,29 @@ public class TestHScan {
         assertThat(results).containsAllEntriesOf(expected);
         assertThat(count).isGreaterThan(1);
     }
+
+    @TestTemplate
+    public void hscanReturnsFieldsPresentDuringWholeIteration(Jedis jedis) {
+        for (int i = 0; i < 200; i++) {
+            jedis.hset(key, "constant" + i, "value" + i);
+            jedis.hset(key, "removed" + i, "value");
+        }
+        Map<String, String> visited = new HashMap<>();
+        String cursor = SCAN_POINTER_START;
+        int step = 0;
+        do {
+            ScanResult<Map.Entry<String, String>> result = jedis.hscan(key, cursor, new ScanParams().count(20));
+            result.getResult().forEach(entry -> visited.put(entry.getKey(), entry.getValue()));
+            cursor = result.getCursor();
+            for (int i = 0; i < 10; i++) {
+                jedis.hdel(key, "removed" + (step * 10 + i));
+                jedis.hset(key, "added" + (step * 10 + i), "value");
+            }
+            step++;
+        } while (!SCAN_POINTER_START.equals(cursor));
+
+        for (int i = 0; i < 200; i++) {
+            assertThat(visited).containsEntry("constant" + i, "value" + i);
+        }
+    }
 }
@@ -71,4 +71,13 @@ public class CopyTests {
         assertThat(jedis.ttl("mynewkey")).isEqualTo(-1);
         assertThat(jedis.get("mynewkey")).isEqualTo("foobar");
     }
+
+    @TestTemplate
+    public void copyIsModifiedIndependently(Jedis jedis) {
+        jedis.rpush(srcKey, "a", "b");
+        jedis.copy(srcKey, dstKey, false);
+        jedis.rpush(dstKey, "c");
+        assertThat(jedis.lrange(srcKey, 0, -1)).containsExactly("a", "b");
+        assertThat(jedis.lrange(dstKey, 0, -1)).containsExactly("a", "b", "c");
+    }
 }
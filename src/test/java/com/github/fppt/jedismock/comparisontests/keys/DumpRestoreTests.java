@@ -0,0 +1,152 @@
+package com.github.fppt.jedismock.comparisontests.keys;
+
+import com.github.fppt.jedismock.comparisontests.ComparisonBase;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.TestTemplate;
+import org.junit.jupiter.api.extension.ExtendWith;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.StreamEntryID;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.jedis.params.RestoreParams;
+import redis.clients.jedis.params.XAddParams;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
+
+@ExtendWith(ComparisonBase.class)
+public class DumpRestoreTests {
+    private final String srcKey = "first";
+    private final String dstKey = "second";
+
+    @BeforeEach
+    public void setUp(Jedis jedis) {
+        jedis.flushAll();
+    }
+
+    @TestTemplate
+    public void dumpOfNonExistentIsNull(Jedis jedis) {
+        assertThat(jedis.dump("nonexistent")).isNull();
+    }
+
+    @TestTemplate
+    public void everyTypeIsRestored(Jedis jedis) {
+        jedis.set("string", "abracadabra");
+        jedis.set("integer", "-100500");
+        jedis.rpush("list", "a", "b", "a");
+        jedis.sadd("set", "a", "b");
+        jedis.zadd("zset", 1.5, "a");
+        jedis.zadd("zset", -1, "b");
+        jedis.hset("hash", "field", "value");
+        StreamEntryID id = jedis.xadd("stream", XAddParams.xAddParams(), Collections.singletonMap("f", "v"));
+        for (String key : Arrays.asList("string", "integer", "list", "set", "zset", "hash", "stream")) {
+            assertThat(jedis.restore(key + "-copy", 0, jedis.dump(key))).isEqualTo("OK");
+            assertThat(jedis.type(key + "-copy")).isEqualTo(jedis.type(key));
+        }
+        assertThat(jedis.get("string-copy")).isEqualTo("abracadabra");
+        assertThat(jedis.get("integer-copy")).isEqualTo("-100500");
+        assertThat(jedis.lrange("list-copy", 0, -1)).containsExactly("a", "b", "a");
+        assertThat(jedis.smembers("set-copy")).containsExactlyInAnyOrder("a", "b");
+        assertThat(jedis.zrangeWithScores("zset-copy", 0, -1)).isEqualTo(jedis.zrangeWithScores("zset", 0, -1));
+        assertThat(jedis.hgetAll("hash-copy")).containsExactly(entry("field", "value"));
+        assertThat(jedis.xrange("stream-copy", "-", "+")).singleElement().satisfies(entry -> {
+            assertThat(entry.getID()).isEqualTo(id);
+            assertThat(entry.getFields()).containsExactly(entry("f", "v"));
+        });
+    }
+
+    @TestTemplate
+    public void payloadOfRedisIsRestored(Jedis jedis) {
+        //DUMP of "10" by Redis 5.0 and 6.x
+        byte[] payload = "\u0000À\n\t\u0000¾m\u0006\u0089Z(\u0000\n".getBytes(StandardCharsets.ISO_8859_1);
+        assertThat(jedis.restore(dstKey, 0, payload)).isEqualTo("OK");
+        assertThat(jedis.get(dstKey)).isEqualTo("10");
+    }
+
+    @TestTemplate
+    public void restoreIsModifiedIndependently(Jedis jedis) {
+        jedis.rpush(srcKey, "a", "b");
+        jedis.restore(dstKey, 0, jedis.dump(srcKey));
+        jedis.rpush(dstKey, "c");
+        assertThat(jedis.lrange(srcKey, 0, -1)).containsExactly("a", "b");
+        assertThat(jedis.lrange(dstKey, 0, -1)).containsExactly("a", "b", "c");
+    }
+
+    @TestTemplate
+    public void restoreExistingKeyFails(Jedis jedis) {
+        jedis.set(srcKey, "value");
+        jedis.set(dstKey, "oldValue");
+        byte[] payload = jedis.dump(srcKey);
+        assertThatThrownBy(() -> jedis.restore(dstKey, 0, payload))
+                .isInstanceOf(JedisDataException.class)
+                .hasMessage("BUSYKEY Target key name already exists.");
+        assertThat(jedis.get(dstKey)).isEqualTo("oldValue");
+        assertThat(jedis.restore(dstKey, 0, payload, RestoreParams.restoreParams().replace())).isEqualTo("OK");
+        assertThat(jedis.get(dstKey)).isEqualTo("value");
+    }
+
+    @TestTemplate
+    public void restoreWithTtl(Jedis jedis) {
+        jedis.set(srcKey, "value");
+        byte[] payload = jedis.dump(srcKey);
+        jedis.restore(dstKey, 100_000, payload);
+        assertThat(jedis.pttl(dstKey)).isBetween(90_000L, 100_000L);
+        long deadline = jedis.pexpireTime(dstKey);
+        jedis.restore(srcKey, deadline, payload, RestoreParams.restoreParams().replace().absTtl());
+        assertThat(jedis.pexpireTime(srcKey)).isEqualTo(deadline);
+    }
+
+    @TestTemplate
+    public void restoreWithPastAbsoluteTtlRemovesKey(Jedis jedis) {
+        jedis.set(srcKey, "value");
+        byte[] payload = jedis.dump(srcKey);
+        assertThat(jedis.restore(srcKey, 1, payload, RestoreParams.restoreParams().replace().absTtl()))
+                .isEqualTo("OK");
+        assertThat(jedis.exists(srcKey)).isFalse();
+    }
+
+    @TestTemplate
+    public void restoreWithIdleTimeAndFrequency(Jedis jedis) {
+        jedis.set(srcKey, "value");
+        byte[] payload = jedis.dump(srcKey);
+        assertThat(jedis.restore(dstKey, 0, payload, RestoreParams.restoreParams().idleTime(100)))
+                .isEqualTo("OK");
+        assertThat(jedis.restore(srcKey, 0, payload, RestoreParams.restoreParams().replace().frequency(10)))
+                .isEqualTo("OK");
+        assertThatThrownBy(() -> jedis.restore(dstKey, 0, payload,
+                RestoreParams.restoreParams().replace().idleTime(1).frequency(1)))
+                .isInstanceOf(JedisDataException.class)
+                .hasMessage("ERR syntax error");
+        assertThatThrownBy(() -> jedis.restore(dstKey, 0, payload,
+                RestoreParams.restoreParams().replace().frequency(256)))
+                .isInstanceOf(JedisDataException.class)
+                .hasMessage("ERR Invalid FREQ value, must be >= 0 and <= 255");
+    }
+
+    @TestTemplate
+    public void restoreWithNegativeTtlFails(Jedis jedis) {
+        jedis.set(srcKey, "value");
+        byte[] payload = jedis.dump(srcKey);
+        assertThatThrownBy(() -> jedis.restore(dstKey, -1, payload))
+                .isInstanceOf(JedisDataException.class)
+                .hasMessage("ERR Invalid TTL value, must be >= 0");
+    }
+
+    @TestTemplate
+    public void corruptedPayloadIsRejected(Jedis jedis) {
+        jedis.set(srcKey, "value");
+        byte[] payload = jedis.dump(srcKey);
+        payload[2] ^= 1;
+        assertThatThrownBy(() -> jedis.restore(dstKey, 0, payload))
+                .isInstanceOf(JedisDataException.class)
+                .hasMessage("ERR DUMP payload version or checksum are wrong");
+        assertThatThrownBy(() -> jedis.restore(dstKey, 0, "short".getBytes(StandardCharsets.US_ASCII)))
+                .isInstanceOf(JedisDataException.class)
+                .hasMessage("ERR DUMP payload version or checksum are wrong");
+        assertThat(jedis.exists(dstKey)).isFalse();
+    }
+}
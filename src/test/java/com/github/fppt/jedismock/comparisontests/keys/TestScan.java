@@ -8,6 +8,9 @@ import redis.clients.jedis.Jedis;
 import redis.clients.jedis.params.ScanParams;
 import redis.clients.jedis.resps.ScanResult;
 
+import java.util.HashSet;
+import java.util.Set;
+
 import static org.assertj.core.api.Assertions.assertThat;
 import static redis.clients.jedis.params.ScanParams.SCAN_POINTER_START;
 
@@ -70,4 +73,30 @@ public class TestScan {
         Thread.sleep(2000);
         assertThat(jedis.scan(ScanParams.SCAN_POINTER_START).getResult()).isEmpty();
     }
+
+    @TestTemplate
+    public void scanReturnsKeysPresentDuringWholeIteration(Jedis jedis) {
+        for (int i = 0; i < 200; i++) {
+            jedis.set("constant:" + i, "value");
+            jedis.set("removed:" + i, "value");
+        }
+        Set<String> visited = new HashSet<>();
+        String cursor = SCAN_POINTER_START;
+        int step = 0;
+        do {
+            ScanResult<String> result = jedis.scan(cursor, new ScanParams().count(20));
+            visited.addAll(result.getResult());
+            cursor = result.getCursor();
+            //Modifications between the calls must not hide the keys which are present all the time
+            for (int i = 0; i < 10; i++) {
+                jedis.del("removed:" + (step * 10 + i));
+                jedis.set("added:" + (step * 10 + i), "value");
+            }
+            step++;
+        } while (!SCAN_POINTER_START.equals(cursor));
+
+        for (int i = 0; i < 200; i++) {
+            assertThat(visited).contains("constant:" + i);
+        }
+    }
 }
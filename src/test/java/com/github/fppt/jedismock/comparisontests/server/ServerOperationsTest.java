@@ -5,12 +5,17 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.TestTemplate;
 import org.junit.jupiter.api.extension.ExtendWith;
 import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Protocol;
+import redis.clients.jedis.args.FlushMode;
+import redis.clients.jedis.exceptions.JedisDataException;
 
 import java.util.List;
+import java.util.stream.IntStream;
 
 import static java.lang.Long.parseLong;
 import static java.lang.Math.abs;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 @ExtendWith(ComparisonBase.class)
 public class ServerOperationsTest {
@@ -44,6 +49,28 @@ public class ServerOperationsTest {
         assertThat(jedis.get(key)).isNull();
     }
 
+    @TestTemplate
+    public void flushAsynchronously(Jedis jedis) {
+        jedis.sadd("set", IntStream.range(0, 1000).mapToObj(Integer::toString).toArray(String[]::new));
+        jedis.set("string", "value");
+        assertThat(jedis.flushAll(FlushMode.ASYNC)).isEqualTo("OK");
+        assertThat(jedis.dbSize()).isZero();
+        jedis.set("string", "new");
+        assertThat(jedis.flushDB(FlushMode.ASYNC)).isEqualTo("OK");
+        assertThat(jedis.exists("string")).isFalse();
+        assertThat(jedis.flushDB(FlushMode.SYNC)).isEqualTo("OK");
+    }
+
+    @TestTemplate
+    public void flushWithWrongModeFails(Jedis jedis) {
+        assertThatThrownBy(() -> jedis.sendCommand(Protocol.Command.FLUSHALL, "LATER"))
+                .isInstanceOf(JedisDataException.class)
+                .hasMessage("ERR syntax error");
+        assertThatThrownBy(() -> jedis.sendCommand(Protocol.Command.FLUSHDB, "ASYNC", "SYNC"))
+                .isInstanceOf(JedisDataException.class)
+                .hasMessage("ERR syntax error");
+    }
+
     @TestTemplate
     public void whenCountingKeys_EnsureExpiredKeysAreNotCounted(Jedis jedis) throws InterruptedException {
         jedis.hset("test", "key", "value");
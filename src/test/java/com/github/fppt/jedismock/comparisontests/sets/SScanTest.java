@@ -89,4 +89,42 @@ public class SScanTest {
         assertThat(count).isGreaterThan(1);
 
     }
+
+    @TestTemplate
+    public void interleavedSscansReturnAllValues(Jedis jedis) {
+        for (int i = 0; i < 500; i++) {
+            jedis.sadd(key, "first" + i);
+        }
+        Set<String> first = new HashSet<>();
+        Set<String> second = new HashSet<>();
+        String firstCursor = SCAN_POINTER_START;
+        String secondCursor = null;
+        do {
+            ScanResult<String> result = jedis.sscan(key, firstCursor, new ScanParams().count(20));
+            first.addAll(result.getResult());
+            firstCursor = result.getCursor();
+            if (secondCursor == null) {
+                //The second iteration starts after more values are added
+                for (int i = 0; i < 500; i++) {
+                    jedis.sadd(key, "second" + i);
+                }
+                secondCursor = SCAN_POINTER_START;
+            }
+            if (!SCAN_POINTER_START.equals(secondCursor) || second.isEmpty()) {
+                result = jedis.sscan(key, secondCursor, new ScanParams().count(10));
+                second.addAll(result.getResult());
+                secondCursor = result.getCursor();
+            }
+        } while (!SCAN_POINTER_START.equals(firstCursor));
+        while (!SCAN_POINTER_START.equals(secondCursor)) {
+            ScanResult<String> result = jedis.sscan(key, secondCursor, new ScanParams().count(10));
+            second.addAll(result.getResult());
+            secondCursor = result.getCursor();
+        }
+
+        for (int i = 0; i < 500; i++) {
+            assertThat(first).contains("first" + i);
+            assertThat(second).contains("first" + i, "second" + i);
+        }
+    }
 }
@@ -0,0 +1,142 @@
+package com.github.fppt.jedismock.datastructures;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Random;
+
+import static com.github.fppt.jedismock.datastructures.Slice.create;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class QuickListTest {
+    private static final int SIZE = QuickList.CHUNK_SIZE * 5;
+
+    private static List<Slice> elements(int from, int to) {
+        List<Slice> result = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            result.add(create(Integer.toString(i)));
+        }
+        return result;
+    }
+
+    @Test
+    void pushAndPopAtBothEnds() {
+        QuickList list = new QuickList();
+        List<Slice> expected = new ArrayList<>();
+        for (Slice element : elements(0, SIZE)) {
+            list.addFirst(element);
+            expected.add(0, element);
+            list.addLast(element);
+            expected.add(element);
+        }
+        assertThat(list).containsExactlyElementsOf(expected);
+        for (int i = 0; i < SIZE; i++) {
+            assertThat(list.removeFirst()).isEqualTo(expected.remove(0));
+            assertThat(list.removeLast()).isEqualTo(expected.remove(expected.size() - 1));
+        }
+        assertThat(list).isEmpty();
+    }
+
+    @Test
+    void randomAccessMatchesArrayList() {
+        Random random = new Random(42);
+        QuickList list = new QuickList(elements(0, SIZE));
+        List<Slice> expected = elements(0, SIZE);
+        for (int i = 0; i < 10_000; i++) {
+            int index = random.nextInt(expected.size());
+            Slice element = create("x" + i);
+            switch (random.nextInt(4)) {
+                case 0:
+                    list.add(index, element);
+                    expected.add(index, element);
+                    break;
+                case 1:
+                    assertThat(list.remove(index)).isEqualTo(expected.remove(index));
+                    break;
+                case 2:
+                    assertThat(list.set(index, element)).isEqualTo(expected.set(index, element));
+                    break;
+                default:
+                    assertThat(list.get(index)).isEqualTo(expected.get(index));
+            }
+        }
+        assertThat(list).containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    void iteratorRemovesInBothDirections() {
+        QuickList list = new QuickList(elements(0, SIZE));
+        List<Slice> expected = elements(0, SIZE);
+        ListIterator<Slice> iterator = list.listIterator();
+        while (iterator.hasNext()) {
+            int index = iterator.nextIndex();
+            if (Integer.parseInt(iterator.next().toString()) % 3 == 0) {
+                iterator.remove();
+                expected.remove(index);
+            }
+        }
+        assertThat(list).containsExactlyElementsOf(expected);
+        iterator = list.listIterator(list.size());
+        while (iterator.hasPrevious()) {
+            if (Integer.parseInt(iterator.previous().toString()) % 3 == 1) {
+                iterator.remove();
+            }
+        }
+        expected.removeIf(element -> Integer.parseInt(element.toString()) % 3 == 1);
+        assertThat(list).containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    void sparseChunksAreMerged() {
+        QuickList list = new QuickList(elements(0, SIZE));
+        List<Slice> expected = elements(0, SIZE);
+        ListIterator<Slice> iterator = list.listIterator(1);
+        while (iterator.hasNext()) {
+            //Three elements out of four are removed, except the first and the last ones
+            int index = iterator.nextIndex();
+            if (Integer.parseInt(iterator.next().toString()) % 4 != 0 && iterator.hasNext()) {
+                iterator.remove();
+                expected.remove(index);
+            }
+        }
+        assertThat(list).containsExactlyElementsOf(expected);
+        assertThat(list.chunks()).isLessThan(SIZE / QuickList.CHUNK_SIZE);
+        for (int i = list.size() - 2; i > 0; i -= 2) {
+            assertThat(list.remove(i)).isEqualTo(expected.remove(i));
+        }
+        assertThat(list).containsExactlyElementsOf(expected);
+        assertThat(list.chunks()).isEqualTo(1);
+    }
+
+    @Test
+    void removeRangeDropsChunks() {
+        QuickList list = new QuickList(elements(0, SIZE));
+        list.removeFirst(QuickList.CHUNK_SIZE + 1);
+        list.removeLast(QuickList.CHUNK_SIZE * 2 - 1);
+        assertThat(list).containsExactlyElementsOf(elements(QuickList.CHUNK_SIZE + 1, QuickList.CHUNK_SIZE * 3 + 1));
+        list.subList(1, list.size() - 1).clear();
+        assertThat(list).containsExactly(create(Integer.toString(QuickList.CHUNK_SIZE + 1)),
+                create(Integer.toString(QuickList.CHUNK_SIZE * 3)));
+        list.removeFirst(SIZE);
+        assertThat(list).isEmpty();
+    }
+
+    @Test
+    void listCommandsSemantics() {
+        RMList list = new RMList(elements(0, 10));
+        assertThat(list.range(-3, 100)).containsExactlyElementsOf(elements(7, 10));
+        assertThat(list.range(5, 2)).isEmpty();
+        assertThat(list.get(-1)).isEqualTo(create("9"));
+        assertThat(list.get(10)).isNull();
+        assertThat(list.set(-11, create("x"))).isFalse();
+        assertThat(list.insert(create("5"), create("x"), true)).isEqualTo(11);
+        assertThat(list.insert(create("y"), create("x"), true)).isEqualTo(-1);
+        assertThat(list.remove(create("x"), -1)).isEqualTo(1);
+        list.trim(2, -3);
+        assertThat(list.getStoredData()).containsExactlyElementsOf(elements(2, 8));
+        list.trim(5, 1);
+        assertThat(list.isEmpty()).isTrue();
+    }
+}
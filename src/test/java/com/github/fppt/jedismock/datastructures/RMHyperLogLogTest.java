@@ -0,0 +1,105 @@
+package com.github.fppt.jedismock.datastructures;
+
+import com.github.fppt.jedismock.exception.WrongValueTypeException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static com.github.fppt.jedismock.datastructures.Slice.create;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+class RMHyperLogLogTest {
+    private static RMHyperLogLog of(int from, int to) {
+        RMHyperLogLog result = new RMHyperLogLog();
+        for (int i = from; i < to; i++) {
+            result.add(create("element" + i));
+        }
+        return result;
+    }
+
+    @Test
+    void murmurHashPassesVerificationOfSmhasher() {
+        byte[] key = new byte[256];
+        byte[] hashes = new byte[8 * 256];
+        for (int i = 0; i < 256; i++) {
+            key[i] = (byte) i;
+            long hash = RMHyperLogLog.murmurHash64A(key, i, 256 - i);
+            for (int j = 0; j < 8; j++) {
+                hashes[i * 8 + j] = (byte) (hash >>> 8 * j);
+            }
+        }
+        assertThat(RMHyperLogLog.murmurHash64A(hashes, hashes.length, 0) & 0xffffffffL).isEqualTo(0x1f0d3804L);
+    }
+
+    @Test
+    void addReportsUpdatedRegisters() {
+        RMHyperLogLog hyperLogLog = new RMHyperLogLog();
+        assertThat(hyperLogLog.add(create("a"))).isTrue();
+        assertThat(hyperLogLog.add(create("a"))).isFalse();
+    }
+
+    @Test
+    void smallCardinalitiesAreExact() {
+        for (int size = 0; size < 100; size += 7) {
+            assertThat(of(0, size).count()).isEqualTo(size);
+        }
+    }
+
+    @Test
+    void largeCardinalitiesAreEstimated() {
+        RMHyperLogLog hyperLogLog = of(0, 200_000);
+        //The standard error is 0.81%
+        assertThat(hyperLogLog.count()).isCloseTo(200_000, within(200_000 / 20L));
+        //Dense encoding
+        assertThat(hyperLogLog.getSize()).isEqualTo(16 + 12288);
+    }
+
+    @Test
+    void memoryDoesNotDependOnCardinality() {
+        RMHyperLogLog sparse = of(0, 100);
+        assertThat(sparse.getSize()).isLessThan(3000);
+        assertThat(of(0, 1_000_000).getSize()).isEqualTo(of(0, 20_000).getSize());
+    }
+
+    @Test
+    void stringRepresentationIsReadBack() {
+        for (RMHyperLogLog hyperLogLog : Arrays.asList(of(0, 10), of(0, 50_000))) {
+            Slice string = hyperLogLog.getAsSlice();
+            assertThat(new String(string.data(), 0, 4, StandardCharsets.US_ASCII)).isEqualTo("HYLL");
+            RMDataStructure restored = string.extract();
+            assertThat(restored).isInstanceOf(RMHyperLogLog.class);
+            assertThat(((RMHyperLogLog) restored).count()).isEqualTo(hyperLogLog.count());
+            assertThat(restored.getAsSlice()).isEqualTo(hyperLogLog.getAsSlice());
+        }
+        assertThat(create("HYLL").extract()).isInstanceOf(RMString.class);
+    }
+
+    @Test
+    void mergeCountsTheUnion() {
+        RMHyperLogLog first = of(0, 30);
+        RMHyperLogLog second = of(20, 50);
+        assertThat(RMHyperLogLog.count(Arrays.asList(first, second))).isEqualTo(50);
+        first.merge(second);
+        assertThat(first.count()).isEqualTo(50);
+        RMHyperLogLog dense = of(0, 100_000);
+        RMHyperLogLog merged = of(50_000, 50_010);
+        merged.merge(dense);
+        assertThat(merged.count()).isEqualTo(dense.count());
+        assertThat(merged.getAsSlice()).isEqualTo(dense.getAsSlice());
+    }
+
+    @Test
+    void corruptedSparseEncodingIsDetected() {
+        byte[] data = new RMHyperLogLog().getAsSlice().data();
+        //The run covers one register less than all of them
+        data[data.length - 1]--;
+        RMDataStructure corrupted = create(data).extract();
+        assertThatThrownBy(() -> RMHyperLogLog.count(Collections.singletonList((RMHyperLogLog) corrupted)))
+                .isInstanceOf(WrongValueTypeException.class)
+                .hasMessageStartingWith("INVALIDOBJ");
+    }
+}
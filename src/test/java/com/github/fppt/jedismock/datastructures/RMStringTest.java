@@ -0,0 +1,156 @@
+package com.github.fppt.jedismock.datastructures;
+
+import com.github.fppt.jedismock.exception.WrongValueTypeException;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RMStringTest {
+    private static final int SIZE = 100;
+
+    private static RMString random(Random random, int size) {
+        byte[] data = new byte[size];
+        random.nextBytes(data);
+        return RMString.create(data);
+    }
+
+    @Test
+    void bitCountAndPositionMatchSingleBits() {
+        Random random = new Random(42);
+        RMString value = random(random, SIZE);
+        for (int i = 0; i < 1000; i++) {
+            long from = random.nextInt(SIZE * 8);
+            long to = from + random.nextInt((int) (SIZE * 8 - from));
+            long count = 0;
+            long firstSet = -1;
+            long firstClear = -1;
+            for (long offset = from; offset <= to; offset++) {
+                if (value.getBit(offset)) {
+                    count++;
+                    firstSet = firstSet == -1 ? offset : firstSet;
+                } else {
+                    firstClear = firstClear == -1 ? offset : firstClear;
+                }
+            }
+            assertThat(value.bitCount(from, to)).isEqualTo(count);
+            assertThat(value.bitPosition(true, from, to)).isEqualTo(firstSet);
+            assertThat(value.bitPosition(false, from, to)).isEqualTo(firstClear);
+        }
+    }
+
+    @Test
+    void bitPositionSkipsWords() {
+        byte[] data = new byte[SIZE];
+        Arrays.fill(data, (byte) -1);
+        data[SIZE - 1] = (byte) 0xfe;
+        RMString value = RMString.create(data);
+        assertThat(value.bitPosition(false, 3, SIZE * 8 - 1)).isEqualTo(SIZE * 8 - 1);
+        assertThat(value.bitPosition(false, 3, SIZE * 8 - 2)).isEqualTo(-1);
+        assertThat(value.bitPosition(true, 3, SIZE * 8 - 1)).isEqualTo(3);
+    }
+
+    @Test
+    void bitOperationsMatchBytes() {
+        Random random = new Random(42);
+        RMString first = random(random, SIZE);
+        RMString second = random(random, SIZE / 3);
+        byte[] and = RMString.bitOperation(RMString.BitOperation.AND, Arrays.asList(first, second, null))
+                .getStoredData();
+        byte[] xor = RMString.bitOperation(RMString.BitOperation.XOR, Arrays.asList(first, second)).getStoredData();
+        byte[] not = RMString.bitOperation(RMString.BitOperation.NOT, Arrays.asList(first)).getStoredData();
+        for (int i = 0; i < SIZE; i++) {
+            byte a = first.getStoredData()[i];
+            byte b = i < second.size() ? second.getStoredData()[i] : 0;
+            assertThat(and[i]).isZero();
+            assertThat(xor[i]).isEqualTo((byte) (a ^ b));
+            assertThat(not[i]).isEqualTo((byte) ~a);
+        }
+    }
+
+    @Test
+    void bitFieldsMatchSingleBits() {
+        Random random = new Random(42);
+        RMString value = random(random, SIZE);
+        for (int i = 0; i < 1000; i++) {
+            //The fields may reach beyond the end of the string
+            long offset = random.nextInt(SIZE * 8);
+            int bits = 1 + random.nextInt(64);
+            long expected = 0;
+            for (int bit = 0; bit < bits; bit++) {
+                expected = expected << 1 | (value.getBit(offset + bit) ? 1 : 0);
+            }
+            assertThat(value.getBits(offset, bits)).isEqualTo(expected);
+            long written = random.nextLong();
+            RMString copy = value.copy();
+            value.setBits(offset, bits, written);
+            assertThat(value.size()).isEqualTo(Math.max(copy.size(), (int) (offset + bits + 7 >>> 3)));
+            for (long bit = 0; bit < value.size() * 8L; bit++) {
+                boolean inField = bit >= offset && bit < offset + bits;
+                assertThat(value.getBit(bit))
+                        .isEqualTo(inField ? (written >>> offset + bits - 1 - bit & 1) != 0 : copy.getBit(bit));
+            }
+        }
+    }
+
+    @Test
+    void modificationsDoNotChangeReadValues() {
+        RMString value = RMString.create("a");
+        Slice read = value.getAsSlice();
+        RMString copy = value.copy();
+        value.setBit(7, false);
+        value.setBits(16, 8, 'c');
+        copy.setRange(0, Slice.create("b"));
+        assertThat(read).isEqualTo(Slice.create("a"));
+        assertThat(value.getStoredData()).containsExactly('`', 0, 'c');
+        assertThat(copy.getAsSlice()).isEqualTo(Slice.create("b"));
+    }
+
+    @Test
+    void appendedBytesAreReadBack() {
+        RMString value = new RMString();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            Slice read = value.getAsSlice();
+            value.add(Slice.create(Integer.toString(i)));
+            assertThat(read).isEqualTo(Slice.create(expected.toString()));
+            expected.append(i);
+        }
+        assertThat(value.getStoredDataAsString()).isEqualTo(expected.toString());
+        assertThat(value.size()).isEqualTo(expected.length());
+    }
+
+    @Test
+    void integersAreParsedLikeRedis() {
+        assertThat(RMString.create("-9223372036854775808").incrementBy(1)).isEqualTo(Long.MIN_VALUE + 1);
+        assertThat(RMString.create("0").incrementBy(-1)).isEqualTo(-1);
+        for (String invalid : Arrays.asList("", "-", "+1", "01", "-0", " 1", "1a", "9223372036854775808")) {
+            assertThatThrownBy(() -> RMString.create(invalid).incrementBy(1))
+                    .isInstanceOf(WrongValueTypeException.class)
+                    .hasMessage("ERR value is not an integer or out of range");
+        }
+        assertThatThrownBy(() -> RMString.create(Long.MAX_VALUE).incrementBy(1))
+                .isInstanceOf(WrongValueTypeException.class)
+                .hasMessage("ERR increment or decrement would overflow");
+    }
+
+    @Test
+    void intEncodingIsReadAsBytes() {
+        RMString value = RMString.create("-100");
+        for (int i = 0; i < 1000; i++) {
+            value.incrementBy(1);
+        }
+        RMString copy = value.copy();
+        assertThat(value.size()).isEqualTo(3);
+        assertThat(value.getAsSlice()).isEqualTo(Slice.create("900"));
+        value.add(Slice.create("1"));
+        assertThat(value.getStoredDataAsString()).isEqualTo("9001");
+        assertThat(value.incrementBy(-1)).isEqualTo(9000);
+        assertThat(copy.getStoredDataAsString()).isEqualTo("900");
+        assertThat(RMString.create(Long.MIN_VALUE).size()).isEqualTo(20);
+        assertThat(RMString.create(0).getBit(2)).isTrue();
+    }
+}
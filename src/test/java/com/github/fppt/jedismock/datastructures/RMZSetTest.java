@@ -3,6 +3,12 @@ package com.github.fppt.jedismock.datastructures;
 import nl.jqno.equalsverifier.EqualsVerifier;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Random;
+import java.util.TreeSet;
+
 import static com.github.fppt.jedismock.datastructures.Slice.create;
 import static com.github.fppt.jedismock.datastructures.ZSetEntry.MAX_SCORE;
 import static com.github.fppt.jedismock.datastructures.ZSetEntry.MAX_VALUE;
@@ -65,6 +71,72 @@ class RMZSetTest {
     @Test
     void equalsHashCode() {
         EqualsVerifier.forClass(ZSetEntry.class)
+                .withPrefabValues(Slice.class, create("a"), create("b"))
                 .withNonnullFields("value").verify();
     }
-}
\ No newline at end of file
+
+    @Test
+    void ranksMatchTreeSet() {
+        Random random = new Random(42);
+        RMZSet zset = new RMZSet();
+        NavigableSet<ZSetEntry> expected = new TreeSet<>();
+        for (int i = 0; i < 5_000; i++) {
+            Slice member = create("m" + random.nextInt(1_000));
+            Double previous = zset.getScore(member);
+            if (previous != null) {
+                expected.remove(new ZSetEntry(previous, member));
+            }
+            if (random.nextInt(4) == 0) {
+                zset.remove(member);
+            } else {
+                double score = random.nextInt(100);
+                zset.put(member, score);
+                expected.add(new ZSetEntry(score, member));
+            }
+        }
+        List<ZSetEntry> ordered = new ArrayList<>(expected);
+        assertThat(zset.entries(false)).containsExactlyElementsOf(ordered);
+        assertThat(zset.entries(true)).containsExactlyElementsOf(expected.descendingSet());
+        for (int i = 0; i < ordered.size(); i++) {
+            ZSetEntry entry = ordered.get(i);
+            assertThat(zset.rank(entry.getValue(), false)).isEqualTo(i);
+            assertThat(zset.rank(entry.getValue(), true)).isEqualTo(ordered.size() - 1 - i);
+            assertThat(zset.entries(false).get(i)).isEqualTo(entry);
+            assertThat(zset.entries(true).get(i)).isEqualTo(ordered.get(ordered.size() - 1 - i));
+        }
+        assertThat(zset.rank(create("absent"), false)).isEqualTo(-1);
+    }
+
+    @Test
+    void subsetIsNavigable() {
+        RMZSet zset = new RMZSet();
+        NavigableSet<ZSetEntry> expected = new TreeSet<>();
+        for (int i = 0; i < 100; i++) {
+            zset.put(create("m" + i), i / 3);
+            expected.add(new ZSetEntry(i / 3, create("m" + i)));
+        }
+        ZSetEntry low = new ZSetEntry(10, MIN_VALUE);
+        ZSetEntry high = new ZSetEntry(20, MAX_VALUE);
+        ZSetRange range = zset.subset(new ZSetEntryBound(low, true), new ZSetEntryBound(high, false));
+        NavigableSet<ZSetEntry> subset = expected.subSet(low, true, high, false);
+        assertThat(range).hasSize(subset.size()).containsExactlyElementsOf(subset);
+        assertThat(range.descendingSet()).containsExactlyElementsOf(subset.descendingSet());
+        assertThat(range.first()).isEqualTo(subset.first());
+        assertThat(range.descendingSet().first()).isEqualTo(subset.last());
+        ZSetEntry middle = new ZSetEntry(15, create("m46"));
+        assertThat(range.headSet(middle, true)).containsExactlyElementsOf(subset.headSet(middle, true));
+        assertThat(range.descendingSet().headSet(middle, false))
+                .containsExactlyElementsOf(subset.descendingSet().headSet(middle, false));
+        assertThat(range.higher(middle)).isEqualTo(subset.higher(middle));
+        assertThat(range.descendingSet().higher(middle)).isEqualTo(subset.descendingSet().higher(middle));
+        assertThat(range.skip(5)).containsExactlyElementsOf(new ArrayList<>(subset).subList(5, subset.size()));
+        assertThat(range.skip(subset.size())).isEmpty();
+        assertThat(range.contains(middle)).isTrue();
+        assertThat(range.contains(new ZSetEntry(9, create("m29")))).isFalse();
+        //The views reflect the modifications
+        assertThat(zset.remove(range.headSet(middle, false))).isEqualTo(subset.headSet(middle, false).size());
+        assertThat(range.first()).isEqualTo(middle);
+        assertThat(zset.size()).isEqualTo(100 - subset.headSet(middle, false).size());
+        assertThat(zset.subset(new ZSetEntryBound(high, true), new ZSetEntryBound(low, true))).isEmpty();
+    }
+}
@@ -0,0 +1,98 @@
+package com.github.fppt.jedismock.datastructures;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ScanIndexTest {
+    private static final int SIZE = 1000;
+
+    private static List<Slice> scanAll(ScanIndex index, long count) {
+        List<Slice> result = new ArrayList<>();
+        long cursor = 0;
+        do {
+            cursor = index.scan(cursor, count, result::add);
+        } while (cursor != 0);
+        return result;
+    }
+
+    @Test
+    void setIndexFollowsModifications() {
+        RMSet set = new RMSet();
+        Set<Slice> members = set.getStoredData();
+        for (int i = 0; i < SIZE; i++) {
+            members.add(Slice.create("member" + i));
+        }
+        ScanIndex index = set.scanIndex();
+        members.add(Slice.create("added"));
+        members.remove(Slice.create("member0"));
+        members.removeIf(member -> member.toString().endsWith("7"));
+        Iterator<Slice> iterator = members.iterator();
+        iterator.next();
+        iterator.remove();
+        assertThat(scanAll(index, 10)).containsExactlyInAnyOrderElementsOf(members);
+        members.clear();
+        members.add(Slice.create("new"));
+        assertThat(scanAll(set.scanIndex(), 10)).containsExactly(Slice.create("new"));
+    }
+
+    @Test
+    void hashIndexFollowsModifications() {
+        RMHash hash = new RMHash();
+        Map<Slice, Slice> fields = hash.getStoredData();
+        for (int i = 0; i < SIZE; i++) {
+            hash.put(Slice.create("field" + i), Slice.create("value"));
+        }
+        ScanIndex index = hash.scanIndex();
+        fields.put(Slice.create("field1"), Slice.create("changed"));
+        fields.merge(Slice.create("merged"), Slice.create("value"), (a, b) -> b);
+        fields.computeIfAbsent(Slice.create("computed"), field -> Slice.create("value"));
+        fields.remove(Slice.create("field0"));
+        fields.keySet().remove(Slice.create("field2"));
+        fields.entrySet().removeIf(entry -> entry.getKey().toString().endsWith("7"));
+        fields.values().remove(Slice.create("changed"));
+        assertThat(scanAll(index, 10)).containsExactlyInAnyOrderElementsOf(fields.keySet());
+    }
+
+    @Test
+    void sortedSetIndexFollowsModifications() {
+        RMZSet zset = new RMZSet();
+        for (int i = 0; i < SIZE; i++) {
+            zset.put(Slice.create("member" + i), i);
+        }
+        ScanIndex index = zset.scanIndex();
+        zset.put(Slice.create("member1"), -1);
+        zset.put(Slice.create("added"), 0);
+        zset.remove(Slice.create("member0"));
+        zset.remove(zset.subset(new ZSetEntryBound(new ZSetEntry(10, ZSetEntry.MIN_VALUE), true),
+                new ZSetEntryBound(new ZSetEntry(20, ZSetEntry.MAX_VALUE), true)));
+        assertThat(scanAll(index, 10)).containsExactlyInAnyOrderElementsOf(zset.members());
+    }
+
+    @Test
+    void elementsPresentDuringIterationAreVisitedOnce() {
+        RMSet set = new RMSet();
+        Set<Slice> members = set.getStoredData();
+        for (int i = 0; i < SIZE; i++) {
+            members.add(Slice.create("member" + i));
+        }
+        List<Slice> visited = new ArrayList<>();
+        long cursor = 0;
+        int step = 0;
+        do {
+            cursor = set.scanIndex().scan(cursor, 10, visited::add);
+            //Elements added and removed meanwhile may or may not be visited
+            members.remove(Slice.create("added" + step));
+            members.add(Slice.create("added" + ++step));
+        } while (cursor != 0);
+        List<Slice> stable = new ArrayList<>(visited);
+        stable.removeIf(member -> !member.toString().startsWith("member"));
+        assertThat(stable).hasSize(SIZE).doesNotHaveDuplicates();
+    }
+}
@@ -1,13 +1,75 @@
 package com.github.fppt.jedismock.datastructures;
 
-import nl.jqno.equalsverifier.EqualsVerifier;
 import org.junit.jupiter.api.Test;
 
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
 class SliceTest {
     @Test
     void equalsHashCode() {
-        EqualsVerifier.forClass(Slice.class)
-                .withNonnullFields("storedData")
-                .verify();
+        //Offset and length are representation details, so the contract is checked on views
+        List<Slice> equal = Arrays.asList(
+                Slice.create("abc"),
+                Slice.create("xabcx".getBytes(), 1, 3),
+                Slice.create("abcabc".getBytes(), 3, 3));
+        List<Slice> unequal = Arrays.asList(Slice.create("abd"), Slice.create("ab"), Slice.empty());
+        for (Slice a : equal) {
+            assertThat(a).isEqualTo(a).isNotEqualTo(null).isNotEqualTo("abc");
+            for (Slice b : equal) {
+                assertThat(a).isEqualTo(b);
+                assertThat(a.hashCode()).isEqualTo(b.hashCode());
+            }
+            for (Slice b : unequal) {
+                assertThat(a).isNotEqualTo(b);
+                assertThat(b).isNotEqualTo(a);
+            }
+        }
+        assertThat(Slice.empty().hashCode()).isEqualTo(Arrays.hashCode(new byte[0]));
+    }
+
+    @Test
+    void viewsAreComparedByContent() {
+        byte[] backing = "xxabcyy".getBytes();
+        Slice view = Slice.create(backing, 2, 3);
+        Slice abc = Slice.create("abc");
+        assertThat(view).isEqualTo(abc);
+        assertThat(view.hashCode()).isEqualTo(abc.hashCode()).isEqualTo(Arrays.hashCode("abc".getBytes()));
+        assertThat(view.compareTo(abc)).isZero();
+        assertThat(view.length()).isEqualTo(3);
+        assertThat(view.toString()).isEqualTo("abc");
+        assertThat(view.data()).isEqualTo("abc".getBytes());
+    }
+
+    @Test
+    void subSlices() {
+        Slice slice = Slice.create("hello world");
+        assertThat(slice.slice(6, 11)).isEqualTo(Slice.create("world"));
+        assertThat(slice.slice(6, 11).slice(1, 3)).isEqualTo(Slice.create("or"));
+        assertThat(slice.slice(0, 11)).isSameAs(slice);
+        assertThat(slice.slice(3, 3)).isEqualTo(Slice.empty());
+        assertThat(slice.byteAt(4)).isEqualTo((byte) 'o');
+        assertThatThrownBy(() -> slice.slice(5, 12)).isInstanceOf(IndexOutOfBoundsException.class);
+        assertThatThrownBy(() -> slice.byteAt(11)).isInstanceOf(IndexOutOfBoundsException.class);
+    }
+
+    @Test
+    void copyDataIsDefensive() {
+        byte[] backing = "value".getBytes();
+        Slice slice = Slice.create(backing);
+        byte[] copy = slice.copyData();
+        copy[0] = 'V';
+        assertThat(slice.toString()).isEqualTo("value");
+        assertThat(copy).isNotSameAs(backing);
+    }
+
+    @Test
+    void comparison() {
+        assertThat(Slice.create("abc").compareTo(Slice.create("abd"))).isNegative();
+        assertThat(Slice.create("abc").compareTo(Slice.create("ab"))).isPositive();
+        assertThat(Slice.create("xabcx".getBytes(), 1, 2).compareTo(Slice.create("ab"))).isZero();
     }
-}
\ No newline at end of file
+}
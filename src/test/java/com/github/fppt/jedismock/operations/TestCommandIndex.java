@@ -0,0 +1,59 @@
+package com.github.fppt.jedismock.operations;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.reflections.Reflections;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.reflections.util.ReflectionUtilsPredicates.withAnnotation;
+
+public class TestCommandIndex {
+    private static final Logger LOG = LoggerFactory.getLogger(TestCommandIndex.class);
+    private static final int ITERATIONS = 5;
+
+    private static Set<Class<? extends RedisOperation>> scanClasspath() {
+        Reflections scanner = new Reflections(CommandFactory.class.getPackage().getName());
+        return scanner.getSubTypesOf(RedisOperation.class).stream()
+                .filter(withAnnotation(RedisCommand.class))
+                .collect(Collectors.toSet());
+    }
+
+    private static Set<Class<? extends RedisOperation>> loadIndex() {
+        return new HashSet<>(CommandIndex.load(TestCommandIndex.class.getClassLoader()));
+    }
+
+    private static long averageNanos(Supplier<?> action) {
+        //Warm up
+        action.get();
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            action.get();
+        }
+        return (System.nanoTime() - start) / ITERATIONS;
+    }
+
+    @Test
+    void indexContainsAllAnnotatedOperations() {
+        assertThat(loadIndex()).isNotEmpty().isEqualTo(scanClasspath());
+    }
+
+    /**
+     * Compares the startup cost of the generated index with the classpath scan it replaces. Timings depend
+     * on the machine, so they are only logged, and the benchmark runs with {@code -Dbenchmark=true}.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void benchmarkIndexAgainstClasspathScan() {
+        long scan = averageNanos(TestCommandIndex::scanClasspath);
+        long index = averageNanos(TestCommandIndex::loadIndex);
+        LOG.info("Command lookup at startup: classpath scan {} us, generated index {} us",
+                scan / 1000, index / 1000);
+    }
+}
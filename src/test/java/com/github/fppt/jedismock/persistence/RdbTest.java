@@ -0,0 +1,326 @@
+package com.github.fppt.jedismock.persistence;
+
+import com.github.fppt.jedismock.datastructures.RMDataStructure;
+import com.github.fppt.jedismock.datastructures.RMHash;
+import com.github.fppt.jedismock.datastructures.RMHyperLogLog;
+import com.github.fppt.jedismock.datastructures.RMList;
+import com.github.fppt.jedismock.datastructures.RMSet;
+import com.github.fppt.jedismock.datastructures.RMString;
+import com.github.fppt.jedismock.datastructures.RMZSet;
+import com.github.fppt.jedismock.datastructures.Slice;
+import com.github.fppt.jedismock.datastructures.ZSetEntry;
+import com.github.fppt.jedismock.datastructures.streams.RMStream;
+import com.github.fppt.jedismock.datastructures.streams.SequencedMap;
+import com.github.fppt.jedismock.datastructures.streams.StreamId;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
+
+class RdbTest {
+    private final Map<String, RMDataStructure> values = new HashMap<>();
+    private final Map<String, Long> deadlines = new HashMap<>();
+    private final Map<String, Integer> databases = new HashMap<>();
+
+    @Test
+    void checksumIsCrc64Jones() {
+        byte[] data = "123456789".getBytes(StandardCharsets.US_ASCII);
+        assertThat(Crc64.update(0, data, 0, data.length)).isEqualTo(0xe9c6d914c4b8d9caL);
+    }
+
+    @Test
+    void writtenValuesAreReadBack() throws IOException {
+        RMHyperLogLog hll = new RMHyperLogLog();
+        hll.addAll(asList(Slice.create("a"), Slice.create("b")));
+        RMZSet zset = new RMZSet();
+        zset.put(Slice.create("one"), 1.5);
+        zset.put(Slice.create("min"), Double.NEGATIVE_INFINITY);
+        RMHash hash = new RMHash();
+        hash.put(Slice.create("field"), Slice.create("value"));
+        RMStream stream = new RMStream();
+        for (int i = 0; i < 150; i++) {
+            SequencedMap<Slice, Slice> fields = new SequencedMap<>();
+            fields.append(Slice.create(i % 7 == 0 ? "other" : "field"), Slice.create("value" + i));
+            stream.getStoredData().append(new StreamId(1000 + i, i % 3), fields);
+        }
+        stream.updateLastId(new StreamId(2000, 5));
+        String large = String.join("", Collections.nCopies(100_000, "x"));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        RdbWriter writer = new RdbWriter(out);
+        writer.writeHeader();
+        writer.writeAux("redis-bits", "64");
+        writer.selectDatabase(0);
+        writer.writeKey(Slice.create("string"), RMString.create("text"), -1);
+        writer.writeKey(Slice.create("integer"), RMString.create("-123456"), 1_700_000_000_000L);
+        writer.writeKey(Slice.create("padded"), RMString.create("0123"), -1);
+        writer.writeKey(Slice.create("large"), RMString.create(large), -1);
+        writer.writeKey(Slice.create("hll"), hll, -1);
+        writer.writeKey(Slice.create("list"), new RMList(asList(Slice.create("a"), Slice.create("1"))), -1);
+        writer.selectDatabase(3);
+        writer.writeKey(Slice.create("set"), new RMSet(new HashSet<>(asList(Slice.create("a")))), -1);
+        writer.writeKey(Slice.create("zset"), zset, -1);
+        writer.writeKey(Slice.create("hash"), hash, -1);
+        writer.writeKey(Slice.create("stream"), stream, -1);
+        writer.finish();
+
+        read(out.toByteArray());
+        assertThat(values.get("string").getAsSlice()).isEqualTo(Slice.create("text"));
+        assertThat(values.get("integer").getAsSlice()).isEqualTo(Slice.create("-123456"));
+        assertThat(deadlines.get("integer")).isEqualTo(1_700_000_000_000L);
+        assertThat(deadlines.get("string")).isEqualTo(-1);
+        assertThat(values.get("padded").getAsSlice()).isEqualTo(Slice.create("0123"));
+        assertThat(values.get("large").getAsSlice()).isEqualTo(Slice.create(large));
+        assertThat(values.get("hll")).isInstanceOf(RMHyperLogLog.class);
+        assertThat(values.get("hll").getAsSlice()).isEqualTo(hll.getAsSlice());
+        assertThat(((RMHyperLogLog) values.get("hll")).count()).isEqualTo(2);
+        assertThat(((RMList) values.get("list")).getStoredData())
+                .containsExactly(Slice.create("a"), Slice.create("1"));
+        assertThat(databases.get("list")).isEqualTo(0);
+        assertThat(databases.get("set")).isEqualTo(3);
+        assertThat(((RMSet) values.get("set")).getStoredData()).containsExactly(Slice.create("a"));
+        assertThat(((RMZSet) values.get("zset")).entries(false)).containsExactly(
+                new ZSetEntry(Double.NEGATIVE_INFINITY, Slice.create("min")),
+                new ZSetEntry(1.5, Slice.create("one")));
+        assertThat(((RMHash) values.get("hash")).getStoredData())
+                .containsExactly(entry(Slice.create("field"), Slice.create("value")));
+        RMStream readStream = (RMStream) values.get("stream");
+        assertThat(readStream.getLastId()).isEqualTo(new StreamId(2000, 5));
+        assertThat(entries(readStream)).isEqualTo(entries(stream));
+    }
+
+    @Test
+    void compactEncodingsOfRedisAreRead() throws IOException {
+        RedisDump dump = new RedisDump(11);
+        dump.aux("redis-ver", "7.2.4").aux("aof-base", "0");
+        dump.opcode(RdbConstants.OPCODE_FUNCTION2).string("#!lua name=lib\nredis.register_function('f', f)");
+        dump.opcode(RdbConstants.OPCODE_SELECTDB).length(0);
+        dump.opcode(RdbConstants.OPCODE_RESIZEDB).length(9).length(1);
+
+        //LZF-compressed string: a literal run followed by a back reference
+        dump.opcode(RdbConstants.TYPE_STRING).string("compressed")
+                .bytes(0xc3).length(7).length(24).bytes(0x02, 'a', 'b', 'c', 0xe0, 0x0c, 0x02);
+        dump.opcode(RdbConstants.OPCODE_EXPIRETIME).littleEndian(4_000_000_000L, 4);
+        dump.opcode(RdbConstants.TYPE_STRING).string("number").bytes(0xc1).littleEndian(-1000, 2);
+
+        dump.opcode(RdbConstants.OPCODE_FREQ).bytes(5);
+        dump.opcode(RdbConstants.TYPE_SET_INTSET).string("intset")
+                .string(bytes(2, 0, 0, 0, 2, 0, 0, 0, 0xff, 0xff, 0x10, 0x00));
+        dump.opcode(RdbConstants.OPCODE_IDLE).length(100);
+        dump.opcode(RdbConstants.TYPE_SET_LISTPACK).string("listpackset").string(listPack("a", "b"));
+        dump.opcode(RdbConstants.TYPE_HASH_LISTPACK).string("hash").string(listPack("f", 12, "g", "v"));
+        dump.opcode(RdbConstants.TYPE_ZSET_LISTPACK).string("zset").string(listPack("a", -1, "b", "1.5", "c", "inf"));
+
+        dump.opcode(RdbConstants.TYPE_LIST_QUICKLIST_2).string("list").length(2)
+                .length(2).string(listPack("a", 5000, "b"))
+                .length(RdbConstants.QUICKLIST_NODE_PLAIN).string("plain");
+        //Ziplist: string, 4-bit immediate integer, 16-bit integer
+        dump.opcode(RdbConstants.TYPE_LIST_QUICKLIST).string("oldlist").length(1)
+                .string(bytes(0, 0, 0, 0, 0, 0, 0, 0, 3, 0, 0, 0x01, 'a', 3, 0xf6, 2, 0xc0, 0xe8, 0x03, 0xff));
+
+        dump.opcode(RdbConstants.TYPE_STREAM_LISTPACKS_3).string("stream").length(1)
+                .string(bytes(0, 0, 0, 0, 0, 0, 0x03, 0xe8, 0, 0, 0, 0, 0, 0, 0, 0))
+                .string(listPack(2, 1, 1, "f", 0,
+                        2, 0, 0, "v1", 4,
+                        3, 0, 1, "v2", 4,
+                        0, 5, 0, 2, "f", "v3", "g", "w", 8))
+                //Length, last ID, first ID, maximal deleted ID and number of added entries
+                .length(2).length(1005).length(0).length(1000).length(0).length(1000).length(1).length(3)
+                //Consumer group with a pending entry and a consumer
+                .length(1).string("group").length(1000).length(0).length(1)
+                .length(1).bytes(new byte[16]).bytes(new byte[8]).length(1)
+                .length(1).string("consumer").bytes(new byte[8]).bytes(new byte[8]).length(1).bytes(new byte[16]);
+        read(dump.finish());
+
+        assertThat(values.get("compressed").getAsSlice()).isEqualTo(Slice.create("abcabcabcabcabcabcabcabc"));
+        assertThat(values.get("number").getAsSlice()).isEqualTo(Slice.create("-1000"));
+        assertThat(deadlines.get("number")).isEqualTo(4_000_000_000_000L);
+        assertThat(((RMSet) values.get("intset")).getStoredData())
+                .containsExactlyInAnyOrder(Slice.create("-1"), Slice.create("16"));
+        assertThat(((RMSet) values.get("listpackset")).getStoredData())
+                .containsExactlyInAnyOrder(Slice.create("a"), Slice.create("b"));
+        assertThat(((RMHash) values.get("hash")).getStoredData()).containsExactly(
+                entry(Slice.create("f"), Slice.create("12")), entry(Slice.create("g"), Slice.create("v")));
+        assertThat(((RMZSet) values.get("zset")).entries(false)).containsExactly(
+                new ZSetEntry(-1, Slice.create("a")), new ZSetEntry(1.5, Slice.create("b")),
+                new ZSetEntry(Double.POSITIVE_INFINITY, Slice.create("c")));
+        assertThat(((RMList) values.get("list")).getStoredData()).containsExactly(
+                Slice.create("a"), Slice.create("5000"), Slice.create("b"), Slice.create("plain"));
+        assertThat(((RMList) values.get("oldlist")).getStoredData()).containsExactly(
+                Slice.create("a"), Slice.create("5"), Slice.create("1000"));
+        RMStream stream = (RMStream) values.get("stream");
+        assertThat(stream.getLastId()).isEqualTo(new StreamId(1005, 0));
+        Map<StreamId, Map<Slice, Slice>> expected = new LinkedHashMap<>();
+        expected.put(new StreamId(1000, 0), fields("f", "v1"));
+        expected.put(new StreamId(1005, 0), fields("f", "v3", "g", "w"));
+        assertThat(entries(stream)).isEqualTo(expected);
+    }
+
+    @Test
+    void corruptedFilesAreRejected() throws IOException {
+        byte[] dump = new RedisDump(9).opcode(RdbConstants.TYPE_STRING).string("key").string("value").finish();
+        dump[dump.length - 1] ^= 1;
+        assertThatThrownBy(() -> read(dump)).isInstanceOf(IOException.class).hasMessage("Wrong RDB checksum");
+        assertThatThrownBy(() -> read(Arrays.copyOf(dump, dump.length - 10)))
+                .isInstanceOf(IOException.class).hasMessage("Unexpected end of RDB file");
+        assertThatThrownBy(() -> read(new RedisDump(13).finish()))
+                .isInstanceOf(IOException.class).hasMessage("Can't handle RDB format version 13");
+    }
+
+    @Test
+    void dumpedValuesAreReadBack() throws IOException {
+        byte[] payload = RdbWriter.dump(RMString.create("10"));
+        //The same as DUMP of Redis 5.0 and 6.x
+        assertThat(payload)
+                .isEqualTo(bytes(0x00, 0xc0, 0x0a, 0x09, 0x00, 0xbe, 0x6d, 0x06, 0x89, 0x5a, 0x28, 0x00, 0x0a));
+        assertThat(RdbReader.readDump(payload).getAsSlice()).isEqualTo(Slice.create("10"));
+
+        RMString bitMap = new RMString();
+        bitMap.setBit(9, true);
+        assertThat(RdbReader.readDump(RdbWriter.dump(bitMap)).getAsSlice()).isEqualTo(Slice.create(bytes(0, 0x40)));
+        RMList list = new RMList(asList(Slice.create("a"), Slice.create("1")));
+        list = (RMList) RdbReader.readDump(RdbWriter.dump(list));
+        assertThat(list.getStoredData()).containsExactly(Slice.create("a"), Slice.create("1"));
+    }
+
+    @Test
+    void corruptedDumpsAreRejected() throws IOException {
+        byte[] payload = RdbWriter.dump(RMString.create("value"));
+        payload[1] ^= 1;
+        assertThatThrownBy(() -> RdbReader.readDump(payload))
+                .isInstanceOf(IOException.class).hasMessage("DUMP payload version or checksum are wrong");
+        assertThatThrownBy(() -> RdbReader.readDump(new byte[9]))
+                .isInstanceOf(IOException.class).hasMessage("DUMP payload version or checksum are wrong");
+        //Valid checksum, but the string is longer than the payload
+        byte[] truncated = bytes(0x00, 0x05, 'v', 0x09, 0x00, 0, 0, 0, 0, 0, 0, 0, 0);
+        long checksum = Crc64.update(0, truncated, 0, truncated.length - 8);
+        for (int i = 0; i < 8; i++) {
+            truncated[truncated.length - 8 + i] = (byte) (checksum >>> (8 * i));
+        }
+        assertThatThrownBy(() -> RdbReader.readDump(truncated))
+                .isInstanceOf(IOException.class).hasMessage("Bad data format");
+    }
+
+    private void read(byte[] dump) throws IOException {
+        new RdbReader(new ByteArrayInputStream(dump)).read((database, key, value, deadline) -> {
+            values.put(key.toString(), value);
+            deadlines.put(key.toString(), deadline);
+            databases.put(key.toString(), database);
+        });
+    }
+
+    private static Map<StreamId, Map<Slice, Slice>> entries(RMStream stream) {
+        Map<StreamId, Map<Slice, Slice>> result = new LinkedHashMap<>();
+        stream.getStoredData().forEach((id, fields) -> {
+            Map<Slice, Slice> values = new LinkedHashMap<>();
+            fields.forEach(values::put);
+            result.put(id, values);
+        });
+        return result;
+    }
+
+    private static Map<Slice, Slice> fields(String... fieldsAndValues) {
+        Map<Slice, Slice> result = new LinkedHashMap<>();
+        for (int i = 0; i < fieldsAndValues.length; i += 2) {
+            result.put(Slice.create(fieldsAndValues[i]), Slice.create(fieldsAndValues[i + 1]));
+        }
+        return result;
+    }
+
+    private static byte[] listPack(Object... elements) {
+        ListPack listPack = new ListPack();
+        for (Object element : elements) {
+            if (element instanceof Integer) {
+                listPack.append((Integer) element);
+            } else {
+                listPack.append(Slice.create((String) element));
+            }
+        }
+        return listPack.toByteArray();
+    }
+
+    private static byte[] bytes(int... values) {
+        byte[] result = new byte[values.length];
+        IntStream.range(0, values.length).forEach(i -> result[i] = (byte) values[i]);
+        return result;
+    }
+
+    /**
+     * Builds a file the way Redis writes it, using the encodings which {@link RdbWriter} does not use.
+     */
+    private static final class RedisDump {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        private RedisDump(int version) {
+            bytes(String.format("REDIS%04d", version).getBytes(StandardCharsets.US_ASCII));
+        }
+
+        private RedisDump aux(String key, String value) {
+            return opcode(RdbConstants.OPCODE_AUX).string(key).string(value);
+        }
+
+        private RedisDump opcode(int opcode) {
+            out.write(opcode);
+            return this;
+        }
+
+        private RedisDump bytes(int... values) {
+            return bytes(RdbTest.bytes(values));
+        }
+
+        private RedisDump bytes(byte[] values) {
+            out.write(values, 0, values.length);
+            return this;
+        }
+
+        private RedisDump length(long length) {
+            if (length < 64) {
+                return bytes((int) length);
+            }
+            return bytes(0x80).bigEndian(length);
+        }
+
+        private RedisDump bigEndian(long value) {
+            for (int i = 3; i >= 0; i--) {
+                out.write((int) (value >>> (8 * i)));
+            }
+            return this;
+        }
+
+        private RedisDump littleEndian(long value, int bytes) {
+            for (int i = 0; i < bytes; i++) {
+                out.write((int) (value >>> (8 * i)));
+            }
+            return this;
+        }
+
+        private RedisDump string(String value) {
+            return string(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        private RedisDump string(byte[] value) {
+            return length(value.length).bytes(value);
+        }
+
+        private byte[] finish() {
+            out.write(RdbConstants.OPCODE_EOF);
+            byte[] content = out.toByteArray();
+            littleEndian(Crc64.update(0, content, 0, content.length), 8);
+            return out.toByteArray();
+        }
+    }
+}